@@ -0,0 +1,181 @@
+package org.moskito.central.connectors.binary;
+
+import org.configureme.ConfigurationManager;
+import org.moskito.central.Snapshot;
+import org.moskito.central.connectors.AbstractCentralConnector;
+import org.moskito.central.protocol.BinaryProtocol;
+import org.moskito.central.protocol.BinarySnapshotEncoder;
+import org.moskito.central.protocol.ProtocolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Connector which sends snapshots over a persistent tcp connection with the binary protocol of
+ * {@link BinaryProtocol}. Every frame waits for the ack of the central before the next one is sent. The connection
+ * and its string dictionary are dropped on any error and reopened with the next send.
+ */
+public class BinaryConnector extends AbstractCentralConnector {
+
+	/**
+	 * Logger instance.
+	 */
+	private final static Logger log = LoggerFactory.getLogger(BinaryConnector.class);
+
+	/**
+	 * Max size of a response frame, acks and error messages are small.
+	 */
+	private static final int MAX_RESPONSE_SIZE = 64 * 1024;
+
+	private volatile BinaryConnectorConfig config;
+
+	private Socket socket;
+
+	private OutputStream out;
+
+	private DataInputStream in;
+
+	private BinarySnapshotEncoder encoder;
+
+	/**
+	 * Default constructor.
+	 */
+	public BinaryConnector() {
+		super();
+	}
+
+	@Override
+	public void setConfigurationName(String configurationName) {
+		BinaryConnectorConfig newConfig = new BinaryConnectorConfig();
+		ConfigurationManager.INSTANCE.configureAs(newConfig, configurationName);
+		log.debug("Config: " + newConfig);
+		configure(newConfig);
+	}
+
+	/**
+	 * Applies the config, an open connection is closed.
+	 * @param newConfig config.
+	 */
+	public void configure(BinaryConnectorConfig newConfig) {
+		super.configure(newConfig);
+		config = newConfig;
+		disconnect();
+	}
+
+	@Override
+	protected void sendData(Snapshot snapshot) {
+		try {
+			exchange(Collections.singletonList(snapshot));
+		} catch (IOException e) {
+			throw new IllegalStateException("Sending snapshot to " + address() + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Sends the batch in frames of at most frameSize snapshots. If a frame fails, the frames before it are not sent
+	 * again by the retry.
+	 */
+	@Override
+	protected void sendBatch(List<Snapshot> snapshots) {
+		int frameSize = Math.max(1, config.getFrameSize());
+		for (int from = 0; from < snapshots.size(); from += frameSize) {
+			try {
+				exchange(snapshots.subList(from, Math.min(snapshots.size(), from + frameSize)));
+			} catch (IOException e) {
+				IllegalStateException cause = new IllegalStateException("Sending snapshots to " + address() + " failed: " + e.getMessage(), e);
+				if (from == 0)
+					throw cause;
+				throw new UnsentSnapshotsException(new ArrayList<>(snapshots.subList(from, snapshots.size())), cause);
+			}
+		}
+	}
+
+	/**
+	 * Sends one frame and waits for the ack.
+	 */
+	private synchronized void exchange(List<Snapshot> snapshots) throws IOException {
+		try {
+			if (socket == null)
+				connect();
+			ByteBuffer frame = encoder.encode(snapshots);
+			out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+			out.flush();
+			readAck(snapshots.size());
+		} catch (IOException e) {
+			disconnect();
+			throw e;
+		}
+	}
+
+	private void readAck(int expected) throws IOException {
+		int length = in.readInt();
+		if (length <= 0 || length > MAX_RESPONSE_SIZE)
+			throw new ProtocolException("Invalid response length " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		ByteBuffer payload = ByteBuffer.wrap(bytes);
+		byte type = payload.get();
+		if (type == BinaryProtocol.FRAME_ERROR)
+			throw new IOException("Central rejected frame: " + BinaryProtocol.readError(payload));
+		if (type != BinaryProtocol.FRAME_ACK)
+			throw new ProtocolException("Unexpected response type " + type);
+		int count = BinaryProtocol.getVarInt(payload);
+		if (count != expected)
+			throw new ProtocolException("Central acknowledged " + count + " of " + expected + " snapshots");
+	}
+
+	private void connect() throws IOException {
+		Socket newSocket = new Socket();
+		try {
+			newSocket.setTcpNoDelay(true);
+			newSocket.setSoTimeout(config.getReadTimeout());
+			newSocket.connect(new InetSocketAddress(config.getConnectorHost(), config.getConnectorPort()), config.getConnectTimeout());
+			OutputStream newOut = new BufferedOutputStream(newSocket.getOutputStream(), 64 * 1024);
+			ByteBuffer hello = BinaryProtocol.hello();
+			newOut.write(hello.array(), hello.arrayOffset(), hello.remaining());
+			socket = newSocket;
+			out = newOut;
+			in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+			encoder = new BinarySnapshotEncoder();
+			log.debug("Connected to " + address());
+		} catch (IOException e) {
+			newSocket.close();
+			throw e;
+		}
+	}
+
+	private synchronized void disconnect() {
+		if (socket == null)
+			return;
+		try {
+			socket.close();
+		} catch (IOException ignored) {
+		}
+		socket = null;
+		out = null;
+		in = null;
+		encoder = null;
+	}
+
+	@Override
+	public void deInitialize() {
+		super.deInitialize();
+		disconnect();
+	}
+
+	private String address() {
+		return config.getConnectorHost() + ':' + config.getConnectorPort();
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.moskito.central.connectors.binary;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+import org.moskito.central.connectors.AbstractCentralConnectorConfig;
+
+/**
+ * Config class for the binary protocol connector.
+ */
+@ConfigureMe
+public class BinaryConnectorConfig extends AbstractCentralConnectorConfig {
+
+	/**
+	 * Host of the central binary endpoint.
+	 */
+	@Configure
+	private String connectorHost = "localhost";
+
+	/**
+	 * Port of the central binary endpoint.
+	 */
+	@Configure
+	private int connectorPort = 9413;
+
+	/**
+	 * Max number of snapshots in one frame, bigger batches are split.
+	 */
+	@Configure
+	private int frameSize = 500;
+
+	public String getConnectorHost() {
+		return connectorHost;
+	}
+
+	public void setConnectorHost(String connectorHost) {
+		this.connectorHost = connectorHost;
+	}
+
+	public int getConnectorPort() {
+		return connectorPort;
+	}
+
+	public void setConnectorPort(int connectorPort) {
+		this.connectorPort = connectorPort;
+	}
+
+	public int getFrameSize() {
+		return frameSize;
+	}
+
+	public void setFrameSize(int frameSize) {
+		this.frameSize = frameSize;
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryConnectorConfig [connectorHost=" + connectorHost + ", connectorPort=" + connectorPort + ", frameSize=" + frameSize + ", async=" + isAsync() + "]";
+	}
+
+}
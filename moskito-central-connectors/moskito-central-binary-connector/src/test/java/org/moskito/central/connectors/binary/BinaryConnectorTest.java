@@ -0,0 +1,114 @@
+package org.moskito.central.connectors.binary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.endpoints.binary.BinaryEndpoint;
+import org.moskito.central.endpoints.binary.BinaryEndpointConfig;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the binary connector against the binary endpoint of a central.
+ */
+public class BinaryConnectorTest {
+
+	private static final List<Snapshot> received = CapturingStorage.getReceived();
+
+	private BinaryEndpoint endpoint;
+
+	@Before
+	public void setup() throws Exception {
+		received.clear();
+		endpoint = startEndpoint(0);
+	}
+
+	private static BinaryEndpoint startEndpoint(int port) throws Exception {
+		Configuration configuration = CapturingStorage.createConfiguration();
+
+		BinaryEndpointConfig config = new BinaryEndpointConfig();
+		config.setPort(port);
+		config.setWorkers(2);
+		BinaryEndpoint ret = new BinaryEndpoint(Central.getConfiguredInstance(configuration), config);
+		ret.start();
+		return ret;
+	}
+
+	@After
+	public void stopEndpoint() {
+		endpoint.stop();
+	}
+
+	private BinaryConnector createConnector() {
+		BinaryConnectorConfig config = new BinaryConnectorConfig();
+		config.setConnectorPort(endpoint.getPort());
+		config.setFrameSize(100);
+		BinaryConnector connector = new BinaryConnector();
+		connector.configure(config);
+		return connector;
+	}
+
+	private static Snapshot createSnapshot(int i) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId("producer" + i % 10).setCategory("service").setSubsystem("default")
+				.setComponentName("app").setHostName("host").setIntervalName("1m").setCreationTimestamp(1000 + i);
+		snapshot.setMetaData(metaData);
+		HashMap<String, String> data = new HashMap<String, String>();
+		data.put("Req", String.valueOf(i));
+		data.put("Avg", String.valueOf(i / 4.0));
+		snapshot.addSnapshotData("cumulated", data);
+		return snapshot;
+	}
+
+	@Test
+	public void testSendDataAndBatches() {
+		BinaryConnector connector = createConnector();
+		connector.sendData(createSnapshot(0));
+
+		List<Snapshot> batch = new ArrayList<Snapshot>();
+		for (int i = 1; i <= 250; i++) {
+			batch.add(createSnapshot(i));
+		}
+		connector.sendBatch(batch);
+
+		assertEquals(251, received.size());
+		assertEquals(4, endpoint.getReceivedFrames());
+		for (int i = 0; i <= 250; i++) {
+			Snapshot expected = createSnapshot(i);
+			assertEquals(expected.getMetaData().getProducerId(), received.get(i).getMetaData().getProducerId());
+			assertEquals(expected.getMetaData().getCreationTimestamp(), received.get(i).getMetaData().getCreationTimestamp());
+			assertEquals(expected.getStats(), received.get(i).getStats());
+		}
+		connector.deInitialize();
+	}
+
+	@Test
+	public void testReconnect() throws Exception {
+		BinaryConnector connector = createConnector();
+		connector.sendData(createSnapshot(0));
+
+		//the central restarts, the new connection starts with a new dictionary.
+		int port = endpoint.getPort();
+		endpoint.stop();
+		endpoint = startEndpoint(port);
+
+		try {
+			connector.sendData(createSnapshot(1));
+		} catch (IllegalStateException expected) {
+			//the old connection is detected as broken on first use.
+		}
+		connector.sendData(createSnapshot(2));
+		assertEquals("producer2", received.get(received.size() - 1).getMetaData().getProducerId());
+		connector.deInitialize();
+	}
+}
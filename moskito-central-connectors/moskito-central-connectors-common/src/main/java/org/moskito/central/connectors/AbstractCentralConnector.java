@@ -1,11 +1,16 @@
 package org.moskito.central.connectors;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.moskito.central.CentralConstants;
 import org.moskito.central.Snapshot;
@@ -14,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.anotheria.moskito.core.plugins.AbstractMoskitoPlugin;
+import net.anotheria.moskito.core.registry.ProducerRegistryFactory;
 import net.anotheria.moskito.core.snapshot.ProducerSnapshot;
 import net.anotheria.moskito.core.snapshot.SnapshotConsumer;
 import net.anotheria.moskito.core.snapshot.SnapshotRepository;
@@ -43,6 +49,45 @@ public abstract class AbstractCentralConnector extends AbstractMoskitoPlugin imp
 	 */
 	private Set<String> defaultIntervals = Collections.emptySet();
 
+	/**
+	 * Sender for async mode, null if snapshots are sent synchronously.
+	 */
+	private volatile AsyncSnapshotSender asyncSender;
+
+	/**
+	 * Delta encoding of snapshots, null if full snapshots are sent.
+	 */
+	private volatile DeltaEncoder deltaEncoder;
+
+	/**
+	 * Spool for snapshots which couldn't be sent, null if spooling is off.
+	 */
+	private volatile SnapshotSpool spool;
+
+	private SpoolReplayer spoolReplayer;
+
+	private SpoolProducer spoolProducer;
+
+	/**
+	 * Retries of failed sends.
+	 */
+	private volatile RetryPolicy retryPolicy = new RetryPolicy(0, 1, 1);
+
+	/**
+	 * Breaker which skips sends while the central is down, disabled until the connector is configured.
+	 */
+	private volatile CircuitBreaker breaker = new CircuitBreaker(0, 0);
+
+	/**
+	 * Number of snapshots which were not sent because the circuit was open.
+	 */
+	private final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * Max time to wait for the async sender on shutdown.
+	 */
+	private static final long SENDER_STOP_TIMEOUT = 5000;
+
 	/**
 	 * Logger instance.
 	 */
@@ -63,11 +108,82 @@ public abstract class AbstractCentralConnector extends AbstractMoskitoPlugin imp
 	}
 
 	public void configure(AbstractCentralConnectorConfig config) {
-		if (config.getSupportedIntervals()==null || config.getSupportedIntervals().length==0){
+		if (config.getSupportedIntervals()!=null && config.getSupportedIntervals().length>0){
+			defaultIntervals = new HashSet<>(Arrays.asList(config.getSupportedIntervals()));
+		}
+
+		deltaEncoder = config.isDelta() ? new DeltaEncoder(config.getDeltaKeyframeInterval()) : null;
+		retryPolicy = new RetryPolicy(config.getMaxRetries(), config.getRetryInitialBackoff(), config.getRetryMaxBackoff());
+		breaker = new CircuitBreaker(config.getBreakerFailureThreshold(), config.getBreakerOpenInterval());
+
+		stopAsyncSender();
+		stopSpool();
+		if (config.isSpool()) {
+			startSpool(config);
+		}
+		if (config.isAsync()) {
+			AsyncSnapshotSender sender = new AsyncSnapshotSender(this, config);
+			sender.start();
+			asyncSender = sender;
+		}
+	}
+
+	private void startSpool(AbstractCentralConnectorConfig config) {
+		File directory;
+		if (config.getSpoolDirectory() != null && config.getSpoolDirectory().length() > 0) {
+			directory = new File(config.getSpoolDirectory());
+		} else {
+			//not in the shared temp dir, other users must neither read nor plant segments.
+			directory = new File(new File(System.getProperty("user.home"), ".moskito-central-spool"), componentName + "-" + getClass().getSimpleName());
+		}
+		SnapshotSpool newSpool = new SnapshotSpool(directory, config.getSpoolMaxSize(), config.getSpoolMaxAge(), config.getSpoolSegmentSize());
+		spoolProducer = new SpoolProducer("CentralSpool-" + getClass().getSimpleName(), newSpool);
+		try {
+			ProducerRegistryFactory.getProducerRegistryInstance().registerProducer(spoolProducer);
+		} catch (Exception e) {
+			log.warn("Couldn't register spool producer " + spoolProducer + ": " + e.getMessage());
+		}
+		spoolReplayer = new SpoolReplayer(this, newSpool, config);
+		spoolReplayer.start();
+		spool = newSpool;
+		log.info(this + ": spooling failed snapshots to " + directory);
+	}
+
+	private void stopSpool() {
+		SnapshotSpool oldSpool = spool;
+		spool = null;
+		if (oldSpool == null)
 			return;
+		spoolReplayer.stop(SENDER_STOP_TIMEOUT);
+		spoolReplayer = null;
+		try {
+			ProducerRegistryFactory.getProducerRegistryInstance().unregisterProducer(spoolProducer);
+		} catch (Exception e) {
+			log.warn("Couldn't unregister spool producer " + spoolProducer + ": " + e.getMessage());
 		}
+		spoolProducer = null;
+		oldSpool.close();
+	}
 
-		defaultIntervals = new HashSet<>(Arrays.asList(config.getSupportedIntervals()));
+	/**
+	 * Writes snapshots which couldn't be sent to the spool, if spooling is configured.
+	 *
+	 * @param snapshots failed snapshots.
+	 */
+	void spoolFailed(List<Snapshot> snapshots) {
+		for (Snapshot snapshot : snapshots) {
+			DeltaEncoder.clearMarkers(snapshot);
+		}
+		SnapshotSpool current = spool;
+		if (current != null && !snapshots.isEmpty())
+			current.append(snapshots);
+	}
+
+	private void stopAsyncSender() {
+		AsyncSnapshotSender sender = asyncSender;
+		asyncSender = null;
+		if (sender != null)
+			sender.stop(SENDER_STOP_TIMEOUT);
 	}
 
 	@Override
@@ -79,6 +195,8 @@ public abstract class AbstractCentralConnector extends AbstractMoskitoPlugin imp
 	@Override
 	public void deInitialize() {
 		SnapshotRepository.getInstance().removeConsumer(this);
+		stopAsyncSender();
+		stopSpool();
 		super.deInitialize();
 	}
 
@@ -90,15 +208,132 @@ public abstract class AbstractCentralConnector extends AbstractMoskitoPlugin imp
 
 		Snapshot centralSnapshot = makeSnapshot(coreSnapshot);
 		log.debug(this.getClass().getName() + ": \r\n" + centralSnapshot);
-		try {
-			sendData(centralSnapshot);
-		} catch (Exception e) {
-			if(log.isDebugEnabled()) {
-				log.error(this.getClass().getSimpleName() + ".sendData() failed", e);
+
+		AsyncSnapshotSender sender = asyncSender;
+		if (sender != null) {
+			sender.offer(centralSnapshot);
+			return;
+		}
+
+		//the snapshot thread is blocked by one short backoff at most, a snapshot which fails again is spooled.
+		deliver(Collections.singletonList(centralSnapshot), false, Math.min(1, retryPolicy.getMaxRetries()));
+	}
+
+	/**
+	 * Sends snapshots through the circuit breaker and retries failed sends with backoff. Whatever couldn't be sent
+	 * in the end is spooled. Used by the async sender, so the backoffs don't block the snapshot thread; sent from
+	 * the snapshot thread, a snapshot is retried once. With delta
+	 * encoding the snapshots are encoded right before each attempt; keyframes which are not delivered are reported
+	 * to the encoder and the spool only gets full snapshots.
+	 *
+	 * @param snapshots snapshots to send.
+	 * @param batch     true to send them with {@link #sendBatch(List)}, false if the list holds one snapshot for
+	 *                  {@link #sendData(Snapshot)}.
+	 * @return true if everything was sent.
+	 */
+	boolean deliver(List<Snapshot> snapshots, boolean batch) {
+		return deliver(snapshots, batch, retryPolicy.getMaxRetries());
+	}
+
+	private boolean deliver(List<Snapshot> snapshots, boolean batch, int maxRetries) {
+		RetryPolicy policy = retryPolicy;
+		CircuitBreaker circuit = breaker;
+		List<Snapshot> pending = snapshots;
+		Exception failure = null;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0) {
+				try {
+					Thread.sleep(policy.backoff(attempt - 1));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			if (!circuit.allowRequest()) {
+				long count = skipped.addAndGet(pending.size());
+				if (failure == null && (count == pending.size() || count / 1000 != (count - pending.size()) / 1000))
+					log.warn(this + ": central is considered down, " + count + " snapshots skipped so far");
+				break;
+			}
+			DeltaEncoder encoder = deltaEncoder;
+			List<Snapshot> encoded = encoder == null ? pending : encoder.encode(pending);
+			try {
+				if (batch) {
+					sendBatch(encoded);
+				} else {
+					sendData(encoded.get(0));
+				}
+				circuit.success();
+				return true;
+			} catch (UnsentSnapshotsException e) {
+				if (encoder != null)
+					encoder.unacknowledged(e.getUnsent());
+				pending = encoder == null ? e.getUnsent() : originals(pending, encoded, e.getUnsent());
+				failure = e;
+				circuit.failure();
+			} catch (Exception e) {
+				if (encoder != null)
+					encoder.unacknowledged(encoded);
+				failure = e;
+				circuit.failure();
+			}
+		}
+
+		spoolFailed(pending);
+		if (failure != null) {
+			String method = batch ? ".sendBatch()" : ".sendData()";
+			if (log.isDebugEnabled()) {
+				log.error(this.getClass().getSimpleName() + method + " failed", failure);
 			} else {
-				log.error(this.getClass().getSimpleName() + ".sendData() failed: " + e.getMessage());
+				log.error(this.getClass().getSimpleName() + method + " failed: " + failure.getMessage());
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * Returns the full snapshots of the unsent encoded ones.
+	 */
+	private static List<Snapshot> originals(List<Snapshot> full, List<Snapshot> encoded, List<Snapshot> unsent) {
+		Map<Snapshot, Snapshot> byEncoded = new IdentityHashMap<>(encoded.size() * 4 / 3 + 1);
+		for (int i = 0; i < encoded.size(); i++) {
+			byEncoded.put(encoded.get(i), full.get(i));
+		}
+		List<Snapshot> ret = new ArrayList<>(unsent.size());
+		for (Snapshot snapshot : unsent) {
+			Snapshot original = byEncoded.get(snapshot);
+			ret.add(original == null ? snapshot : original);
+		}
+		return ret;
+	}
+
+	/**
+	 * Sends a spooled snapshot once, through the circuit breaker.
+	 *
+	 * @param snapshot snapshot to send.
+	 * @throws IllegalStateException if the circuit is open.
+	 */
+	void replay(Snapshot snapshot) {
+		CircuitBreaker circuit = breaker;
+		if (!circuit.allowRequest())
+			throw new IllegalStateException("central is considered down");
+		//spooled snapshots are full, but spools of older versions may contain markers.
+		DeltaEncoder.clearMarkers(snapshot);
+		try {
+			sendData(snapshot);
+		} catch (RuntimeException e) {
+			circuit.failure();
+			throw e;
+		}
+		circuit.success();
+	}
+
+	CircuitBreaker getCircuitBreaker() {
+		return breaker;
+	}
+
+	long getSkipped() {
+		return skipped.get();
 	}
 
 	private Snapshot makeSnapshot(ProducerSnapshot coreSnapshot) {
@@ -131,9 +366,47 @@ public abstract class AbstractCentralConnector extends AbstractMoskitoPlugin imp
 	 */
 	protected abstract void sendData(Snapshot snapshot);
 
+	/**
+	 * Sends a batch of snapshots in async mode. The default implementation sends them one by one and stops at the
+	 * first failure, so a retry continues with the snapshot that failed. Connectors whose transport supports batches
+	 * override it; if an override throws, the whole batch is retried unless it throws an
+	 * {@link UnsentSnapshotsException}.
+	 *
+	 * @param snapshots snapshots collected by the async sender.
+	 */
+	protected void sendBatch(List<Snapshot> snapshots) {
+		for (int i = 0; i < snapshots.size(); i++) {
+			try {
+				sendData(snapshots.get(i));
+			} catch (RuntimeException e) {
+				throw new UnsentSnapshotsException(new ArrayList<>(snapshots.subList(i, snapshots.size())), e);
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + " " + componentName + "@" + host;
 	}
 
+	/**
+	 * Thrown by {@link #sendBatch(List)} with the snapshots which are not sent yet. Connectors which send a batch in
+	 * several parts throw it too, so a retry doesn't send the parts already delivered again.
+	 */
+	protected static class UnsentSnapshotsException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient List<Snapshot> unsent;
+
+		public UnsentSnapshotsException(List<Snapshot> unsent, Exception cause) {
+			super(cause.getMessage(), cause);
+			this.unsent = unsent;
+		}
+
+		List<Snapshot> getUnsent() {
+			return unsent;
+		}
+	}
+
 }
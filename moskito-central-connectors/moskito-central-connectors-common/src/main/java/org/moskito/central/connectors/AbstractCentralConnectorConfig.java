@@ -1,12 +1,152 @@
 package org.moskito.central.connectors;
 
+import org.configureme.annotations.Configure;
+
 /**
  * Abstract central connector config.
  */
 public abstract class AbstractCentralConnectorConfig {
 
+    @Configure
     private String[] supportedIntervals = new String[0];
 
+    /**
+     * If true snapshots are queued and sent in batches by a separate thread instead of the moskito snapshot thread.
+     */
+    @Configure
+    private boolean async = false;
+
+    /**
+     * Max number of snapshots waiting to be sent in async mode.
+     */
+    @Configure
+    private int queueSize = 5000;
+
+    /**
+     * Max number of snapshots in one batch.
+     */
+    @Configure
+    private int maxBatchSize = 500;
+
+    /**
+     * Time in milliseconds the sender waits for further snapshots of the same interval tick before it sends a batch.
+     */
+    @Configure
+    private long batchLinger = 200;
+
+    /**
+     * What to do if the queue is full, see {@link DropPolicy}.
+     */
+    @Configure
+    private String dropPolicy = DropPolicy.DROP_OLDEST.name();
+
+    /**
+     * If true queued snapshots are kept in compact form, which takes a fraction of the memory of the plain maps.
+     */
+    @Configure
+    private boolean compactQueue = true;
+
+    /**
+     * If true only the values which changed since the last keyframe are sent, the central reconstructs the full
+     * snapshots.
+     */
+    @Configure
+    private boolean delta = false;
+
+    /**
+     * Number of snapshots per producer and interval from one full keyframe to the next in delta mode.
+     */
+    @Configure
+    private int deltaKeyframeInterval = 10;
+
+    /**
+     * Timeout in milliseconds for establishing the connection to the central.
+     */
+    @Configure
+    private int connectTimeout = 2000;
+
+    /**
+     * Timeout in milliseconds for the central's response.
+     */
+    @Configure
+    private int readTimeout = 5000;
+
+    /**
+     * Number of retries of a failed send in async mode. Snapshots sent synchronously are retried once at most, so
+     * the snapshot thread isn't blocked by longer backoffs, and spooled if that fails too. Use the async mode to get
+     * all retries.
+     */
+    @Configure
+    private int maxRetries = 2;
+
+    /**
+     * Upper bound of the wait before the first retry in milliseconds, doubled with every further retry.
+     */
+    @Configure
+    private long retryInitialBackoff = 100;
+
+    /**
+     * Max wait between two retries in milliseconds.
+     */
+    @Configure
+    private long retryMaxBackoff = 5000;
+
+    /**
+     * Number of consecutive failed sends after which the central is considered down and sends are skipped, 0 turns
+     * the circuit breaker off.
+     */
+    @Configure
+    private int breakerFailureThreshold = 5;
+
+    /**
+     * Time in milliseconds after which a probe is sent to a central which is considered down.
+     */
+    @Configure
+    private long breakerOpenInterval = 30000;
+
+    /**
+     * If true snapshots which couldn't be sent are written to a spool on disk and sent again later.
+     */
+    @Configure
+    private boolean spool = false;
+
+    /**
+     * Directory of the spool, only accessible by its owner. If empty, a directory per component and connector in
+     * ~/.moskito-central-spool is used.
+     */
+    @Configure
+    private String spoolDirectory = "";
+
+    /**
+     * Max size of the spool in bytes, the oldest snapshots are dropped above.
+     */
+    @Configure
+    private long spoolMaxSize = 100L * 1024 * 1024;
+
+    /**
+     * Max age of spooled snapshots in milliseconds.
+     */
+    @Configure
+    private long spoolMaxAge = 24L * 60 * 60 * 1000;
+
+    /**
+     * Size of a single spool file in bytes.
+     */
+    @Configure
+    private long spoolSegmentSize = 1024L * 1024;
+
+    /**
+     * Max number of spooled snapshots sent per second once the central is reachable again.
+     */
+    @Configure
+    private int spoolReplayRate = 100;
+
+    /**
+     * Time in milliseconds between two attempts to replay the spool while the central is not reachable.
+     */
+    @Configure
+    private long spoolRetryInterval = 10000;
+
     public String[] getSupportedIntervals() {
         return supportedIntervals;
     }
@@ -14,4 +154,180 @@ public abstract class AbstractCentralConnectorConfig {
     public void setSupportedIntervals(String[] supportedIntervals) {
         this.supportedIntervals = supportedIntervals;
     }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getBatchLinger() {
+        return batchLinger;
+    }
+
+    public void setBatchLinger(long batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    public boolean isCompactQueue() {
+        return compactQueue;
+    }
+
+    public void setCompactQueue(boolean compactQueue) {
+        this.compactQueue = compactQueue;
+    }
+
+    public String getDropPolicy() {
+        return dropPolicy;
+    }
+
+    public void setDropPolicy(String dropPolicy) {
+        this.dropPolicy = dropPolicy;
+    }
+
+    public boolean isSpool() {
+        return spool;
+    }
+
+    public void setSpool(boolean spool) {
+        this.spool = spool;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public long getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    public void setSpoolMaxSize(long spoolMaxSize) {
+        this.spoolMaxSize = spoolMaxSize;
+    }
+
+    public long getSpoolMaxAge() {
+        return spoolMaxAge;
+    }
+
+    public void setSpoolMaxAge(long spoolMaxAge) {
+        this.spoolMaxAge = spoolMaxAge;
+    }
+
+    public long getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    public void setSpoolSegmentSize(long spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize;
+    }
+
+    public int getSpoolReplayRate() {
+        return spoolReplayRate;
+    }
+
+    public void setSpoolReplayRate(int spoolReplayRate) {
+        this.spoolReplayRate = spoolReplayRate;
+    }
+
+    public long getSpoolRetryInterval() {
+        return spoolRetryInterval;
+    }
+
+    public void setSpoolRetryInterval(long spoolRetryInterval) {
+        this.spoolRetryInterval = spoolRetryInterval;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryInitialBackoff() {
+        return retryInitialBackoff;
+    }
+
+    public void setRetryInitialBackoff(long retryInitialBackoff) {
+        this.retryInitialBackoff = retryInitialBackoff;
+    }
+
+    public long getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(long retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    public long getBreakerOpenInterval() {
+        return breakerOpenInterval;
+    }
+
+    public void setBreakerOpenInterval(long breakerOpenInterval) {
+        this.breakerOpenInterval = breakerOpenInterval;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    public int getDeltaKeyframeInterval() {
+        return deltaKeyframeInterval;
+    }
+
+    public void setDeltaKeyframeInterval(int deltaKeyframeInterval) {
+        this.deltaKeyframeInterval = deltaKeyframeInterval;
+    }
 }
@@ -0,0 +1,175 @@
+package org.moskito.central.connectors;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotCompactor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples the moskito snapshot thread from the transport of a connector. Snapshots are put into a bounded queue,
+ * a sender thread collects everything that arrives within the linger time (all producers of one interval tick
+ * arrive within a few milliseconds) and hands it to the connector as one batch. The queue never blocks the caller,
+ * if it is full a snapshot is dropped according to the {@link DropPolicy}.
+ */
+class AsyncSnapshotSender implements Runnable {
+
+	/**
+	 * Logger instance.
+	 */
+	private final static Logger log = LoggerFactory.getLogger(AsyncSnapshotSender.class);
+
+	/**
+	 * Compactor of the queued snapshots, shared by all connectors of the jvm since they send the same producers.
+	 */
+	private static final SnapshotCompactor compactor = new SnapshotCompactor();
+
+	/**
+	 * Connector which sends the batches.
+	 */
+	private final AbstractCentralConnector connector;
+
+	/**
+	 * Queued snapshots.
+	 */
+	private final BlockingQueue<Snapshot> queue;
+
+	private final DropPolicy dropPolicy;
+
+	private final boolean compact;
+
+	private final int maxBatchSize;
+
+	private final long batchLinger;
+
+	/**
+	 * Number of dropped snapshots.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Number of sent batches.
+	 */
+	private final AtomicLong sentBatches = new AtomicLong();
+
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	AsyncSnapshotSender(AbstractCentralConnector connector, AbstractCentralConnectorConfig config) {
+		this.connector = connector;
+		this.queue = new ArrayBlockingQueue<Snapshot>(Math.max(1, config.getQueueSize()));
+		this.dropPolicy = DropPolicy.fromName(config.getDropPolicy());
+		this.compact = config.isCompactQueue();
+		this.maxBatchSize = Math.max(1, config.getMaxBatchSize());
+		this.batchLinger = Math.max(0, config.getBatchLinger());
+		thread = new Thread(this, "moskito-central-sender-" + connector.getClass().getSimpleName());
+		thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Queues a snapshot, never blocks.
+	 *
+	 * @param snapshot snapshot to send.
+	 */
+	void offer(Snapshot snapshot) {
+		if (compact)
+			compactor.compact(snapshot);
+		enqueue(snapshot);
+	}
+
+	/**
+	 * Queues a snapshot or drops one according to the drop policy if the queue is full.
+	 */
+	private void enqueue(Snapshot snapshot) {
+		if (queue.offer(snapshot))
+			return;
+		if (dropPolicy == DropPolicy.DROP_OLDEST) {
+			//another thread may take the freed slot, in this case the new snapshot is dropped.
+			if (queue.poll() != null)
+				dropped();
+			if (queue.offer(snapshot))
+				return;
+		}
+		dropped();
+	}
+
+	private void dropped() {
+		long count = dropped.incrementAndGet();
+		if (count == 1 || count % 1000 == 0)
+			log.warn(connector + ": send queue is full, " + count + " snapshots dropped so far");
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			List<Snapshot> batch = new ArrayList<Snapshot>();
+			try {
+				batch.add(queue.take());
+				while (batch.size() < maxBatchSize) {
+					Snapshot next = queue.poll(batchLinger, TimeUnit.MILLISECONDS);
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				//stop() is called, whatever is collected is queued again and sent by stop. The queue may have been
+				//filled up meanwhile.
+				for (Snapshot snapshot : batch) {
+					enqueue(snapshot);
+				}
+				break;
+			}
+			send(batch);
+		}
+	}
+
+	private void send(List<Snapshot> batch) {
+		if (batch.isEmpty())
+			return;
+		if (connector.deliver(batch, true))
+			sentBatches.incrementAndGet();
+	}
+
+	/**
+	 * Stops the sender thread and sends the remaining snapshots from the calling thread.
+	 *
+	 * @param timeout max time in milliseconds to wait for the sender thread.
+	 */
+	void stop(long timeout) {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<Snapshot> rest = new ArrayList<Snapshot>();
+		while (queue.drainTo(rest, maxBatchSize) > 0) {
+			send(rest);
+			rest = new ArrayList<Snapshot>();
+		}
+	}
+
+	int getQueueSize() {
+		return queue.size();
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+	long getSentBatches() {
+		return sentBatches.get();
+	}
+}
@@ -0,0 +1,92 @@
+package org.moskito.central.connectors;
+
+/**
+ * Circuit breaker for the central connection. After failureThreshold consecutive failures the circuit opens and
+ * sends are rejected without touching the network. Once the open interval passed, a single probe is let through:
+ * if it succeeds the circuit closes, otherwise it stays open for another interval.
+ */
+class CircuitBreaker {
+
+	/**
+	 * State of the circuit.
+	 */
+	enum State {
+		/**
+		 * Central is reachable, everything is sent.
+		 */
+		CLOSED,
+		/**
+		 * Central is considered down, sends are rejected.
+		 */
+		OPEN,
+		/**
+		 * A probe is in progress.
+		 */
+		HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openInterval;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	/**
+	 * Time the circuit was opened last.
+	 */
+	private long openedAt;
+
+	/**
+	 * @param failureThreshold consecutive failures which open the circuit, 0 or less disables the breaker.
+	 * @param openInterval     time in milliseconds until a probe is sent.
+	 */
+	CircuitBreaker(int failureThreshold, long openInterval) {
+		this.failureThreshold = failureThreshold;
+		this.openInterval = Math.max(0, openInterval);
+	}
+
+	/**
+	 * Returns true if a send may be attempted. In open state the first caller after the open interval becomes the
+	 * probe, all others are rejected until the probe reports back.
+	 * @return boolean
+	 */
+	synchronized boolean allowRequest() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (System.currentTimeMillis() - openedAt < openInterval)
+					return false;
+				state = State.HALF_OPEN;
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	synchronized void success() {
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+	}
+
+	synchronized void failure() {
+		if (failureThreshold <= 0)
+			return;
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CircuitBreaker " + state + ", consecutiveFailures=" + consecutiveFailures;
+	}
+}
@@ -0,0 +1,177 @@
+package org.moskito.central.connectors;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Delta encoding of the snapshots of a connector. Per producer and interval every n-th snapshot is sent in full as
+ * keyframe, the snapshots in between only contain the stats and values which differ from that keyframe. Since a
+ * delta always refers to the keyframe and not to its predecessor, a lost or reordered delta doesn't affect the
+ * following ones. A snapshot in which a stat or value of the keyframe is missing becomes a keyframe itself.
+ * <p>
+ * A keyframe which doesn't reach the central has to be reported with {@link #unacknowledged(List)}, the next
+ * snapshot of its stream is a keyframe again. Otherwise every delta up to the next regular keyframe would refer to a
+ * base the central doesn't know and would be dropped.
+ */
+class DeltaEncoder {
+
+	private final int keyframeInterval;
+
+	/**
+	 * Last keyframe per producer and interval.
+	 */
+	private final ConcurrentMap<String, Stream> streams = new ConcurrentHashMap<>();
+
+	/**
+	 * @param keyframeInterval number of snapshots per stream from one keyframe to the next.
+	 */
+	DeltaEncoder(int keyframeInterval) {
+		this.keyframeInterval = Math.max(1, keyframeInterval);
+	}
+
+	/**
+	 * Encodes the snapshots of a send attempt.
+	 *
+	 * @param snapshots full snapshots.
+	 * @return the snapshots to send, in the same order.
+	 */
+	List<Snapshot> encode(List<Snapshot> snapshots) {
+		List<Snapshot> ret = new ArrayList<>(snapshots.size());
+		for (Snapshot snapshot : snapshots) {
+			ret.add(encode(snapshot));
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the snapshot to send: the snapshot itself marked as keyframe, or a new delta snapshot.
+	 *
+	 * @param snapshot full snapshot.
+	 * @return Snapshot
+	 */
+	Snapshot encode(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		//deltas refer to the keyframe by its timestamp, 0 is reserved for full snapshots.
+		if (metaData == null || metaData.getCreationTimestamp() == 0)
+			return snapshot;
+		//markers of a previous, failed attempt.
+		clearMarkers(snapshot);
+
+		String key = streamKey(metaData);
+		Stream stream = streams.get(key);
+		if (stream == null) {
+			Stream newStream = new Stream();
+			stream = streams.putIfAbsent(key, newStream);
+			if (stream == null)
+				stream = newStream;
+		}
+
+		synchronized (stream) {
+			Map<String, Map<String, String>> delta = null;
+			if (stream.keyframe != null && stream.sinceKeyframe + 1 < keyframeInterval)
+				delta = diff(stream.keyframe, snapshot.getStats());
+			if (delta == null) {
+				stream.keyframe = snapshot.getStats();
+				stream.keyframeTimestamp = metaData.getCreationTimestamp();
+				stream.sinceKeyframe = 0;
+				metaData.setKeyframe(true);
+				return snapshot;
+			}
+			stream.sinceKeyframe++;
+			metaData.setDeltaBase(stream.keyframeTimestamp);
+			Snapshot ret = new Snapshot();
+			ret.setMetaData(metaData);
+			ret.setStats(delta);
+			return ret;
+		}
+	}
+
+	/**
+	 * Forgets the keyframes among snapshots which were not delivered, so the next snapshot of their stream is sent
+	 * as keyframe.
+	 *
+	 * @param snapshots encoded snapshots which didn't reach the central.
+	 */
+	void unacknowledged(List<Snapshot> snapshots) {
+		for (Snapshot snapshot : snapshots) {
+			SnapshotMetaData metaData = snapshot.getMetaData();
+			if (metaData == null || !metaData.isKeyframe())
+				continue;
+			Stream stream = streams.get(streamKey(metaData));
+			if (stream == null)
+				continue;
+			synchronized (stream) {
+				//a newer keyframe is not affected.
+				if (stream.keyframeTimestamp == metaData.getCreationTimestamp())
+					stream.keyframe = null;
+			}
+		}
+	}
+
+	/**
+	 * Removes the keyframe and delta markers, e.g. before a snapshot is spooled. A spooled snapshot is always sent
+	 * in full, its keyframe may be gone by the time it is replayed.
+	 *
+	 * @param snapshot snapshot to send in full.
+	 */
+	static void clearMarkers(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null)
+			return;
+		metaData.setKeyframe(false);
+		metaData.setDeltaBase(0);
+	}
+
+	private static String streamKey(SnapshotMetaData metaData) {
+		return metaData.getProducerId() + '|' + metaData.getIntervalName();
+	}
+
+	/**
+	 * Returns the stats and values of current which differ from the keyframe, or null if a stat or value of the
+	 * keyframe is missing in current.
+	 */
+	private static Map<String, Map<String, String>> diff(Map<String, Map<String, String>> keyframe, Map<String, Map<String, String>> current) {
+		for (Map.Entry<String, Map<String, String>> stat : keyframe.entrySet()) {
+			Map<String, String> values = current.get(stat.getKey());
+			if (values == null || !values.keySet().containsAll(stat.getValue().keySet()))
+				return null;
+		}
+
+		Map<String, Map<String, String>> delta = new HashMap<>();
+		for (Map.Entry<String, Map<String, String>> stat : current.entrySet()) {
+			Map<String, String> base = keyframe.get(stat.getKey());
+			if (base == null) {
+				delta.put(stat.getKey(), stat.getValue());
+				continue;
+			}
+			Map<String, String> changed = null;
+			for (Map.Entry<String, String> value : stat.getValue().entrySet()) {
+				String baseValue = base.get(value.getKey());
+				if (baseValue == null ? value.getValue() == null && base.containsKey(value.getKey()) : baseValue.equals(value.getValue()))
+					continue;
+				if (changed == null)
+					changed = new HashMap<>();
+				changed.put(value.getKey(), value.getValue());
+			}
+			if (changed != null)
+				delta.put(stat.getKey(), changed);
+		}
+		return delta;
+	}
+
+	/**
+	 * Keyframe state of a producer and interval.
+	 */
+	private static class Stream {
+		private Map<String, Map<String, String>> keyframe;
+		private long keyframeTimestamp;
+		private int sinceKeyframe;
+	}
+}
@@ -0,0 +1,31 @@
+package org.moskito.central.connectors;
+
+/**
+ * Defines which snapshot is discarded if the send queue of an async connector is full.
+ */
+public enum DropPolicy {
+    /**
+     * The oldest queued snapshot is discarded in favour of the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The new snapshot is discarded.
+     */
+    DROP_NEWEST;
+
+    /**
+     * Returns the policy with the given name or DROP_OLDEST if the name is unknown.
+     *
+     * @param name policy name, case insensitive.
+     * @return DropPolicy
+     */
+    public static DropPolicy fromName(String name) {
+        if (name != null) {
+            for (DropPolicy p : values()) {
+                if (p.name().equalsIgnoreCase(name.trim()))
+                    return p;
+            }
+        }
+        return DROP_OLDEST;
+    }
+}
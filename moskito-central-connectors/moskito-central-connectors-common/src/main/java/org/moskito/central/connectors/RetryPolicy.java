@@ -0,0 +1,39 @@
+package org.moskito.central.connectors;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of a connector: up to maxRetries retries with exponential backoff and full jitter, i.e. the n-th retry
+ * waits a random time between zero and min(maxBackoff, initialBackoff * 2^n). The jitter keeps agents which lost
+ * the central at the same moment from retrying in lockstep.
+ */
+class RetryPolicy {
+
+	private final int maxRetries;
+
+	private final long initialBackoff;
+
+	private final long maxBackoff;
+
+	RetryPolicy(int maxRetries, long initialBackoff, long maxBackoff) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.initialBackoff = Math.max(1, initialBackoff);
+		this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+	}
+
+	int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Returns the time to wait before the given retry.
+	 * @param retry number of the retry, starting with 0.
+	 * @return time in milliseconds.
+	 */
+	long backoff(int retry) {
+		long ceiling = maxBackoff;
+		if (retry < 62 && (initialBackoff << retry) >>> retry == initialBackoff)
+			ceiling = Math.min(maxBackoff, initialBackoff << retry);
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+}
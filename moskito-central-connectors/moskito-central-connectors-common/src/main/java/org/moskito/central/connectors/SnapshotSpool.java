@@ -0,0 +1,527 @@
+package org.moskito.central.connectors;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.protocol.BinaryProtocol;
+import org.moskito.central.protocol.BinarySnapshotDecoder;
+import org.moskito.central.protocol.BinarySnapshotEncoder;
+import org.moskito.central.protocol.ProtocolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded on-disk spool for snapshots a connector couldn't send. Snapshots are appended to segment files in a
+ * directory, a segment is closed once it reaches the segment size and a new one is started. Segments are read in the
+ * order they were written; a segment is deleted after all its snapshots are replayed. If the spool grows above its max
+ * size or a segment gets older than the max age, the oldest segments are dropped. Segments found in the directory on
+ * startup are picked up, so snapshots survive a restart of the agent.
+ * <p>
+ * A segment starts with a header and holds one frame of the binary protocol per snapshot, so reading a segment never
+ * instantiates other classes than snapshots. The number of snapshots is added to the file name when a segment is
+ * closed. The directory and the segments are only accessible by the owner where the file system supports it.
+ */
+class SnapshotSpool {
+
+	/**
+	 * Logger instance.
+	 */
+	private final static Logger log = LoggerFactory.getLogger(SnapshotSpool.class);
+
+	/**
+	 * Suffix of segment files.
+	 */
+	static final String SEGMENT_SUFFIX = ".spool";
+
+	/**
+	 * First bytes of a segment file, 'MCSS'.
+	 */
+	static final int SEGMENT_MAGIC = 0x4D435353;
+
+	static final byte SEGMENT_VERSION = 1;
+
+	/**
+	 * Size of the segment header, magic and version.
+	 */
+	static final int HEADER_SIZE = 5;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	private final long maxAge;
+
+	private final long segmentSize;
+
+	/**
+	 * All segments by their sequence number, including the one currently written.
+	 */
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+	/**
+	 * Segment new snapshots are appended to, null if none is open.
+	 */
+	private Segment current;
+
+	private DataOutputStream out;
+
+	private long nextSequence;
+
+	/**
+	 * Total size of all segments in bytes.
+	 */
+	private long size;
+
+	/**
+	 * Number of snapshots in the spool.
+	 */
+	private long backlog;
+
+	private final AtomicLong spooled = new AtomicLong();
+
+	private final AtomicLong replayed = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates the spool and picks up the segments which are already in the directory.
+	 *
+	 * @param directory   directory for the segment files, created if needed.
+	 * @param maxSize     max size of all segments in bytes.
+	 * @param maxAge      max age of a segment in milliseconds.
+	 * @param segmentSize size in bytes after which a segment is closed.
+	 */
+	SnapshotSpool(File directory, long maxSize, long maxAge, long segmentSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+		this.segmentSize = Math.max(1, segmentSize);
+		createDirectory(directory);
+		load();
+	}
+
+	private void load() {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File f : files) {
+			String name = f.getName();
+			if (!name.endsWith(SEGMENT_SUFFIX))
+				continue;
+			String base = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+			int dash = base.indexOf('-');
+			long sequence;
+			long count;
+			try {
+				sequence = Long.parseLong(dash == -1 ? base : base.substring(0, dash));
+				count = dash == -1 ? -1 : Long.parseLong(base.substring(dash + 1));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			if (!hasHeader(f)) {
+				log.warn("Ignoring " + f + ", it's not a spool segment of version " + SEGMENT_VERSION);
+				continue;
+			}
+			Segment segment = new Segment(sequence, f);
+			segment.bytes = f.length();
+			//a segment without count wasn't closed, e.g. after a crash.
+			segment.count = count >= 0 ? count : countRecords(f);
+			segments.put(sequence, segment);
+			size += segment.bytes;
+			backlog += segment.count;
+			nextSequence = Math.max(nextSequence, sequence + 1);
+		}
+		if (backlog > 0)
+			log.info("Found " + backlog + " spooled snapshots in " + directory);
+	}
+
+	/**
+	 * Appends snapshots to the spool.
+	 *
+	 * @param snapshots snapshots to spool.
+	 */
+	synchronized void append(Collection<Snapshot> snapshots) {
+		try {
+			for (Snapshot snapshot : snapshots) {
+				//each record has its own dictionary, so it can be read on its own.
+				ByteBuffer frame = new BinarySnapshotEncoder().encode(Collections.singletonList(snapshot));
+				if (current == null)
+					openSegment();
+				int length = frame.remaining();
+				out.write(frame.array(), frame.arrayOffset() + frame.position(), length);
+				current.bytes += length;
+				current.count++;
+				size += length;
+				backlog++;
+				spooled.incrementAndGet();
+				if (current.bytes >= segmentSize)
+					closeSegment();
+			}
+			if (out != null)
+				out.flush();
+		} catch (IOException e) {
+			log.error("Couldn't write to spool " + directory + ": " + e.getMessage());
+			closeSegment();
+		}
+		enforceLimits();
+	}
+
+	/**
+	 * Returns the oldest snapshots which are not replayed yet, all from the same segment. The segment is read from
+	 * the position after the snapshots already replayed. The segment currently written is closed first if it is the
+	 * oldest one.
+	 *
+	 * @return oldest snapshots or null if the spool is empty.
+	 */
+	synchronized Batch oldest() {
+		enforceLimits();
+		if (segments.isEmpty())
+			return null;
+		Segment oldest = segments.firstEntry().getValue();
+		if (oldest == current)
+			closeSegment();
+		return read(oldest);
+	}
+
+	/**
+	 * Marks snapshots of a batch as replayed. The segment is deleted once all of its snapshots are replayed.
+	 *
+	 * @param batch batch returned by {@link #oldest()}.
+	 * @param count number of snapshots replayed from the start of the batch.
+	 */
+	synchronized void replayed(Batch batch, int count) {
+		Segment segment = segments.get(batch.sequence);
+		if (segment == null)
+			return;
+		replayed.addAndGet(count);
+		backlog -= count;
+		segment.replayed += count;
+		if (count > 0)
+			segment.position = batch.ends[count - 1];
+		if (count >= batch.snapshots.size()) {
+			//snapshots which couldn't be read from the segment are gone as well.
+			backlog -= Math.max(0, segment.count - segment.replayed);
+			remove(segment);
+		}
+	}
+
+	/**
+	 * Closes the current segment, the spooled snapshots stay on disk.
+	 */
+	synchronized void close() {
+		closeSegment();
+	}
+
+	synchronized boolean isEmpty() {
+		return segments.isEmpty();
+	}
+
+	synchronized long getBacklog() {
+		return backlog;
+	}
+
+	synchronized long getSize() {
+		return size;
+	}
+
+	synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	long getSpooled() {
+		return spooled.get();
+	}
+
+	long getReplayed() {
+		return replayed.get();
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+	private void enforceLimits() {
+		long oldestAllowed = System.currentTimeMillis() - maxAge;
+		while (!segments.isEmpty()) {
+			Segment oldest = segments.firstEntry().getValue();
+			boolean tooBig = size > maxSize;
+			boolean tooOld = maxAge > 0 && oldest.timestamp < oldestAllowed;
+			if (!tooBig && !tooOld)
+				return;
+			if (oldest == current)
+				closeSegment();
+			long lost = oldest.count - oldest.replayed;
+			backlog -= lost;
+			long count = dropped.addAndGet(lost);
+			log.warn("Dropping spool segment " + oldest.file.getName() + " with " + lost + " snapshots, " + (tooBig ? "spool is full" : "segment is too old") + ", " + count + " snapshots dropped so far");
+			remove(oldest);
+		}
+	}
+
+	private void remove(Segment segment) {
+		if (segment == current)
+			closeSegment();
+		segments.remove(segment.sequence);
+		size -= segment.bytes;
+		if (!segment.file.delete() && segment.file.exists())
+			log.warn("Couldn't delete spool segment " + segment.file);
+	}
+
+	private void openSegment() throws IOException {
+		long sequence = nextSequence++;
+		File file = new File(directory, String.format("%019d", sequence) + SEGMENT_SUFFIX);
+		createFile(file);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		out.writeInt(SEGMENT_MAGIC);
+		out.writeByte(SEGMENT_VERSION);
+		current = new Segment(sequence, file);
+		current.bytes = HEADER_SIZE;
+		size += HEADER_SIZE;
+		segments.put(sequence, current);
+	}
+
+	/**
+	 * Closes the current segment and adds the number of its snapshots to the file name.
+	 */
+	private void closeSegment() {
+		DataOutputStream toClose = out;
+		Segment closed = current;
+		out = null;
+		current = null;
+		if (toClose != null) {
+			try {
+				toClose.close();
+			} catch (IOException e) {
+				log.warn("Couldn't close spool segment: " + e.getMessage());
+			}
+		}
+		if (closed != null) {
+			File renamed = new File(directory, String.format("%019d", closed.sequence) + '-' + closed.count + SEGMENT_SUFFIX);
+			if (closed.file.renameTo(renamed))
+				closed.file = renamed;
+		}
+	}
+
+	/**
+	 * Reads the snapshots of a segment from its read position. A record which is cut off, e.g. after a crash while
+	 * writing, ends the segment; a record which can't be decoded is skipped.
+	 */
+	private static Batch read(Segment segment) {
+		List<Snapshot> snapshots = new ArrayList<Snapshot>();
+		List<Long> ends = new ArrayList<Long>();
+		DataInputStream in = null;
+		long position = segment.position;
+		try {
+			FileInputStream fin = new FileInputStream(segment.file);
+			fin.getChannel().position(position);
+			in = new DataInputStream(new BufferedInputStream(fin));
+			long fileLength = segment.file.length();
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (length <= 0 || length > fileLength - position - 4)
+					throw new EOFException();
+				byte[] data = new byte[length];
+				in.readFully(data);
+				position += 4 + length;
+				try {
+					if (data[0] != BinaryProtocol.FRAME_SNAPSHOTS)
+						throw new ProtocolException("Unexpected frame type " + data[0]);
+					snapshots.addAll(new BinarySnapshotDecoder().decode(ByteBuffer.wrap(data, 1, length - 1)));
+					ends.add(position);
+				} catch (ProtocolException e) {
+					log.warn("Skipping unreadable snapshot in " + segment.file + ": " + e.getMessage());
+				}
+			}
+		} catch (EOFException e) {
+			log.warn("Spool segment " + segment.file + " ends with an incomplete snapshot");
+		} catch (IOException e) {
+			log.warn("Couldn't read spool segment " + segment.file + ": " + e.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+		long[] endPositions = new long[ends.size()];
+		for (int i = 0; i < endPositions.length; i++) {
+			endPositions[i] = ends.get(i);
+		}
+		return new Batch(segment.sequence, snapshots, endPositions);
+	}
+
+	/**
+	 * Counts the records of a segment by their length prefixes, without decoding them.
+	 */
+	private static long countRecords(File file) {
+		long count = 0;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			long remaining = file.length() - HEADER_SIZE;
+			in.skipBytes(HEADER_SIZE);
+			while (remaining >= 4) {
+				int length = in.readInt();
+				if (length <= 0 || length > remaining - 4)
+					break;
+				in.skipBytes(length);
+				remaining -= 4 + length;
+				count++;
+			}
+		} catch (IOException e) {
+			log.warn("Couldn't read spool segment " + file + ": " + e.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+		return count;
+	}
+
+	private static boolean hasHeader(File file) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			return in.readInt() == SEGMENT_MAGIC && in.readByte() == SEGMENT_VERSION;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the spool directory, accessible by the owner only.
+	 */
+	private static void createDirectory(File directory) {
+		if (!directory.isDirectory()) {
+			try {
+				Files.createDirectories(directory.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+			} catch (UnsupportedOperationException e) {
+				if (!directory.mkdirs())
+					log.warn("Couldn't create spool directory " + directory);
+			} catch (IOException e) {
+				log.warn("Couldn't create spool directory " + directory + ": " + e.getMessage());
+			}
+		}
+		restrictToOwner(directory, "rwx------");
+	}
+
+	/**
+	 * Creates a segment file, accessible by the owner only.
+	 */
+	private static void createFile(File file) throws IOException {
+		try {
+			Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			if (!file.createNewFile())
+				throw new IOException("Spool segment " + file + " exists already");
+			restrictToOwner(file, "rw-------");
+		}
+	}
+
+	private static void restrictToOwner(File file, String permissions) {
+		try {
+			Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString(permissions));
+		} catch (UnsupportedOperationException e) {
+			boolean ok = file.setReadable(false, false) & file.setReadable(true, true) & file.setWritable(false, false) & file.setWritable(true, true);
+			if (file.isDirectory())
+				ok &= file.setExecutable(false, false) & file.setExecutable(true, true);
+			if (!ok)
+				log.warn("Couldn't restrict access to " + file + " to its owner");
+		} catch (IOException e) {
+			log.warn("Couldn't restrict access to " + file + " to its owner: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SnapshotSpool " + directory + " backlog=" + backlog + ", size=" + size + ", segments=" + segments.size();
+	}
+
+	/**
+	 * Snapshots of one segment handed out for replay.
+	 */
+	static class Batch {
+		private final long sequence;
+		private final List<Snapshot> snapshots;
+		/**
+		 * Position in the segment after each snapshot.
+		 */
+		private final long[] ends;
+
+		Batch(long sequence, List<Snapshot> snapshots, long[] ends) {
+			this.sequence = sequence;
+			this.snapshots = Collections.unmodifiableList(snapshots);
+			this.ends = ends;
+		}
+
+		List<Snapshot> getSnapshots() {
+			return snapshots;
+		}
+	}
+
+	/**
+	 * A segment file.
+	 */
+	private static class Segment {
+		private final long sequence;
+		private File file;
+		/**
+		 * Time the segment was opened or, for segments found on startup, last written.
+		 */
+		private final long timestamp;
+		private long bytes;
+		private long count;
+		/**
+		 * Number of snapshots from the start of the segment which are already replayed.
+		 */
+		private int replayed;
+		/**
+		 * Position of the first snapshot which isn't replayed yet.
+		 */
+		private long position = HEADER_SIZE;
+
+		Segment(long sequence, File file) {
+			this.sequence = sequence;
+			this.file = file;
+			long modified = file.lastModified();
+			this.timestamp = modified > 0 ? modified : System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package org.moskito.central.connectors;
+
+import net.anotheria.moskito.core.producers.IStatsProducer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exposes the spool of a connector as moskito producer, so its backlog can be watched like any other producer.
+ */
+class SpoolProducer implements IStatsProducer<SpoolStats> {
+
+	private final String producerId;
+
+	private final SpoolStats stats;
+
+	private final List<SpoolStats> statsList;
+
+	SpoolProducer(String producerId, SnapshotSpool spool) {
+		this.producerId = producerId;
+		this.stats = new SpoolStats(spool);
+		this.statsList = Collections.singletonList(stats);
+	}
+
+	@Override
+	public List<SpoolStats> getStats() {
+		stats.update();
+		return statsList;
+	}
+
+	@Override
+	public String getProducerId() {
+		return producerId;
+	}
+
+	@Override
+	public String getCategory() {
+		return "central";
+	}
+
+	@Override
+	public String getSubsystem() {
+		return "connector";
+	}
+
+	@Override
+	public String toString() {
+		return producerId;
+	}
+}
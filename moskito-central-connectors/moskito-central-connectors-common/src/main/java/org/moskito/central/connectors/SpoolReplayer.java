@@ -0,0 +1,109 @@
+package org.moskito.central.connectors;
+
+import org.moskito.central.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Sends the snapshots of a {@link SnapshotSpool} again once the central is reachable. The spool is replayed in the
+ * order it was written, at most replayRate snapshots per second so a recovering central isn't flooded. On the first
+ * failed send the replayer waits for the retry interval before it tries again.
+ */
+class SpoolReplayer implements Runnable {
+
+	/**
+	 * Logger instance.
+	 */
+	private final static Logger log = LoggerFactory.getLogger(SpoolReplayer.class);
+
+	private final AbstractCentralConnector connector;
+
+	private final SnapshotSpool spool;
+
+	/**
+	 * Pause between two snapshots in nanoseconds.
+	 */
+	private final long pauseNanos;
+
+	private final long retryInterval;
+
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	SpoolReplayer(AbstractCentralConnector connector, SnapshotSpool spool, AbstractCentralConnectorConfig config) {
+		this.connector = connector;
+		this.spool = spool;
+		this.pauseNanos = 1000000000L / Math.max(1, config.getSpoolReplayRate());
+		this.retryInterval = Math.max(1, config.getSpoolRetryInterval());
+		thread = new Thread(this, "moskito-central-spool-replay-" + connector.getClass().getSimpleName());
+		thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	void stop(long timeout) {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				if (!replayOnce())
+					Thread.sleep(retryInterval);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Replays the oldest segment of the spool.
+	 *
+	 * @return true if the whole segment was sent and the next one can follow immediately.
+	 */
+	boolean replayOnce() throws InterruptedException {
+		SnapshotSpool.Batch batch = spool.oldest();
+		if (batch == null)
+			return false;
+		List<Snapshot> snapshots = batch.getSnapshots();
+		long next = System.nanoTime();
+		for (int i = 0; i < snapshots.size(); i++) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					spool.replayed(batch, i);
+					throw e;
+				}
+			}
+			next = Math.max(next, System.nanoTime() - pauseNanos) + pauseNanos;
+			try {
+				connector.replay(snapshots.get(i));
+			} catch (Exception e) {
+				spool.replayed(batch, i);
+				log.debug(connector + ": replay of spooled snapshots failed, retrying in " + retryInterval + " ms: " + e.getMessage());
+				return false;
+			}
+			if (!running) {
+				spool.replayed(batch, i + 1);
+				return false;
+			}
+		}
+		spool.replayed(batch, snapshots.size());
+		log.debug(connector + ": replayed " + snapshots.size() + " spooled snapshots, " + spool.getBacklog() + " left");
+		return true;
+	}
+}
@@ -0,0 +1,94 @@
+package org.moskito.central.connectors;
+
+import net.anotheria.moskito.core.predefined.Constants;
+import net.anotheria.moskito.core.producers.AbstractStats;
+import net.anotheria.moskito.core.stats.StatValue;
+import net.anotheria.moskito.core.stats.TimeUnit;
+import net.anotheria.moskito.core.stats.impl.StatValueFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stats of a connector's {@link SnapshotSpool}. Backlog and size are read from the spool when asked, the counters
+ * count per interval.
+ */
+public class SpoolStats extends AbstractStats {
+
+	/**
+	 * Names of the values.
+	 */
+	private static final List<String> VALUE_NAMES = Collections.unmodifiableList(Arrays.asList("Backlog", "Size", "Segments", "Spooled", "Replayed", "Dropped"));
+
+	private final SnapshotSpool spool;
+
+	private final StatValue spooled;
+
+	private final StatValue replayed;
+
+	private final StatValue dropped;
+
+	/**
+	 * Last seen totals of the spool, the difference goes into the interval counters.
+	 */
+	private long lastSpooled, lastReplayed, lastDropped;
+
+	SpoolStats(SnapshotSpool spool) {
+		super("spool");
+		this.spool = spool;
+		spooled = StatValueFactory.createStatValue(Long.valueOf(0), "spooled", Constants.getDefaultIntervals());
+		replayed = StatValueFactory.createStatValue(Long.valueOf(0), "replayed", Constants.getDefaultIntervals());
+		dropped = StatValueFactory.createStatValue(Long.valueOf(0), "dropped", Constants.getDefaultIntervals());
+	}
+
+	/**
+	 * Transfers the counters of the spool into the interval counters.
+	 */
+	synchronized void update() {
+		long s = spool.getSpooled();
+		long r = spool.getReplayed();
+		long d = spool.getDropped();
+		spooled.increaseByLong(s - lastSpooled);
+		replayed.increaseByLong(r - lastReplayed);
+		dropped.increaseByLong(d - lastDropped);
+		lastSpooled = s;
+		lastReplayed = r;
+		lastDropped = d;
+	}
+
+	@Override
+	public String toStatsString(String intervalName, TimeUnit unit) {
+		StringBuilder b = new StringBuilder();
+		b.append(getName()).append(' ');
+		for (String valueName : VALUE_NAMES) {
+			b.append(valueName).append(": ").append(getValueByNameAsString(valueName, intervalName, unit)).append(' ');
+		}
+		return b.toString().trim();
+	}
+
+	@Override
+	public String getValueByNameAsString(String valueName, String intervalName, TimeUnit timeUnit) {
+		if (valueName == null)
+			throw new IllegalArgumentException("Value name can not be null");
+		update();
+		if (valueName.equalsIgnoreCase("Backlog"))
+			return String.valueOf(spool.getBacklog());
+		if (valueName.equalsIgnoreCase("Size"))
+			return String.valueOf(spool.getSize());
+		if (valueName.equalsIgnoreCase("Segments"))
+			return String.valueOf(spool.getSegmentCount());
+		if (valueName.equalsIgnoreCase("Spooled"))
+			return String.valueOf(spooled.getValueAsLong(intervalName));
+		if (valueName.equalsIgnoreCase("Replayed"))
+			return String.valueOf(replayed.getValueAsLong(intervalName));
+		if (valueName.equalsIgnoreCase("Dropped"))
+			return String.valueOf(dropped.getValueAsLong(intervalName));
+		throw new IllegalArgumentException("Unsupported value name " + valueName);
+	}
+
+	@Override
+	public List<String> getAvailableValueNames() {
+		return VALUE_NAMES;
+	}
+}
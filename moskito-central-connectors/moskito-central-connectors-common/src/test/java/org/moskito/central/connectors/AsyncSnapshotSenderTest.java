@@ -0,0 +1,177 @@
+package org.moskito.central.connectors;
+
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the send queue of async connectors.
+ */
+public class AsyncSnapshotSenderTest {
+
+	private static AbstractCentralConnectorConfig createConfig(int queueSize, int maxBatchSize, long linger, DropPolicy policy) {
+		AbstractCentralConnectorConfig config = new AbstractCentralConnectorConfig() {};
+		config.setQueueSize(queueSize);
+		config.setMaxBatchSize(maxBatchSize);
+		config.setBatchLinger(linger);
+		config.setDropPolicy(policy.name());
+		config.setCompactQueue(false);
+		return config;
+	}
+
+	private static Snapshot createSnapshot(int i) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId(String.valueOf(i));
+		snapshot.setMetaData(metaData);
+		return snapshot;
+	}
+
+	private static void waitFor(AsyncSnapshotSender sender, int queueSize) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (sender.getQueueSize() != queueSize && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(queueSize, sender.getQueueSize());
+	}
+
+	@Test
+	public void testQueueIsBounded() {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(5, 100, 0, DropPolicy.DROP_NEWEST));
+		for (int i = 0; i < 8; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		assertEquals(5, sender.getQueueSize());
+		assertEquals(3, sender.getDropped());
+	}
+
+	@Test
+	public void testDropOldest() {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(3, 100, 0, DropPolicy.DROP_OLDEST));
+		for (int i = 0; i < 5; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		sender.stop(1000);
+		assertEquals(2, sender.getDropped());
+		assertEquals("[2, 3, 4]", connector.getSentIds().toString());
+	}
+
+	@Test
+	public void testDropNewest() {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(3, 100, 0, DropPolicy.DROP_NEWEST));
+		for (int i = 0; i < 5; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		sender.stop(1000);
+		assertEquals(2, sender.getDropped());
+		assertEquals("[0, 1, 2]", connector.getSentIds().toString());
+	}
+
+	@Test
+	public void testBatchSize() throws InterruptedException {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(100, 4, 5000, DropPolicy.DROP_OLDEST));
+		for (int i = 0; i < 10; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		sender.start();
+		//two full batches are sent without waiting for the linger time.
+		connector.awaitSent(8);
+		assertEquals("[4, 4]", connector.getBatchSizes().toString());
+		sender.stop(1000);
+		assertEquals(10, connector.getSentIds().size());
+		//the sender counts a batch after the connector returned, which is known for sure after stop.
+		assertEquals(3, sender.getSentBatches());
+	}
+
+	@Test
+	public void testLinger() throws InterruptedException {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(100, 100, 20, DropPolicy.DROP_OLDEST));
+		sender.start();
+		sender.offer(createSnapshot(0));
+		sender.offer(createSnapshot(1));
+		//the partial batch is sent after the linger time.
+		connector.awaitSent(2);
+		sender.stop(1000);
+		assertEquals("[2]", connector.getBatchSizes().toString());
+		assertEquals(1, sender.getSentBatches());
+	}
+
+	@Test
+	public void testDrainOnStop() {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(100, 3, 0, DropPolicy.DROP_OLDEST));
+		for (int i = 0; i < 7; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		sender.stop(1000);
+		assertEquals("[0, 1, 2, 3, 4, 5, 6]", connector.getSentIds().toString());
+		assertEquals("[3, 3, 1]", connector.getBatchSizes().toString());
+		assertEquals(0, sender.getQueueSize());
+	}
+
+	@Test
+	public void testStopWithFullQueue() throws InterruptedException {
+		CapturingConnector connector = new CapturingConnector();
+		AsyncSnapshotSender sender = new AsyncSnapshotSender(connector, createConfig(3, 100, 60000, DropPolicy.DROP_OLDEST));
+		sender.start();
+		sender.offer(createSnapshot(0));
+		//the sender thread holds snapshot 0 and lingers for more.
+		waitFor(sender, 0);
+		for (int i = 1; i < 4; i++) {
+			sender.offer(createSnapshot(i));
+		}
+		//all of them are collected by the lingering sender thread.
+		waitFor(sender, 0);
+		sender.stop(1000);
+		//the four collected snapshots are queued again on stop, which drops the oldest one.
+		assertTrue(sender.getDropped() >= 1);
+		assertEquals(4 - sender.getDropped(), connector.getSentIds().size());
+		assertTrue(connector.getSentIds().contains("3"));
+	}
+
+	private static class CapturingConnector extends AbstractCentralConnector {
+		private final List<String> sentIds = new ArrayList<String>();
+		private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+		@Override
+		protected void sendData(Snapshot snapshot) {
+			throw new UnsupportedOperationException("only batches are sent");
+		}
+
+		@Override
+		protected synchronized void sendBatch(List<Snapshot> snapshots) {
+			batchSizes.add(snapshots.size());
+			for (Snapshot snapshot : snapshots) {
+				sentIds.add(snapshot.getMetaData().getProducerId());
+			}
+			notifyAll();
+		}
+
+		synchronized void awaitSent(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (sentIds.size() < count && System.currentTimeMillis() < deadline) {
+				wait(10);
+			}
+			assertTrue(sentIds.size() >= count);
+		}
+
+		synchronized List<String> getSentIds() {
+			return new ArrayList<String>(sentIds);
+		}
+
+		synchronized List<Integer> getBatchSizes() {
+			return new ArrayList<Integer>(batchSizes);
+		}
+	}
+}
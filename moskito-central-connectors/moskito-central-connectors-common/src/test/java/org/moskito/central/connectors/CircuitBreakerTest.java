@@ -0,0 +1,176 @@
+package org.moskito.central.connectors;
+
+import net.anotheria.moskito.core.snapshot.ProducerSnapshot;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for retries and the circuit breaker of the connectors.
+ */
+public class CircuitBreakerTest {
+
+	@Test
+	public void testBreakerStates() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(3, 50);
+		assertTrue(breaker.allowRequest());
+		breaker.failure();
+		breaker.failure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		breaker.failure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(60);
+		//exactly one probe.
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+		breaker.failure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(60);
+		assertTrue(breaker.allowRequest());
+		breaker.success();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void testDisabledBreaker() {
+		CircuitBreaker breaker = new CircuitBreaker(0, 1000);
+		for (int i = 0; i < 100; i++) {
+			breaker.failure();
+		}
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void testBackoff() {
+		RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(policy.backoff(0) <= 100);
+			assertTrue(policy.backoff(2) <= 400);
+			assertTrue(policy.backoff(10) <= 1000);
+			assertTrue(policy.backoff(100) <= 1000);
+			assertTrue(policy.backoff(1) >= 0);
+		}
+	}
+
+	@Test
+	public void testRetry() {
+		CountingConnector connector = new CountingConnector(createConfig(2, 10));
+		connector.failures = 2;
+		assertTrue(connector.deliver(Collections.singletonList(createSnapshot(0)), false));
+		assertEquals(3, connector.attempts);
+		assertEquals(1, connector.sent.size());
+	}
+
+	@Test
+	public void testSingleRetryOnSnapshotThread() {
+		CountingConnector connector = new CountingConnector(createConfig(2, 10));
+		connector.failures = 1;
+		ProducerSnapshot coreSnapshot = new ProducerSnapshot();
+		coreSnapshot.setProducerId("0");
+		connector.consumeSnapshot(coreSnapshot);
+		assertEquals(2, connector.attempts);
+		assertEquals(1, connector.sent.size());
+
+		connector.failures = 2;
+		connector.consumeSnapshot(coreSnapshot);
+		assertEquals(4, connector.attempts);
+		assertEquals(1, connector.sent.size());
+	}
+
+	@Test
+	public void testBatchRetryContinuesWithUnsent() {
+		CountingConnector connector = new CountingConnector(createConfig(1, 10));
+		connector.failAt = 2;
+		List<Snapshot> batch = new ArrayList<Snapshot>();
+		for (int i = 0; i < 5; i++) {
+			batch.add(createSnapshot(i));
+		}
+		assertTrue(connector.deliver(batch, true));
+		assertEquals(5, connector.sent.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(String.valueOf(i), connector.sent.get(i).getMetaData().getProducerId());
+		}
+	}
+
+	@Test
+	public void testOpenCircuitSkipsSends() {
+		CountingConnector connector = new CountingConnector(createConfig(0, 2));
+		connector.failures = Integer.MAX_VALUE;
+		assertFalse(connector.deliver(Collections.singletonList(createSnapshot(0)), false));
+		assertFalse(connector.deliver(Collections.singletonList(createSnapshot(1)), false));
+		assertEquals(CircuitBreaker.State.OPEN, connector.getCircuitBreaker().getState());
+
+		for (int i = 0; i < 10; i++) {
+			assertFalse(connector.deliver(Collections.singletonList(createSnapshot(i)), false));
+		}
+		assertEquals(2, connector.attempts);
+		assertEquals(10, connector.getSkipped());
+
+		try {
+			connector.replay(createSnapshot(0));
+			throw new AssertionError("replay should be rejected while the circuit is open");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	private static AbstractCentralConnectorConfig createConfig(int retries, int failureThreshold) {
+		AbstractCentralConnectorConfig config = new AbstractCentralConnectorConfig() {};
+		config.setMaxRetries(retries);
+		config.setRetryInitialBackoff(1);
+		config.setRetryMaxBackoff(5);
+		config.setBreakerFailureThreshold(failureThreshold);
+		config.setBreakerOpenInterval(60000);
+		return config;
+	}
+
+	private static Snapshot createSnapshot(int i) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId(String.valueOf(i));
+		snapshot.setMetaData(metaData);
+		return snapshot;
+	}
+
+	private static class CountingConnector extends AbstractCentralConnector {
+		private final List<Snapshot> sent = new ArrayList<Snapshot>();
+		private int attempts;
+		/**
+		 * Number of sends which fail.
+		 */
+		private int failures;
+		/**
+		 * Index of a snapshot which fails once.
+		 */
+		private int failAt = -1;
+
+		CountingConnector(AbstractCentralConnectorConfig config) {
+			configure(config);
+		}
+
+		@Override
+		protected void sendData(Snapshot snapshot) {
+			attempts++;
+			if (failures > 0) {
+				failures--;
+				throw new IllegalStateException("central unreachable");
+			}
+			if (Integer.parseInt(snapshot.getMetaData().getProducerId()) == failAt) {
+				failAt = -1;
+				throw new IllegalStateException("central unreachable");
+			}
+			sent.add(snapshot);
+		}
+	}
+}
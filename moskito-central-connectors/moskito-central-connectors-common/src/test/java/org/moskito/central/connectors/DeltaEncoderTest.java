@@ -0,0 +1,143 @@
+package org.moskito.central.connectors;
+
+import org.junit.Test;
+import org.moskito.central.DeltaDecoder;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the delta encoding of snapshots.
+ */
+public class DeltaEncoderTest {
+
+	private static Snapshot createSnapshot(long timestamp, int requests) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName("host").setComponentName("app").setProducerId("SessionCount").setIntervalName("1m").setCreationTimestamp(timestamp);
+		snapshot.setMetaData(metaData);
+		for (int s = 0; s < 5; s++) {
+			Map<String, String> values = new HashMap<String, String>();
+			values.put("Req", s == 0 ? String.valueOf(requests) : "0");
+			values.put("Err", "0");
+			values.put("Time", s == 0 ? String.valueOf(requests * 10) : "0");
+			snapshot.addSnapshotData("stat" + s, values);
+		}
+		return snapshot;
+	}
+
+	@Test
+	public void testKeyframeInterval() {
+		DeltaEncoder encoder = new DeltaEncoder(3);
+		for (int i = 0; i < 9; i++) {
+			Snapshot encoded = encoder.encode(createSnapshot(1000 * (i + 1), i));
+			if (i % 3 == 0) {
+				assertTrue(encoded.getMetaData().isKeyframe());
+				assertEquals(5, encoded.getStats().size());
+			} else {
+				assertTrue(encoded.getMetaData().isDelta());
+				assertEquals(1000 * (i - i % 3 + 1), encoded.getMetaData().getDeltaBase());
+				//only the stat with changing values.
+				assertEquals(1, encoded.getStats().size());
+				assertEquals(2, encoded.getStatistics("stat0").size());
+			}
+		}
+	}
+
+	@Test
+	public void testRemovedValueForcesKeyframe() {
+		DeltaEncoder encoder = new DeltaEncoder(10);
+		encoder.encode(createSnapshot(1000, 1));
+		Snapshot snapshot = createSnapshot(2000, 2);
+		snapshot.getStatistics("stat3").remove("Err");
+		assertTrue(encoder.encode(snapshot).getMetaData().isKeyframe());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		DeltaEncoder encoder = new DeltaEncoder(4);
+		DeltaDecoder decoder = new DeltaDecoder();
+		for (int i = 0; i < 20; i++) {
+			Snapshot encoded = encoder.encode(createSnapshot(1000 * (i + 1), i % 7));
+			Snapshot decoded = decoder.decode(encoded);
+			Snapshot expected = createSnapshot(1000 * (i + 1), i % 7);
+			assertFalse(decoded.getMetaData().isKeyframe());
+			assertFalse(decoded.getMetaData().isDelta());
+			assertEquals(expected.getStats(), decoded.getStats());
+		}
+	}
+
+	@Test
+	public void testLostDeltaDoesNotAffectOthers() {
+		DeltaEncoder encoder = new DeltaEncoder(10);
+		DeltaDecoder decoder = new DeltaDecoder();
+		decoder.decode(encoder.encode(createSnapshot(1000, 1)));
+		//lost on the way.
+		encoder.encode(createSnapshot(2000, 2));
+		Snapshot decoded = decoder.decode(encoder.encode(createSnapshot(3000, 3)));
+		assertEquals(createSnapshot(3000, 3).getStats(), decoded.getStats());
+	}
+
+	@Test
+	public void testUnacknowledgedKeyframeForcesKeyframe() {
+		DeltaEncoder encoder = new DeltaEncoder(10);
+		Snapshot keyframe = encoder.encode(createSnapshot(1000, 1));
+		assertTrue(keyframe.getMetaData().isKeyframe());
+		encoder.unacknowledged(Collections.singletonList(keyframe));
+		assertTrue(encoder.encode(createSnapshot(2000, 2)).getMetaData().isKeyframe());
+		//lost deltas don't matter.
+		Snapshot delta = encoder.encode(createSnapshot(3000, 3));
+		assertTrue(delta.getMetaData().isDelta());
+		encoder.unacknowledged(Collections.singletonList(delta));
+		assertEquals(2000, encoder.encode(createSnapshot(4000, 4)).getMetaData().getDeltaBase());
+	}
+
+	@Test
+	public void testDroppedKeyframeIsResent() {
+		AbstractCentralConnectorConfig config = new AbstractCentralConnectorConfig() {};
+		config.setDelta(true);
+		config.setMaxRetries(0);
+		FailingConnector connector = new FailingConnector();
+		connector.configure(config);
+
+		connector.failures = 1;
+		Snapshot first = createSnapshot(1000, 1);
+		assertFalse(connector.deliver(Collections.singletonList(first), false));
+		//it is spooled without markers.
+		assertFalse(first.getMetaData().isKeyframe());
+
+		assertTrue(connector.deliver(Collections.singletonList(createSnapshot(2000, 2)), false));
+		assertTrue(connector.deliver(Collections.singletonList(createSnapshot(3000, 3)), false));
+		assertEquals(2, connector.sent.size());
+		assertTrue(connector.sent.get(0).getMetaData().isKeyframe());
+		assertEquals(2000, connector.sent.get(1).getMetaData().getDeltaBase());
+
+		//the central can decode everything that was delivered.
+		DeltaDecoder decoder = new DeltaDecoder();
+		assertEquals(createSnapshot(2000, 2).getStats(), decoder.decode(connector.sent.get(0)).getStats());
+		assertEquals(createSnapshot(3000, 3).getStats(), decoder.decode(connector.sent.get(1)).getStats());
+	}
+
+	private static class FailingConnector extends AbstractCentralConnector {
+		private final List<Snapshot> sent = new ArrayList<Snapshot>();
+		private int failures;
+
+		@Override
+		protected void sendData(Snapshot snapshot) {
+			if (failures > 0) {
+				failures--;
+				throw new IllegalStateException("central is down");
+			}
+			sent.add(snapshot);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package org.moskito.central.connectors;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the on-disk spool of the connectors.
+ */
+public class SnapshotSpoolTest {
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("spooltest", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void deleteDirectory() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static Snapshot createSnapshot(int i) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId("producer" + i);
+		metaData.setIntervalName("1m");
+		metaData.setCreationTimestamp(i);
+		snapshot.setMetaData(metaData);
+		HashMap<String, String> data = new HashMap<String, String>();
+		data.put("Req", String.valueOf(i));
+		snapshot.addSnapshotData("cumulated", data);
+		return snapshot;
+	}
+
+	private static List<Snapshot> createSnapshots(int from, int to) {
+		List<Snapshot> ret = new ArrayList<Snapshot>();
+		for (int i = from; i < to; i++) {
+			ret.add(createSnapshot(i));
+		}
+		return ret;
+	}
+
+	/**
+	 * Replays everything and returns the producer ids in replay order.
+	 */
+	private static List<String> drain(SnapshotSpool spool) {
+		List<String> ret = new ArrayList<String>();
+		SnapshotSpool.Batch batch;
+		while ((batch = spool.oldest()) != null) {
+			for (Snapshot s : batch.getSnapshots()) {
+				ret.add(s.getMetaData().getProducerId());
+			}
+			spool.replayed(batch, batch.getSnapshots().size());
+		}
+		return ret;
+	}
+
+	@Test
+	public void testReplayInOrder() {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1000);
+		spool.append(createSnapshots(0, 20));
+		spool.append(createSnapshots(20, 30));
+		assertEquals(30, spool.getBacklog());
+		assertTrue(spool.getSegmentCount() > 1);
+
+		List<String> replayed = drain(spool);
+		assertEquals(30, replayed.size());
+		for (int i = 0; i < 30; i++) {
+			assertEquals("producer" + i, replayed.get(i));
+		}
+		assertTrue(spool.isEmpty());
+		assertEquals(0, spool.getBacklog());
+		assertEquals(0, spool.getSize());
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void testPartialReplay() {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024);
+		spool.append(createSnapshots(0, 5));
+
+		SnapshotSpool.Batch batch = spool.oldest();
+		assertEquals(5, batch.getSnapshots().size());
+		spool.replayed(batch, 2);
+		assertEquals(3, spool.getBacklog());
+
+		batch = spool.oldest();
+		assertEquals(3, batch.getSnapshots().size());
+		assertEquals("producer2", batch.getSnapshots().get(0).getMetaData().getProducerId());
+		spool.replayed(batch, 3);
+		assertNull(spool.oldest());
+		assertEquals(5, spool.getReplayed());
+	}
+
+	@Test
+	public void testMaxSize() {
+		SnapshotSpool spool = new SnapshotSpool(directory, 5000, 0, 1000);
+		spool.append(createSnapshots(0, 100));
+		assertTrue(spool.getSize() <= 5000);
+		assertTrue(spool.getDropped() > 0);
+		assertEquals(100, spool.getSpooled());
+		assertEquals(100 - spool.getDropped(), spool.getBacklog());
+
+		List<String> replayed = drain(spool);
+		//the newest snapshots survive.
+		assertEquals("producer99", replayed.get(replayed.size() - 1));
+		assertEquals(spool.getSpooled() - spool.getDropped(), replayed.size());
+	}
+
+	@Test
+	public void testMaxAge() throws InterruptedException {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 50, 1024 * 1024);
+		spool.append(createSnapshots(0, 3));
+		Thread.sleep(100);
+		assertNull(spool.oldest());
+		assertEquals(3, spool.getDropped());
+		assertEquals(0, spool.getBacklog());
+	}
+
+	@Test
+	public void testReload() throws IOException {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1000);
+		spool.append(createSnapshots(0, 10));
+		spool.close();
+
+		//a record cut off by a crash at the end of the newest segment.
+		File[] files = directory.listFiles();
+		File newest = files[0];
+		for (File f : files) {
+			if (f.getName().compareTo(newest.getName()) > 0)
+				newest = f;
+		}
+		FileOutputStream out = new FileOutputStream(newest, true);
+		out.write(new byte[]{0, 0, 1, 0, 42});
+		out.close();
+
+		SnapshotSpool reloaded = new SnapshotSpool(directory, 1024 * 1024, 0, 1000);
+		assertEquals(10, reloaded.getBacklog());
+		reloaded.append(createSnapshots(10, 12));
+		List<String> replayed = drain(reloaded);
+		assertEquals(12, replayed.size());
+		assertEquals("producer0", replayed.get(0));
+		assertEquals("producer11", replayed.get(11));
+	}
+
+	@Test
+	public void testUnclosedSegmentIsCounted() {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024);
+		spool.append(createSnapshots(0, 7));
+		//no close, as after a crash.
+		SnapshotSpool reloaded = new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024);
+		assertEquals(7, reloaded.getBacklog());
+		assertEquals(7, drain(reloaded).size());
+	}
+
+	@Test
+	public void testForeignFilesAreIgnored() throws IOException {
+		File serialized = new File(directory, String.format("%019d", 1) + SnapshotSpool.SEGMENT_SUFFIX);
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized));
+		out.writeObject(createSnapshot(0));
+		out.close();
+
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024);
+		assertEquals(0, spool.getBacklog());
+		assertNull(spool.oldest());
+		assertTrue(serialized.exists());
+	}
+
+	@Test
+	public void testOwnerOnlyAccess() throws IOException {
+		Assume.assumeTrue(Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix"));
+		File spoolDirectory = new File(directory, "spool");
+		SnapshotSpool spool = new SnapshotSpool(spoolDirectory, 1024 * 1024, 0, 1024 * 1024);
+		spool.append(createSnapshots(0, 1));
+		spool.close();
+		assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(spoolDirectory.toPath())));
+		File[] segments = spoolDirectory.listFiles();
+		assertEquals(1, segments.length);
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(segments[0].toPath())));
+		assertEquals(1, drain(new SnapshotSpool(spoolDirectory, 1024 * 1024, 0, 1024 * 1024)).size());
+		spoolDirectory.delete();
+	}
+
+	@Test
+	public void testReplayer() throws InterruptedException {
+		SnapshotSpool spool = new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024);
+		spool.append(createSnapshots(0, 10));
+
+		FlakyConnector connector = new FlakyConnector();
+		connector.failAfter = 4;
+		AbstractCentralConnectorConfig config = new AbstractCentralConnectorConfig() {};
+		config.setSpoolReplayRate(1000);
+		SpoolReplayer replayer = new SpoolReplayer(connector, spool, config);
+
+		assertFalse(replayer.replayOnce());
+		assertEquals(4, connector.sent.size());
+		assertEquals(6, spool.getBacklog());
+
+		connector.failAfter = Integer.MAX_VALUE;
+		assertTrue(replayer.replayOnce());
+		assertEquals(10, connector.sent.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("producer" + i, connector.sent.get(i).getMetaData().getProducerId());
+		}
+		assertTrue(spool.isEmpty());
+	}
+
+	@Test
+	public void testFailedBatchIsSpooled() {
+		FlakyConnector connector = new FlakyConnector();
+		connector.failAfter = 0;
+		AbstractCentralConnectorConfig config = new AbstractCentralConnectorConfig() {};
+		config.setSpool(true);
+		config.setSpoolDirectory(directory.getAbsolutePath());
+		config.setSpoolRetryInterval(60000);
+		connector.configure(config);
+		connector.deliver(createSnapshots(0, 3), true);
+		connector.spoolFailed(Collections.singletonList(createSnapshot(3)));
+		//reconfiguring without spool closes it.
+		connector.configure(new AbstractCentralConnectorConfig() {});
+
+		assertEquals(4, drain(new SnapshotSpool(directory, 1024 * 1024, 0, 1024 * 1024)).size());
+	}
+
+	private static class FlakyConnector extends AbstractCentralConnector {
+		private final List<Snapshot> sent = new ArrayList<Snapshot>();
+		private volatile int failAfter;
+
+		@Override
+		protected void sendData(Snapshot snapshot) {
+			if (sent.size() >= failAfter)
+				throw new IllegalStateException("central unreachable");
+			sent.add(snapshot);
+		}
+	}
+}
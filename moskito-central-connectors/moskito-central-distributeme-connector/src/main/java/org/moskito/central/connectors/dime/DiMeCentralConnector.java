@@ -12,6 +12,18 @@ import org.moskito.central.endpoints.rmi.generated.RemoteRMIEndpointServiceStub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.rmi.UnmarshalException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Moskito connector for RMI processing of incoming snapshots.
  * 
@@ -28,12 +40,32 @@ public class DiMeCentralConnector extends AbstractCentralConnector {
 	/**
 	 * {@link RMIEndpointService} service instance.
 	 */
-	private RMIEndpointService centralService;
+	private volatile RMIEndpointService centralService;
 
 	/**
 	 * 
 	 */
-	private DiMeCentralConnectorConfig config;
+	private volatile DiMeCentralConnectorConfig config;
+
+	/**
+	 * Set if the central doesn't know the batch method, the snapshots of a batch are sent one by one then until the
+	 * connector is configured again.
+	 */
+	private volatile boolean batchUnsupported;
+
+	private static final ThreadFactory CALL_THREAD_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "moskito-central-dime-call");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * Executes the remote calls, so they can be bounded by the configured timeouts. Replaced after a timeout.
+	 */
+	private volatile ExecutorService callExecutor = Executors.newSingleThreadExecutor(CALL_THREAD_FACTORY);
 
 	/**
 	 * Default constructor.
@@ -47,7 +79,7 @@ public class DiMeCentralConnector extends AbstractCentralConnector {
 		config = new DiMeCentralConnectorConfig();
 		ConfigurationManager.INSTANCE.configureAs(config, configurationName);
 		log.debug("Config: "+config);
-		
+
 		Protocol aProtocol = Protocol.RMI;
 		String aServiceId = RMIEndpointService.class.getName().replaceAll("[.]", "_");
 		String anInstanceId = IdCodeGenerator.generateCode(10);
@@ -56,17 +88,129 @@ public class DiMeCentralConnector extends AbstractCentralConnector {
 		ServiceDescriptor remote = new ServiceDescriptor(aProtocol, aServiceId, anInstanceId, aHost, aPort);
 
 		centralService = new RemoteRMIEndpointServiceStub(remote);
+		batchUnsupported = false;
+		//the async sender and the spool replayer start sending right away.
+		super.configure(config);
+	}
+
+	@Override
+	public void deInitialize() {
+		super.deInitialize();
+		callExecutor.shutdownNow();
+	}
+
+	/**
+	 * Executes a remote call and waits at most the connect and read timeout for it. The socket factories of RMI
+	 * stubs are set by the server or JVM wide, so the timeouts of this connector are applied per call instead. A
+	 * call which timed out is abandoned together with its thread, later calls don't queue up behind it. The central
+	 * may still process an abandoned call, a snapshot sent again after a timeout can therefore arrive twice.
+	 */
+	private void call(Callable<Void> remoteCall) {
+		DiMeCentralConnectorConfig current = config;
+		long timeout = (long) current.getConnectTimeout() + current.getReadTimeout();
+		ExecutorService executor = callExecutor;
+		Future<Void> future = executor.submit(remoteCall);
+		try {
+			if (timeout > 0)
+				future.get(timeout, TimeUnit.MILLISECONDS);
+			else
+				future.get();
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			abandon(executor);
+			throw new RuntimeException("central didn't respond within " + timeout + " ms", e);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for central", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new RuntimeException(cause.getMessage(), cause);
+		}
 	}
 
+	/**
+	 * Replaces the executor of a hung call. Calls which are still queued in it are cancelled, their senders see
+	 * them as failed.
+	 */
+	private void abandon(ExecutorService executor) {
+		synchronized (this) {
+			if (callExecutor == executor)
+				callExecutor = Executors.newSingleThreadExecutor(CALL_THREAD_FACTORY);
+		}
+		for (Runnable queued : executor.shutdownNow()) {
+			if (queued instanceof Future)
+				((Future<?>) queued).cancel(false);
+		}
+	}
+
+	@Override
+	protected void sendData(final Snapshot snapshot) {
+		final RMIEndpointService service = centralService;
+		if (service != null) {
+			call(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						service.processIncomingSnapshot(snapshot);
+					} catch (RMIEndpointServiceException e) {
+						throw new RuntimeException("centralService.processIncomingSnapshot failed...", e);
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Sends the whole batch with a single remote call. A central without the batch method gets the snapshots one by
+	 * one.
+	 */
 	@Override
-	protected void sendData(Snapshot snapshot) {
-		if (centralService != null) {
-			try {
-				centralService.processIncomingSnapshot(snapshot);
-			} catch (RMIEndpointServiceException e) {
-				throw new RuntimeException("centralService.processIncomingSnapshot failed...", e);
-			}
+	protected void sendBatch(List<Snapshot> snapshots) {
+		final RMIEndpointService service = centralService;
+		if (service == null)
+			return;
+		if (batchUnsupported) {
+			super.sendBatch(snapshots);
+			return;
+		}
+		final ArrayList<Snapshot> copy = new ArrayList<Snapshot>(snapshots);
+		try {
+			call(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						service.processIncomingSnapshots(copy);
+					} catch (RMIEndpointServiceException e) {
+						throw new RuntimeException("centralService.processIncomingSnapshots failed...", e);
+					}
+					return null;
+				}
+			});
+		} catch (RuntimeException e) {
+			if (!isBatchUnsupported(e))
+				throw e;
+			log.warn("Central doesn't know the batch method, sending snapshots one by one");
+			batchUnsupported = true;
+			super.sendBatch(snapshots);
+		}
+	}
+
+	/**
+	 * Returns true if the remote call failed because the central is older than the batch method. RMI answers a call
+	 * of an unknown method with an UnmarshalException.
+	 */
+	static boolean isBatchUnsupported(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof NoSuchMethodException || cause instanceof NoSuchMethodError)
+				return true;
+			if (cause instanceof UnmarshalException && String.valueOf(cause.getMessage()).contains("unrecognized method hash"))
+				return true;
 		}
+		return false;
 	}
 
 }
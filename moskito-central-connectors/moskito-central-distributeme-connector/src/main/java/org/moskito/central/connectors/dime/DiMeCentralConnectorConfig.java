@@ -2,6 +2,7 @@ package org.moskito.central.connectors.dime;
 
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
+import org.moskito.central.connectors.AbstractCentralConnectorConfig;
 
 /**
  * Config class for DistributeMe connector.
@@ -10,7 +11,7 @@ import org.configureme.annotations.ConfigureMe;
  * 
  */
 @ConfigureMe
-public class DiMeCentralConnectorConfig {
+public class DiMeCentralConnectorConfig extends AbstractCentralConnectorConfig {
 
 	/**
 	 * Host name for connection.
@@ -42,7 +43,7 @@ public class DiMeCentralConnectorConfig {
 
 	@Override
 	public String toString() {
-		return "DiMeCentralConnectorConfig [connectorHost=" + connectorHost + ", connectorPort=" + connectorPort + "]";
+		return "DiMeCentralConnectorConfig [connectorHost=" + connectorHost + ", connectorPort=" + connectorPort + ", async=" + isAsync() + "]";
 	}
 
 }
@@ -0,0 +1,78 @@
+package org.moskito.central.connectors.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of request bodies sent by the REST connector.
+ */
+public enum ContentEncoding {
+    /**
+     * Request bodies are sent as they are.
+     */
+    NONE(null),
+    /**
+     * Request bodies are gzip compressed.
+     */
+    GZIP("gzip"),
+    /**
+     * Request bodies are compressed in zlib format, as defined for 'deflate' by HTTP.
+     */
+    DEFLATE("deflate");
+
+    /**
+     * Value of the Content-Encoding header.
+     */
+    private final String headerValue;
+
+    ContentEncoding(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    /**
+     * Returns the value of the Content-Encoding header or null if nothing is compressed.
+     * @return String
+     */
+    public String getHeaderValue() {
+        return headerValue;
+    }
+
+    /**
+     * Compresses the data.
+     *
+     * @param data uncompressed data.
+     * @return compressed data, the data itself for NONE.
+     * @throws IOException
+     */
+    public byte[] encode(byte[] data) throws IOException {
+        if (this == NONE)
+            return data;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        OutputStream out = this == GZIP ? new GZIPOutputStream(bos) : new DeflaterOutputStream(bos);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the encoding with the given name or NONE if the name is unknown.
+     *
+     * @param name encoding name like 'gzip', case insensitive.
+     * @return ContentEncoding
+     */
+    public static ContentEncoding fromName(String name) {
+        if (name != null) {
+            for (ContentEncoding e : values()) {
+                if (e.name().equalsIgnoreCase(name.trim()))
+                    return e;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,192 @@
+package org.moskito.central.connectors.rest;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport of the REST connector based on a pooled Apache HttpClient. Connections are kept alive and reused for
+ * the many small POSTs of a connector. A connection is not reused after the keep-alive time, or earlier if the
+ * central announces a shorter one, so connections closed by the server in the meantime are not hit.
+ */
+class HttpClientTransport {
+
+	/**
+	 * Logger instance.
+	 */
+	private final static Logger log = LoggerFactory.getLogger(HttpClientTransport.class);
+
+	/**
+	 * Min time in milliseconds between two runs of the expired connection eviction.
+	 */
+	private static final long EVICTION_INTERVAL = 1000;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpClient client;
+
+	/**
+	 * Value of the Authorization header, null without basic auth.
+	 */
+	private final String authorization;
+
+	private volatile long lastEviction;
+
+	/**
+	 * @param config           connector config.
+	 * @param sslSocketFactory factory for https connections, null for plain http.
+	 */
+	HttpClientTransport(RESTConnectorConfig config, SSLConnectionSocketFactory sslSocketFactory) {
+		RegistryBuilder<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory());
+		if (sslSocketFactory != null)
+			registry.register("https", sslSocketFactory);
+		Registry<ConnectionSocketFactory> socketFactories = registry.build();
+
+		connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+		int maxConnections = Math.max(1, config.getMaxConnections());
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.getConnectTimeout())
+				.setConnectionRequestTimeout(config.getConnectTimeout())
+				.setSocketTimeout(config.getReadTimeout())
+				.build();
+
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(new KeepAliveStrategy(config.getKeepAlive()))
+				.build();
+
+		if (config.isBasicAuthEnabled()) {
+			String credentials = config.getLogin() + ':' + config.getPassword();
+			authorization = "Basic " + DatatypeConverter.printBase64Binary(credentials.getBytes(Charset.forName("UTF-8")));
+		} else {
+			authorization = null;
+		}
+	}
+
+	/**
+	 * Posts a JSON body.
+	 *
+	 * @param uri             target.
+	 * @param body            serialized body.
+	 * @param contentEncoding value of the Content-Encoding header, null if the body is not compressed.
+	 * @throws IOException on transport errors.
+	 * @throws StatusException if the central doesn't answer with 2xx.
+	 */
+	void post(URI uri, byte[] body, String contentEncoding) throws IOException {
+		evictExpiredConnections();
+
+		HttpPost post = new HttpPost(uri);
+		post.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+		if (authorization != null)
+			post.setHeader("Authorization", authorization);
+		ByteArrayEntity entity = new ByteArrayEntity(body, ContentType.APPLICATION_JSON);
+		if (contentEncoding != null)
+			entity.setContentEncoding(contentEncoding);
+		post.setEntity(entity);
+
+		CloseableHttpResponse response = client.execute(post);
+		try {
+			StatusLine status = response.getStatusLine();
+			//the body has to be consumed, otherwise the connection is not returned to the pool.
+			EntityUtils.consume(response.getEntity());
+			if (status.getStatusCode() < 200 || status.getStatusCode() >= 300)
+				throw new StatusException("POST " + uri + " returned " + status, status.getStatusCode());
+		} finally {
+			response.close();
+		}
+	}
+
+	private void evictExpiredConnections() {
+		long now = System.currentTimeMillis();
+		if (now - lastEviction < EVICTION_INTERVAL)
+			return;
+		lastEviction = now;
+		connectionManager.closeExpiredConnections();
+	}
+
+	void close() {
+		try {
+			client.close();
+		} catch (IOException e) {
+			log.warn("Couldn't close http client: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Thrown if the central answers with a status other than 2xx.
+	 */
+	static class StatusException extends IllegalStateException {
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+
+		StatusException(String message, int status) {
+			super(message);
+			this.status = status;
+		}
+
+		int getStatus() {
+			return status;
+		}
+	}
+
+	/**
+	 * Keeps connections alive for the time announced by the server in its Keep-Alive header, but not longer than
+	 * the configured keep-alive.
+	 */
+	private static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+		private final long maxKeepAlive;
+
+		KeepAliveStrategy(long maxKeepAlive) {
+			this.maxKeepAlive = maxKeepAlive;
+		}
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (it.hasNext()) {
+				HeaderElement element = it.nextElement();
+				if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+					try {
+						return Math.min(maxKeepAlive, TimeUnit.SECONDS.toMillis(Long.parseLong(element.getValue())));
+					} catch (NumberFormatException ignored) {
+					}
+				}
+			}
+			return maxKeepAlive;
+		}
+	}
+}
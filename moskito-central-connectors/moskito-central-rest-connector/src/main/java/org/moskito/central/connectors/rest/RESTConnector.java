@@ -1,21 +1,28 @@
 package org.moskito.central.connectors.rest;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.api.json.JSONConfiguration;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.connectors.AbstractCentralConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 /**
  * REST connector implementation to the Central.
@@ -39,6 +46,31 @@ public class RESTConnector extends AbstractCentralConnector {
      */
     private volatile Client client;
 
+    /**
+     * Pooled HttpClient transport, null if the Jersey client is used.
+     */
+    private volatile HttpClientTransport httpTransport;
+
+    /**
+     * Cached target for single snapshots.
+     */
+    private volatile Target snapshotTarget;
+
+    /**
+     * Cached target for batches, null if the endpoint has no batch path.
+     */
+    private volatile Target batchTarget;
+
+    /**
+     * Compression of request bodies.
+     */
+    private volatile ContentEncoding contentEncoding = ContentEncoding.NONE;
+
+    /**
+     * Mapper for request bodies which are compressed, configured like the JSON provider of the client.
+     */
+    private static final ObjectMapper MAPPER = new JacksonJaxbJsonProvider().locateMapper(Snapshot.class, MediaType.APPLICATION_JSON_TYPE);
+
 	/**
 	 * Default constructor.
 	 */
@@ -51,16 +83,122 @@ public class RESTConnector extends AbstractCentralConnector {
     public void setConfigurationName(String configurationName) {
         connectorConfig = new RESTConnectorConfig();
         ConfigurationManager.INSTANCE.configureAs(connectorConfig, configurationName);
-        super.configure(connectorConfig);
 
         log.debug("Config: " + connectorConfig);
-        client = getClient();
+        contentEncoding = ContentEncoding.fromName(connectorConfig.getCompression());
+
+        HttpClientTransport oldTransport = httpTransport;
+        Client oldClient = client;
+        if (connectorConfig.isHttpClientTransport()) {
+            client = null;
+            httpTransport = new HttpClientTransport(connectorConfig, getSslSocketFactory());
+        } else {
+            httpTransport = null;
+            client = getClient();
+        }
+
+        snapshotTarget = new Target(getBaseURI());
+        String batchPath = connectorConfig.getEffectiveBatchResourcePath();
+        batchTarget = batchPath == null ? null : new Target(getURI(batchPath));
+        //the old targets are not used anymore, their client and connections can be released.
+        close(oldTransport, oldClient);
+        //the async sender and the spool replayer start sending right away.
+        super.configure(connectorConfig);
+    }
+
+    @Override
+    public void deInitialize() {
+        super.deInitialize();
+        HttpClientTransport oldTransport = httpTransport;
+        Client oldClient = client;
+        httpTransport = null;
+        client = null;
+        close(oldTransport, oldClient);
+    }
+
+    private static void close(HttpClientTransport transport, Client jerseyClient) {
+        if (transport != null)
+            transport.close();
+        if (jerseyClient != null)
+            jerseyClient.destroy();
     }
 
     @Override
     protected void sendData(Snapshot snapshot) {
-        WebResource resource = client.resource(getBaseURI());
-        resource.accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON).post(snapshot);
+        post(snapshotTarget, snapshot);
+    }
+
+    /**
+     * Posts the whole batch as JSON array if the endpoint has a batch path. A central which doesn't know the batch
+     * path (404 or 405) gets the snapshots one by one until the connector is configured again.
+     */
+    @Override
+    protected void sendBatch(List<Snapshot> snapshots) {
+        Target target = batchTarget;
+        if (target == null) {
+            super.sendBatch(snapshots);
+            return;
+        }
+        try {
+            post(target, new GenericEntity<List<Snapshot>>(snapshots) {});
+        } catch (RuntimeException e) {
+            if (!isBatchUnsupported(e))
+                throw e;
+            log.warn("Central doesn't accept batches at " + target.uri + ", sending snapshots one by one");
+            batchTarget = null;
+            super.sendBatch(snapshots);
+        }
+    }
+
+    private static boolean isBatchUnsupported(RuntimeException e) {
+        int status = -1;
+        if (e instanceof UniformInterfaceException)
+            status = ((UniformInterfaceException) e).getResponse().getStatus();
+        else if (e instanceof HttpClientTransport.StatusException)
+            status = ((HttpClientTransport.StatusException) e).getStatus();
+        return status == 404 || status == 405;
+    }
+
+    /**
+     * Posts the entity as JSON. If compression is configured or the HttpClient transport is used, the entity is
+     * serialized here; it is compressed when it reaches the configured threshold.
+     */
+    private void post(Target target, Object entity) {
+        ContentEncoding encoding = contentEncoding;
+        HttpClientTransport transport = httpTransport;
+        if (transport == null && encoding == ContentEncoding.NONE) {
+            target.request().post(entity);
+            return;
+        }
+
+        try {
+            Object value = entity instanceof GenericEntity ? ((GenericEntity<?>) entity).getEntity() : entity;
+            byte[] body = MAPPER.writeValueAsBytes(value);
+            String contentEncoding = null;
+            if (encoding != ContentEncoding.NONE && body.length >= connectorConfig.getCompressionThreshold()) {
+                body = encoding.encode(body);
+                contentEncoding = encoding.getHeaderValue();
+            }
+
+            if (transport != null) {
+                transport.post(target.uri, body, contentEncoding);
+                return;
+            }
+            WebResource.Builder request = target.request();
+            if (contentEncoding != null)
+                request.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            request.post(body);
+        } catch (IOException e) {
+            throw new RuntimeException("POST " + target.uri + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the socket factory for https connections of the HttpClient transport, null for plain http.
+     * @return SSLConnectionSocketFactory
+     */
+    protected SSLConnectionSocketFactory getSslSocketFactory() {
+        return null;
     }
 
     private Client getClient() {
@@ -77,15 +215,39 @@ public class RESTConnector extends AbstractCentralConnector {
         ClientConfig clientConfig = new DefaultClientConfig();
         clientConfig.getClasses().add(JacksonJaxbJsonProvider.class);
         clientConfig.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+        clientConfig.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectorConfig.getConnectTimeout());
+        clientConfig.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, connectorConfig.getReadTimeout());
         return clientConfig;
     }
 
     protected URI getBaseURI() {
-        return UriBuilder.fromUri("http://" + connectorConfig.getHost() + connectorConfig.getResourcePath()).port(connectorConfig.getPort()).build();
+        return getURI(connectorConfig.getResourcePath());
+    }
+
+    protected URI getURI(String path) {
+        return UriBuilder.fromUri("http://" + connectorConfig.getHost() + path).port(connectorConfig.getPort()).build();
     }
 
     protected RESTConnectorConfig getConnectorConfig(){
         return connectorConfig;
     }
 
+    /**
+     * Target URI of the central, built once on configuration together with its Jersey resource.
+     */
+    private class Target {
+        private final URI uri;
+        private final WebResource resource;
+
+        Target(URI uri) {
+            this.uri = uri;
+            Client jerseyClient = client;
+            this.resource = jerseyClient == null ? null : jerseyClient.resource(uri);
+        }
+
+        WebResource.Builder request() {
+            return resource.accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON);
+        }
+    }
+
 }
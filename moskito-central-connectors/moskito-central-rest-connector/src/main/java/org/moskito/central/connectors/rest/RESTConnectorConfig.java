@@ -27,6 +27,39 @@ public class RESTConnectorConfig extends AbstractCentralConnectorConfig {
      */
     private String resourcePath;
 
+    /**
+     * HTTP server path for batches of snapshots. If not set, it is derived from a resource path ending with
+     * '/addSnapshot', otherwise batches are sent snapshot by snapshot.
+     */
+    private String batchResourcePath;
+
+    /**
+     * HTTP client used to talk to the central: 'jersey' for the Jersey client or 'httpclient' for a pooled Apache
+     * HttpClient with persistent connections.
+     */
+    private String transport = "jersey";
+
+    /**
+     * Max number of pooled connections of the 'httpclient' transport.
+     */
+    private int maxConnections = 10;
+
+    /**
+     * Max time in milliseconds an idle connection of the 'httpclient' transport is reused. Should be below the
+     * keep-alive timeout of the central's server.
+     */
+    private long keepAlive = 15000;
+
+    /**
+     * Compression of request bodies: 'none', 'gzip' or 'deflate'.
+     */
+    private String compression = "none";
+
+    /**
+     * Request bodies smaller than this number of bytes are sent uncompressed.
+     */
+    private int compressionThreshold = 1024;
+
     /**
      * Is HTTP basic auth enabled.
      */
@@ -86,6 +119,74 @@ public class RESTConnectorConfig extends AbstractCentralConnectorConfig {
         this.resourcePath = resourcePath;
     }
 
+    public String getBatchResourcePath() {
+        return batchResourcePath;
+    }
+
+    public void setBatchResourcePath(String batchResourcePath) {
+        this.batchResourcePath = batchResourcePath;
+    }
+
+    /**
+     * Returns the configured batch path or the one derived from the resource path.
+     * @return path or null if the endpoint can't receive batches.
+     */
+    public String getEffectiveBatchResourcePath() {
+        if (batchResourcePath != null && batchResourcePath.length() > 0)
+            return batchResourcePath;
+        if (resourcePath != null && resourcePath.endsWith("/addSnapshot"))
+            return resourcePath + 's';
+        return null;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Returns true if the pooled Apache HttpClient is used.
+     * @return boolean
+     */
+    public boolean isHttpClientTransport() {
+        return "httpclient".equalsIgnoreCase(transport);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
     public boolean isBasicAuthEnabled() {
         return basicAuthEnabled;
     }
@@ -148,6 +249,12 @@ public class RESTConnectorConfig extends AbstractCentralConnectorConfig {
         sb.append("host='").append(host).append('\'');
         sb.append(", port=").append(port);
         sb.append(", resourcePath='").append(resourcePath).append('\'');
+        sb.append(", batchResourcePath='").append(batchResourcePath).append('\'');
+        sb.append(", transport='").append(transport).append('\'');
+        sb.append(", maxConnections=").append(maxConnections);
+        sb.append(", keepAlive=").append(keepAlive);
+        sb.append(", compression='").append(compression).append('\'');
+        sb.append(", compressionThreshold=").append(compressionThreshold);
         sb.append(", basicAuthEnabled=").append(basicAuthEnabled);
         sb.append(", login='").append(login).append('\'');
         sb.append(", password='").append(password).append('\'');
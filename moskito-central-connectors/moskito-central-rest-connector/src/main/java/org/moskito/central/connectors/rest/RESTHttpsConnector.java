@@ -5,12 +5,13 @@ import com.sun.jersey.client.urlconnection.HTTPSProperties;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.conn.ssl.AllowAllHostnameVerifier;
 import org.apache.http.conn.ssl.BrowserCompatHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.core.UriBuilder;
 import java.io.File;
@@ -49,6 +50,15 @@ public class RESTHttpsConnector extends RESTConnector {
         return clientConfig;
     }
 
+    @Override
+    protected SSLConnectionSocketFactory getSslSocketFactory() {
+        SSLContext sslContext = getSslContext();
+        if (sslContext == null) {
+            return SSLConnectionSocketFactory.getSocketFactory();
+        }
+        return new SSLConnectionSocketFactory(sslContext, getHostnameVerifier());
+    }
+
     private HTTPSProperties getHttpsProperties() {
         return new HTTPSProperties(getHostnameVerifier(), getSslContext());
     }
@@ -57,9 +67,9 @@ public class RESTHttpsConnector extends RESTConnector {
      * During handshaking, if the URL's hostname and the server's identification hostname mismatch,
      * the verification mechanism can call back to this verifier to make a decision.
      *
-     * @return {@link javax.net.ssl.HostnameVerifier} implementation instance according to connector's config.
+     * @return {@link org.apache.http.conn.ssl.X509HostnameVerifier} implementation instance according to connector's config.
      */
-    private HostnameVerifier getHostnameVerifier() {
+    private X509HostnameVerifier getHostnameVerifier() {
         if (getConnectorConfig().isHostVerificationEnabled()) {
             return new BrowserCompatHostnameVerifier();
         }
@@ -115,8 +125,8 @@ public class RESTHttpsConnector extends RESTConnector {
     }
 
     @Override
-    protected URI getBaseURI() {
-        return UriBuilder.fromUri("https://" + getConnectorConfig().getHost() + getConnectorConfig().getResourcePath()).port(getConnectorConfig().getPort()).build();
+    protected URI getURI(String path) {
+        return UriBuilder.fromUri("https://" + getConnectorConfig().getHost() + path).port(getConnectorConfig().getPort()).build();
     }
 
 }
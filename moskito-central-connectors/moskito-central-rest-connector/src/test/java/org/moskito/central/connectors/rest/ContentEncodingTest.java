@@ -0,0 +1,76 @@
+package org.moskito.central.connectors.rest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the request body compression of the REST connector.
+ */
+public class ContentEncodingTest {
+
+    private static byte[] createBody() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            sb.append("{\"snshmd\":{\"producerId\":\"SessionCount\",\"intervalName\":\"1m\"},\"stats\":{\"cumulated\":{\"Req\":\"").append(i).append("\"}}},");
+        }
+        sb.append("{}]");
+        return sb.toString().getBytes();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        byte[] body = createBody();
+        byte[] encoded = ContentEncoding.GZIP.encode(body);
+        assertTrue(encoded.length * 5 < body.length);
+        assertArrayEquals(body, readFully(new GZIPInputStream(new ByteArrayInputStream(encoded))));
+        assertEquals("gzip", ContentEncoding.GZIP.getHeaderValue());
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        byte[] body = createBody();
+        byte[] encoded = ContentEncoding.DEFLATE.encode(body);
+        assertTrue(encoded.length * 5 < body.length);
+        assertArrayEquals(body, readFully(new InflaterInputStream(new ByteArrayInputStream(encoded))));
+        assertEquals("deflate", ContentEncoding.DEFLATE.getHeaderValue());
+    }
+
+    @Test
+    public void testNone() throws IOException {
+        byte[] body = createBody();
+        assertSame(body, ContentEncoding.NONE.encode(body));
+        assertNull(ContentEncoding.NONE.getHeaderValue());
+    }
+
+    @Test
+    public void testFromName() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.fromName(" Gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.fromName("deflate"));
+        assertEquals(ContentEncoding.NONE, ContentEncoding.fromName("none"));
+        assertEquals(ContentEncoding.NONE, ContentEncoding.fromName("brotli"));
+        assertEquals(ContentEncoding.NONE, ContentEncoding.fromName(null));
+    }
+}
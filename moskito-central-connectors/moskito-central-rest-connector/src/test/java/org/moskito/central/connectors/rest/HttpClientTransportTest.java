@@ -0,0 +1,106 @@
+package org.moskito.central.connectors.rest;
+
+import com.sun.jersey.test.framework.JerseyTest;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the pooled HttpClient transport of the REST connector against the mocked central.
+ */
+public class HttpClientTransportTest extends JerseyTest {
+
+    private static final String SNAPSHOTS = "[{\"snshmd\":{\"producerId\":\"prodId\",\"category\":\"catId\",\"subsystem\":\"subSId\"}}," +
+            "{\"snshmd\":{\"producerId\":\"prodId2\",\"category\":\"catId\",\"subsystem\":\"subSId\"}}]";
+
+    public HttpClientTransportTest() {
+        super("org.moskito.central.connectors.rest", "org.codehaus.jackson.jaxrs");
+    }
+
+    @Override
+    protected int getPort(int defaultPort) {
+        return super.getPort(9988);
+    }
+
+    private static RESTConnectorConfig createConfig() {
+        RESTConnectorConfig config = new RESTConnectorConfig();
+        config.setTransport("httpclient");
+        config.setMaxConnections(2);
+        return config;
+    }
+
+    private static URI uri(String path) {
+        return UriBuilder.fromUri("http://localhost" + path).port(9988).build();
+    }
+
+    @Test
+    public void testPostReusesPooledConnections() throws IOException {
+        HttpClientTransport transport = new HttpClientTransport(createConfig(), null);
+        try {
+            RESTEndpointMock.batchSnapshots.set(0);
+            byte[] body = SNAPSHOTS.getBytes(Charset.forName("UTF-8"));
+            //more requests than pooled connections, each one has to give its connection back.
+            for (int i = 0; i < 5; i++) {
+                transport.post(uri("/central/addSnapshots"), body, null);
+            }
+            assertEquals(10, RESTEndpointMock.batchSnapshots.get());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testErrorStatusIsReported() throws IOException {
+        HttpClientTransport transport = new HttpClientTransport(createConfig(), null);
+        try {
+            byte[] body = SNAPSHOTS.getBytes(Charset.forName("UTF-8"));
+            for (int i = 0; i < 3; i++) {
+                try {
+                    transport.post(uri("/central/unknown"), body, null);
+                    fail("404 should be reported");
+                } catch (IllegalStateException expected) {
+                }
+            }
+            //error responses release their connections as well.
+            RESTEndpointMock.batchSnapshots.set(0);
+            transport.post(uri("/central/addSnapshots"), body, null);
+            assertEquals(2, RESTEndpointMock.batchSnapshots.get());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testConnectorReconfiguration() {
+        List<Snapshot> batch = new ArrayList<Snapshot>();
+        Snapshot snapshot = new Snapshot();
+        snapshot.setMetaData(new SnapshotMetaData());
+        snapshot.getMetaData().setProducerId("prodId");
+        batch.add(snapshot);
+
+        RESTConnectorTest.ExposedRESTConnector connector = new RESTConnectorTest.ExposedRESTConnector();
+        try {
+            RESTEndpointMock.batchSnapshots.set(0);
+            connector.setConfigurationName("rest-connector-httpclient");
+            connector.sendBatch(batch);
+            //back to the jersey client, the transport of the previous configuration is closed.
+            connector.setConfigurationName("rest-connector");
+            connector.sendBatch(batch);
+            connector.setConfigurationName("rest-connector-httpclient");
+            connector.sendBatch(batch);
+            assertEquals(3, RESTEndpointMock.batchSnapshots.get());
+        } finally {
+            connector.deInitialize();
+        }
+    }
+}
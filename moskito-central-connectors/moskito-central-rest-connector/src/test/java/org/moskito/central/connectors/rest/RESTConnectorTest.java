@@ -5,7 +5,11 @@ import org.junit.Test;
 import org.moskito.central.Snapshot;
 import org.moskito.central.SnapshotMetaData;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Test class for MoSKito Central REST-connector.
@@ -28,6 +32,11 @@ public class RESTConnectorTest extends JerseyTest {
             super.sendData(snapshot);
         }
 
+        @Override
+        public void sendBatch(List<Snapshot> snapshots) {
+            super.sendBatch(snapshots);
+        }
+
     }
 
 
@@ -41,8 +50,7 @@ public class RESTConnectorTest extends JerseyTest {
         return super.getPort(9988);
     }
 
-    @Test
-    public void testAddSnapshot() throws InterruptedException {
+    private Snapshot createSnapshot() {
         Snapshot snapshot = new Snapshot();
 
         SnapshotMetaData metaData = new SnapshotMetaData();
@@ -58,10 +66,54 @@ public class RESTConnectorTest extends JerseyTest {
         snapshot.addSnapshotData("test", data);
         snapshot.addSnapshotData("test2", data);
         snapshot.addSnapshotData("test3", data);
+        return snapshot;
+    }
+
+    @Test
+    public void testAddSnapshot() throws InterruptedException {
+        Snapshot snapshot = createSnapshot();
 
         ExposedRESTConnector connector = new ExposedRESTConnector();
         connector.sendData(snapshot);
         Thread.sleep(1000);
     }
 
+    @Test
+    public void testAddSnapshots() {
+        List<Snapshot> batch = new ArrayList<Snapshot>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(createSnapshot());
+        }
+
+        RESTEndpointMock.batchSnapshots.set(0);
+        ExposedRESTConnector connector = new ExposedRESTConnector();
+        connector.sendBatch(batch);
+        assertEquals(5, RESTEndpointMock.batchSnapshots.get());
+    }
+
+    @Test
+    public void testFallbackWithoutBatchPath() {
+        List<Snapshot> batch = new ArrayList<Snapshot>();
+        for (int i = 0; i < 3; i++) {
+            batch.add(createSnapshot());
+        }
+
+        RESTEndpointMock.singleSnapshots.set(0);
+        ExposedRESTConnector connector = new ExposedRESTConnector();
+        try {
+            connector.setConfigurationName("rest-connector-nobatch");
+            connector.sendBatch(batch);
+            assertEquals(3, RESTEndpointMock.singleSnapshots.get());
+            connector.sendBatch(batch);
+            assertEquals(6, RESTEndpointMock.singleSnapshots.get());
+            //batches are tried again after the next configuration.
+            RESTEndpointMock.batchSnapshots.set(0);
+            connector.setConfigurationName("rest-connector");
+            connector.sendBatch(batch);
+            assertEquals(3, RESTEndpointMock.batchSnapshots.get());
+        } finally {
+            connector.deInitialize();
+        }
+    }
+
 }
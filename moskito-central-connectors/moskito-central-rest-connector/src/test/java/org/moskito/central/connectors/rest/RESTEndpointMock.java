@@ -6,6 +6,8 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Mock of Central REST resource for incoming snapshots via HTTP. For connector's tests.
@@ -16,6 +18,16 @@ import javax.ws.rs.core.MediaType;
 @Path("/central")
 public class RESTEndpointMock {
 
+    /**
+     * Number of snapshots received via the single snapshot method.
+     */
+    static final AtomicInteger singleSnapshots = new AtomicInteger();
+
+    /**
+     * Number of snapshots received via the batch method.
+     */
+    static final AtomicInteger batchSnapshots = new AtomicInteger();
+
     /**
      * Stub method to test connector's snapshot adding request.
      */
@@ -23,7 +35,18 @@ public class RESTEndpointMock {
     @Path("/addSnapshot")
     @Consumes({ MediaType.APPLICATION_JSON })
     public void addSnapshot(Snapshot snapshot) {
+        singleSnapshots.incrementAndGet();
         System.out.println(snapshot.toString());
     }
 
+    /**
+     * Stub method to test connector's batch request.
+     */
+    @POST
+    @Path("/addSnapshots")
+    @Consumes({ MediaType.APPLICATION_JSON })
+    public void addSnapshots(List<Snapshot> snapshots) {
+        batchSnapshots.addAndGet(snapshots.size());
+    }
+
 }
@@ -1,16 +1,39 @@
 package org.moskito.central;
 
 import org.configureme.ConfigurationManager;
+import org.moskito.central.aggregation.AggregationListener;
+import org.moskito.central.aggregation.ClusterAggregator;
+import org.moskito.central.aggregation.MergeRules;
+import org.moskito.central.aggregation.RollupEngine;
+import org.moskito.central.cardinality.CardinalityGuard;
+import org.moskito.central.cardinality.CardinalityStatus;
+import org.moskito.central.config.AggregationConfig;
+import org.moskito.central.config.CardinalityConfig;
 import org.moskito.central.config.Configuration;
+import org.moskito.central.config.ConfigurationListener;
+import org.moskito.central.config.DispatchMode;
+import org.moskito.central.config.RollupConfig;
 import org.moskito.central.config.StorageConfigEntry;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.StorageStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main class of the central.
@@ -21,13 +44,54 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class Central {
 
 	/**
-	 * Configured and therefore active storages.
+	 * Configured and therefore active storages. The whole set is replaced on reconfiguration.
 	 */
-	private ConcurrentMap<String, Storage> storages = new ConcurrentHashMap<String, Storage>();
+	private volatile StorageSet storageSet = new StorageSet(Collections.<StorageConfigEntry, ManagedStorage>emptyMap());
+
+	/**
+	 * Set when the shutdown begins, no incoming snapshots are accepted afterwards.
+	 */
+	private volatile boolean shuttingDown = false;
+
+	/**
+	 * Set on shutdown after the aggregation and rollups are flushed, nothing is delivered to the storages afterwards.
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * Reconstructs full snapshots from delta snapshots.
+	 */
+	private final DeltaDecoder deltaDecoder = new DeltaDecoder();
+
+	/**
+	 * Compacts the incoming snapshots, null if they are passed on as they are.
+	 */
+	private volatile SnapshotCompactor compactor;
+
 	/**
-	 * List used for faster iteration for snapshot delivery.
+	 * Limits the distinct producer ids per host and component, null if disabled.
 	 */
-	private List<Storage> cachedList = new CopyOnWriteArrayList<Storage>();
+	private volatile CardinalityGuard cardinalityGuard;
+
+	/**
+	 * Shared instances of the metadata strings of incoming snapshots, null if disabled.
+	 */
+	private volatile StringPool metaDataPool;
+
+	/**
+	 * Delivers the snapshots to the storages in platform and virtual dispatch mode, null in caller mode.
+	 */
+	private volatile Dispatcher dispatcher;
+
+	/**
+	 * Merges the snapshots of all hosts into cluster-wide snapshots, null if disabled.
+	 */
+	private volatile ClusterAggregator aggregator;
+
+	/**
+	 * Rolls the snapshots up into longer intervals, null if disabled.
+	 */
+	private volatile RollupEngine rollups;
 
 	/**
 	 * Configuration.
@@ -64,38 +128,482 @@ public class Central {
 	 * called on instantiation or in a test.
 	 */
 	private void setup(){
-		storages.clear();
-		cachedList.clear();
-		for (StorageConfigEntry storageConfigEntry : configuration.getStorages()){
-			try{
-				Storage storage = Storage.class.cast(Class.forName(storageConfigEntry.getClazz()).newInstance());
-				try{
-					storage.configure(storageConfigEntry.getConfigName());
-					storages.put(storageConfigEntry.getName(), storage);
-					cachedList.add(storage);
-				}catch(Exception e){
-					log.warn("Storage "+storage+" for "+storageConfigEntry+" couldn't be configured properly.");
+		reconfigure(configuration);
+	}
+
+	/**
+	 * Applies a changed configuration at runtime. Storages whose entry (name, class and config name) did not change
+	 * are kept, new ones are created and configured before they are swapped in. Storages which are no longer
+	 * configured are removed after the snapshots that are currently delivered to them are done.
+	 *
+	 * @param newConfiguration the configuration to apply.
+	 */
+	public synchronized void reconfigure(Configuration newConfiguration){
+		if (shuttingDown){
+			log.warn("Central is shut down, ignoring new configuration");
+			return;
+		}
+		configuration = newConfiguration;
+		StorageSet oldSet = storageSet;
+
+		Map<StorageConfigEntry, ManagedStorage> newStorages = new LinkedHashMap<StorageConfigEntry, ManagedStorage>();
+		Set<String> names = new HashSet<String>();
+		StorageConfigEntry[] entries = newConfiguration.getStorages();
+		if (entries != null){
+			for (StorageConfigEntry storageConfigEntry : entries){
+				//storages are addressed by name, a second one with the same name would be unreachable.
+				if (!names.add(storageConfigEntry.getName())){
+					log.warn("Duplicate storage name " + storageConfigEntry.getName() + ", ignoring " + storageConfigEntry);
+					continue;
 				}
+				//configureme may change entries in place, so we keep our own copy as key.
+				StorageConfigEntry key = copyOf(storageConfigEntry);
+				ManagedStorage existing = oldSet.get(key);
+				if (existing != null){
+					existing.setMaxConcurrency(key.getMaxConcurrency());
+					newStorages.put(key, existing);
+					continue;
+				}
+				Storage created = createStorage(key);
+				if (created != null){
+					ManagedStorage managed = new ManagedStorage(key.getName(), created);
+					managed.setMaxConcurrency(key.getMaxConcurrency());
+					newStorages.put(key, managed);
+				}
+			}
+		}
+
+		storageSet = new StorageSet(newStorages);
 
-			}catch(ClassNotFoundException cnf){
-				log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",cnf);
-			} catch (InstantiationException e) {
-				log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",e);
-			} catch (IllegalAccessException e) {
-				log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",e);
+		CardinalityConfig cardinalityConfig = newConfiguration.getCardinality();
+		if (cardinalityConfig == null || !cardinalityConfig.isEnabled()){
+			cardinalityGuard = null;
+		}else if (cardinalityGuard == null || !cardinalityGuard.matches(cardinalityConfig)){
+			cardinalityGuard = new CardinalityGuard(cardinalityConfig);
+			log.info("Limiting producers by " + cardinalityGuard);
+		}
+
+		StringPool pool = metaDataPool;
+		int poolSize = newConfiguration.getMetaDataPoolSize();
+		if (poolSize <= 0){
+			pool = null;
+		}else if (pool == null || pool.getMaxSize() != poolSize){
+			pool = new StringPool(poolSize);
+		}
+		boolean poolChanged = pool != metaDataPool;
+		metaDataPool = pool;
+
+		if (!newConfiguration.isCompactSnapshots()){
+			compactor = null;
+		}else if (compactor == null || poolChanged){
+			compactor = pool == null ? new SnapshotCompactor() : new SnapshotCompactor(SnapshotCompactor.DEFAULT_MAX_SCHEMAS, pool);
+		}
+
+		Dispatcher oldDispatcher = dispatcher;
+		if (oldDispatcher == null || !oldDispatcher.matches(newConfiguration)){
+			dispatcher = newConfiguration.getDispatchModeValue() == DispatchMode.CALLER ? null : new Dispatcher(newConfiguration);
+			if (dispatcher != null || oldDispatcher != null)
+				log.info("Delivering snapshots " + (dispatcher == null ? "in the calling threads" : "by " + dispatcher));
+			//queued deliveries are still executed.
+			if (oldDispatcher != null)
+				oldDispatcher.shutdown(System.currentTimeMillis() + newConfiguration.getDrainTimeout());
+		}
+
+		AggregationConfig aggregationConfig = newConfiguration.getAggregation();
+		if (aggregationConfig == null)
+			aggregationConfig = new AggregationConfig();
+
+		RollupConfig rollupConfig = newConfiguration.getRollup();
+		MergeRules rules = new MergeRules(aggregationConfig);
+		RollupEngine oldRollups = rollups;
+		if (rollupConfig == null || !rollupConfig.isEnabled()){
+			rollups = null;
+		}else if (oldRollups == null || !oldRollups.matches(rollupConfig, rules)){
+			rollups = new RollupEngine(rollupConfig, rules, new AggregationListener() {
+				@Override
+				public void snapshotAggregated(Snapshot rollup) {
+					processAggregatedSnapshot(rollup);
+				}
+			});
+			log.info("Rolling up snapshots by " + rollups);
+		}
+		//the unfinished rollups of the old engine are passed to the storages.
+		if (oldRollups != null && oldRollups != rollups)
+			oldRollups.shutdown();
+
+		ClusterAggregator oldAggregator = aggregator;
+		if (!aggregationConfig.isEnabled()){
+			aggregator = null;
+		}else if (oldAggregator == null || !oldAggregator.matches(aggregationConfig)){
+			aggregator = new ClusterAggregator(aggregationConfig, new AggregationListener() {
+				@Override
+				public void snapshotAggregated(Snapshot merged) {
+					RollupEngine r = rollups;
+					if (r != null)
+						r.add(merged);
+					processAggregatedSnapshot(merged);
+				}
+			});
+			log.info("Aggregating snapshots by " + aggregator);
+		}
+		//the open buckets of the old aggregator are passed to the storages.
+		if (oldAggregator != null && oldAggregator != aggregator)
+			oldAggregator.shutdown();
+
+		List<ManagedStorage> removed = new ArrayList<ManagedStorage>();
+		for (Map.Entry<StorageConfigEntry, ManagedStorage> entry : oldSet.storages.entrySet()){
+			if (newStorages.get(entry.getKey()) != entry.getValue())
+				removed.add(entry.getValue());
+		}
+		if (!removed.isEmpty()){
+			log.info("Retiring storages " + removed);
+			long deadline = System.currentTimeMillis() + newConfiguration.getDrainTimeout();
+			oldSet.awaitIdle(deadline);
+			closeStorages(removed, deadline);
+		}
+	}
+
+	/**
+	 * Stops accepting snapshots, waits for the snapshots currently delivered and flushes and closes all storages.
+	 * Called from the shutdown hook of the singleton instance.
+	 *
+	 * @param timeout max time in milliseconds for the whole shutdown.
+	 */
+	public void shutdown(long timeout){
+		ClusterAggregator a;
+		RollupEngine r;
+		synchronized(this){
+			if (shuttingDown)
+				return;
+			shuttingDown = true;
+			a = aggregator;
+			aggregator = null;
+		}
+		//the open buckets and unfinished rollups are still passed to the storages, the cluster snapshots of the
+		//open buckets are rolled up as well.
+		if (a != null)
+			a.shutdown();
+		synchronized(this){
+			r = rollups;
+			rollups = null;
+		}
+		if (r != null)
+			r.shutdown();
+
+		StorageSet set;
+		synchronized(this){
+			if (stopped)
+				return;
+			stopped = true;
+			set = storageSet;
+		}
+		log.info("Shutting down central, draining " + set.cachedList);
+		long deadline = System.currentTimeMillis() + timeout;
+		set.awaitIdle(deadline);
+		closeStorages(set.cachedList, deadline);
+		Dispatcher d = dispatcher;
+		if (d != null)
+			d.shutdown(deadline);
+	}
+
+	/**
+	 * Returns the number of deliveries to storages which are queued or in progress in platform and virtual dispatch
+	 * mode.
+	 * @return int
+	 */
+	public int getPendingDeliveries(){
+		Dispatcher d = dispatcher;
+		return d == null ? 0 : d.getPending();
+	}
+
+	/**
+	 * Returns the status of all active storages by their name.
+	 * @return
+	 */
+	public Map<String, StorageStatus> getStorageStatus(){
+		Map<String, StorageStatus> ret = new LinkedHashMap<String, StorageStatus>();
+		for (ManagedStorage m : storageSet.cachedList){
+			ret.put(m.status.getName(), m.status);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of producer ids per host and component, the most producers first. Empty if the cardinality
+	 * guard is disabled.
+	 * @return status by host and component.
+	 */
+	public List<CardinalityStatus> getCardinalityStatus(){
+		CardinalityGuard guard = cardinalityGuard;
+		return guard == null ? Collections.<CardinalityStatus>emptyList() : guard.getStatus();
+	}
+
+	/**
+	 * Returns an active storage by its name, e.g. to query a storage which keeps its data in memory.
+	 * @param name name of the storage in the configuration.
+	 * @return the storage or null if there is no active storage with the name.
+	 */
+	public Storage getStorage(String name){
+		for (ManagedStorage m : storageSet.cachedList){
+			if (m.status.getName().equals(name))
+				return m.storage;
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the central configuration again and applies it.
+	 */
+	public void reloadConfiguration(){
+		Configuration newConfiguration = new Configuration();
+		try{
+			ConfigurationManager.INSTANCE.configure(newConfiguration);
+		}catch(IllegalArgumentException e){
+			log.warn("Couldn't reload configuration, keeping the current one", e);
+			return;
+		}
+		reconfigure(newConfiguration);
+	}
+
+	private static StorageConfigEntry copyOf(StorageConfigEntry entry){
+		StorageConfigEntry copy = new StorageConfigEntry();
+		copy.setName(entry.getName());
+		copy.setClazz(entry.getClazz());
+		copy.setConfigName(entry.getConfigName());
+		copy.setMaxConcurrency(entry.getMaxConcurrency());
+		return copy;
+	}
+
+	private Storage createStorage(StorageConfigEntry storageConfigEntry){
+		try{
+			Storage storage = Storage.class.cast(Class.forName(storageConfigEntry.getClazz()).newInstance());
+			try{
+				storage.configure(storageConfigEntry.getConfigName());
+				return storage;
+			}catch(Exception e){
+				log.warn("Storage "+storage+" for "+storageConfigEntry+" couldn't be configured properly.");
 			}
 
+		}catch(ClassNotFoundException cnf){
+			log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",cnf);
+		} catch (InstantiationException e) {
+			log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",e);
+		} catch (IllegalAccessException e) {
+			log.warn("Couldn't instantiate StorageConfigEntry "+storageConfigEntry+" due ",e);
 		}
+		return null;
 	}
 
+	/**
+	 * Flushes and closes the storages in parallel, each storage gets the time until the deadline.
+	 */
+	private void closeStorages(List<ManagedStorage> toClose, long deadline){
+		List<Thread> closers = new ArrayList<Thread>(toClose.size());
+		for (final ManagedStorage m : toClose){
+			Thread closer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					if (m.storage instanceof Flushable){
+						try{
+							((Flushable) m.storage).flush();
+						}catch(Exception e){
+							log.warn("Couldn't flush storage " + m, e);
+						}
+					}
+					if (m.storage instanceof Closeable){
+						try{
+							((Closeable) m.storage).close();
+						}catch(Exception e){
+							log.warn("Couldn't close storage " + m, e);
+						}
+					}
+					m.status.closed();
+				}
+			}, "moskito-central-close-" + m.status.getName());
+			closer.setDaemon(true);
+			closer.start();
+			closers.add(closer);
+		}
+		for (int i=0; i<closers.size(); i++){
+			Thread closer = closers.get(i);
+			try{
+				closer.join(Math.max(1, deadline - System.currentTimeMillis()));
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (closer.isAlive())
+				log.warn("Storage " + toClose.get(i) + " didn't close in time");
+		}
+	}
 
+	/**
+	 * Processes a single snapshot.
+	 * @param snapshot snapshot to process.
+	 * @throws CentralShutdownException if the central is shutting down, the snapshot is not accepted.
+	 */
 	public void processIncomingSnapshot(Snapshot snapshot){
-		for (Storage s : cachedList){
-			try{
-				s.processSnapshot(snapshot);
-			}catch(Exception any){
-				log.warn("Exception caught during snapshot processing in storage "+s+", snapshot: "+snapshot, any);
+		StorageSet set = acquireIncomingStorageSet();
+		try{
+			snapshot = prepare(snapshot);
+			if (snapshot == null)
+				return;
+			deliver(set, snapshot);
+		}finally{
+			set.release();
+		}
+	}
+
+	/**
+	 * Processes a batch of snapshots, as received by the batch endpoints. The storage set is acquired once for the
+	 * whole batch, the snapshots are delivered in the order of the list.
+	 * @param snapshots snapshots to process.
+	 * @throws CentralShutdownException if the central is shutting down, none of the snapshots is accepted.
+	 */
+	public void processIncomingSnapshots(List<Snapshot> snapshots){
+		if (snapshots == null || snapshots.isEmpty())
+			return;
+		StorageSet set = acquireIncomingStorageSet();
+		try{
+			Dispatcher d = dispatcher;
+			if (d == null){
+				for (Snapshot snapshot : snapshots){
+					Snapshot full = snapshot == null ? null : prepare(snapshot);
+					if (full == null)
+						continue;
+					deliver(set, full);
+				}
+				return;
+			}
+			//each storage gets the whole batch in one task, in the order of the list.
+			List<Snapshot> full = new ArrayList<Snapshot>(snapshots.size());
+			for (Snapshot snapshot : snapshots){
+				Snapshot decoded = snapshot == null ? null : prepare(snapshot);
+				if (decoded != null)
+					full.add(decoded);
+			}
+			if (full.isEmpty())
+				return;
+			AtomicInteger remaining = new AtomicInteger(set.cachedList.size());
+			for (ManagedStorage m : set.cachedList){
+				d.dispatch(set, m, full, remaining);
 			}
+		}finally{
+			set.release();
+		}
+	}
+
+	/**
+	 * Passes a snapshot merged by the cluster aggregation or a rollup to the storages.
+	 */
+	private void processAggregatedSnapshot(Snapshot merged){
+		StorageSet set = acquireStorageSet();
+		if (set == null){
+			log.debug("Central is shut down, dropping merged snapshot " + merged);
+			return;
+		}
+		try{
+			deliver(set, merged);
+		}finally{
+			set.release();
+		}
+	}
+
+	/**
+	 * Returns the snapshot as it is passed to the storages, null if it is dropped. Adds it to the cluster
+	 * aggregation and the rollups.
+	 */
+	private Snapshot prepare(Snapshot snapshot){
+		Snapshot full = deltaDecoder.decode(snapshot);
+		if (full == null)
+			return null;
+		CardinalityGuard guard = cardinalityGuard;
+		if (guard != null){
+			full = guard.admit(full);
+			if (full == null)
+				return null;
+		}
+		SnapshotCompactor c = compactor;
+		if (c != null){
+			c.compact(full);
+		}else{
+			StringPool pool = metaDataPool;
+			if (pool != null)
+				pool.intern(full.getMetaData());
+		}
+		ClusterAggregator a = aggregator;
+		if (a != null)
+			a.add(full);
+		RollupEngine r = rollups;
+		if (r != null)
+			r.add(full);
+		return full;
+	}
+
+	private void deliver(StorageSet set, Snapshot snapshot){
+		Dispatcher d = dispatcher;
+		if (d == null){
+			for (ManagedStorage m : set.cachedList){
+				process(m, snapshot);
+			}
+			//the encoded forms are only shared between the storages.
+			snapshot.clearEncodings();
+			return;
+		}
+		List<Snapshot> single = Collections.singletonList(snapshot);
+		AtomicInteger remaining = new AtomicInteger(set.cachedList.size());
+		for (ManagedStorage m : set.cachedList){
+			d.dispatch(set, m, single, remaining);
+		}
+	}
+
+	/**
+	 * Passes a snapshot to a storage, within the concurrency limit of the storage.
+	 */
+	private static void process(ManagedStorage m, Snapshot snapshot){
+		Semaphore limiter = m.limiter;
+		if (limiter != null)
+			limiter.acquireUninterruptibly();
+		try{
+			m.storage.processSnapshot(snapshot);
+			m.status.success();
+		}catch(Exception any){
+			m.status.failure(any);
+			log.warn("Exception caught during snapshot processing in storage "+m.storage+", snapshot: "+snapshot, any);
+		}finally{
+			if (limiter != null)
+				limiter.release();
+		}
+	}
+
+	/**
+	 * Returns the storage set for incoming snapshots and marks it as used.
+	 * @return the storage set.
+	 * @throws CentralShutdownException if the central is shutting down.
+	 */
+	private StorageSet acquireIncomingStorageSet(){
+		StorageSet set = shuttingDown ? null : acquireStorageSet();
+		if (set == null)
+			throw new CentralShutdownException("Central is shutting down, snapshots are not accepted");
+		return set;
+	}
+
+	/**
+	 * Returns the current storage set and marks it as used. A set that has been replaced in the meantime is not
+	 * used, so a retired storage never sees a snapshot after it has been drained.
+	 * @return the storage set or null if the central is shut down.
+	 */
+	private StorageSet acquireStorageSet(){
+		while (true){
+			StorageSet set = storageSet;
+			set.acquire();
+			if (stopped){
+				set.release();
+				return null;
+			}
+			if (set == storageSet)
+				return set;
+			set.release();
 		}
 	}
 
@@ -122,6 +630,19 @@ public class Central {
 			}
 			instance.setConfiguration(configuration);
 			instance.setup();
+			configuration.addListener(new ConfigurationListener() {
+				@Override
+				public void configurationChanged(Configuration changed) {
+					log.info("Central configuration changed, reconfiguring storages");
+					instance.reconfigure(changed);
+				}
+			});
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					instance.shutdown(instance.getConfiguration().getDrainTimeout());
+				}
+			}, "moskito-central-shutdown"));
 
 		}
 
@@ -131,6 +652,179 @@ public class Central {
 		return configuration;
 	}
 
+	/*testing scope*/ List<Storage> getStorages(){
+		List<Storage> ret = new ArrayList<Storage>();
+		for (ManagedStorage m : storageSet.cachedList){
+			ret.add(m.storage);
+		}
+		return ret;
+	}
+
+	/**
+	 * A configured storage together with its status.
+	 */
+	private static class ManagedStorage{
+		private final Storage storage;
+		private final StorageStatus status;
+		/**
+		 * Limits the concurrent deliveries to the storage, null without limit. Replaced if the limit changes,
+		 * deliveries release the instance they acquired.
+		 */
+		private volatile Semaphore limiter;
+		private int maxConcurrency;
 
+		ManagedStorage(String name, Storage storage){
+			this.storage = storage;
+			this.status = new StorageStatus(name);
+		}
+
+		/**
+		 * Called on (re)configuration only.
+		 */
+		void setMaxConcurrency(int max){
+			if (max < 0)
+				max = 0;
+			if (max == maxConcurrency)
+				return;
+			maxConcurrency = max;
+			limiter = max > 0 ? new Semaphore(max) : null;
+		}
+
+		@Override
+		public String toString(){
+			return status.getName()+" ("+storage+")";
+		}
+	}
+
+	/**
+	 * Delivers snapshots to the storages asynchronously, by a pool of platform threads or by virtual threads. The
+	 * number of pending deliveries is limited, callers wait when the limit is reached. A pending delivery keeps its
+	 * storage set in use, so retiring storages and shutdown wait for it.
+	 */
+	private static class Dispatcher{
+		private final DispatchMode mode;
+		private final int threads;
+		private final int maxPending;
+		private final ExecutorService executor;
+		private final Semaphore pending;
+
+		Dispatcher(Configuration config){
+			mode = config.getDispatchModeValue();
+			threads = config.getDispatchThreads();
+			maxPending = Math.max(1, config.getMaxPendingDeliveries());
+			executor = CentralExecutors.newExecutor("moskito-central-dispatch-", threads, mode == DispatchMode.VIRTUAL);
+			pending = new Semaphore(maxPending);
+		}
+
+		boolean matches(Configuration config){
+			return mode == config.getDispatchModeValue() && threads == config.getDispatchThreads() && maxPending == Math.max(1, config.getMaxPendingDeliveries());
+		}
+
+		/**
+		 * @param remaining number of storages the snapshots still have to be delivered to, the last delivery discards
+		 *                  their encoded forms.
+		 */
+		void dispatch(final StorageSet set, final ManagedStorage m, final List<Snapshot> snapshots, final AtomicInteger remaining){
+			pending.acquireUninterruptibly();
+			set.acquire();
+			Runnable delivery = new Runnable() {
+				@Override
+				public void run() {
+					try{
+						for (Snapshot snapshot : snapshots){
+							process(m, snapshot);
+						}
+					}finally{
+						if (remaining.decrementAndGet() == 0){
+							for (Snapshot snapshot : snapshots){
+								snapshot.clearEncodings();
+							}
+						}
+						set.release();
+						pending.release();
+					}
+				}
+			};
+			try{
+				executor.execute(delivery);
+			}catch(RejectedExecutionException e){
+				//the dispatcher has been replaced in the meantime.
+				delivery.run();
+			}
+		}
+
+		int getPending(){
+			return maxPending - pending.availablePermits();
+		}
+
+		/**
+		 * Stops accepting deliveries and waits until the pending ones are done or the deadline is reached.
+		 */
+		void shutdown(long deadline){
+			executor.shutdown();
+			try{
+				if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+					log.warn("Timeout while waiting for " + getPending() + " pending deliveries of the " + this);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public String toString(){
+			return mode.name().toLowerCase() + " dispatcher" + (mode == DispatchMode.VIRTUAL && CentralExecutors.isVirtualThreadsSupported() ? "" : " with " + threads + " threads") +
+					", max " + maxPending + " pending deliveries";
+		}
+	}
+
+	/**
+	 * Immutable set of active storages together with the number of deliveries currently using it.
+	 */
+	private static class StorageSet{
+		/**
+		 * Storages by their config entry.
+		 */
+		private final Map<StorageConfigEntry, ManagedStorage> storages;
+		/**
+		 * List used for faster iteration for snapshot delivery.
+		 */
+		private final List<ManagedStorage> cachedList;
+		/**
+		 * Number of deliveries in progress.
+		 */
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		StorageSet(Map<StorageConfigEntry, ManagedStorage> storages){
+			this.storages = storages;
+			cachedList = new CopyOnWriteArrayList<ManagedStorage>(storages.values());
+		}
+
+		ManagedStorage get(StorageConfigEntry entry){
+			return storages.get(entry);
+		}
+
+		void acquire(){
+			inFlight.incrementAndGet();
+		}
+
+		void release(){
+			inFlight.decrementAndGet();
+		}
+
+		void awaitIdle(long deadline){
+			while (inFlight.get() > 0){
+				if (System.currentTimeMillis() > deadline){
+					log.warn("Timed out waiting for " + inFlight.get() + " in-flight snapshots");
+					return;
+				}
+				try{
+					Thread.sleep(10);
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
 
 }
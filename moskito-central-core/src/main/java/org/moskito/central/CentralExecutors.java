@@ -0,0 +1,104 @@
+package org.moskito.central;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors of the central and its endpoints. On a jdk with virtual threads (21+) blocking work can run
+ * on a virtual thread per task, which makes thousands of concurrent blocking calls cheap. The virtual threads are
+ * created by reflection, since the central is built for older jdks too; without them a pool of platform threads is
+ * used instead.
+ */
+public final class CentralExecutors {
+
+	/**
+	 * Log.
+	 */
+	private static Logger log = LoggerFactory.getLogger(CentralExecutors.class);
+
+	/**
+	 * Thread.ofVirtual(), null if virtual threads are not available.
+	 */
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static{
+		Method ofVirtual = null, name = null, factory = null, newExecutor = null;
+		try{
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			//virtual threads are a preview feature on jdk 19 and 20 and fail without --enable-preview.
+			ofVirtual.invoke(null);
+		}catch(Exception | LinkageError e){
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_FACTORY = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+	}
+
+	private CentralExecutors(){
+	}
+
+	/**
+	 * Returns true if the jvm supports virtual threads.
+	 * @return boolean
+	 */
+	public static boolean isVirtualThreadsSupported(){
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Creates an executor for blocking tasks.
+	 * @param namePrefix prefix of the thread names.
+	 * @param platformThreads number of threads if platform threads are used.
+	 * @param virtual true to start a virtual thread per task if supported.
+	 * @return ExecutorService
+	 */
+	public static ExecutorService newExecutor(String namePrefix, int platformThreads, boolean virtual){
+		if (virtual){
+			if (isVirtualThreadsSupported()){
+				try{
+					Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 1L);
+					ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+					return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+				}catch(Exception e){
+					log.warn("Couldn't create virtual thread executor " + namePrefix + ", using platform threads", e);
+				}
+			}else{
+				log.info("Virtual threads are not supported by this jvm, " + namePrefix + " uses " + platformThreads + " platform threads");
+			}
+		}
+		return Executors.newFixedThreadPool(Math.max(1, platformThreads), newThreadFactory(namePrefix));
+	}
+
+	/**
+	 * Returns a factory for daemon platform threads named prefix + number.
+	 * @param namePrefix prefix of the thread names.
+	 * @return ThreadFactory
+	 */
+	public static ThreadFactory newThreadFactory(final String namePrefix){
+		return new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, namePrefix + counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
@@ -0,0 +1,14 @@
+package org.moskito.central;
+
+/**
+ * Thrown if a snapshot arrives while the central is shutting down. The snapshot has not been accepted, endpoints
+ * report the failure to the sender, so the connector can retry or spool it until the central is back.
+ */
+public class CentralShutdownException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CentralShutdownException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,339 @@
+package org.moskito.central;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only stats of a snapshot in compact form. The value names of a stat are a {@link Schema} shared by all
+ * snapshots with the same value names, the values of all stats are kept in one long array: integers as they are,
+ * decimals like "12.50" as unscaled value with their scale, everything else as string. Values are restored to
+ * exactly the strings they were created from when they are read. The maps of the stats are created on access, so
+ * a buffered snapshot consists of a handful of arrays instead of a map entry and a string per value.
+ * <p>
+ * Serialized as plain maps, so receivers don't need this class.
+ */
+class CompactStats extends AbstractMap<String, Map<String, String>> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Kind of a null value.
+	 */
+	private static final byte KIND_NULL = -1;
+
+	/**
+	 * Kind of a value which is kept as string.
+	 */
+	private static final byte KIND_STRING = -2;
+
+	/**
+	 * Max number of digits of a decimal, so the unscaled value fits into a long.
+	 */
+	private static final int MAX_DIGITS = 18;
+
+	private final String[] statNames;
+
+	private final Schema[] schemas;
+
+	/**
+	 * Index of the first value of each stat.
+	 */
+	private final int[] offsets;
+
+	private final long[] values;
+
+	/**
+	 * Scale of the decimal values, 0 for integers, or one of the kinds.
+	 */
+	private final byte[] kinds;
+
+	/**
+	 * Values which are kept as string, null if there are none.
+	 */
+	private final String[] strings;
+
+	private CompactStats(String[] statNames, Schema[] schemas, int[] offsets, long[] values, byte[] kinds, String[] strings) {
+		this.statNames = statNames;
+		this.schemas = schemas;
+		this.offsets = offsets;
+		this.values = values;
+		this.kinds = kinds;
+		this.strings = strings;
+	}
+
+	/**
+	 * Creates the compact form of stats.
+	 * @param statNames the stat names, usually canonical instances.
+	 * @param stats the values of the stats in the same order.
+	 * @param schemas the schemas of the stats in the same order.
+	 * @return CompactStats
+	 */
+	static CompactStats create(String[] statNames, Map<String, String>[] stats, Schema[] schemas) {
+		int[] offsets = new int[statNames.length];
+		int count = 0;
+		for (int i = 0; i < schemas.length; i++) {
+			offsets[i] = count;
+			count += schemas[i].names.length;
+		}
+		long[] values = new long[count];
+		byte[] kinds = new byte[count];
+		String[] strings = null;
+		for (int i = 0; i < statNames.length; i++) {
+			String[] names = schemas[i].names;
+			Map<String, String> stat = stats[i];
+			for (int j = 0; j < names.length; j++) {
+				int index = offsets[i] + j;
+				String value = stat.get(names[j]);
+				if (value == null) {
+					kinds[index] = KIND_NULL;
+				} else if (!encode(value, values, kinds, index)) {
+					if (strings == null)
+						strings = new String[count];
+					strings[index] = value;
+					kinds[index] = KIND_STRING;
+				}
+			}
+		}
+		return new CompactStats(statNames, schemas, offsets, values, kinds, strings);
+	}
+
+	/**
+	 * Stores a value as integer or decimal if it can be restored to exactly the same string.
+	 */
+	private static boolean encode(String value, long[] values, byte[] kinds, int index) {
+		int length = value.length();
+		int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+		int dot = value.indexOf('.', start);
+		int scale = dot < 0 ? 0 : length - dot - 1;
+		int digits = length - start - (dot < 0 ? 0 : 1);
+		if (digits < 1 || digits > MAX_DIGITS || (dot >= 0 && (dot == start || scale < 1)))
+			return false;
+		//no leading zeros, "0" and "0.5" are fine.
+		if (value.charAt(start) == '0' && length > start + 1 && start + 1 != dot)
+			return false;
+		long unscaled = 0;
+		for (int i = start; i < length; i++) {
+			if (i == dot)
+				continue;
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+			unscaled = unscaled * 10 + (c - '0');
+		}
+		//the sign of a negative zero would be lost.
+		if (start == 1 && unscaled == 0)
+			return false;
+		values[index] = start == 1 ? -unscaled : unscaled;
+		kinds[index] = (byte) scale;
+		return true;
+	}
+
+	private String value(int index) {
+		byte kind = kinds[index];
+		if (kind == KIND_NULL)
+			return null;
+		if (kind == KIND_STRING)
+			return strings[index];
+		long unscaled = values[index];
+		if (kind == 0)
+			return Long.toString(unscaled);
+		String digits = Long.toString(Math.abs(unscaled));
+		StringBuilder ret = new StringBuilder(digits.length() + kind + 3);
+		if (unscaled < 0)
+			ret.append('-');
+		for (int i = digits.length(); i <= kind; i++) {
+			ret.append('0');
+		}
+		ret.append(digits);
+		ret.insert(ret.length() - kind, '.');
+		return ret.toString();
+	}
+
+	private int indexOf(Object statName) {
+		for (int i = 0; i < statNames.length; i++) {
+			if (statNames[i] == statName)
+				return i;
+		}
+		for (int i = 0; i < statNames.length; i++) {
+			if (statNames[i].equals(statName))
+				return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public Map<String, String> get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : new Stat(index);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return statNames.length;
+	}
+
+	@Override
+	public Set<Entry<String, Map<String, String>>> entrySet() {
+		return new AbstractSet<Entry<String, Map<String, String>>>() {
+			@Override
+			public Iterator<Entry<String, Map<String, String>>> iterator() {
+				return new IndexIterator<Entry<String, Map<String, String>>>(statNames.length) {
+					@Override
+					Entry<String, Map<String, String>> get(int index) {
+						return new SimpleImmutableEntry<String, Map<String, String>>(statNames[index], new Stat(index));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return statNames.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of values of all stats.
+	 * @return int
+	 */
+	int getValueCount() {
+		return values.length;
+	}
+
+	private Object writeReplace() {
+		HashMap<String, Map<String, String>> ret = new HashMap<>(statNames.length * 4 / 3 + 1);
+		for (int i = 0; i < statNames.length; i++) {
+			ret.put(statNames[i], new HashMap<>(new Stat(i)));
+		}
+		return ret;
+	}
+
+	/**
+	 * The value names of stats, shared by all stats with the same names.
+	 */
+	static final class Schema {
+
+		private final String[] names;
+
+		private final Map<String, Integer> index;
+
+		/**
+		 * @param names the value names, usually canonical instances.
+		 */
+		Schema(String[] names) {
+			this.names = names;
+			index = new HashMap<>(names.length * 4 / 3 + 1);
+			for (int i = 0; i < names.length; i++) {
+				index.put(names[i], i);
+			}
+		}
+
+		/**
+		 * Returns true if the stat has exactly the value names of this schema.
+		 */
+		boolean matches(Map<String, String> stat) {
+			if (stat.size() != names.length)
+				return false;
+			for (String name : stat.keySet()) {
+				if (!index.containsKey(name))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Read-only view of the values of one stat.
+	 */
+	private final class Stat extends AbstractMap<String, String> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int stat;
+
+		Stat(int stat) {
+			this.stat = stat;
+		}
+
+		@Override
+		public String get(Object key) {
+			Integer index = schemas[stat].index.get(key);
+			return index == null ? null : value(offsets[stat] + index);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return schemas[stat].index.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return schemas[stat].names.length;
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				@Override
+				public Iterator<Entry<String, String>> iterator() {
+					return new IndexIterator<Entry<String, String>>(schemas[stat].names.length) {
+						@Override
+						Entry<String, String> get(int index) {
+							return new SimpleImmutableEntry<String, String>(schemas[stat].names[index], value(offsets[stat] + index));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return schemas[stat].names.length;
+				}
+			};
+		}
+
+		private Object writeReplace() {
+			return new HashMap<>(this);
+		}
+	}
+
+	private abstract static class IndexIterator<T> implements Iterator<T> {
+
+		private final int size;
+
+		private int next;
+
+		IndexIterator(int size) {
+			this.size = size;
+		}
+
+		abstract T get(int index);
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@Override
+		public T next() {
+			if (next >= size)
+				throw new NoSuchElementException();
+			return get(next++);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Compact stats are read-only");
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.moskito.central;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconstructs full snapshots from the delta snapshots of connectors with delta encoding. For every producer stream
+ * (host, component, producer and interval) the last keyframes are kept; a delta snapshot contains the values that
+ * differ from its keyframe and is merged with it. A delta whose keyframe is unknown, e.g. because the keyframe got
+ * lost or the central restarted, can't be reconstructed and is dropped; the stream recovers with the next keyframe.
+ */
+public class DeltaDecoder {
+
+	/**
+	 * Log.
+	 */
+	private static Logger log = LoggerFactory.getLogger(DeltaDecoder.class);
+
+	/**
+	 * Default max number of streams with keyframes.
+	 */
+	public static final int DEFAULT_MAX_STREAMS = 100000;
+
+	/**
+	 * Keyframes by stream, the least recently used stream is evicted above max streams.
+	 */
+	private final Map<String, Keyframes> streams;
+
+	/**
+	 * Number of dropped deltas.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	public DeltaDecoder() {
+		this(DEFAULT_MAX_STREAMS);
+	}
+
+	public DeltaDecoder(final int maxStreams) {
+		streams = new LinkedHashMap<String, Keyframes>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Keyframes> eldest) {
+				return size() > maxStreams;
+			}
+		};
+	}
+
+	/**
+	 * Returns the full snapshot for an incoming snapshot. Keyframes are remembered, deltas are merged with their
+	 * keyframe. The delta markers are removed, so storages always see full snapshots.
+	 *
+	 * @param snapshot incoming snapshot.
+	 * @return the full snapshot or null if the snapshot is a delta that can't be reconstructed.
+	 */
+	public Snapshot decode(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null || (!metaData.isKeyframe() && !metaData.isDelta()))
+			return snapshot;
+
+		String stream = streamKey(metaData);
+		if (metaData.isKeyframe()) {
+			Map<String, Map<String, String>> copy = copy(snapshot.getStats());
+			synchronized (streams) {
+				Keyframes keyframes = streams.get(stream);
+				if (keyframes == null) {
+					keyframes = new Keyframes();
+					streams.put(stream, keyframes);
+				}
+				keyframes.add(metaData.getCreationTimestamp(), copy);
+			}
+			metaData.setKeyframe(false);
+			return snapshot;
+		}
+
+		Map<String, Map<String, String>> base;
+		synchronized (streams) {
+			Keyframes keyframes = streams.get(stream);
+			base = keyframes == null ? null : keyframes.get(metaData.getDeltaBase());
+		}
+		if (base == null) {
+			long count = dropped.incrementAndGet();
+			if (count == 1 || count % 1000 == 0)
+				log.warn("No keyframe " + metaData.getDeltaBase() + " for delta of " + stream + ", " + count + " deltas dropped so far");
+			return null;
+		}
+
+		Map<String, Map<String, String>> full = copy(base);
+		for (Map.Entry<String, Map<String, String>> stat : snapshot.getEntrySet()) {
+			Map<String, String> values = full.get(stat.getKey());
+			if (values == null) {
+				full.put(stat.getKey(), new HashMap<>(stat.getValue()));
+			} else {
+				values.putAll(stat.getValue());
+			}
+		}
+		snapshot.setStats(full);
+		metaData.setDeltaBase(0);
+		return snapshot;
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of streams with keyframes.
+	 * @return int
+	 */
+	public int getStreamCount() {
+		synchronized (streams) {
+			return streams.size();
+		}
+	}
+
+	private static String streamKey(SnapshotMetaData metaData) {
+		return metaData.getHostName() + '|' + metaData.getComponentName() + '|' + metaData.getProducerId() + '|' + metaData.getIntervalName();
+	}
+
+	private static Map<String, Map<String, String>> copy(Map<String, Map<String, String>> stats) {
+		Map<String, Map<String, String>> ret = new HashMap<>(stats.size() * 4 / 3 + 1);
+		for (Map.Entry<String, Map<String, String>> stat : stats.entrySet()) {
+			ret.put(stat.getKey(), new HashMap<>(stat.getValue()));
+		}
+		return ret;
+	}
+
+	/**
+	 * The current and the previous keyframe of a stream. The previous one is kept for deltas which were on their way
+	 * while the keyframe was replaced.
+	 */
+	private static class Keyframes {
+		private long currentTimestamp;
+		private Map<String, Map<String, String>> current;
+		private long previousTimestamp;
+		private Map<String, Map<String, String>> previous;
+
+		void add(long timestamp, Map<String, Map<String, String>> stats) {
+			if (current != null && timestamp != currentTimestamp) {
+				previousTimestamp = currentTimestamp;
+				previous = current;
+			}
+			currentTimestamp = timestamp;
+			current = stats;
+		}
+
+		Map<String, Map<String, String>> get(long timestamp) {
+			if (current != null && timestamp == currentTimestamp)
+				return current;
+			if (previous != null && timestamp == previousTimestamp)
+				return previous;
+			return null;
+		}
+	}
+}
@@ -41,6 +41,12 @@ public class Snapshot implements Serializable {
 	@XmlJavaTypeAdapter(StatsMapAdapter.class)
 	private Map<String, Map<String, String>> stats = new HashMap<>();
 
+	/**
+	 * Encoded forms of this snapshot, alternating encoding and encoded value, null if none was requested yet. The
+	 * central discards them once the snapshot is delivered to all storages.
+	 */
+	private transient volatile Object[] encodings;
+
 	/**
 	 * Default constructor.
 	 */
@@ -54,6 +60,7 @@ public class Snapshot implements Serializable {
 
 	public void setMetaData(SnapshotMetaData metaData) {
 		this.metaData = metaData;
+		encodings = null;
 	}
 
 	/**
@@ -64,6 +71,7 @@ public class Snapshot implements Serializable {
 	 */
 	public void addSnapshotData(String name, Map<String, String> values) {
 		stats.put(name, values);
+		encodings = null;
 	}
 
 	@Override
@@ -90,7 +98,7 @@ public class Snapshot implements Serializable {
 	}
 
 	/**
-	 * Gets all statistics.
+	 * Gets all statistics. The map is read-only if the snapshot was compacted by a {@link SnapshotCompactor}.
 	 *
 	 * @return {@link Map}
 	 */
@@ -103,6 +111,58 @@ public class Snapshot implements Serializable {
 
 	public void setStats(Map<String, Map<String, String>> stats) {
 		this.stats = stats;
+		encodings = null;
+	}
+
+	/**
+	 * Returns the snapshot in the given encoding. The encoded form is created on the first request and shared by
+	 * all following ones, so storages using the same encoding don't encode the snapshot again. Changes made through
+	 * the setters discard the encoded forms, changes of the maps returned by the getters don't.
+	 *
+	 * @param encoding the encoding.
+	 * @param <T> type of the encoded form.
+	 * @return the encoded form.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getEncoded(SnapshotEncoding<T> encoding) {
+		Object[] current = encodings;
+		int index = indexOf(current, encoding);
+		if (index >= 0)
+			return (T) current[index + 1];
+
+		//encoded outside the lock, storages requesting other encodings don't wait.
+		T encoded = encoding.encode(this);
+		synchronized (this) {
+			current = encodings;
+			index = indexOf(current, encoding);
+			if (index >= 0)
+				return (T) current[index + 1];
+			int length = current == null ? 0 : current.length;
+			Object[] added = new Object[length + 2];
+			if (current != null)
+				System.arraycopy(current, 0, added, 0, length);
+			added[length] = encoding;
+			added[length + 1] = encoded;
+			encodings = added;
+		}
+		return encoded;
+	}
+
+	/**
+	 * Discards the encoded forms of this snapshot.
+	 */
+	public void clearEncodings() {
+		encodings = null;
+	}
+
+	private static int indexOf(Object[] encodings, SnapshotEncoding<?> encoding) {
+		if (encodings == null)
+			return -1;
+		for (int i = 0; i < encodings.length; i += 2) {
+			if (encodings[i] == encoding)
+				return i;
+		}
+		return -1;
 	}
 
 	/**
@@ -0,0 +1,148 @@
+package org.moskito.central;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Converts snapshots which are buffered for a while, e.g. in a send queue, into a compact form. The stats are
+ * replaced by a read-only view on primitive arrays with value names shared per schema, and the metadata strings
+ * are replaced by canonical instances. getStats(), getStatistics() and all serialized forms of the snapshot stay
+ * the same, only changing the maps returned by the getters isn't possible anymore.
+ * <p>
+ * Schemas are kept up to a maximum, beyond it snapshots with new value names are left as they are. Canonical
+ * strings come from a bounded {@link StringPool}.
+ */
+public class SnapshotCompactor {
+
+	/**
+	 * Default max number of schemas.
+	 */
+	public static final int DEFAULT_MAX_SCHEMAS = 10000;
+
+	/**
+	 * Default max number of canonical strings.
+	 */
+	public static final int DEFAULT_MAX_STRINGS = 100000;
+
+	private final int maxSchemas;
+
+	/**
+	 * Schemas by their sorted value names.
+	 */
+	private final ConcurrentMap<List<String>, CompactStats.Schema> schemas = new ConcurrentHashMap<>();
+
+	/**
+	 * Last schema per producer. The stats of a producer usually have the same value names, so most stats are
+	 * matched against this schema without sorting their names.
+	 */
+	private final ConcurrentMap<String, CompactStats.Schema> lastSchemas = new ConcurrentHashMap<>();
+
+	private final StringPool strings;
+
+	public SnapshotCompactor() {
+		this(DEFAULT_MAX_SCHEMAS, DEFAULT_MAX_STRINGS);
+	}
+
+	public SnapshotCompactor(int maxSchemas, int maxStrings) {
+		this(maxSchemas, new StringPool(maxStrings));
+	}
+
+	/**
+	 * @param maxSchemas max number of schemas.
+	 * @param strings pool of the canonical strings, may be shared with others.
+	 */
+	public SnapshotCompactor(int maxSchemas, StringPool strings) {
+		this.maxSchemas = maxSchemas;
+		this.strings = strings;
+	}
+
+	/**
+	 * Compacts a snapshot in place. Snapshots which are already compact, or whose stats contain null maps, keep
+	 * their stats.
+	 *
+	 * @param snapshot the snapshot.
+	 * @return the same snapshot.
+	 */
+	public Snapshot compact(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		strings.intern(metaData);
+
+		Map<String, Map<String, String>> stats = snapshot.getStats();
+		if (stats instanceof CompactStats)
+			return snapshot;
+		CompactStats compact = compactStats(metaData == null ? null : metaData.getProducerId(), stats);
+		if (compact != null)
+			snapshot.setStats(compact);
+		return snapshot;
+	}
+
+	/**
+	 * Returns true if the stats of the snapshot are compact.
+	 *
+	 * @param snapshot the snapshot.
+	 * @return boolean
+	 */
+	public static boolean isCompact(Snapshot snapshot) {
+		return snapshot.getStats() instanceof CompactStats;
+	}
+
+	public int getSchemaCount() {
+		return schemas.size();
+	}
+
+	public int getStringCount() {
+		return strings.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private CompactStats compactStats(String producerId, Map<String, Map<String, String>> stats) {
+		int size = stats.size();
+		String[] statNames = new String[size];
+		Map<String, String>[] values = new Map[size];
+		CompactStats.Schema[] statSchemas = new CompactStats.Schema[size];
+		CompactStats.Schema last = producerId == null ? null : lastSchemas.get(producerId);
+		int i = 0;
+		for (Map.Entry<String, Map<String, String>> stat : stats.entrySet()) {
+			if (i == size || stat.getKey() == null || stat.getValue() == null)
+				return null;
+			CompactStats.Schema schema = last != null && last.matches(stat.getValue()) ? last : schema(stat.getValue());
+			if (schema == null)
+				return null;
+			last = schema;
+			statNames[i] = strings.intern(stat.getKey());
+			values[i] = stat.getValue();
+			statSchemas[i] = schema;
+			i++;
+		}
+		if (i != size)
+			return null;
+		if (last != null && producerId != null && (lastSchemas.size() < maxSchemas || lastSchemas.containsKey(producerId)))
+			lastSchemas.put(producerId, last);
+		return CompactStats.create(statNames, values, statSchemas);
+	}
+
+	private CompactStats.Schema schema(Map<String, String> stat) {
+		String[] names = new String[stat.size()];
+		int i = 0;
+		for (String name : stat.keySet()) {
+			if (i == names.length || name == null)
+				return null;
+			names[i++] = strings.intern(name);
+		}
+		if (i != names.length)
+			return null;
+		Arrays.sort(names);
+		List<String> key = Arrays.asList(names);
+		CompactStats.Schema schema = schemas.get(key);
+		if (schema != null)
+			return schema;
+		if (schemas.size() >= maxSchemas)
+			return null;
+		schema = new CompactStats.Schema(names);
+		CompactStats.Schema existing = schemas.putIfAbsent(key, schema);
+		return existing == null ? schema : existing;
+	}
+}
@@ -0,0 +1,37 @@
+package org.moskito.central;
+
+/**
+ * An encoded form of a snapshot, e.g. its json. Storages get the encoded forms they need by
+ * {@link Snapshot#getEncoded(SnapshotEncoding)}, so a snapshot is encoded once per encoding no matter how many
+ * storages use it. Encodings are compared by identity and should be constants.
+ *
+ * @param <T> type of the encoded form.
+ */
+public abstract class SnapshotEncoding<T> {
+
+	/**
+	 * Name of the encoding, for logging.
+	 */
+	private final String name;
+
+	protected SnapshotEncoding(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Encodes a snapshot. Called at most once per snapshot unless several threads request the same encoding at the
+	 * same time.
+	 * @param snapshot the snapshot.
+	 * @return the encoded form.
+	 */
+	protected abstract T encode(Snapshot snapshot);
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
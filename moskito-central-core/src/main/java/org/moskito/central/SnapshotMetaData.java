@@ -2,6 +2,7 @@ package org.moskito.central;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
 
@@ -15,6 +16,11 @@ import java.io.Serializable;
 @XmlRootElement(name = "snshmd")
 @XmlAccessorType(XmlAccessType.FIELD)
 public class SnapshotMetaData implements Serializable {
+	/**
+	 * Serial version of the meta data before delta encoding, so older centrals and connectors still read it.
+	 */
+	private static final long serialVersionUID = -6379620884355599193L;
+
 	/**
 	 * Id of the producer.
 	 */
@@ -59,6 +65,20 @@ public class SnapshotMetaData implements Serializable {
 	 */
 	private String statClassName;
 
+	/**
+	 * True if this is a full snapshot later delta snapshots of the same producer refer to. Null unless delta
+	 * encoding is on, so it's neither sent to centrals which don't know it nor passed to the storages.
+	 */
+	@XmlElement(nillable = false)
+	private Boolean keyframe;
+
+	/**
+	 * For delta snapshots the creation timestamp of the keyframe they are based on, null for full snapshots. A delta
+	 * snapshot only contains the values which differ from its keyframe.
+	 */
+	@XmlElement(nillable = false)
+	private Long deltaBase;
+
 	/**
 	 * Default constructor.
 	 */
@@ -147,10 +167,36 @@ public class SnapshotMetaData implements Serializable {
         return this;
     }
 
+    public boolean isKeyframe() {
+        return keyframe != null && keyframe;
+    }
+
+    public SnapshotMetaData setKeyframe(boolean keyframe) {
+        this.keyframe = keyframe ? Boolean.TRUE : null;
+        return this;
+    }
+
+    public long getDeltaBase() {
+        return deltaBase == null ? 0 : deltaBase;
+    }
+
+    public SnapshotMetaData setDeltaBase(long deltaBase) {
+        this.deltaBase = deltaBase == 0 ? null : deltaBase;
+        return this;
+    }
+
+    /**
+     * Returns true if this snapshot only contains the values which changed since its keyframe.
+     * @return boolean
+     */
+    public boolean isDelta() {
+        return deltaBase != null;
+    }
+
     @Override
 	public String toString() {
 		return "SnapshotMetaData [producerId=" + producerId + ", componentName=" + componentName + ", hostName=" + hostName + ", intervalName="
 				+ intervalName + ", creationTimestamp=" + creationTimestamp + ", arrivalTimestamp=" + arrivalTimestamp + ", category=" + category
-				+ ", subsystem=" + subsystem + ", statClassName=" + statClassName + "]";
+				+ ", subsystem=" + subsystem + ", statClassName=" + statClassName + (isKeyframe() ? ", keyframe" : "") + (isDelta() ? ", deltaBase=" + deltaBase : "") + "]";
 	}
 }
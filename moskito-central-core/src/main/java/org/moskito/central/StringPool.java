@@ -0,0 +1,115 @@
+package org.moskito.central;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of canonical string instances. The metadata of incoming snapshots comes from a small vocabulary of
+ * hosts, components, producers, categories, subsystems, intervals and stat classes, but every snapshot brings its
+ * own copies of these strings. Replacing them by the pooled instances lets buffered snapshots share them, and
+ * equals() on pooled strings returns at the identity check.
+ * <p>
+ * The pool is split into stripes with their own lock, each stripe evicts its least recently used strings, so an
+ * unexpected vocabulary can't grow it beyond its max size.
+ */
+public class StringPool {
+
+	/**
+	 * Default max number of pooled strings.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private static final int STRIPES = 16;
+
+	private final int maxSize;
+
+	private final Stripe[] stripes;
+
+	public StringPool() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize max number of pooled strings.
+	 */
+	public StringPool(int maxSize) {
+		this.maxSize = maxSize;
+		int stripeCount = maxSize < STRIPES * 16 ? 1 : STRIPES;
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe(Math.max(1, maxSize / stripeCount));
+		}
+	}
+
+	/**
+	 * Returns the pooled instance of a string, the string itself if it wasn't pooled yet.
+	 *
+	 * @param s the string.
+	 * @return canonical instance, null for null.
+	 */
+	public String intern(String s) {
+		if (s == null)
+			return null;
+		int hash = s.hashCode();
+		Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+		synchronized (stripe) {
+			String existing = stripe.get(s);
+			if (existing != null)
+				return existing;
+			stripe.put(s, s);
+			return s;
+		}
+	}
+
+	/**
+	 * Replaces the strings of the metadata by their pooled instances.
+	 *
+	 * @param metaData the metadata, may be null.
+	 */
+	public void intern(SnapshotMetaData metaData) {
+		if (metaData == null)
+			return;
+		metaData.setProducerId(intern(metaData.getProducerId()));
+		metaData.setComponentName(intern(metaData.getComponentName()));
+		metaData.setHostName(intern(metaData.getHostName()));
+		metaData.setIntervalName(intern(metaData.getIntervalName()));
+		metaData.setCategory(intern(metaData.getCategory()));
+		metaData.setSubsystem(intern(metaData.getSubsystem()));
+		metaData.setStatClassName(intern(metaData.getStatClassName()));
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of pooled strings.
+	 * @return int
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	private static class Stripe extends LinkedHashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		Stripe(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package org.moskito.central.aggregation;
+
+import org.moskito.central.Snapshot;
+
+/**
+ * Receives the snapshots merged by the {@link ClusterAggregator}.
+ */
+public interface AggregationListener {
+	/**
+	 * Called when a bucket is closed, with the merged snapshot of all hosts.
+	 * @param merged the merged snapshot.
+	 */
+	void snapshotAggregated(Snapshot merged);
+}
@@ -0,0 +1,388 @@
+package org.moskito.central.aggregation;
+
+import org.moskito.central.CentralExecutors;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.AggregationConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the snapshots of the same component, producer and interval from all hosts into a synthetic snapshot of the
+ * whole cluster, so dashboards don't have to sum up the hosts at query time.
+ * <p>
+ * The snapshots are collected in a bucket per component, producer and interval. A bucket is opened by the first
+ * snapshot and closed when the window has elapsed or a host sends its next snapshot before, then the merged
+ * snapshot is passed to the listener. Each value is merged by the function of its name: counters are summed up,
+ * Max and MCR take the highest, Min the lowest value and Avg the mean weighted by the requests of each host.
+ * Values which are not numbers are skipped.
+ */
+public class ClusterAggregator {
+
+	private static Logger log = LoggerFactory.getLogger(ClusterAggregator.class);
+
+	/**
+	 * Copy of the configuration.
+	 */
+	private final Settings settings;
+
+	private final AggregationListener listener;
+
+	/**
+	 * Open bucket per component, producer and interval.
+	 */
+	private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
+
+	/**
+	 * Closes expired buckets.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * @param config the aggregation configuration, its values are copied.
+	 * @param listener receives the merged snapshots.
+	 */
+	public ClusterAggregator(AggregationConfig config, AggregationListener listener){
+		this.listener = listener;
+		settings = new Settings(config);
+
+		timer = Executors.newSingleThreadScheduledExecutor(CentralExecutors.newThreadFactory("moskito-central-aggregation-"));
+		long period = Math.min(1000, Math.max(10, settings.window / 10));
+		timer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try{
+					flushExpired(System.currentTimeMillis());
+				}catch(Exception e){
+					log.warn("Couldn't flush expired aggregation buckets", e);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds the snapshot of a host to the bucket of its producer. Merged snapshots, with the host name of the
+	 * aggregation, are ignored.
+	 *
+	 * @param snapshot the snapshot.
+	 */
+	public void add(Snapshot snapshot){
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null || snapshot.getStats() == null)
+			return;
+		String host = metaData.getHostName() == null ? "" : metaData.getHostName();
+		if (host.equals(settings.hostName))
+			return;
+		String key = metaData.getComponentName() + '\u0000' + metaData.getProducerId() + '\u0000' + metaData.getIntervalName();
+		long now = System.currentTimeMillis();
+		Bucket closed = null;
+		while (true){
+			Slot slot = slots.get(key);
+			if (slot == null){
+				slot = new Slot();
+				Slot existing = slots.putIfAbsent(key, slot);
+				if (existing != null)
+					slot = existing;
+			}
+			synchronized (slot){
+				if (slot.removed)
+					continue;
+				if (slot.bucket != null && (slot.bucket.hosts.contains(host) || now - slot.bucket.opened >= settings.window)){
+					closed = slot.bucket;
+					slot.bucket = null;
+				}
+				if (slot.bucket == null)
+					slot.bucket = new Bucket(metaData, now);
+				slot.bucket.add(host, snapshot);
+			}
+			break;
+		}
+		if (closed != null)
+			emit(closed);
+	}
+
+	/**
+	 * Closes the buckets whose window has elapsed.
+	 *
+	 * @param now current time.
+	 */
+	void flushExpired(long now){
+		List<Bucket> closed = new ArrayList<Bucket>();
+		for (Map.Entry<String, Slot> entry : slots.entrySet()){
+			Slot slot = entry.getValue();
+			synchronized (slot){
+				if (slot.bucket != null && now - slot.bucket.opened >= settings.window){
+					closed.add(slot.bucket);
+					slot.bucket = null;
+				}
+				//producers which stopped sending don't keep their slot.
+				if (slot.bucket == null){
+					slot.removed = true;
+					slots.remove(entry.getKey(), slot);
+				}
+			}
+		}
+		for (Bucket bucket : closed){
+			emit(bucket);
+		}
+	}
+
+	/**
+	 * Closes all open buckets.
+	 */
+	public void flush(){
+		flushExpired(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Stops the timer and closes all open buckets.
+	 */
+	public void shutdown(){
+		timer.shutdownNow();
+		flush();
+	}
+
+	/**
+	 * Returns true if the aggregator merges as the configuration says.
+	 * @param config the configuration.
+	 * @return boolean
+	 */
+	public boolean matches(AggregationConfig config){
+		return settings.equals(new Settings(config));
+	}
+
+	/**
+	 * Returns the number of open buckets.
+	 * @return int
+	 */
+	public int getOpenBuckets(){
+		int count = 0;
+		for (Slot slot : slots.values()){
+			synchronized (slot){
+				if (slot.bucket != null)
+					count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the function which merges the values with the given name.
+	 * @param valueName name of the value.
+	 * @return MergeFunction
+	 */
+	public MergeFunction getFunction(String valueName){
+		return settings.rules.getFunction(valueName);
+	}
+
+	@Override
+	public String toString(){
+		return "ClusterAggregator " + settings;
+	}
+
+	private void emit(Bucket bucket){
+		Snapshot merged = bucket.toSnapshot(settings.hostName);
+		if (log.isDebugEnabled())
+			log.debug("Merged snapshots of " + bucket.hosts.size() + " hosts into " + merged.getMetaData());
+		try{
+			listener.snapshotAggregated(merged);
+		}catch(Exception e){
+			log.warn("Listener couldn't process merged snapshot " + merged.getMetaData(), e);
+		}
+	}
+
+	/**
+	 * Aggregation settings, copied from the configuration which may be changed in place.
+	 */
+	private static class Settings{
+		private final long window;
+		private final String hostName;
+		private final MergeRules rules;
+
+		Settings(AggregationConfig config){
+			window = Math.max(1, config.getWindow());
+			hostName = config.getHostName();
+			rules = new MergeRules(config);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Settings))
+				return false;
+			Settings that = (Settings) o;
+			return window == that.window && (hostName == null ? that.hostName == null : hostName.equals(that.hostName)) &&
+					rules.equals(that.rules);
+		}
+
+		@Override
+		public int hashCode(){
+			return (int) window;
+		}
+
+		@Override
+		public String toString(){
+			return "window: " + window + ", hostName: " + hostName + ", " + rules;
+		}
+	}
+
+	/**
+	 * Holder of the open bucket of a producer. A removed slot isn't used anymore, adders get a new one.
+	 */
+	private static class Slot{
+		private Bucket bucket;
+		private boolean removed;
+	}
+
+	/**
+	 * Snapshots of a producer from the hosts, merged as they arrive.
+	 */
+	private class Bucket{
+		private final SnapshotMetaData first;
+		private final long opened;
+		private final Set<String> hosts = new HashSet<String>();
+		private final Map<String, Map<String, Accumulator>> stats = new LinkedHashMap<String, Map<String, Accumulator>>();
+		private long creationTimestamp;
+
+		Bucket(SnapshotMetaData first, long opened){
+			this.first = first;
+			this.opened = opened;
+		}
+
+		void add(String host, Snapshot snapshot){
+			hosts.add(host);
+			creationTimestamp = Math.max(creationTimestamp, snapshot.getMetaData().getCreationTimestamp());
+			for (Map.Entry<String, Map<String, String>> stat : snapshot.getStats().entrySet()){
+				Map<String, String> values = stat.getValue();
+				if (values == null)
+					continue;
+				Map<String, Accumulator> merged = stats.get(stat.getKey());
+				if (merged == null){
+					merged = new LinkedHashMap<String, Accumulator>();
+					stats.put(stat.getKey(), merged);
+				}
+				double weight = settings.rules.getWeight(values);
+				for (Map.Entry<String, String> value : values.entrySet()){
+					Accumulator accumulator = merged.get(value.getKey());
+					if (accumulator == null){
+						accumulator = new Accumulator(getFunction(value.getKey()));
+						merged.put(value.getKey(), accumulator);
+					}
+					accumulator.add(value.getValue(), weight);
+				}
+			}
+		}
+
+		Snapshot toSnapshot(String mergedHostName){
+			SnapshotMetaData metaData = new SnapshotMetaData();
+			metaData.setHostName(mergedHostName);
+			metaData.setComponentName(first.getComponentName());
+			metaData.setProducerId(first.getProducerId());
+			metaData.setIntervalName(first.getIntervalName());
+			metaData.setCategory(first.getCategory());
+			metaData.setSubsystem(first.getSubsystem());
+			metaData.setStatClassName(first.getStatClassName());
+			metaData.setCreationTimestamp(creationTimestamp);
+			Snapshot snapshot = new Snapshot();
+			snapshot.setMetaData(metaData);
+			for (Map.Entry<String, Map<String, Accumulator>> stat : stats.entrySet()){
+				Map<String, String> values = new HashMap<String, String>(stat.getValue().size() * 2);
+				for (Map.Entry<String, Accumulator> value : stat.getValue().entrySet()){
+					values.put(value.getKey(), value.getValue().result());
+				}
+				snapshot.addSnapshotData(stat.getKey(), values);
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Merged value of the hosts. Integers are merged exactly as long as all values are integers.
+	 */
+	static class Accumulator{
+		private final MergeFunction function;
+		/**
+		 * First value as it was sent, the result if no value was a number.
+		 */
+		private String first;
+		private int count;
+		private boolean integral = true;
+		private long longValue;
+		private double doubleValue;
+		private double weightedSum;
+		private double weightSum;
+
+		Accumulator(MergeFunction function){
+			this.function = function;
+		}
+
+		void add(String value, double weight){
+			if (count == 0 && first == null)
+				first = value;
+			if (value == null)
+				return;
+			//the double value is always merged too, it is the result once a value isn't an integer.
+			boolean isLong = false;
+			long l = 0;
+			if (integral && MergeRules.isInteger(value)){
+				try{
+					l = Long.parseLong(value);
+					isLong = true;
+				}catch(NumberFormatException e){
+					//more than 19 digits.
+				}
+			}
+			double d = isLong ? l : MergeRules.parse(value);
+			if (Double.isNaN(d))
+				return;
+			if (!isLong)
+				integral = false;
+			switch (function){
+				case SUM:
+					longValue += l;
+					doubleValue += d;
+					break;
+				case MAX:
+					if (count == 0 || (isLong ? l > longValue : d > doubleValue)){
+						longValue = l;
+						doubleValue = d;
+					}
+					break;
+				case MIN:
+					if (count == 0 || (isLong ? l < longValue : d < doubleValue)){
+						longValue = l;
+						doubleValue = d;
+					}
+					break;
+				case MEAN:
+					doubleValue += d;
+					weightedSum += d * weight;
+					weightSum += weight;
+					break;
+				default:
+					throw new AssertionError("Unknown merge function " + function);
+			}
+			count++;
+		}
+
+		String result(){
+			if (count == 0)
+				return first;
+			if (function == MergeFunction.MEAN)
+				return String.valueOf(weightSum > 0 ? weightedSum / weightSum : doubleValue / count);
+			return integral ? String.valueOf(longValue) : String.valueOf(doubleValue);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package org.moskito.central.aggregation;
+
+/**
+ * How the values of the same stat value from different hosts are merged.
+ */
+public enum MergeFunction {
+	/**
+	 * Sum of the values, for counters like TR, ERR and TT.
+	 */
+	SUM,
+	/**
+	 * Highest value.
+	 */
+	MAX,
+	/**
+	 * Lowest value.
+	 */
+	MIN,
+	/**
+	 * Mean of the values, weighted by the weight value of each host.
+	 */
+	MEAN;
+
+	/**
+	 * Returns the function with the given name, ignoring case.
+	 * @param name name of the function.
+	 * @param fallback returned for unknown names.
+	 * @return MergeFunction
+	 */
+	public static MergeFunction fromName(String name, MergeFunction fallback){
+		if (name != null){
+			for (MergeFunction function : values()){
+				if (function.name().equalsIgnoreCase(name.trim()))
+					return function;
+			}
+		}
+		return fallback;
+	}
+}
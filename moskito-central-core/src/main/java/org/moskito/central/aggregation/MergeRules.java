@@ -0,0 +1,171 @@
+package org.moskito.central.aggregation;
+
+import org.moskito.central.config.AggregationConfig;
+import org.moskito.central.config.AggregationRuleEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Functions which merge the values of a stat by value name, for the cluster aggregation and the rollups. Counters
+ * are summed up by default, Max and MCR take the highest, Min the lowest value and Avg the mean weighted by the
+ * weight value (TR). Configured rules replace the built-in ones.
+ */
+public class MergeRules {
+
+	/**
+	 * Functions for value names without configured rule.
+	 */
+	private static final Map<String, MergeFunction> BUILT_IN_RULES = new HashMap<String, MergeFunction>();
+
+	static{
+		BUILT_IN_RULES.put("Max", MergeFunction.MAX);
+		BUILT_IN_RULES.put("MCR", MergeFunction.MAX);
+		BUILT_IN_RULES.put("Min", MergeFunction.MIN);
+		BUILT_IN_RULES.put("Avg", MergeFunction.MEAN);
+	}
+
+	private static Logger log = LoggerFactory.getLogger(MergeRules.class);
+
+	private final String weightValue;
+
+	private final MergeFunction defaultFunction;
+
+	/**
+	 * Functions by exact value name.
+	 */
+	private final Map<String, MergeFunction> rules = new HashMap<String, MergeFunction>(BUILT_IN_RULES);
+
+	/**
+	 * Functions by value name prefix, for rules ending with *.
+	 */
+	private final Map<String, MergeFunction> prefixRules = new LinkedHashMap<String, MergeFunction>();
+
+	/**
+	 * Resolved functions by value name.
+	 */
+	private final ConcurrentMap<String, MergeFunction> functions = new ConcurrentHashMap<String, MergeFunction>();
+
+	/**
+	 * @param config the aggregation configuration, its values are copied.
+	 */
+	public MergeRules(AggregationConfig config){
+		weightValue = config.getWeightValue();
+		defaultFunction = MergeFunction.fromName(config.getDefaultFunction(), MergeFunction.SUM);
+		if (config.getRules() == null)
+			return;
+		for (AggregationRuleEntry rule : config.getRules()){
+			MergeFunction function = MergeFunction.fromName(rule.getFunction(), null);
+			if (rule.getValue() == null || function == null){
+				log.warn("Ignoring invalid aggregation rule " + rule);
+				continue;
+			}
+			if (rule.getValue().endsWith("*"))
+				prefixRules.put(rule.getValue().substring(0, rule.getValue().length() - 1), function);
+			else
+				rules.put(rule.getValue(), function);
+		}
+	}
+
+	/**
+	 * Returns the name of the value the mean is weighted by, null if all values count once.
+	 * @return String
+	 */
+	public String getWeightValue(){
+		return weightValue;
+	}
+
+	/**
+	 * Returns the function which merges the values with the given name.
+	 * @param valueName name of the value.
+	 * @return MergeFunction
+	 */
+	public MergeFunction getFunction(String valueName){
+		MergeFunction function = functions.get(valueName);
+		if (function != null)
+			return function;
+		function = rules.get(valueName);
+		if (function == null){
+			for (Map.Entry<String, MergeFunction> rule : prefixRules.entrySet()){
+				if (valueName.startsWith(rule.getKey())){
+					function = rule.getValue();
+					break;
+				}
+			}
+		}
+		if (function == null)
+			function = defaultFunction;
+		functions.putIfAbsent(valueName, function);
+		return function;
+	}
+
+	/**
+	 * Returns the weight of the values of a stat: the weight value if it is a number, otherwise 1.
+	 * @param values the values of the stat.
+	 * @return double
+	 */
+	public double getWeight(Map<String, String> values){
+		String weight = weightValue == null ? null : values.get(weightValue);
+		if (weight == null)
+			return 1;
+		double w = parse(weight);
+		return Double.isNaN(w) ? 1 : Math.max(0, w);
+	}
+
+	/**
+	 * Parses a value, NaN if it isn't a finite number.
+	 * @param value the value.
+	 * @return double
+	 */
+	public static double parse(String value){
+		if (value == null)
+			return Double.NaN;
+		try{
+			double d = Double.parseDouble(value);
+			return Double.isInfinite(d) ? Double.NaN : d;
+		}catch(NumberFormatException e){
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Returns true if the value is a plain integer with up to 19 digits.
+	 */
+	static boolean isInteger(String value){
+		int length = value.length();
+		int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+		if (length == start || length - start > 19)
+			return false;
+		for (int i = start; i < length; i++){
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if (!(o instanceof MergeRules))
+			return false;
+		MergeRules that = (MergeRules) o;
+		return (weightValue == null ? that.weightValue == null : weightValue.equals(that.weightValue)) &&
+				defaultFunction == that.defaultFunction && rules.equals(that.rules) && prefixRules.equals(that.prefixRules);
+	}
+
+	@Override
+	public int hashCode(){
+		return rules.hashCode();
+	}
+
+	@Override
+	public String toString(){
+		return "weightValue: " + weightValue + ", defaultFunction: " + defaultFunction + ", rules: " + rules +
+				", prefixRules: " + prefixRules;
+	}
+}
@@ -0,0 +1,457 @@
+package org.moskito.central.aggregation;
+
+import org.moskito.central.CentralExecutors;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.RollupConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rolls the snapshots of a short interval, e.g. 1m, up into snapshots of longer intervals like 1h and 1d, so the
+ * raw snapshots can be kept for days and the rollups for years.
+ * <p>
+ * There is a rollup per host, component, producer and rollup interval. It keeps sum, min, max, count and the
+ * weighted sum of each value in primitive arrays. The periods are aligned to UTC, a snapshot belongs to the period
+ * its creation time ends. When a snapshot of the next period arrives, or the delay after the end of the period
+ * elapsed, the rollup is closed and its snapshot, with the rollup interval as interval name and the end of the
+ * period as creation time, is passed to the listener. The values are merged by the {@link MergeRules}: counters
+ * are summed up, Max takes the highest, Min the lowest value and Avg the weighted mean.
+ * <p>
+ * After a period is closed its series is kept for one more period, so snapshots which arrive late for a period that
+ * was already emitted, e.g. replayed from the spool of a connector, are dropped instead of emitting a second, partial
+ * rollup for the same period.
+ */
+public class RollupEngine {
+
+	private static Logger log = LoggerFactory.getLogger(RollupEngine.class);
+
+	private final String sourceInterval;
+
+	/**
+	 * Names of the rollup intervals.
+	 */
+	private final String[] intervalNames;
+
+	/**
+	 * Lengths of the rollup intervals in milliseconds.
+	 */
+	private final long[] intervalLengths;
+
+	private final long delay;
+
+	private final int maxSeries;
+
+	private final MergeRules rules;
+
+	private final AggregationListener listener;
+
+	/**
+	 * Rollups in progress by host, component, producer and interval.
+	 */
+	private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<String, Series>();
+
+	/**
+	 * Set once the max number of series has been reached and logged.
+	 */
+	private final AtomicBoolean limitReached = new AtomicBoolean();
+
+	/**
+	 * Closes expired rollups.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * @param config the rollup configuration, its values are copied.
+	 * @param rules merge rules of the values.
+	 * @param listener receives the rollup snapshots.
+	 */
+	public RollupEngine(RollupConfig config, MergeRules rules, AggregationListener listener){
+		sourceInterval = config.getSourceInterval();
+		delay = Math.max(0, config.getDelay());
+		maxSeries = config.getMaxSeries();
+		this.rules = rules;
+		this.listener = listener;
+
+		List<String> names = new ArrayList<String>();
+		List<Long> lengths = new ArrayList<Long>();
+		if (config.getIntervals() != null){
+			for (String interval : config.getIntervals()){
+				long length = parseInterval(interval);
+				if (length <= 0){
+					log.warn("Ignoring invalid rollup interval " + interval);
+					continue;
+				}
+				names.add(interval.trim());
+				lengths.add(length);
+			}
+		}
+		intervalNames = names.toArray(new String[names.size()]);
+		intervalLengths = new long[lengths.size()];
+		for (int i = 0; i < intervalLengths.length; i++){
+			intervalLengths[i] = lengths.get(i);
+		}
+
+		timer = Executors.newSingleThreadScheduledExecutor(CentralExecutors.newThreadFactory("moskito-central-rollup-"));
+		timer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try{
+					flushExpired(System.currentTimeMillis());
+				}catch(Exception e){
+					log.warn("Couldn't flush expired rollups", e);
+				}
+			}
+		}, 1000, 1000, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds a snapshot to the rollups of its producer. Snapshots of other intervals than the source interval are
+	 * ignored.
+	 *
+	 * @param snapshot the snapshot.
+	 */
+	public void add(Snapshot snapshot){
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null || snapshot.getStats() == null || sourceInterval == null || !sourceInterval.equals(metaData.getIntervalName()))
+			return;
+		long time = metaData.getCreationTimestamp() > 0 ? metaData.getCreationTimestamp() : metaData.getArrivalTimestamp();
+		String prefix = metaData.getHostName() + '\u0000' + metaData.getComponentName() + '\u0000' + metaData.getProducerId() + '\u0000';
+		List<Snapshot> closed = null;
+		for (int i = 0; i < intervalNames.length; i++){
+			//a snapshot created at the end of a period belongs to it.
+			long periodStart = Math.max(0, time - 1) / intervalLengths[i] * intervalLengths[i];
+			Snapshot rollup = add(prefix + intervalNames[i], i, periodStart, snapshot);
+			if (rollup != null){
+				if (closed == null)
+					closed = new ArrayList<Snapshot>(intervalNames.length);
+				closed.add(rollup);
+			}
+		}
+		if (closed != null){
+			for (Snapshot rollup : closed){
+				emit(rollup);
+			}
+		}
+	}
+
+	/**
+	 * Adds the snapshot to a series.
+	 * @return the snapshot of the previous period if the snapshot closed it.
+	 */
+	private Snapshot add(String key, int interval, long periodStart, Snapshot snapshot){
+		while (true){
+			Series s = series.get(key);
+			if (s == null){
+				if (series.size() >= maxSeries){
+					if (limitReached.compareAndSet(false, true))
+						log.warn("Max number of rollups (" + maxSeries + ") reached, further producers are not rolled up");
+					return null;
+				}
+				s = new Series(snapshot.getMetaData(), interval);
+				Series existing = series.putIfAbsent(key, s);
+				if (existing != null)
+					s = existing;
+			}
+			synchronized (s){
+				if (s.removed)
+					continue;
+				if (periodStart <= s.lastClosed){
+					log.debug("Dropping late snapshot " + snapshot.getMetaData() + " for emitted " + intervalNames[interval] + " rollup");
+					return null;
+				}
+				Snapshot closed = null;
+				if (s.count > 0 && periodStart != s.periodStart){
+					if (periodStart < s.periodStart){
+						log.debug("Dropping late snapshot " + snapshot.getMetaData() + " for closed " + intervalNames[interval] + " rollup");
+						return null;
+					}
+					closed = s.close();
+				}
+				s.periodStart = periodStart;
+				s.add(snapshot);
+				return closed;
+			}
+		}
+	}
+
+	/**
+	 * Closes the rollups whose period ended more than the delay ago.
+	 *
+	 * @param now current time.
+	 */
+	void flushExpired(long now){
+		List<Snapshot> closed = new ArrayList<Snapshot>();
+		for (Map.Entry<String, Series> entry : series.entrySet()){
+			Series s = entry.getValue();
+			synchronized (s){
+				long length = intervalLengths[s.interval];
+				if (s.count > 0 && (now == Long.MAX_VALUE || now - (s.periodStart + length) >= delay))
+					closed.add(s.close());
+				//producers which stopped sending don't keep their series, but the last closed period is remembered
+				//for one more period to drop late snapshots.
+				if (s.count == 0 && (now == Long.MAX_VALUE || now - (s.lastClosed + 2 * length) >= delay)){
+					s.removed = true;
+					series.remove(entry.getKey(), s);
+				}
+			}
+		}
+		for (Snapshot rollup : closed){
+			emit(rollup);
+		}
+	}
+
+	/**
+	 * Closes all rollups, including the ones whose period isn't over yet.
+	 */
+	public void flush(){
+		flushExpired(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Stops the timer and closes all rollups.
+	 */
+	public void shutdown(){
+		timer.shutdownNow();
+		flush();
+	}
+
+	/**
+	 * Returns true if the engine rolls up as the configuration and rules say.
+	 * @param config the rollup configuration.
+	 * @param otherRules the merge rules.
+	 * @return boolean
+	 */
+	public boolean matches(RollupConfig config, MergeRules otherRules){
+		List<String> names = new ArrayList<String>();
+		if (config.getIntervals() != null){
+			for (String interval : config.getIntervals()){
+				if (parseInterval(interval) > 0)
+					names.add(interval.trim());
+			}
+		}
+		return rules.equals(otherRules) && (sourceInterval == null ? config.getSourceInterval() == null : sourceInterval.equals(config.getSourceInterval())) &&
+				Arrays.asList(intervalNames).equals(names) && delay == Math.max(0, config.getDelay()) && maxSeries == config.getMaxSeries();
+	}
+
+	/**
+	 * Returns the number of rollups in progress.
+	 * @return int
+	 */
+	public int getSeriesCount(){
+		return series.size();
+	}
+
+	/**
+	 * Returns the length of an interval like 30s, 5m, 1h or 1d in milliseconds.
+	 * @param interval the interval.
+	 * @return the length, -1 if the interval can't be parsed.
+	 */
+	public static long parseInterval(String interval){
+		if (interval == null)
+			return -1;
+		interval = interval.trim();
+		if (interval.length() < 2)
+			return -1;
+		long unit;
+		switch (interval.charAt(interval.length() - 1)){
+			case 's':
+				unit = TimeUnit.SECONDS.toMillis(1);
+				break;
+			case 'm':
+				unit = TimeUnit.MINUTES.toMillis(1);
+				break;
+			case 'h':
+				unit = TimeUnit.HOURS.toMillis(1);
+				break;
+			case 'd':
+				unit = TimeUnit.DAYS.toMillis(1);
+				break;
+			default:
+				return -1;
+		}
+		try{
+			long count = Long.parseLong(interval.substring(0, interval.length() - 1));
+			return count > 0 ? count * unit : -1;
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+
+	@Override
+	public String toString(){
+		return "RollupEngine sourceInterval: " + sourceInterval + ", intervals: " + Arrays.toString(intervalNames) +
+				", delay: " + delay + ", maxSeries: " + maxSeries + ", " + rules;
+	}
+
+	private void emit(Snapshot rollup){
+		try{
+			listener.snapshotAggregated(rollup);
+		}catch(Exception e){
+			log.warn("Listener couldn't process rollup " + rollup.getMetaData(), e);
+		}
+	}
+
+	/**
+	 * Rollup of a producer on a host for one interval. The values are stored at the index of their stat and name.
+	 */
+	private class Series{
+		private final SnapshotMetaData template;
+		private final int interval;
+		private long periodStart;
+		/**
+		 * Number of snapshots in the current period.
+		 */
+		private int count;
+		/**
+		 * Start of the last closed period, snapshots up to this period are too late.
+		 */
+		private long lastClosed = Long.MIN_VALUE;
+		private boolean removed;
+
+		/**
+		 * Index of each value by stat and value name.
+		 */
+		private final Map<String, Map<String, Integer>> layout = new LinkedHashMap<String, Map<String, Integer>>();
+		private int size;
+		private MergeFunction[] functions = new MergeFunction[16];
+		private double[] sums = new double[16];
+		private double[] mins = new double[16];
+		private double[] maxs = new double[16];
+		private double[] weightedSums = new double[16];
+		private double[] weights = new double[16];
+		private int[] counts = new int[16];
+		/**
+		 * True for values which were not always integers.
+		 */
+		private boolean[] fractional = new boolean[16];
+
+		Series(SnapshotMetaData template, int interval){
+			this.template = template;
+			this.interval = interval;
+		}
+
+		void add(Snapshot snapshot){
+			count++;
+			for (Map.Entry<String, Map<String, String>> stat : snapshot.getStats().entrySet()){
+				Map<String, String> values = stat.getValue();
+				if (values == null)
+					continue;
+				Map<String, Integer> indexes = layout.get(stat.getKey());
+				if (indexes == null){
+					indexes = new LinkedHashMap<String, Integer>();
+					layout.put(stat.getKey(), indexes);
+				}
+				double weight = rules.getWeight(values);
+				for (Map.Entry<String, String> value : values.entrySet()){
+					Integer index = indexes.get(value.getKey());
+					if (index == null){
+						index = newIndex(value.getKey());
+						indexes.put(value.getKey(), index);
+					}
+					String raw = value.getValue();
+					double d = MergeRules.parse(raw);
+					if (Double.isNaN(d))
+						continue;
+					int i = index;
+					if (!fractional[i] && !MergeRules.isInteger(raw))
+						fractional[i] = true;
+					if (counts[i] == 0){
+						mins[i] = d;
+						maxs[i] = d;
+					}else{
+						mins[i] = Math.min(mins[i], d);
+						maxs[i] = Math.max(maxs[i], d);
+					}
+					sums[i] += d;
+					weightedSums[i] += d * weight;
+					weights[i] += weight;
+					counts[i]++;
+				}
+			}
+		}
+
+		private int newIndex(String valueName){
+			if (size == sums.length){
+				int capacity = size * 2;
+				functions = Arrays.copyOf(functions, capacity);
+				sums = Arrays.copyOf(sums, capacity);
+				mins = Arrays.copyOf(mins, capacity);
+				maxs = Arrays.copyOf(maxs, capacity);
+				weightedSums = Arrays.copyOf(weightedSums, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+				fractional = Arrays.copyOf(fractional, capacity);
+			}
+			functions[size] = rules.getFunction(valueName);
+			return size++;
+		}
+
+		/**
+		 * Returns the snapshot of the current period and resets the values, the layout is kept for the next period.
+		 */
+		Snapshot close(){
+			SnapshotMetaData metaData = new SnapshotMetaData();
+			metaData.setHostName(template.getHostName());
+			metaData.setComponentName(template.getComponentName());
+			metaData.setProducerId(template.getProducerId());
+			metaData.setCategory(template.getCategory());
+			metaData.setSubsystem(template.getSubsystem());
+			metaData.setStatClassName(template.getStatClassName());
+			metaData.setIntervalName(intervalNames[interval]);
+			metaData.setCreationTimestamp(periodStart + intervalLengths[interval]);
+			Snapshot snapshot = new Snapshot();
+			snapshot.setMetaData(metaData);
+			for (Map.Entry<String, Map<String, Integer>> stat : layout.entrySet()){
+				Map<String, String> values = new HashMap<String, String>(stat.getValue().size() * 2);
+				for (Map.Entry<String, Integer> value : stat.getValue().entrySet()){
+					values.put(value.getKey(), result(value.getValue()));
+				}
+				snapshot.addSnapshotData(stat.getKey(), values);
+			}
+			count = 0;
+			lastClosed = periodStart;
+			Arrays.fill(sums, 0, size, 0);
+			Arrays.fill(weightedSums, 0, size, 0);
+			Arrays.fill(weights, 0, size, 0);
+			Arrays.fill(counts, 0, size, 0);
+			Arrays.fill(fractional, 0, size, false);
+			return snapshot;
+		}
+
+		private String result(int i){
+			if (counts[i] == 0)
+				return "NaN";
+			double value;
+			switch (functions[i]){
+				case SUM:
+					value = sums[i];
+					break;
+				case MAX:
+					value = maxs[i];
+					break;
+				case MIN:
+					value = mins[i];
+					break;
+				case MEAN:
+					return String.valueOf(weights[i] > 0 ? weightedSums[i] / weights[i] : sums[i] / counts[i]);
+				default:
+					throw new AssertionError("Unknown merge function " + functions[i]);
+			}
+			return fractional[i] ? String.valueOf(value) : String.valueOf((long) value);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.moskito.central.cardinality;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.CardinalityConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of distinct producer ids per host and component. The first producers up to the limit are
+ * admitted, the snapshots of further producers are dropped or rerouted to a single overflow producer. Rerouting
+ * only renames the producer, the snapshots of the overflow producers overwrite each other in the storages and their
+ * stats are mixed, see the action of the {@link CardinalityConfig}. A producer without snapshots for the configured
+ * time frees its place, a host and component without any snapshots for that time is not tracked anymore. The
+ * producer ids seen, including those over the limit, are counted by a {@link HyperLogLog},
+ * so the status shows how many producers a component actually creates.
+ */
+public class CardinalityGuard {
+
+	/**
+	 * Min time in milliseconds between two removals of expired producers of a component, and of idle components.
+	 */
+	private static final long PRUNE_INTERVAL = 60000;
+
+	private static Logger log = LoggerFactory.getLogger(CardinalityGuard.class);
+
+	private static final Comparator<CardinalityStatus> BY_ESTIMATE = new Comparator<CardinalityStatus>() {
+		@Override
+		public int compare(CardinalityStatus o1, CardinalityStatus o2) {
+			return Long.compare(o2.getEstimatedProducers(), o1.getEstimatedProducers());
+		}
+	};
+
+	private final int maxProducers;
+
+	private final boolean reroute;
+
+	private final String overflowProducerId;
+
+	private final long producerTtl;
+
+	private final int maxComponents;
+
+	private final int precision;
+
+	/**
+	 * State by host and component.
+	 */
+	private final ConcurrentMap<String, ComponentState> components = new ConcurrentHashMap<String, ComponentState>();
+
+	/**
+	 * Set once the max number of components has been reached and logged.
+	 */
+	private final AtomicBoolean limitReached = new AtomicBoolean();
+
+	/**
+	 * Time of the last removal of idle components.
+	 */
+	private final AtomicLong lastEviction = new AtomicLong();
+
+	public CardinalityGuard(CardinalityConfig config) {
+		maxProducers = Math.max(1, config.getMaxProducers());
+		reroute = "reroute".equalsIgnoreCase(config.getAction());
+		overflowProducerId = config.getOverflowProducerId();
+		producerTtl = config.getProducerTtl();
+		maxComponents = config.getMaxComponents();
+		precision = config.getPrecision();
+	}
+
+	/**
+	 * Checks the producer of a snapshot against the limit of its host and component.
+	 *
+	 * @param snapshot the snapshot.
+	 * @return the snapshot, with the overflow producer id if rerouted, or null if it is dropped.
+	 */
+	public Snapshot admit(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null || metaData.getProducerId() == null)
+			return snapshot;
+		long now = System.currentTimeMillis();
+		evictIdle(now);
+		ComponentState state = getState(metaData.getHostName(), metaData.getComponentName());
+		if (state == null)
+			return snapshot;
+		if (state.admit(metaData.getProducerId(), now))
+			return snapshot;
+		if (state.limitLogged.compareAndSet(false, true))
+			log.warn("More than " + maxProducers + " producers on " + metaData.getHostName() + "/" + metaData.getComponentName() +
+					", " + (reroute ? "rerouting snapshots of further producers to " + overflowProducerId : "dropping snapshots of further producers") +
+					", e.g. " + metaData.getProducerId());
+		if (!reroute)
+			return null;
+		metaData.setProducerId(overflowProducerId);
+		return snapshot;
+	}
+
+	private ComponentState getState(String hostName, String componentName) {
+		String key = hostName + '\u0000' + componentName;
+		ComponentState state = components.get(key);
+		if (state != null)
+			return state;
+		if (components.size() >= maxComponents) {
+			if (limitReached.compareAndSet(false, true))
+				log.warn("Max number of tracked components (" + maxComponents + ") reached, producers of further components are not limited");
+			return null;
+		}
+		state = new ComponentState(hostName, componentName);
+		ComponentState existing = components.putIfAbsent(key, state);
+		return existing == null ? state : existing;
+	}
+
+	/**
+	 * Removes the hosts and components whose producers have all expired, so hosts which are gone don't keep their
+	 * state.
+	 */
+	private void evictIdle(long now) {
+		if (producerTtl <= 0)
+			return;
+		long last = lastEviction.get();
+		if (now - last < Math.min(PRUNE_INTERVAL, producerTtl) || !lastEviction.compareAndSet(last, now))
+			return;
+		for (Iterator<ComponentState> it = components.values().iterator(); it.hasNext(); ) {
+			if (it.next().isIdle(now))
+				it.remove();
+		}
+		if (components.size() < maxComponents)
+			limitReached.set(false);
+	}
+
+	/**
+	 * Returns the status of all tracked hosts and components, the most producers seen first.
+	 * @return List
+	 */
+	public List<CardinalityStatus> getStatus() {
+		List<CardinalityStatus> ret = new ArrayList<CardinalityStatus>(components.size());
+		for (ComponentState state : components.values()) {
+			ret.add(state.getStatus());
+		}
+		Collections.sort(ret, BY_ESTIMATE);
+		return ret;
+	}
+
+	/**
+	 * Returns true if the guard was created with an equal configuration.
+	 * @param config the configuration to compare with.
+	 * @return boolean
+	 */
+	public boolean matches(CardinalityConfig config) {
+		return maxProducers == Math.max(1, config.getMaxProducers()) &&
+				reroute == "reroute".equalsIgnoreCase(config.getAction()) &&
+				(overflowProducerId == null ? config.getOverflowProducerId() == null : overflowProducerId.equals(config.getOverflowProducerId())) &&
+				producerTtl == config.getProducerTtl() &&
+				maxComponents == config.getMaxComponents() &&
+				precision == config.getPrecision();
+	}
+
+	@Override
+	public String toString() {
+		return "CardinalityGuard{maxProducers=" + maxProducers + ", action=" + (reroute ? "reroute to " + overflowProducerId : "drop") +
+				", producerTtl=" + producerTtl + ", maxComponents=" + maxComponents + "}";
+	}
+
+	/**
+	 * Admitted producers of a host and component.
+	 */
+	private class ComponentState {
+		private final String hostName;
+		private final String componentName;
+		/**
+		 * Time of the last snapshot by admitted producer.
+		 */
+		private final Map<String, Long> producers = new HashMap<String, Long>();
+		private final HyperLogLog seen = new HyperLogLog(precision);
+		private long dropped;
+		private long rerouted;
+		private long lastPrune;
+		/**
+		 * Time of the last snapshot of any producer.
+		 */
+		private long lastSnapshot;
+		private final AtomicBoolean limitLogged = new AtomicBoolean();
+
+		ComponentState(String hostName, String componentName) {
+			this.hostName = hostName;
+			this.componentName = componentName;
+		}
+
+		synchronized boolean admit(String producerId, long now) {
+			seen.add(producerId);
+			lastSnapshot = now;
+			if (producers.containsKey(producerId) || producers.size() < maxProducers || prune(now)) {
+				producers.put(producerId, now);
+				return true;
+			}
+			if (reroute)
+				rerouted++;
+			else
+				dropped++;
+			return false;
+		}
+
+		/**
+		 * Removes the expired producers.
+		 * @return true if there is room for another producer afterwards.
+		 */
+		private boolean prune(long now) {
+			if (producerTtl <= 0 || now - lastPrune < PRUNE_INTERVAL)
+				return false;
+			lastPrune = now;
+			for (Iterator<Long> it = producers.values().iterator(); it.hasNext(); ) {
+				if (now - it.next() >= producerTtl)
+					it.remove();
+			}
+			return producers.size() < maxProducers;
+		}
+
+		synchronized boolean isIdle(long now) {
+			return now - lastSnapshot >= producerTtl;
+		}
+
+		synchronized CardinalityStatus getStatus() {
+			return new CardinalityStatus(hostName, componentName, producers.size(), seen.estimate(), dropped, rerouted);
+		}
+	}
+}
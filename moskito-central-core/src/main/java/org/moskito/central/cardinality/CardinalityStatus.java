@@ -0,0 +1,64 @@
+package org.moskito.central.cardinality;
+
+/**
+ * Producer ids of a host and component as counted by the {@link CardinalityGuard}.
+ */
+public class CardinalityStatus {
+
+	private final String hostName;
+
+	private final String componentName;
+
+	/**
+	 * Number of producers currently counting against the limit.
+	 */
+	private final int producers;
+
+	/**
+	 * Estimated number of distinct producer ids seen, including those over the limit.
+	 */
+	private final long estimatedProducers;
+
+	private final long dropped;
+
+	private final long rerouted;
+
+	public CardinalityStatus(String hostName, String componentName, int producers, long estimatedProducers, long dropped, long rerouted) {
+		this.hostName = hostName;
+		this.componentName = componentName;
+		this.producers = producers;
+		this.estimatedProducers = estimatedProducers;
+		this.dropped = dropped;
+		this.rerouted = rerouted;
+	}
+
+	public String getHostName() {
+		return hostName;
+	}
+
+	public String getComponentName() {
+		return componentName;
+	}
+
+	public int getProducers() {
+		return producers;
+	}
+
+	public long getEstimatedProducers() {
+		return estimatedProducers;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getRerouted() {
+		return rerouted;
+	}
+
+	@Override
+	public String toString() {
+		return hostName + "/" + componentName + ": " + producers + " producers, ~" + estimatedProducers + " seen, " +
+				dropped + " dropped, " + rerouted + " rerouted";
+	}
+}
@@ -0,0 +1,111 @@
+package org.moskito.central.cardinality;
+
+/**
+ * HyperLogLog estimate of the number of distinct strings, in 2^precision bytes regardless of the number of strings.
+ * Not thread safe.
+ */
+public class HyperLogLog {
+
+	private static final int MIN_PRECISION = 4;
+
+	private static final int MAX_PRECISION = 16;
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * @param precision number of bits of the hash which select the register, 4 to 16.
+	 */
+	public HyperLogLog(int precision) {
+		this.precision = Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+		registers = new byte[1 << this.precision];
+	}
+
+	/**
+	 * Adds a string.
+	 * @param value the string.
+	 */
+	public void add(String value) {
+		addHash(hash(value));
+	}
+
+	/**
+	 * Adds a 64 bit hash.
+	 * @param hash well mixed hash of a value.
+	 */
+	public void addHash(long hash) {
+		int index = (int) (hash >>> (64 - precision));
+		//rank of the first set bit of the remaining bits, the marker bit caps it.
+		int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+		if (rank > registers[index])
+			registers[index] = (byte) rank;
+	}
+
+	/**
+	 * Adds the strings of another instance with the same precision.
+	 * @param other the other instance.
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision)
+			throw new IllegalArgumentException("Can't merge precision " + precision + " and " + other.precision);
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i])
+				registers[i] = other.registers[i];
+		}
+	}
+
+	/**
+	 * Returns the estimated number of distinct strings.
+	 * @return long
+	 */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0)
+				zeros++;
+		}
+		double estimate = alpha(m) * m * m / sum;
+		//linear counting is more accurate for small numbers.
+		if (estimate <= 2.5 * m && zeros > 0)
+			estimate = m * Math.log((double) m / zeros);
+		return Math.round(estimate);
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the chars, mixed by the finalizer of MurmurHash3.
+	 */
+	static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
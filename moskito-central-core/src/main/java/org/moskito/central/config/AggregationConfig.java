@@ -0,0 +1,105 @@
+package org.moskito.central.config;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+import java.util.Arrays;
+
+/**
+ * Configuration of the cluster aggregation, which merges the snapshots of the same producer from all hosts into a
+ * synthetic snapshot.
+ */
+@ConfigureMe
+public class AggregationConfig {
+	/**
+	 * If true the snapshots of all hosts are merged and the merged snapshots are passed to the storages too.
+	 */
+	@Configure
+	private boolean enabled;
+
+	/**
+	 * Time in milliseconds a bucket collects the snapshots of an interval after its first snapshot arrived. A bucket
+	 * is closed earlier if a host sends its next snapshot.
+	 */
+	@Configure
+	private long window = 10000;
+
+	/**
+	 * Host name of the merged snapshots.
+	 */
+	@Configure
+	private String hostName = "*";
+
+	/**
+	 * Name of the value the mean is weighted by, e.g. the number of requests of the host. Hosts without it count
+	 * once.
+	 */
+	@Configure
+	private String weightValue = "TR";
+
+	/**
+	 * Function for values without rule. By default counters like TR, ERR and TT are summed up.
+	 */
+	@Configure
+	private String defaultFunction = "sum";
+
+	/**
+	 * Rules per value name, they replace the built-in rules (max for Max and MCR, min for Min and mean for Avg) for
+	 * the same name.
+	 */
+	@Configure
+	private AggregationRuleEntry[] rules;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+	public void setWindow(long window) {
+		this.window = window;
+	}
+
+	public String getHostName() {
+		return hostName;
+	}
+
+	public void setHostName(String hostName) {
+		this.hostName = hostName;
+	}
+
+	public String getWeightValue() {
+		return weightValue;
+	}
+
+	public void setWeightValue(String weightValue) {
+		this.weightValue = weightValue;
+	}
+
+	public String getDefaultFunction() {
+		return defaultFunction;
+	}
+
+	public void setDefaultFunction(String defaultFunction) {
+		this.defaultFunction = defaultFunction;
+	}
+
+	public AggregationRuleEntry[] getRules() {
+		return rules;
+	}
+
+	public void setRules(AggregationRuleEntry[] rules) {
+		this.rules = rules;
+	}
+
+	@Override public String toString(){
+		return "{ enabled: "+enabled+", window: "+window+", hostName: "+hostName+", weightValue: "+weightValue+
+				", defaultFunction: "+defaultFunction+", rules: "+Arrays.toString(rules)+" }";
+	}
+}
@@ -0,0 +1,51 @@
+package org.moskito.central.config;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Merge rule of the cluster aggregation for a value name.
+ */
+@ConfigureMe
+public class AggregationRuleEntry {
+	/**
+	 * Name of the value, e.g. "Avg". A name ending with * matches all value names starting with the rest.
+	 */
+	@Configure
+	private String value;
+
+	/**
+	 * How the values of the hosts are merged: "sum", "max", "min" or "mean". The mean is weighted by the weight
+	 * value of the aggregation.
+	 */
+	@Configure
+	private String function;
+
+	public AggregationRuleEntry() {
+	}
+
+	public AggregationRuleEntry(String value, String function) {
+		this.value = value;
+		this.function = function;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	public String getFunction() {
+		return function;
+	}
+
+	public void setFunction(String function) {
+		this.function = function;
+	}
+
+	@Override public String toString(){
+		return value+": "+function;
+	}
+}
@@ -0,0 +1,121 @@
+package org.moskito.central.config;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of the cardinality guard, which limits the number of distinct producer ids per host and component,
+ * so a single application creating producers dynamically (e.g. one per url) can't flood the storages with series.
+ */
+@ConfigureMe
+public class CardinalityConfig {
+	/**
+	 * If true the number of producers is limited.
+	 */
+	@Configure
+	private boolean enabled;
+
+	/**
+	 * Max number of distinct producer ids per host and component.
+	 */
+	@Configure
+	private int maxProducers = 1000;
+
+	/**
+	 * What happens to the snapshots of further producers: "drop" (default) or "reroute" to the producer id
+	 * {@link #overflowProducerId}, so they end up in a single series. Reroute is lossy as well: the stats of the
+	 * rerouted producers are not merged, each snapshot overwrites the previous one of the overflow producer in the
+	 * same interval, and stats with the same name but of different producers end up in the same series. It only
+	 * shows that there is overflow traffic, not how much.
+	 */
+	@Configure
+	private String action = "drop";
+
+	/**
+	 * Producer id of rerouted snapshots.
+	 */
+	@Configure
+	private String overflowProducerId = "_overflow";
+
+	/**
+	 * Time in milliseconds after which a producer without snapshots no longer counts against the limit. A host and
+	 * component without snapshots for this time is not tracked anymore.
+	 */
+	@Configure
+	private long producerTtl = 3600000;
+
+	/**
+	 * Max number of hosts and components which are tracked. Snapshots of further components are not limited.
+	 */
+	@Configure
+	private int maxComponents = 10000;
+
+	/**
+	 * Precision of the estimates of the distinct producer ids, including those over the limit. The estimate of a
+	 * component takes 2^precision bytes and is off by about 1.04 / sqrt(2^precision).
+	 */
+	@Configure
+	private int precision = 10;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxProducers() {
+		return maxProducers;
+	}
+
+	public void setMaxProducers(int maxProducers) {
+		this.maxProducers = maxProducers;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public void setAction(String action) {
+		this.action = action;
+	}
+
+	public String getOverflowProducerId() {
+		return overflowProducerId;
+	}
+
+	public void setOverflowProducerId(String overflowProducerId) {
+		this.overflowProducerId = overflowProducerId;
+	}
+
+	public long getProducerTtl() {
+		return producerTtl;
+	}
+
+	public void setProducerTtl(long producerTtl) {
+		this.producerTtl = producerTtl;
+	}
+
+	public int getMaxComponents() {
+		return maxComponents;
+	}
+
+	public void setMaxComponents(int maxComponents) {
+		this.maxComponents = maxComponents;
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+
+	@Override public String toString(){
+		return "{ enabled: "+enabled+", maxProducers: "+maxProducers+", action: "+action+
+				", overflowProducerId: "+overflowProducerId+", producerTtl: "+producerTtl+
+				", maxComponents: "+maxComponents+", precision: "+precision+" }";
+	}
+}
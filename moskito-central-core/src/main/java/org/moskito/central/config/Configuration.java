@@ -1,9 +1,12 @@
 package org.moskito.central.config;
 
+import org.configureme.annotations.AfterReConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Configuration object for moskito central.
@@ -19,6 +22,71 @@ public class Configuration {
 	@Configure
 	private StorageConfigEntry[] storages;
 
+	/**
+	 * Max time in milliseconds to wait for in-flight snapshots and storage flushes on shutdown or when a storage is
+	 * removed.
+	 */
+	@Configure
+	private long drainTimeout = 10000;
+
+	/**
+	 * How snapshots are delivered to the storages: "caller" in the thread that hands them to the central, "platform"
+	 * by a pool of dispatchThreads threads or "virtual" by a virtual thread per delivery (jdk 21+, falls back to
+	 * platform threads).
+	 */
+	@Configure
+	private String dispatchMode = DispatchMode.CALLER.name().toLowerCase();
+
+	/**
+	 * Number of threads in platform dispatch mode.
+	 */
+	@Configure
+	private int dispatchThreads = 64;
+
+	/**
+	 * Max number of deliveries queued or in progress in platform and virtual dispatch mode. Callers wait if it is
+	 * reached.
+	 */
+	@Configure
+	private int maxPendingDeliveries = 10000;
+
+	/**
+	 * If true incoming snapshots are converted into a compact read-only form before they are passed to the storages,
+	 * for storages and dispatch queues which buffer many snapshots.
+	 */
+	@Configure
+	private boolean compactSnapshots;
+
+	/**
+	 * Max number of distinct metadata strings (hosts, components, producers, ...) whose instances are shared by the
+	 * incoming snapshots, 0 to keep the strings of each snapshot.
+	 */
+	@Configure
+	private int metaDataPoolSize = 10000;
+
+	/**
+	 * Merging of the snapshots of all hosts into cluster-wide snapshots.
+	 */
+	@Configure
+	private AggregationConfig aggregation = new AggregationConfig();
+
+	/**
+	 * Rollups of the snapshots into longer intervals. The values are merged by the rules of the aggregation.
+	 */
+	@Configure
+	private RollupConfig rollup = new RollupConfig();
+
+	/**
+	 * Limits of the distinct producer ids per host and component.
+	 */
+	@Configure
+	private CardinalityConfig cardinality = new CardinalityConfig();
+
+	/**
+	 * Listeners which are notified if the configuration is changed at runtime.
+	 */
+	private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<ConfigurationListener>();
+
 	public StorageConfigEntry[] getStorages() {
 		return storages;
 	}
@@ -27,8 +95,110 @@ public class Configuration {
 		this.storages = storages;
 	}
 
+	public long getDrainTimeout() {
+		return drainTimeout;
+	}
+
+	public void setDrainTimeout(long drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
+	public String getDispatchMode() {
+		return dispatchMode;
+	}
+
+	public void setDispatchMode(String dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
+	/**
+	 * Returns the configured dispatch mode, caller mode if the value is unknown.
+	 * @return DispatchMode
+	 */
+	public DispatchMode getDispatchModeValue() {
+		return DispatchMode.fromName(dispatchMode);
+	}
+
+	public int getDispatchThreads() {
+		return dispatchThreads;
+	}
+
+	public void setDispatchThreads(int dispatchThreads) {
+		this.dispatchThreads = dispatchThreads;
+	}
+
+	public int getMaxPendingDeliveries() {
+		return maxPendingDeliveries;
+	}
+
+	public void setMaxPendingDeliveries(int maxPendingDeliveries) {
+		this.maxPendingDeliveries = maxPendingDeliveries;
+	}
+
+	public boolean isCompactSnapshots() {
+		return compactSnapshots;
+	}
+
+	public void setCompactSnapshots(boolean compactSnapshots) {
+		this.compactSnapshots = compactSnapshots;
+	}
+
+	public int getMetaDataPoolSize() {
+		return metaDataPoolSize;
+	}
+
+	public void setMetaDataPoolSize(int metaDataPoolSize) {
+		this.metaDataPoolSize = metaDataPoolSize;
+	}
+
+	public AggregationConfig getAggregation() {
+		return aggregation;
+	}
+
+	public void setAggregation(AggregationConfig aggregation) {
+		this.aggregation = aggregation;
+	}
+
+	public RollupConfig getRollup() {
+		return rollup;
+	}
+
+	public void setRollup(RollupConfig rollup) {
+		this.rollup = rollup;
+	}
+
+	public CardinalityConfig getCardinality() {
+		return cardinality;
+	}
+
+	public void setCardinality(CardinalityConfig cardinality) {
+		this.cardinality = cardinality;
+	}
+
+	public void addListener(ConfigurationListener listener){
+		listeners.add(listener);
+	}
+
+	public void removeListener(ConfigurationListener listener){
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Called by configureme after the watched configuration file has been changed.
+	 */
+	@AfterReConfiguration
+	public void notifyListeners(){
+		for (ConfigurationListener listener : listeners){
+			listener.configurationChanged(this);
+		}
+	}
+
 	@Override public String toString(){
-		return "{ storages: "+ Arrays.toString(storages)+" }";
+		return "{ storages: "+ Arrays.toString(storages)+", drainTimeout: "+drainTimeout+", dispatchMode: "+dispatchMode+
+				", dispatchThreads: "+dispatchThreads+", maxPendingDeliveries: "+maxPendingDeliveries+
+				", compactSnapshots: "+compactSnapshots+", metaDataPoolSize: "+metaDataPoolSize+
+				", aggregation: "+aggregation+", rollup: "+rollup+
+				", cardinality: "+cardinality+" }";
 	}
 
 }
@@ -0,0 +1,13 @@
+package org.moskito.central.config;
+
+/**
+ * Listener which is notified when the central configuration has been changed at runtime.
+ */
+public interface ConfigurationListener {
+
+	/**
+	 * Called after the configuration has been reconfigured.
+	 * @param configuration the changed configuration.
+	 */
+	void configurationChanged(Configuration configuration);
+}
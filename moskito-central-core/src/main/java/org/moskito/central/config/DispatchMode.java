@@ -0,0 +1,34 @@
+package org.moskito.central.config;
+
+/**
+ * How the central delivers snapshots to its storages.
+ */
+public enum DispatchMode {
+	/**
+	 * In the thread which hands the snapshot to the central, e.g. the request thread of an endpoint.
+	 */
+	CALLER,
+	/**
+	 * By a fixed pool of platform threads.
+	 */
+	PLATFORM,
+	/**
+	 * By a virtual thread per delivery, platform threads on jvms without virtual threads.
+	 */
+	VIRTUAL;
+
+	/**
+	 * Returns the mode with the given name, ignoring case. Unknown names return CALLER.
+	 * @param name name of the mode.
+	 * @return DispatchMode
+	 */
+	public static DispatchMode fromName(String name){
+		if (name != null){
+			for (DispatchMode mode : values()){
+				if (mode.name().equalsIgnoreCase(name.trim()))
+					return mode;
+			}
+		}
+		return CALLER;
+	}
+}
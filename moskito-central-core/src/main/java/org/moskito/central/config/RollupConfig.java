@@ -0,0 +1,91 @@
+package org.moskito.central.config;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+import java.util.Arrays;
+
+/**
+ * Configuration of the rollups, which aggregate the snapshots of a short interval into snapshots of longer
+ * intervals for long-term retention.
+ */
+@ConfigureMe
+public class RollupConfig {
+	/**
+	 * If true the rollup snapshots are passed to the storages too.
+	 */
+	@Configure
+	private boolean enabled;
+
+	/**
+	 * Interval whose snapshots are rolled up. Only one interval is used, the values of the others would be counted
+	 * twice.
+	 */
+	@Configure
+	private String sourceInterval = "1m";
+
+	/**
+	 * Intervals of the rollups, a number with the unit s, m, h or d. The periods are aligned to UTC.
+	 */
+	@Configure
+	private String[] intervals = {"1h", "1d"};
+
+	/**
+	 * Time in milliseconds after the end of a period until a rollup is closed if no snapshot of the next period
+	 * arrived, for late snapshots.
+	 */
+	@Configure
+	private long delay = 60000;
+
+	/**
+	 * Max number of rollups (host, component, producer and interval) in progress. Snapshots of further producers
+	 * are not rolled up.
+	 */
+	@Configure
+	private int maxSeries = 100000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getSourceInterval() {
+		return sourceInterval;
+	}
+
+	public void setSourceInterval(String sourceInterval) {
+		this.sourceInterval = sourceInterval;
+	}
+
+	public String[] getIntervals() {
+		return intervals;
+	}
+
+	public void setIntervals(String[] intervals) {
+		this.intervals = intervals;
+	}
+
+	public long getDelay() {
+		return delay;
+	}
+
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	public int getMaxSeries() {
+		return maxSeries;
+	}
+
+	public void setMaxSeries(int maxSeries) {
+		this.maxSeries = maxSeries;
+	}
+
+	@Override public String toString(){
+		return "{ enabled: "+enabled+", sourceInterval: "+sourceInterval+", intervals: "+Arrays.toString(intervals)+
+				", delay: "+delay+", maxSeries: "+maxSeries+" }";
+	}
+}
@@ -29,6 +29,13 @@ public class StorageConfigEntry {
 	@Configure
 	private String configName;
 
+	/**
+	 * Max number of snapshots the storage processes at the same time, 0 for no limit. Protects storages with limited
+	 * resources, like a connection pool, from the concurrency of the endpoints and the dispatcher.
+	 */
+	@Configure
+	private int maxConcurrency;
+
 	public String getName() {
 		return name;
 	}
@@ -53,8 +60,39 @@ public class StorageConfigEntry {
 		this.configName = configName;
 	}
 
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * Equality only covers what identifies a storage instance, changed limits are applied to the running storage.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		StorageConfigEntry that = (StorageConfigEntry) o;
+
+		if (name != null ? !name.equals(that.name) : that.name != null) return false;
+		if (clazz != null ? !clazz.equals(that.clazz) : that.clazz != null) return false;
+		return configName != null ? configName.equals(that.configName) : that.configName == null;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = name != null ? name.hashCode() : 0;
+		result = 31 * result + (clazz != null ? clazz.hashCode() : 0);
+		result = 31 * result + (configName != null ? configName.hashCode() : 0);
+		return result;
+	}
+
 	@Override public String toString(){
-		return "Name: "+getName()+", Class: "+getClazz()+", Config: "+getConfigName();
+		return "Name: "+getName()+", Class: "+getClazz()+", Config: "+getConfigName()+(maxConcurrency > 0 ? ", MaxConcurrency: "+maxConcurrency : "");
 	}
 }
 
@@ -0,0 +1,175 @@
+package org.moskito.central.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Compact binary ingest protocol between connectors and the central. The connection starts with a HELLO frame of
+ * the connector, followed by SNAPSHOTS frames, each of them answered by the central with an ACK or an ERROR frame.
+ * <p/>
+ * Every frame is prefixed by its length as 4 byte big-endian int and starts with its type byte. Numbers are written
+ * as unsigned or zigzag varints. Strings are replaced by references into a dictionary that both sides build up per
+ * connection: the first occurrence of a string is sent inline and gets the next index, later occurrences only send
+ * the index. Stat values that are numbers are sent as numbers instead of strings.
+ */
+public final class BinaryProtocol {
+
+	/**
+	 * "MCBP", first bytes of the hello frame.
+	 */
+	public static final int MAGIC = 0x4D434250;
+
+	public static final byte VERSION = 1;
+
+	/**
+	 * Frame types.
+	 */
+	public static final byte FRAME_HELLO = 1;
+	public static final byte FRAME_SNAPSHOTS = 2;
+	public static final byte FRAME_ACK = 3;
+	public static final byte FRAME_ERROR = 4;
+
+	/**
+	 * Max number of strings in the dictionary of a connection. Strings beyond are always sent inline.
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+	/**
+	 * String references: null, inline string, dictionary index + REF_INDEX.
+	 */
+	static final int REF_NULL = 0;
+	static final int REF_INLINE = 1;
+	static final int REF_INDEX = 2;
+
+	/**
+	 * Value types.
+	 */
+	static final byte VALUE_NULL = 0;
+	static final byte VALUE_LONG = 1;
+	static final byte VALUE_DECIMAL = 2;
+	static final byte VALUE_DOUBLE = 3;
+	static final byte VALUE_STRING = 4;
+
+	/**
+	 * Snapshot flags.
+	 */
+	static final int FLAG_KEYFRAME = 1;
+	static final int FLAG_DELTA = 2;
+	static final int FLAG_ARRIVAL = 4;
+	static final int FLAG_NO_METADATA = 8;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Max number of digits of a decimal value, so the unscaled value fits into a long.
+	 */
+	static final int MAX_DECIMAL_DIGITS = 18;
+
+	private BinaryProtocol() {
+	}
+
+	/**
+	 * Returns the hello frame of a connector.
+	 * @return ByteBuffer ready for writing.
+	 */
+	public static ByteBuffer hello() {
+		ByteBuffer frame = ByteBuffer.allocate(4 + 1 + 4 + 1);
+		frame.putInt(6).put(FRAME_HELLO).putInt(MAGIC).put(VERSION);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Checks the payload of a hello frame, after the type byte.
+	 * @param payload payload.
+	 * @throws ProtocolException if the peer doesn't speak this protocol version.
+	 */
+	public static void checkHello(ByteBuffer payload) throws ProtocolException {
+		if (payload.remaining() < 5 || payload.getInt() != MAGIC)
+			throw new ProtocolException("Not a moskito central binary connection");
+		byte version = payload.get();
+		if (version != VERSION)
+			throw new ProtocolException("Unsupported protocol version " + version + ", expected " + VERSION);
+	}
+
+	/**
+	 * Returns an ack frame.
+	 * @param count number of accepted snapshots.
+	 * @return ByteBuffer ready for writing.
+	 */
+	public static ByteBuffer ack(int count) {
+		ByteBuffer frame = ByteBuffer.allocate(4 + 1 + 5);
+		frame.position(4);
+		frame.put(FRAME_ACK);
+		putVarInt(frame, count);
+		frame.putInt(0, frame.position() - 4);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Returns an error frame.
+	 * @param message error message.
+	 * @return ByteBuffer ready for writing.
+	 */
+	public static ByteBuffer error(String message) {
+		byte[] bytes = String.valueOf(message).getBytes(UTF8);
+		ByteBuffer frame = ByteBuffer.allocate(4 + 1 + bytes.length);
+		frame.putInt(1 + bytes.length).put(FRAME_ERROR).put(bytes);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Returns the message of an error frame payload, after the type byte.
+	 * @param payload payload.
+	 * @return String
+	 */
+	public static String readError(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	static void putVarInt(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 * @param buffer buffer.
+	 * @return int
+	 * @throws ProtocolException on malformed or truncated input.
+	 */
+	public static int getVarInt(ByteBuffer buffer) throws ProtocolException {
+		long value = getVarLong(buffer);
+		if (value < 0 || value > Integer.MAX_VALUE)
+			throw new ProtocolException("Varint out of range: " + value);
+		return (int) value;
+	}
+
+	static long getVarLong(ByteBuffer buffer) throws ProtocolException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (!buffer.hasRemaining())
+				throw new ProtocolException("Truncated frame");
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new ProtocolException("Malformed varint");
+	}
+
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,158 @@
+package org.moskito.central.protocol;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.moskito.central.protocol.BinaryProtocol.*;
+
+/**
+ * Decodes snapshots frames of the binary protocol. A decoder holds the string dictionary of one connection. Not
+ * thread safe.
+ */
+public class BinarySnapshotDecoder {
+
+	private final List<String> dictionary = new ArrayList<>();
+
+	private long previousTimestamp;
+
+	/**
+	 * Decodes the payload of a snapshots frame, after the type byte.
+	 * @param payload payload.
+	 * @return decoded snapshots.
+	 * @throws ProtocolException on malformed input.
+	 */
+	public List<Snapshot> decode(ByteBuffer payload) throws ProtocolException {
+		try {
+			previousTimestamp = 0;
+			int count = getVarInt(payload);
+			//each snapshot takes at least two bytes, this keeps garbage from allocating huge lists.
+			if (count > payload.remaining())
+				throw new ProtocolException("Invalid snapshot count " + count);
+			List<Snapshot> snapshots = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				snapshots.add(readSnapshot(payload));
+			}
+			if (payload.hasRemaining())
+				throw new ProtocolException(payload.remaining() + " unexpected bytes after snapshots");
+			return snapshots;
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Truncated frame");
+		}
+	}
+
+	private Snapshot readSnapshot(ByteBuffer in) throws ProtocolException {
+		Snapshot snapshot = new Snapshot();
+		int flags = in.get();
+		if ((flags & FLAG_NO_METADATA) == 0) {
+			SnapshotMetaData metaData = new SnapshotMetaData();
+			metaData.setProducerId(readString(in))
+					.setComponentName(readString(in))
+					.setHostName(readString(in))
+					.setIntervalName(readString(in))
+					.setCategory(readString(in))
+					.setSubsystem(readString(in))
+					.setStatClassName(readString(in));
+			long timestamp = previousTimestamp + unzigzag(getVarLong(in));
+			previousTimestamp = timestamp;
+			metaData.setCreationTimestamp(timestamp);
+			metaData.setArrivalTimestamp((flags & FLAG_ARRIVAL) != 0 ? timestamp + unzigzag(getVarLong(in)) : 0);
+			if ((flags & FLAG_DELTA) != 0)
+				metaData.setDeltaBase(timestamp - unzigzag(getVarLong(in)));
+			metaData.setKeyframe((flags & FLAG_KEYFRAME) != 0);
+			snapshot.setMetaData(metaData);
+		}
+
+		int statCount = getVarInt(in);
+		Map<String, Map<String, String>> stats = new HashMap<>(capacity(statCount));
+		for (int i = 0; i < statCount; i++) {
+			String name = readString(in);
+			int valueCount = getVarInt(in);
+			if (valueCount == 0) {
+				stats.put(name, null);
+				continue;
+			}
+			valueCount--;
+			Map<String, String> values = new HashMap<>(capacity(valueCount));
+			for (int v = 0; v < valueCount; v++) {
+				String key = readString(in);
+				values.put(key, readValue(in));
+			}
+			stats.put(name, values);
+		}
+		snapshot.setStats(stats);
+		return snapshot;
+	}
+
+	private String readValue(ByteBuffer in) throws ProtocolException {
+		byte type = in.get();
+		switch (type) {
+			case VALUE_NULL:
+				return null;
+			case VALUE_LONG:
+				return Long.toString(unzigzag(getVarLong(in)));
+			case VALUE_DECIMAL:
+				return readDecimal(in);
+			case VALUE_DOUBLE:
+				return Double.toString(Double.longBitsToDouble(in.getLong()));
+			case VALUE_STRING:
+				return readString(in);
+			default:
+				throw new ProtocolException("Unknown value type " + type);
+		}
+	}
+
+	private static String readDecimal(ByteBuffer in) throws ProtocolException {
+		long unscaled = unzigzag(getVarLong(in));
+		int scale = in.get();
+		if (scale < 1 || scale > MAX_DECIMAL_DIGITS || unscaled == Long.MIN_VALUE)
+			throw new ProtocolException("Invalid decimal " + unscaled + " with scale " + scale);
+		String digits = Long.toString(Math.abs(unscaled));
+		StringBuilder ret = new StringBuilder(digits.length() + scale + 3);
+		if (unscaled < 0)
+			ret.append('-');
+		for (int i = digits.length(); i <= scale; i++) {
+			ret.append('0');
+		}
+		ret.append(digits);
+		ret.insert(ret.length() - scale, '.');
+		return ret.toString();
+	}
+
+	private String readString(ByteBuffer in) throws ProtocolException {
+		int ref = getVarInt(in);
+		if (ref == REF_NULL)
+			return null;
+		if (ref >= REF_INDEX) {
+			int index = ref - REF_INDEX;
+			if (index >= dictionary.size())
+				throw new ProtocolException("Unknown string reference " + index);
+			return dictionary.get(index);
+		}
+		int length = getVarInt(in);
+		if (length > in.remaining())
+			throw new ProtocolException("Truncated frame");
+		String s;
+		if (in.hasArray()) {
+			s = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+			in.position(in.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			in.get(bytes);
+			s = new String(bytes, UTF8);
+		}
+		if (dictionary.size() < MAX_DICTIONARY_SIZE)
+			dictionary.add(s);
+		return s;
+	}
+
+	private static int capacity(int size) {
+		return Math.min(size, 1 << 16) * 4 / 3 + 1;
+	}
+}
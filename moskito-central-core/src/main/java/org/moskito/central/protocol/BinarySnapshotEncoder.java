@@ -0,0 +1,236 @@
+package org.moskito.central.protocol;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.moskito.central.protocol.BinaryProtocol.*;
+
+/**
+ * Encodes snapshots into frames of the binary protocol. An encoder holds the string dictionary of one connection and
+ * must be replaced when the connection is reopened. Not thread safe.
+ */
+public class BinarySnapshotEncoder {
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+
+	/**
+	 * Frame buffer, reused between frames.
+	 */
+	private byte[] buffer = new byte[8192];
+
+	private int position;
+
+	/**
+	 * Creation timestamp of the previous snapshot in the frame, timestamps are written as difference to it.
+	 */
+	private long previousTimestamp;
+
+	/**
+	 * Encodes a snapshots frame. The returned buffer is only valid until the next call.
+	 * @param snapshots snapshots to encode.
+	 * @return ByteBuffer with the whole frame including its length prefix.
+	 */
+	public ByteBuffer encode(Collection<Snapshot> snapshots) {
+		position = 4;
+		previousTimestamp = 0;
+		writeByte(FRAME_SNAPSHOTS);
+		writeVarLong(snapshots.size());
+		for (Snapshot snapshot : snapshots) {
+			writeSnapshot(snapshot);
+		}
+		int length = position - 4;
+		buffer[0] = (byte) (length >>> 24);
+		buffer[1] = (byte) (length >>> 16);
+		buffer[2] = (byte) (length >>> 8);
+		buffer[3] = (byte) length;
+		return ByteBuffer.wrap(buffer, 0, position);
+	}
+
+	/**
+	 * Returns the number of strings in the dictionary.
+	 * @return int
+	 */
+	public int getDictionarySize() {
+		return dictionary.size();
+	}
+
+	private void writeSnapshot(Snapshot snapshot) {
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		if (metaData == null) {
+			writeByte(FLAG_NO_METADATA);
+		} else {
+			int flags = 0;
+			if (metaData.isKeyframe())
+				flags |= FLAG_KEYFRAME;
+			if (metaData.isDelta())
+				flags |= FLAG_DELTA;
+			if (metaData.getArrivalTimestamp() != 0)
+				flags |= FLAG_ARRIVAL;
+			writeByte(flags);
+			writeString(metaData.getProducerId());
+			writeString(metaData.getComponentName());
+			writeString(metaData.getHostName());
+			writeString(metaData.getIntervalName());
+			writeString(metaData.getCategory());
+			writeString(metaData.getSubsystem());
+			writeString(metaData.getStatClassName());
+			long timestamp = metaData.getCreationTimestamp();
+			writeVarLong(zigzag(timestamp - previousTimestamp));
+			previousTimestamp = timestamp;
+			if ((flags & FLAG_ARRIVAL) != 0)
+				writeVarLong(zigzag(metaData.getArrivalTimestamp() - timestamp));
+			if ((flags & FLAG_DELTA) != 0)
+				writeVarLong(zigzag(timestamp - metaData.getDeltaBase()));
+		}
+
+		Map<String, Map<String, String>> stats = snapshot.getStats();
+		writeVarLong(stats.size());
+		for (Map.Entry<String, Map<String, String>> stat : stats.entrySet()) {
+			writeString(stat.getKey());
+			Map<String, String> values = stat.getValue();
+			if (values == null) {
+				writeVarLong(0);
+				continue;
+			}
+			writeVarLong(values.size() + 1);
+			for (Map.Entry<String, String> value : values.entrySet()) {
+				writeString(value.getKey());
+				writeValue(value.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes a stat value as number if it can be restored to exactly the same string, otherwise as string.
+	 */
+	private void writeValue(String value) {
+		if (value == null) {
+			writeByte(VALUE_NULL);
+			return;
+		}
+		if (isCanonicalLong(value)) {
+			writeByte(VALUE_LONG);
+			writeVarLong(zigzag(Long.parseLong(value)));
+			return;
+		}
+		if (writeDecimal(value))
+			return;
+		if (value.indexOf('E') > 0 && (value.charAt(0) == '-' || Character.isDigit(value.charAt(0)))) {
+			try {
+				double d = Double.parseDouble(value);
+				if (Double.toString(d).equals(value)) {
+					writeByte(VALUE_DOUBLE);
+					writeLong(Double.doubleToRawLongBits(d));
+					return;
+				}
+			} catch (NumberFormatException ignored) {
+			}
+		}
+		writeByte(VALUE_STRING);
+		writeString(value);
+	}
+
+	/**
+	 * Writes a decimal like "12.50" as unscaled varint and scale, if it is in the form the decoder restores: an
+	 * integer part without leading zeros, at least one fraction digit and at most 18 digits.
+	 */
+	private boolean writeDecimal(String value) {
+		int length = value.length();
+		int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+		int dot = value.indexOf('.', start);
+		int scale = length - dot - 1;
+		if (dot <= start || scale < 1 || length - start - 1 > MAX_DECIMAL_DIGITS)
+			return false;
+		if (value.charAt(start) == '0' && dot != start + 1)
+			return false;
+		long unscaled = 0;
+		for (int i = start; i < length; i++) {
+			if (i == dot)
+				continue;
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+			unscaled = unscaled * 10 + (c - '0');
+		}
+		//the sign of a negative zero would be lost.
+		if (start == 1 && unscaled == 0)
+			return false;
+		writeByte(VALUE_DECIMAL);
+		writeVarLong(zigzag(start == 1 ? -unscaled : unscaled));
+		writeByte(scale);
+		return true;
+	}
+
+	/**
+	 * Returns true if the string is a long in the form Long.toString produces, short enough to not overflow.
+	 */
+	static boolean isCanonicalLong(String s) {
+		int length = s.length();
+		int start = length > 0 && s.charAt(0) == '-' ? 1 : 0;
+		int digits = length - start;
+		if (digits == 0 || digits > 18)
+			return false;
+		if (s.charAt(start) == '0')
+			return length == 1;
+		for (int i = start; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+	private void writeString(String s) {
+		if (s == null) {
+			writeVarLong(REF_NULL);
+			return;
+		}
+		Integer index = dictionary.get(s);
+		if (index != null) {
+			writeVarLong(index + REF_INDEX);
+			return;
+		}
+		writeVarLong(REF_INLINE);
+		byte[] bytes = s.getBytes(UTF8);
+		writeVarLong(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+		if (dictionary.size() < MAX_DICTIONARY_SIZE)
+			dictionary.put(s, dictionary.size());
+	}
+
+	private void writeByte(int b) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) b;
+	}
+
+	private void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	private void writeLong(long value) {
+		ensureCapacity(8);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buffer[position++] = (byte) (value >>> shift);
+		}
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (position + bytes <= buffer.length)
+			return;
+		byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + bytes)];
+		System.arraycopy(buffer, 0, newBuffer, 0, position);
+		buffer = newBuffer;
+	}
+}
@@ -0,0 +1,170 @@
+package org.moskito.central.protocol;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader for snapshots in the JSON format of the REST endpoint, without an object mapper in between. The
+ * stats are accepted as written by the {@link org.moskito.central.MapAdapter}, {"entries": [{"key": .., "value":
+ * {..}}]}, and as plain object of stat names to values. Unknown properties are skipped.
+ */
+public final class JsonSnapshotReader {
+
+	private JsonSnapshotReader() {
+	}
+
+	/**
+	 * Reads the next snapshot object.
+	 * @param in reader positioned before the snapshot.
+	 * @return Snapshot
+	 * @throws IOException on io errors, {@link MalformedJsonException} if the json isn't a snapshot.
+	 */
+	public static Snapshot readSnapshot(JsonReader in) throws IOException {
+		try {
+			return read(in);
+		} catch (IllegalStateException | NumberFormatException e) {
+			//unexpected tokens.
+			throw new MalformedJsonException(e.getMessage());
+		}
+	}
+
+	private static Snapshot read(JsonReader in) throws IOException {
+		Snapshot snapshot = new Snapshot();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("snshmd") || name.equals("metaData")) {
+				snapshot.setMetaData(readMetaData(in));
+			} else if (name.equals("stats")) {
+				snapshot.setStats(readStats(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return snapshot;
+	}
+
+	private static SnapshotMetaData readMetaData(JsonReader in) throws IOException {
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				continue;
+			}
+			switch (name) {
+				case "producerId":
+					metaData.setProducerId(in.nextString());
+					break;
+				case "componentName":
+					metaData.setComponentName(in.nextString());
+					break;
+				case "hostName":
+					metaData.setHostName(in.nextString());
+					break;
+				case "intervalName":
+					metaData.setIntervalName(in.nextString());
+					break;
+				case "category":
+					metaData.setCategory(in.nextString());
+					break;
+				case "subsystem":
+					metaData.setSubsystem(in.nextString());
+					break;
+				case "statClassName":
+					metaData.setStatClassName(in.nextString());
+					break;
+				case "creationTimestamp":
+					metaData.setCreationTimestamp(in.nextLong());
+					break;
+				case "arrivalTimestamp":
+					metaData.setArrivalTimestamp(in.nextLong());
+					break;
+				case "deltaBase":
+					metaData.setDeltaBase(in.nextLong());
+					break;
+				case "keyframe":
+					metaData.setKeyframe(in.nextBoolean());
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return metaData;
+	}
+
+	private static Map<String, Map<String, String>> readStats(JsonReader in) throws IOException {
+		Map<String, Map<String, String>> stats = new HashMap<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("entries") && in.peek() == JsonToken.BEGIN_ARRAY) {
+				readEntries(in, stats);
+			} else {
+				stats.put(name, readValues(in));
+			}
+		}
+		in.endObject();
+		return stats;
+	}
+
+	private static void readEntries(JsonReader in, Map<String, Map<String, String>> stats) throws IOException {
+		in.beginArray();
+		while (in.hasNext()) {
+			String key = null;
+			Map<String, String> values = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("key") && in.peek() != JsonToken.NULL) {
+					key = in.nextString();
+				} else if (name.equals("value")) {
+					values = readValues(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			stats.put(key, values);
+		}
+		in.endArray();
+	}
+
+	private static Map<String, String> readValues(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		Map<String, String> values = new HashMap<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			switch (in.peek()) {
+				case NULL:
+					in.nextNull();
+					values.put(name, null);
+					break;
+				case BOOLEAN:
+					values.put(name, String.valueOf(in.nextBoolean()));
+					break;
+				default:
+					//strings and numbers, numbers keep their literal form.
+					values.put(name, in.nextString());
+			}
+		}
+		in.endObject();
+		return values;
+	}
+}
@@ -0,0 +1,16 @@
+package org.moskito.central.protocol;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a peer violates the binary protocol. The connection can't be used anymore afterwards, since the
+ * dictionaries of both sides may be out of sync.
+ */
+public class ProtocolException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ProtocolException(String message) {
+		super(message);
+	}
+}
@@ -1,21 +1,250 @@
 package org.moskito.central.storage;
 
+import org.configureme.ConfigurationManager;
+import org.moskito.central.CentralExecutors;
 import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.memory.TimeSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * TODO comment this class
+ * Keeps the recent history of every value in memory, compressed into Gorilla blocks of a few bits per point, for
+ * in-process queries. There is a {@link TimeSeries} per host, component, producer, interval, stat and value. Values
+ * which are not numbers are not stored. Points older than the retention are released block by block, by a sweep
+ * which runs once a minute on its own thread.
  *
  * @author lrosenberg
  * @since 15.03.13 23:19
  */
-public class InMemoryStorage implements Storage{
+public class InMemoryStorage implements Storage, Closeable {
+
+	/**
+	 * Time in milliseconds between two sweeps for expired points.
+	 */
+	private static final long SWEEP_INTERVAL = 60000;
+
+	private static Logger log = LoggerFactory.getLogger(InMemoryStorage.class);
+
+	private volatile InMemoryStorageConfig config = new InMemoryStorageConfig();
+
+	/**
+	 * Series of each producer by host, component, producer and interval.
+	 */
+	private final ConcurrentMap<String, ProducerSeries> producers = new ConcurrentHashMap<String, ProducerSeries>();
+
+	private final AtomicInteger seriesCount = new AtomicInteger();
+
+	/**
+	 * Set once the max number of series has been reached and logged.
+	 */
+	private final AtomicBoolean limitReached = new AtomicBoolean();
+
+	/**
+	 * Runs the sweeps, so they don't delay the delivery of snapshots.
+	 */
+	private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(CentralExecutors.newThreadFactory("moskito-central-memory-"));
+
+	public InMemoryStorage() {
+		sweeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try{
+					sweep(System.currentTimeMillis() - config.getRetention());
+				}catch(Exception e){
+					log.warn("Couldn't release expired points", e);
+				}
+			}
+		}, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
 	@Override
 	public void configure(String configurationName) {
-		//To change body of implemented methods use File | Settings | File Templates.
+		config = new InMemoryStorageConfig();
+		if (configurationName == null)
+			return;
+		try{
+			ConfigurationManager.INSTANCE.configureAs(config, configurationName);
+		}catch(IllegalArgumentException e){
+			log.warn("Couldn't configure InMemoryStorage with " + configurationName + ", working with default values");
+		}
+	}
+
+	/**
+	 * Configures the storage without configureme.
+	 * @param aConfig the configuration.
+	 */
+	public void configure(InMemoryStorageConfig aConfig) {
+		config = aConfig;
 	}
 
 	@Override
 	public void processSnapshot(Snapshot target) {
-		//To change body of implemented methods use File | Settings | File Templates.
+		SnapshotMetaData metaData = target.getMetaData();
+		if (metaData == null || target.getStats() == null)
+			return;
+		long timestamp = metaData.getCreationTimestamp() > 0 ? metaData.getCreationTimestamp() : metaData.getArrivalTimestamp();
+		String key = key(metaData.getHostName(), metaData.getComponentName(), metaData.getProducerId(), metaData.getIntervalName());
+		while (true){
+			ProducerSeries producer = producers.get(key);
+			if (producer == null){
+				producer = new ProducerSeries();
+				ProducerSeries existing = producers.putIfAbsent(key, producer);
+				if (existing != null)
+					producer = existing;
+			}
+			synchronized (producer){
+				//removed by a sweep in the meantime.
+				if (producer.removed)
+					continue;
+				append(producer, target, timestamp);
+			}
+			break;
+		}
+	}
+
+	private void append(ProducerSeries producer, Snapshot target, long timestamp) {
+		for (Map.Entry<String, Map<String, String>> stat : target.getStats().entrySet()){
+			if (stat.getKey() == null || stat.getValue() == null)
+				continue;
+			Map<String, TimeSeries> statSeries = producer.stats.get(stat.getKey());
+			if (statSeries == null){
+				statSeries = new HashMap<String, TimeSeries>();
+				producer.stats.put(stat.getKey(), statSeries);
+			}
+			for (Map.Entry<String, String> value : stat.getValue().entrySet()){
+				if (value.getKey() == null || value.getValue() == null)
+					continue;
+				double number;
+				try{
+					number = Double.parseDouble(value.getValue());
+				}catch(NumberFormatException e){
+					continue;
+				}
+				TimeSeries series = statSeries.get(value.getKey());
+				if (series == null){
+					series = newSeries();
+					if (series == null)
+						continue;
+					statSeries.put(value.getKey(), series);
+				}
+				series.append(timestamp, number);
+			}
+		}
+	}
+
+	/**
+	 * Returns the history of a value.
+	 *
+	 * @return the series or null if there are no points of the value.
+	 */
+	public TimeSeries getTimeSeries(String hostName, String componentName, String producerId, String intervalName, String statName, String valueName) {
+		ProducerSeries producer = producers.get(key(hostName, componentName, producerId, intervalName));
+		if (producer == null)
+			return null;
+		synchronized (producer){
+			Map<String, TimeSeries> statSeries = producer.stats.get(statName);
+			return statSeries == null ? null : statSeries.get(valueName);
+		}
+	}
+
+	/**
+	 * Returns the number of series.
+	 * @return int
+	 */
+	public int getSeriesCount() {
+		return seriesCount.get();
+	}
+
+	/**
+	 * Returns the memory used by the compressed points of all series in bytes.
+	 * @return long
+	 */
+	public long getSize() {
+		long size = 0;
+		for (ProducerSeries producer : producers.values()){
+			synchronized (producer){
+				for (Map<String, TimeSeries> statSeries : producer.stats.values()){
+					for (TimeSeries series : statSeries.values()){
+						size += series.getSize();
+					}
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Releases the points older than the given time and the series without points.
+	 *
+	 * @param minTimestamp oldest timestamp to keep.
+	 */
+	public void sweep(long minTimestamp) {
+		for (Map.Entry<String, ProducerSeries> entry : producers.entrySet()){
+			ProducerSeries producer = entry.getValue();
+			synchronized (producer){
+				for (Iterator<Map<String, TimeSeries>> stats = producer.stats.values().iterator(); stats.hasNext(); ){
+					Map<String, TimeSeries> statSeries = stats.next();
+					for (Iterator<TimeSeries> values = statSeries.values().iterator(); values.hasNext(); ){
+						if (values.next().trim(minTimestamp)){
+							values.remove();
+							seriesCount.decrementAndGet();
+						}
+					}
+					if (statSeries.isEmpty())
+						stats.remove();
+				}
+				if (producer.stats.isEmpty()){
+					producer.removed = true;
+					producers.remove(entry.getKey(), producer);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		sweeper.shutdownNow();
+		producers.clear();
+		seriesCount.set(0);
+	}
+
+	private TimeSeries newSeries() {
+		if (seriesCount.incrementAndGet() > config.getMaxSeries()){
+			seriesCount.decrementAndGet();
+			if (limitReached.compareAndSet(false, true))
+				log.warn("Max number of series (" + config.getMaxSeries() + ") reached, further values are not stored");
+			return null;
+		}
+		return new TimeSeries(config.getPointsPerBlock());
+	}
+
+	private static String key(String hostName, String componentName, String producerId, String intervalName) {
+		return hostName + '\u0000' + componentName + '\u0000' + producerId + '\u0000' + intervalName;
+	}
+
+	@Override
+	public String toString() {
+		return "InMemoryStorage " + config;
+	}
+
+	/**
+	 * Series of a producer by stat and value name.
+	 */
+	private static class ProducerSeries {
+		private final Map<String, Map<String, TimeSeries>> stats = new HashMap<String, Map<String, TimeSeries>>();
+		private boolean removed;
 	}
 }
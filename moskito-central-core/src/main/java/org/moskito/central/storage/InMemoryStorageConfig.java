@@ -0,0 +1,58 @@
+package org.moskito.central.storage;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of the {@link InMemoryStorage}.
+ */
+@ConfigureMe
+public class InMemoryStorageConfig {
+	/**
+	 * Time in milliseconds the points are kept.
+	 */
+	@Configure
+	private long retention = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Number of points after which a block is sealed. Larger blocks compress a bit better, smaller blocks are
+	 * released earlier after the retention.
+	 */
+	@Configure
+	private int pointsPerBlock = 120;
+
+	/**
+	 * Max number of series (host, component, producer, interval, stat and value). Values of further series are
+	 * not stored.
+	 */
+	@Configure
+	private int maxSeries = 3000000;
+
+	public long getRetention() {
+		return retention;
+	}
+
+	public void setRetention(long retention) {
+		this.retention = retention;
+	}
+
+	public int getPointsPerBlock() {
+		return pointsPerBlock;
+	}
+
+	public void setPointsPerBlock(int pointsPerBlock) {
+		this.pointsPerBlock = pointsPerBlock;
+	}
+
+	public int getMaxSeries() {
+		return maxSeries;
+	}
+
+	public void setMaxSeries(int maxSeries) {
+		this.maxSeries = maxSeries;
+	}
+
+	@Override public String toString(){
+		return "{ retention: "+retention+", pointsPerBlock: "+pointsPerBlock+", maxSeries: "+maxSeries+" }";
+	}
+}
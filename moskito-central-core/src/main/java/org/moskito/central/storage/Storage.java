@@ -3,7 +3,9 @@ package org.moskito.central.storage;
 import org.moskito.central.Snapshot;
 
 /**
- * TODO comment this class
+ * A storage receives every snapshot that arrives at the central and persists or forwards it. Storages which buffer
+ * snapshots or hold connections, threads or files implement {@link java.io.Flushable} and {@link java.io.Closeable}
+ * too; the central flushes and closes them when they are retired or on shutdown.
  *
  * @author lrosenberg
  * @since 15.03.13 23:14
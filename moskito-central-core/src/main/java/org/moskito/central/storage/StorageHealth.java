@@ -0,0 +1,19 @@
+package org.moskito.central.storage;
+
+/**
+ * Health of a configured storage.
+ */
+public enum StorageHealth {
+	/**
+	 * The last snapshot has been processed without error.
+	 */
+	HEALTHY,
+	/**
+	 * The last snapshot(s) failed.
+	 */
+	FAILING,
+	/**
+	 * The storage has been closed and doesn't receive snapshots anymore.
+	 */
+	CLOSED
+}
@@ -0,0 +1,107 @@
+package org.moskito.central.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime status of a single configured storage, maintained by the central.
+ */
+public class StorageStatus {
+
+	/**
+	 * Name of the storage as configured.
+	 */
+	private final String name;
+
+	/**
+	 * Number of successfully processed snapshots.
+	 */
+	private final AtomicLong processed = new AtomicLong();
+
+	/**
+	 * Number of failed snapshots.
+	 */
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Number of failures since the last success.
+	 */
+	private final AtomicLong consecutiveFailures = new AtomicLong();
+
+	/**
+	 * Message of the last error.
+	 */
+	private volatile String lastError;
+
+	/**
+	 * Timestamp of the last error.
+	 */
+	private volatile long lastErrorTimestamp;
+
+	/**
+	 * Set after the storage has been closed.
+	 */
+	private volatile boolean closed;
+
+	public StorageStatus(String name) {
+		this.name = name;
+	}
+
+	public void success() {
+		processed.incrementAndGet();
+		if (consecutiveFailures.get() != 0)
+			consecutiveFailures.set(0);
+	}
+
+	public void failure(Exception e) {
+		failed.incrementAndGet();
+		consecutiveFailures.incrementAndGet();
+		lastError = String.valueOf(e);
+		lastErrorTimestamp = System.currentTimeMillis();
+	}
+
+	public void closed() {
+		closed = true;
+	}
+
+	public StorageHealth getHealth() {
+		if (closed)
+			return StorageHealth.CLOSED;
+		return consecutiveFailures.get() == 0 ? StorageHealth.HEALTHY : StorageHealth.FAILING;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getProcessed() {
+		return processed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getConsecutiveFailures() {
+		return consecutiveFailures.get();
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public long getLastErrorTimestamp() {
+		return lastErrorTimestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "StorageStatus{" +
+				"name='" + name + '\'' +
+				", health=" + getHealth() +
+				", processed=" + processed +
+				", failed=" + failed +
+				", consecutiveFailures=" + consecutiveFailures +
+				", lastError='" + lastError + '\'' +
+				'}';
+	}
+}
@@ -0,0 +1,55 @@
+package org.moskito.central.storage.memory;
+
+/**
+ * Immutable chunk of a time series compressed by the {@link GorillaEncoder}.
+ */
+public final class GorillaBlock {
+
+	private final byte[] data;
+
+	private final int count;
+
+	private final long firstTimestamp;
+
+	private final long lastTimestamp;
+
+	GorillaBlock(byte[] data, int count, long firstTimestamp, long lastTimestamp) {
+		this.data = data;
+		this.count = count;
+		this.firstTimestamp = firstTimestamp;
+		this.lastTimestamp = lastTimestamp;
+	}
+
+	/**
+	 * Returns a decoder which streams the points of the block in order.
+	 * @return GorillaDecoder
+	 */
+	public GorillaDecoder decoder() {
+		return new GorillaDecoder(data, count);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long getFirstTimestamp() {
+		return firstTimestamp;
+	}
+
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	/**
+	 * Returns the size of the compressed points in bytes.
+	 * @return int
+	 */
+	public int getSize() {
+		return data.length;
+	}
+
+	@Override
+	public String toString() {
+		return "GorillaBlock " + count + " points, " + data.length + " bytes, " + firstTimestamp + " - " + lastTimestamp;
+	}
+}
@@ -0,0 +1,109 @@
+package org.moskito.central.storage.memory;
+
+/**
+ * Streams the points of a {@link GorillaBlock}. Usage:
+ * <pre>
+ * GorillaDecoder decoder = block.decoder();
+ * while (decoder.next())
+ *     process(decoder.getTimestamp(), decoder.getValue());
+ * </pre>
+ * Not thread safe, each reader gets its own decoder.
+ */
+public class GorillaDecoder {
+
+	private final byte[] data;
+
+	private final int count;
+
+	private long bitPosition;
+
+	private int read;
+
+	private long timestamp;
+	private long delta;
+	private long valueBits;
+	private int leadingZeros;
+	private int trailingZeros;
+
+	GorillaDecoder(byte[] data, int count) {
+		this.data = data;
+		this.count = count;
+	}
+
+	/**
+	 * Moves to the next point.
+	 *
+	 * @return false if there are no more points.
+	 */
+	public boolean next() {
+		if (read == count)
+			return false;
+		if (read == 0) {
+			timestamp = readBits(64);
+			valueBits = readBits(64);
+		} else {
+			delta += readDeltaOfDelta();
+			timestamp += delta;
+			readValue();
+		}
+		read++;
+		return true;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public double getValue() {
+		return Double.longBitsToDouble(valueBits);
+	}
+
+	private long readDeltaOfDelta() {
+		if (readBits(1) == 0)
+			return 0;
+		if (readBits(1) == 0)
+			return signed(readBits(7), 7);
+		if (readBits(1) == 0)
+			return signed(readBits(9), 9);
+		if (readBits(1) == 0)
+			return signed(readBits(12), 12);
+		return readBits(64);
+	}
+
+	/**
+	 * Restores a negative number from its lowest bits. Positive numbers use the whole range including 2^(bits-1),
+	 * as written by the encoder.
+	 */
+	private static long signed(long value, int bits) {
+		long half = 1L << (bits - 1);
+		return value > half ? value - (1L << bits) : value;
+	}
+
+	private void readValue() {
+		if (readBits(1) == 0)
+			return;
+		if (readBits(1) == 1) {
+			leadingZeros = (int) readBits(5);
+			int significantBits = (int) readBits(6);
+			if (significantBits == 0)
+				significantBits = 64;
+			trailingZeros = 64 - leadingZeros - significantBits;
+		}
+		long xor = readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+		valueBits ^= xor;
+	}
+
+	private long readBits(int bits) {
+		long value = 0;
+		while (bits > 0) {
+			int index = (int) (bitPosition >>> 3);
+			int available = 8 - (int) (bitPosition & 7);
+			int n = Math.min(available, bits);
+			int chunk = (data[index] >>> (available - n)) & ((1 << n) - 1);
+			value = (value << n) | chunk;
+			bits -= n;
+			bitPosition += n;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,165 @@
+package org.moskito.central.storage.memory;
+
+import java.util.Arrays;
+
+/**
+ * Appends points of a time series to a compressed chunk, as described in "Gorilla: A Fast, Scalable, In-Memory Time
+ * Series Database" (Pelkonen et al., VLDB 2015).
+ * <p>
+ * The first point is stored raw. Each further timestamp is stored as the difference of its delta to the previous
+ * delta: a single bit for a regular interval, a few bits for jitter. Each further value is XOR-ed with the previous
+ * value: a single bit for an unchanged value, otherwise only the meaningful bits between the leading and trailing
+ * zeros, reusing the previous window of meaningful bits if they fit into it. Regular series of slowly changing
+ * values take a few bits per point instead of 16 bytes.
+ * <p>
+ * Timestamps must increase. Not thread safe.
+ */
+public class GorillaEncoder {
+
+	private byte[] buffer;
+
+	/**
+	 * Number of bits written.
+	 */
+	private long bitCount;
+
+	private int count;
+
+	private long firstTimestamp;
+	private long lastTimestamp;
+	private long lastDelta;
+	private long lastValueBits;
+	private int lastLeadingZeros = Integer.MAX_VALUE;
+	private int lastTrailingZeros;
+
+	public GorillaEncoder() {
+		this(64);
+	}
+
+	/**
+	 * @param initialCapacity initial size of the buffer in bytes.
+	 */
+	public GorillaEncoder(int initialCapacity) {
+		buffer = new byte[Math.max(16, initialCapacity)];
+	}
+
+	/**
+	 * Appends a point.
+	 *
+	 * @param timestamp timestamp of the point, greater than the timestamp of the previous point.
+	 * @param value the value.
+	 * @throws IllegalArgumentException if the timestamp doesn't increase.
+	 */
+	public void append(long timestamp, double value) {
+		long valueBits = Double.doubleToRawLongBits(value);
+		if (count == 0) {
+			firstTimestamp = timestamp;
+			writeBits(timestamp, 64);
+			writeBits(valueBits, 64);
+		} else {
+			if (timestamp <= lastTimestamp)
+				throw new IllegalArgumentException("Timestamp " + timestamp + " doesn't follow " + lastTimestamp);
+			long delta = timestamp - lastTimestamp;
+			writeDeltaOfDelta(delta - lastDelta);
+			lastDelta = delta;
+			writeValue(valueBits ^ lastValueBits);
+		}
+		lastTimestamp = timestamp;
+		lastValueBits = valueBits;
+		count++;
+	}
+
+	private void writeDeltaOfDelta(long deltaOfDelta) {
+		if (deltaOfDelta == 0) {
+			writeBits(0, 1);
+		} else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+			writeBits(0x2, 2);
+			writeBits(deltaOfDelta, 7);
+		} else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+			writeBits(0x6, 3);
+			writeBits(deltaOfDelta, 9);
+		} else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+			writeBits(0xE, 4);
+			writeBits(deltaOfDelta, 12);
+		} else {
+			//timestamps in milliseconds may have large gaps, the paper's 32 bits aren't enough.
+			writeBits(0xF, 4);
+			writeBits(deltaOfDelta, 64);
+		}
+	}
+
+	private void writeValue(long xor) {
+		if (xor == 0) {
+			writeBits(0, 1);
+			return;
+		}
+		writeBits(1, 1);
+		int leadingZeros = Math.min(31, Long.numberOfLeadingZeros(xor));
+		int trailingZeros = Long.numberOfTrailingZeros(xor);
+		if (leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+			writeBits(0, 1);
+			writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+			return;
+		}
+		int significantBits = 64 - leadingZeros - trailingZeros;
+		writeBits(1, 1);
+		writeBits(leadingZeros, 5);
+		//64 significant bits are written as 0.
+		writeBits(significantBits, 6);
+		writeBits(xor >>> trailingZeros, significantBits);
+		lastLeadingZeros = leadingZeros;
+		lastTrailingZeros = trailingZeros;
+	}
+
+	/**
+	 * Writes the lowest bits of the value, most significant first.
+	 */
+	private void writeBits(long value, int bits) {
+		ensureCapacity(bitCount + bits);
+		while (bits > 0) {
+			int index = (int) (bitCount >>> 3);
+			int free = 8 - (int) (bitCount & 7);
+			int n = Math.min(free, bits);
+			int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+			buffer[index] |= (byte) (chunk << (free - n));
+			bits -= n;
+			bitCount += n;
+		}
+	}
+
+	private void ensureCapacity(long bits) {
+		int bytes = (int) ((bits + 7) >>> 3);
+		if (bytes > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length + (buffer.length >> 1)));
+	}
+
+	/**
+	 * Returns an immutable block with the points appended so far. The encoder can be used further, its later
+	 * points are not part of the block.
+	 *
+	 * @return GorillaBlock
+	 */
+	public GorillaBlock toBlock() {
+		return new GorillaBlock(Arrays.copyOf(buffer, (int) ((bitCount + 7) >>> 3)), count, firstTimestamp, lastTimestamp);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long getFirstTimestamp() {
+		return firstTimestamp;
+	}
+
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	/**
+	 * Returns the size of the buffer in bytes.
+	 * @return int
+	 */
+	public int getCapacity() {
+		return buffer.length;
+	}
+}
@@ -0,0 +1,116 @@
+package org.moskito.central.storage.memory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Recent history of a single value, stored as {@link GorillaBlock}s. Points are appended to an open block, which is
+ * sealed after a number of points and becomes immutable. Sealed blocks are dropped as a whole once all their points
+ * are older than the retention. Thread safe.
+ */
+public class TimeSeries {
+
+	/**
+	 * Number of points after which the open block is sealed.
+	 */
+	private final int pointsPerBlock;
+
+	private final Deque<GorillaBlock> sealed = new ArrayDeque<GorillaBlock>();
+
+	private GorillaEncoder open;
+
+	/**
+	 * Size of the sealed blocks in bytes.
+	 */
+	private long sealedSize;
+
+	/**
+	 * @param pointsPerBlock number of points after which a block is sealed.
+	 */
+	public TimeSeries(int pointsPerBlock) {
+		this.pointsPerBlock = Math.max(1, pointsPerBlock);
+	}
+
+	/**
+	 * Appends a point. Points which are not newer than the last point are dropped, a block only holds increasing
+	 * timestamps.
+	 *
+	 * @param timestamp timestamp of the point.
+	 * @param value the value.
+	 * @return false if the point was dropped.
+	 */
+	public synchronized boolean append(long timestamp, double value) {
+		if (open != null && timestamp <= open.getLastTimestamp())
+			return false;
+		if (open == null) {
+			GorillaBlock last = sealed.peekLast();
+			if (last != null && timestamp <= last.getLastTimestamp())
+				return false;
+			open = new GorillaEncoder();
+		}
+		open.append(timestamp, value);
+		if (open.getCount() >= pointsPerBlock) {
+			GorillaBlock block = open.toBlock();
+			sealed.addLast(block);
+			sealedSize += block.getSize();
+			open = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the sealed blocks whose points are all older than the given time.
+	 *
+	 * @param minTimestamp oldest timestamp to keep.
+	 * @return true if the series is empty afterwards.
+	 */
+	public synchronized boolean trim(long minTimestamp) {
+		while (!sealed.isEmpty() && sealed.peekFirst().getLastTimestamp() < minTimestamp) {
+			sealedSize -= sealed.removeFirst().getSize();
+		}
+		if (open != null && open.getLastTimestamp() < minTimestamp)
+			open = null;
+		return sealed.isEmpty() && open == null;
+	}
+
+	/**
+	 * Returns the blocks with points in the given range, oldest first. The points appended to the open block so far
+	 * are returned as an additional block. The decoders of the blocks have to skip the points outside of the range.
+	 *
+	 * @param from oldest timestamp.
+	 * @param to newest timestamp.
+	 * @return List
+	 */
+	public synchronized List<GorillaBlock> getBlocks(long from, long to) {
+		List<GorillaBlock> ret = new ArrayList<GorillaBlock>();
+		for (GorillaBlock block : sealed) {
+			if (block.getLastTimestamp() >= from && block.getFirstTimestamp() <= to)
+				ret.add(block);
+		}
+		if (open != null && open.getLastTimestamp() >= from && open.getFirstTimestamp() <= to)
+			ret.add(open.toBlock());
+		return ret;
+	}
+
+	/**
+	 * Returns the number of points.
+	 * @return int
+	 */
+	public synchronized int getCount() {
+		int count = open == null ? 0 : open.getCount();
+		for (GorillaBlock block : sealed) {
+			count += block.getCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the memory used by the compressed points in bytes, including the buffer of the open block.
+	 * @return long
+	 */
+	public synchronized long getSize() {
+		return sealedSize + (open == null ? 0 : open.getCapacity());
+	}
+}
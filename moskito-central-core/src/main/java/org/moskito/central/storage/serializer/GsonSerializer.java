@@ -1,7 +1,6 @@
 package org.moskito.central.storage.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.SnapshotSerializer;
 
@@ -13,13 +12,8 @@ import org.moskito.central.storage.SnapshotSerializer;
  */
 public class GsonSerializer implements SnapshotSerializer {
 
-	/**
-	 * {@link Gson} instance.
-	 */
-	private Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
 	public byte[] serialize(Snapshot snapshot) {
-		String jsonOutput = gson.toJson(snapshot);
+		String jsonOutput = snapshot.getEncoded(JsonEncodings.PRETTY_JSON);
 		return jsonOutput.getBytes();
 	}
 }
@@ -0,0 +1,40 @@
+package org.moskito.central.storage.serializer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotEncoding;
+
+/**
+ * Json encodings of snapshots shared by the storages.
+ */
+public final class JsonEncodings {
+
+	/**
+	 * Compact json, for storages which send the snapshot to other systems.
+	 */
+	public static final SnapshotEncoding<String> JSON = new GsonEncoding("json", new GsonBuilder().create());
+
+	/**
+	 * Pretty printed json, for storages which write it for humans.
+	 */
+	public static final SnapshotEncoding<String> PRETTY_JSON = new GsonEncoding("pretty-json", new GsonBuilder().setPrettyPrinting().create());
+
+	private JsonEncodings() {
+	}
+
+	private static class GsonEncoding extends SnapshotEncoding<String> {
+
+		private final Gson gson;
+
+		GsonEncoding(String name, Gson gson) {
+			super(name);
+			this.gson = gson;
+		}
+
+		@Override
+		protected String encode(Snapshot snapshot) {
+			return gson.toJson(snapshot);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package org.moskito.central;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.config.DispatchMode;
+import org.moskito.central.config.StorageConfigEntry;
+import org.moskito.central.storage.Storage;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the asynchronous delivery of snapshots to the storages.
+ */
+public class CentralDispatchTest {
+
+	private static final Map<String, SlowStorage> storages = new ConcurrentHashMap<String, SlowStorage>();
+
+	@Before
+	public void setup(){
+		storages.clear();
+	}
+
+	private Configuration createConfiguration(String mode, int maxConcurrency, String... names){
+		Configuration c = new Configuration();
+		c.setDispatchMode(mode);
+		c.setDispatchThreads(8);
+		c.setMaxPendingDeliveries(16);
+
+		StorageConfigEntry[] entries = new StorageConfigEntry[names.length];
+		for (int i=0; i<names.length; i++){
+			StorageConfigEntry entry = new StorageConfigEntry();
+			entry.setName(names[i]);
+			entry.setClazz(SlowStorage.class.getName());
+			entry.setConfigName(names[i]);
+			entry.setMaxConcurrency(maxConcurrency);
+			entries[i] = entry;
+		}
+		c.setStorages(entries);
+		return c;
+	}
+
+	private static void send(Central central, int count){
+		for (int i=0; i<count; i++){
+			central.processIncomingSnapshot(new Snapshot());
+		}
+	}
+
+	@Test
+	public void testPlatformDispatch(){
+		Central central = Central.getConfiguredInstance(createConfiguration("platform", 0, "a", "b"));
+		send(central, 100);
+		List<Snapshot> batch = new ArrayList<Snapshot>();
+		for (int i=0; i<20; i++){
+			batch.add(new Snapshot());
+		}
+		central.processIncomingSnapshots(batch);
+
+		//shutdown waits for the pending deliveries before the storages are closed.
+		central.shutdown(10000);
+		assertEquals(120, storages.get("a").received.get());
+		assertEquals(120, storages.get("b").received.get());
+		assertEquals(0, storages.get("a").receivedAfterClose);
+		assertEquals(0, central.getPendingDeliveries());
+		assertTrue(storages.get("a").maxActive.get() > 1);
+	}
+
+	@Test
+	public void testVirtualDispatch(){
+		//falls back to platform threads on older jvms.
+		Central central = Central.getConfiguredInstance(createConfiguration("VIRTUAL", 0, "a"));
+		send(central, 100);
+		central.shutdown(10000);
+		assertEquals(100, storages.get("a").received.get());
+		assertEquals(0, storages.get("a").receivedAfterClose);
+	}
+
+	@Test
+	public void testMaxConcurrency(){
+		Central central = Central.getConfiguredInstance(createConfiguration("platform", 2, "a"));
+		send(central, 50);
+		central.shutdown(10000);
+		assertEquals(50, storages.get("a").received.get());
+		assertTrue(storages.get("a").maxActive.get() <= 2);
+	}
+
+	@Test
+	public void testSwitchToCallerMode(){
+		Central central = Central.getConfiguredInstance(createConfiguration("platform", 0, "a"));
+		send(central, 20);
+		central.reconfigure(createConfiguration("caller", 0, "a"));
+		//deliveries of the replaced dispatcher are still executed.
+		send(central, 1);
+		central.shutdown(10000);
+		assertEquals(21, storages.get("a").received.get());
+	}
+
+	@Test
+	public void testSnapshotsAfterShutdownAreRejected(){
+		Central central = Central.getConfiguredInstance(createConfiguration("caller", 0, "a"));
+		send(central, 5);
+		central.shutdown(10000);
+		try{
+			send(central, 1);
+			fail("snapshot accepted after shutdown");
+		}catch(CentralShutdownException expected){
+		}
+		try{
+			central.processIncomingSnapshots(Collections.singletonList(new Snapshot()));
+			fail("snapshots accepted after shutdown");
+		}catch(CentralShutdownException expected){
+		}
+		assertEquals(5, storages.get("a").received.get());
+		assertEquals(0, storages.get("a").receivedAfterClose);
+	}
+
+	@Test
+	public void testUnknownMode(){
+		assertEquals(DispatchMode.CALLER, DispatchMode.fromName("fibers"));
+		assertEquals(DispatchMode.CALLER, DispatchMode.fromName(null));
+		assertEquals(DispatchMode.PLATFORM, DispatchMode.fromName(" Platform "));
+	}
+
+	static class SlowStorage implements Storage, Closeable {
+
+		private final AtomicInteger received = new AtomicInteger();
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger maxActive = new AtomicInteger();
+		private volatile boolean closed;
+		private volatile int receivedAfterClose;
+
+		@Override
+		public void configure(String configurationName) {
+			storages.put(configurationName, this);
+		}
+
+		@Override
+		public void processSnapshot(Snapshot target) {
+			int now = active.incrementAndGet();
+			int max;
+			while ((max = maxActive.get()) < now && !maxActive.compareAndSet(max, now));
+			try{
+				Thread.sleep(2);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			if (closed)
+				receivedAfterClose++;
+			received.incrementAndGet();
+			active.decrementAndGet();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -5,13 +5,22 @@ import org.moskito.central.Snapshot;
 import org.moskito.central.config.Configuration;
 import org.moskito.central.config.StorageConfigEntry;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.StorageHealth;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test for central routing into the storage mechanism.
@@ -28,19 +37,27 @@ public class CentralStorageRoutingTest {
 		storages.clear();
 	}
 
-	private Configuration createConfiguration(){
+	private Configuration createConfiguration(String... names){
 		Configuration c = new Configuration();
 
-		StorageConfigEntry entry = new StorageConfigEntry();
-		entry.setName("test");
-		entry.setClazz(TestStorage.class.getName());
-		entry.setConfigName("test");
+		StorageConfigEntry[] entries = new StorageConfigEntry[names.length];
+		for (int i=0; i<names.length; i++){
+			StorageConfigEntry entry = new StorageConfigEntry();
+			entry.setName(names[i]);
+			entry.setClazz(TestStorage.class.getName());
+			entry.setConfigName(names[i]);
+			entries[i] = entry;
+		}
 
-		c.setStorages(new StorageConfigEntry[]{entry});
+		c.setStorages(entries);
 
 		return c;
 	}
 
+	private Configuration createConfiguration(){
+		return createConfiguration("test");
+	}
+
 	@Test
 	public void simpleTestRouting(){
 		Configuration config = createConfiguration();
@@ -54,10 +71,83 @@ public class CentralStorageRoutingTest {
 
 	}
 
-	static class TestStorage implements Storage {
+	@Test
+	public void testBatchRouting(){
+		Central myCentral = Central.getConfiguredInstance(createConfiguration("a", "b"));
+
+		List<Snapshot> batch = new ArrayList<Snapshot>();
+		for (int i=0; i<10; i++){
+			batch.add(new Snapshot());
+		}
+		batch.add(null);
+		myCentral.processIncomingSnapshots(batch);
+		myCentral.processIncomingSnapshots(null);
+
+		assertEquals(10, storages.get("a").getReceivedSnapshots());
+		assertEquals(10, storages.get("b").getReceivedSnapshots());
+	}
+
+	@Test
+	public void testReconfiguration(){
+		Central myCentral = Central.getConfiguredInstance(createConfiguration("a", "b"));
+		TestStorage a = storages.get("a");
+		TestStorage b = storages.get("b");
+		myCentral.processIncomingSnapshot(new Snapshot());
+
+		myCentral.reconfigure(createConfiguration("a", "c"));
+		assertSame(a, storages.get("a"));
+		assertEquals(2, myCentral.getStorages().size());
+		assertSame(a, myCentral.getStorage("a"));
+		assertSame(storages.get("c"), myCentral.getStorage("c"));
+		assertNull(myCentral.getStorage("b"));
+		assertTrue(b.isClosed());
+		assertFalse(a.isClosed());
+
+		myCentral.processIncomingSnapshot(new Snapshot());
+		assertEquals(2, a.getReceivedSnapshots());
+		assertEquals(1, b.getReceivedSnapshots());
+		assertEquals(1, storages.get("c").getReceivedSnapshots());
+	}
+
+	@Test
+	public void testDuplicateNames(){
+		Configuration config = createConfiguration("a", "a");
+		config.getStorages()[1].setConfigName("a2");
+		Central myCentral = Central.getConfiguredInstance(config);
+		//the second storage isn't even created.
+		assertNull(storages.get("a2"));
+		assertEquals(1, myCentral.getStorages().size());
+		assertSame(storages.get("a"), myCentral.getStorage("a"));
+
+		myCentral.processIncomingSnapshot(new Snapshot());
+		assertEquals(1, storages.get("a").getReceivedSnapshots());
+	}
+
+	@Test
+	public void testShutdown(){
+		Central myCentral = Central.getConfiguredInstance(createConfiguration("a"));
+		myCentral.processIncomingSnapshot(new Snapshot());
+		assertEquals(StorageHealth.HEALTHY, myCentral.getStorageStatus().get("a").getHealth());
+		assertEquals(1, myCentral.getStorageStatus().get("a").getProcessed());
+
+		myCentral.shutdown(1000);
+		assertTrue(storages.get("a").isClosed());
+		assertEquals(StorageHealth.CLOSED, myCentral.getStorageStatus().get("a").getHealth());
+
+		try{
+			myCentral.processIncomingSnapshot(new Snapshot());
+			fail("snapshot accepted after shutdown");
+		}catch(CentralShutdownException expected){
+		}
+		assertEquals(1, storages.get("a").getReceivedSnapshots());
+	}
+
+	static class TestStorage implements Storage, Closeable {
 
 		private int receivedSnapshots = 0;
 
+		private volatile boolean closed = false;
+
 		@Override
 		public void configure(String configurationName) {
 			storages.put(configurationName, this);
@@ -71,5 +161,14 @@ public class CentralStorageRoutingTest {
 		int getReceivedSnapshots(){
 			return receivedSnapshots;
 		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		boolean isClosed(){
+			return closed;
+		}
 	}
 }
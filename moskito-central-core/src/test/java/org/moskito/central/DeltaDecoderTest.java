@@ -0,0 +1,100 @@
+package org.moskito.central;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+import org.moskito.central.storage.serializer.JsonEncodings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaDecoderTest {
+
+	private static Snapshot createSnapshot(long timestamp, String... keysAndValues){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName("host").setComponentName("app").setProducerId("SessionCount").setIntervalName("1m").setCreationTimestamp(timestamp);
+		snapshot.setMetaData(metaData);
+		Map<String, String> values = new HashMap<String, String>();
+		for (int i=0; i<keysAndValues.length; i+=2){
+			values.put(keysAndValues[i], keysAndValues[i+1]);
+		}
+		snapshot.addSnapshotData("cumulated", values);
+		return snapshot;
+	}
+
+	@Test
+	public void testFullSnapshotPassesThrough(){
+		DeltaDecoder decoder = new DeltaDecoder();
+		Snapshot snapshot = createSnapshot(1000, "Req", "1");
+		assertSame(snapshot, decoder.decode(snapshot));
+		assertEquals(0, decoder.getStreamCount());
+	}
+
+	@Test
+	public void testDeltaIsMergedWithKeyframe(){
+		DeltaDecoder decoder = new DeltaDecoder();
+		Snapshot keyframe = createSnapshot(1000, "Req", "1", "Err", "0");
+		keyframe.getMetaData().setKeyframe(true);
+		decoder.decode(keyframe);
+		assertFalse(keyframe.getMetaData().isKeyframe());
+
+		Snapshot delta = createSnapshot(2000, "Req", "5");
+		delta.getMetaData().setDeltaBase(1000);
+		Snapshot full = decoder.decode(delta);
+		assertFalse(full.getMetaData().isDelta());
+		assertEquals("5", full.getStatistics("cumulated").get("Req"));
+		assertEquals("0", full.getStatistics("cumulated").get("Err"));
+		//the keyframe isn't changed by the delta.
+		assertEquals("1", keyframe.getStatistics("cumulated").get("Req"));
+	}
+
+	@Test
+	public void testDeltaFieldsAreNotPassedToStorages(){
+		Snapshot plain = createSnapshot(1000, "Req", "1");
+		assertFalse(plain.getEncoded(JsonEncodings.JSON).contains("keyframe"));
+		assertFalse(plain.getEncoded(JsonEncodings.JSON).contains("deltaBase"));
+
+		DeltaDecoder decoder = new DeltaDecoder();
+		Snapshot keyframe = createSnapshot(1000, "Req", "1");
+		keyframe.getMetaData().setKeyframe(true);
+		assertTrue(new Gson().toJson(keyframe).contains("keyframe"));
+		decoder.decode(keyframe);
+		Snapshot delta = createSnapshot(2000, "Req", "5");
+		delta.getMetaData().setDeltaBase(1000);
+		String json = decoder.decode(delta).getEncoded(JsonEncodings.JSON);
+		assertFalse(json.contains("keyframe"));
+		assertFalse(json.contains("deltaBase"));
+	}
+
+	@Test
+	public void testDeltaWithoutKeyframeIsDropped(){
+		DeltaDecoder decoder = new DeltaDecoder();
+		Snapshot delta = createSnapshot(2000, "Req", "5");
+		delta.getMetaData().setDeltaBase(1000);
+		assertNull(decoder.decode(delta));
+		assertEquals(1, decoder.getDropped());
+	}
+
+	@Test
+	public void testPreviousKeyframeIsKept(){
+		DeltaDecoder decoder = new DeltaDecoder();
+		for (long ts = 1000; ts <= 3000; ts += 1000){
+			Snapshot keyframe = createSnapshot(ts, "Req", String.valueOf(ts));
+			keyframe.getMetaData().setKeyframe(true);
+			decoder.decode(keyframe);
+		}
+		Snapshot late = createSnapshot(2500, "Err", "1");
+		late.getMetaData().setDeltaBase(2000);
+		assertEquals("2000", decoder.decode(late).getStatistics("cumulated").get("Req"));
+
+		Snapshot tooLate = createSnapshot(1500, "Err", "1");
+		tooLate.getMetaData().setDeltaBase(1000);
+		assertNull(decoder.decode(tooLate));
+	}
+}
@@ -0,0 +1,125 @@
+package org.moskito.central;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+import org.moskito.central.storage.serializer.JsonEncodings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the compact form of snapshots.
+ */
+public class SnapshotCompactorTest {
+
+	private static final String[] VALUES = {"0", "1", "-5", "1234567890", "12.50", "0.001", "-0.5", "-0.0", "-0", "NaN", "1.0E10",
+			"", "007", "00.5", "1.", ".5", "-", "1.2.3", "123456789012345678901", "12345678901234567.8", "abc"};
+
+	private static Snapshot createSnapshot(String producerId){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId(new String(producerId));
+		metaData.setHostName(new String("host"));
+		metaData.setIntervalName(new String("1m"));
+		metaData.setArrivalTimestamp(0);
+		snapshot.setMetaData(metaData);
+		for (int s = 0; s < 3; s++){
+			Map<String, String> values = new HashMap<String, String>();
+			for (int i = 0; i < VALUES.length; i++){
+				values.put(new String("value" + i), VALUES[(i + s) % VALUES.length]);
+			}
+			values.put("nothing", null);
+			snapshot.addSnapshotData("stat" + s, values);
+		}
+		return snapshot;
+	}
+
+	@Test
+	public void testValuesAreRestored(){
+		Snapshot original = createSnapshot("p");
+		Snapshot compacted = new SnapshotCompactor().compact(createSnapshot("p"));
+		assertTrue(SnapshotCompactor.isCompact(compacted));
+		assertEquals(original.getStats(), compacted.getStats());
+		assertEquals(compacted.getStats(), original.getStats());
+		assertEquals(original.getStatistics("stat1"), compacted.getStatistics("stat1"));
+		assertEquals("12.50", compacted.getStatistics("stat0").get("value4"));
+		assertNull(compacted.getStatistics("stat0").get("nothing"));
+		assertTrue(compacted.getStatistics("stat0").containsKey("nothing"));
+		assertNull(compacted.getStatistics("stat3"));
+		assertEquals(3, compacted.getKeySet().size());
+	}
+
+	@Test
+	public void testSharedSchemasAndStrings(){
+		SnapshotCompactor compactor = new SnapshotCompactor();
+		Snapshot first = compactor.compact(createSnapshot("p"));
+		Snapshot second = compactor.compact(createSnapshot("p"));
+		Snapshot other = compactor.compact(createSnapshot("q"));
+		assertEquals(1, compactor.getSchemaCount());
+		assertSame(first.getMetaData().getProducerId(), second.getMetaData().getProducerId());
+		assertSame(first.getMetaData().getHostName(), other.getMetaData().getHostName());
+		assertSame(first.getStats().keySet().iterator().next(), second.getStats().keySet().iterator().next());
+
+		//compacting again doesn't change anything.
+		Map<String, Map<String, String>> stats = first.getStats();
+		compactor.compact(first);
+		assertSame(stats, first.getStats());
+	}
+
+	@Test
+	public void testLimits(){
+		SnapshotCompactor compactor = new SnapshotCompactor(1, 2);
+		compactor.compact(createSnapshot("p"));
+		Snapshot different = new Snapshot();
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("other", "1");
+		different.addSnapshotData("stat", values);
+		compactor.compact(different);
+		assertFalse(SnapshotCompactor.isCompact(different));
+		assertEquals(1, compactor.getSchemaCount());
+		assertEquals(2, compactor.getStringCount());
+	}
+
+	@Test
+	public void testReadOnly(){
+		Snapshot compacted = new SnapshotCompactor().compact(createSnapshot("p"));
+		try{
+			compacted.getStatistics("stat0").put("value0", "1");
+			fail("compact stats should be read-only");
+		}catch(UnsupportedOperationException expected){
+		}
+		try{
+			compacted.getStats().remove("stat0");
+			fail("compact stats should be read-only");
+		}catch(UnsupportedOperationException expected){
+		}
+	}
+
+	@Test
+	public void testSerializedAsPlainMaps() throws Exception{
+		Snapshot compacted = new SnapshotCompactor().compact(createSnapshot("p"));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(compacted);
+		out.close();
+		Snapshot read = (Snapshot) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(HashMap.class, read.getStats().getClass());
+		assertEquals(HashMap.class, read.getStatistics("stat0").getClass());
+		assertEquals(createSnapshot("p").getStats(), read.getStats());
+
+		Gson gson = new Gson();
+		assertEquals(gson.fromJson(createSnapshot("p").getEncoded(JsonEncodings.JSON), Map.class),
+				gson.fromJson(compacted.getEncoded(JsonEncodings.JSON), Map.class));
+	}
+}
@@ -0,0 +1,139 @@
+package org.moskito.central;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.config.StorageConfigEntry;
+import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.serializer.JsonEncodings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the shared encoded forms of snapshots.
+ */
+public class SnapshotEncodingTest {
+
+	private static final AtomicInteger encoded = new AtomicInteger();
+
+	private static final SnapshotEncoding<String> COUNTING = new SnapshotEncoding<String>("counting") {
+		@Override
+		protected String encode(Snapshot snapshot) {
+			encoded.incrementAndGet();
+			return snapshot.getMetaData().getProducerId() + snapshot.getStats().size();
+		}
+	};
+
+	private static final List<String> received = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setup(){
+		encoded.set(0);
+		received.clear();
+	}
+
+	private static Snapshot createSnapshot(String producerId){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId(producerId);
+		snapshot.setMetaData(metaData);
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("Req", "1");
+		snapshot.addSnapshotData("cumulated", values);
+		return snapshot;
+	}
+
+	private static Configuration createConfiguration(String mode, int storageCount){
+		Configuration c = new Configuration();
+		c.setDispatchMode(mode);
+		c.setDispatchThreads(4);
+		StorageConfigEntry[] entries = new StorageConfigEntry[storageCount];
+		for (int i=0; i<storageCount; i++){
+			StorageConfigEntry entry = new StorageConfigEntry();
+			entry.setName("s" + i);
+			entry.setClazz(EncodingStorage.class.getName());
+			entries[i] = entry;
+		}
+		c.setStorages(entries);
+		return c;
+	}
+
+	@Test
+	public void testEncodedOnce(){
+		Snapshot snapshot = createSnapshot("p");
+		String first = snapshot.getEncoded(COUNTING);
+		assertSame(first, snapshot.getEncoded(COUNTING));
+		assertEquals(1, encoded.get());
+
+		//other encodings are kept separately.
+		String json = snapshot.getEncoded(JsonEncodings.JSON);
+		assertTrue(json.contains("\"producerId\":\"p\""));
+		assertSame(json, snapshot.getEncoded(JsonEncodings.JSON));
+		assertSame(first, snapshot.getEncoded(COUNTING));
+	}
+
+	@Test
+	public void testSettersDiscardEncodings(){
+		Snapshot snapshot = createSnapshot("p");
+		assertEquals("p1", snapshot.getEncoded(COUNTING));
+		snapshot.addSnapshotData("default", new HashMap<String, String>());
+		assertEquals("p2", snapshot.getEncoded(COUNTING));
+		snapshot.setStats(new HashMap<String, Map<String, String>>());
+		assertEquals("p0", snapshot.getEncoded(COUNTING));
+		assertEquals(3, encoded.get());
+	}
+
+	@Test
+	public void testSharedBetweenStorages(){
+		Central central = Central.getConfiguredInstance(createConfiguration("caller", 3));
+		Snapshot snapshot = createSnapshot("p");
+		central.processIncomingSnapshot(snapshot);
+		assertEquals(3, received.size());
+		assertEquals(1, encoded.get());
+
+		//discarded after the delivery.
+		snapshot.getEncoded(COUNTING);
+		assertEquals(2, encoded.get());
+	}
+
+	@Test
+	public void testSharedBetweenStoragesInPlatformMode(){
+		Central central = Central.getConfiguredInstance(createConfiguration("platform", 3));
+		List<Snapshot> batch = new ArrayList<Snapshot>();
+		for (int i=0; i<10; i++){
+			batch.add(createSnapshot("p" + i));
+		}
+		central.processIncomingSnapshots(batch);
+		central.shutdown(10000);
+		assertEquals(30, received.size());
+		//a storage may encode a snapshot while another one does so too, but not after the last delivery.
+		assertTrue(encoded.get() >= 10 && encoded.get() <= 30);
+
+		int before = encoded.get();
+		for (Snapshot snapshot : batch){
+			snapshot.getEncoded(COUNTING);
+		}
+		assertEquals(before + 10, encoded.get());
+	}
+
+	static class EncodingStorage implements Storage {
+
+		@Override
+		public void configure(String configurationName) {
+		}
+
+		@Override
+		public void processSnapshot(Snapshot target) {
+			received.add(target.getEncoded(COUNTING));
+		}
+	}
+}
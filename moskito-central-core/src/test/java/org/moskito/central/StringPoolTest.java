@@ -0,0 +1,85 @@
+package org.moskito.central;
+
+import org.junit.Test;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the pool of canonical metadata strings.
+ */
+public class StringPoolTest {
+
+	private static final List<Snapshot> received = CapturingStorage.getReceived();
+
+	@Test
+	public void testIntern(){
+		StringPool pool = new StringPool();
+		String first = new String("producer");
+		assertSame(first, pool.intern(first));
+		assertSame(first, pool.intern(new String("producer")));
+		assertNull(pool.intern((String) null));
+		assertEquals(1, pool.size());
+	}
+
+	@Test
+	public void testBounded(){
+		StringPool pool = new StringPool(1000);
+		for (int i = 0; i < 10000; i++){
+			pool.intern("value" + i);
+		}
+		assertTrue(pool.size() <= 1000);
+
+		//recently used strings survive.
+		StringPool small = new StringPool(2);
+		String a = new String("a");
+		small.intern(a);
+		small.intern("b");
+		small.intern(new String("a"));
+		small.intern("c");
+		assertSame(a, small.intern(new String("a")));
+		String b = new String("b");
+		assertSame(b, small.intern(b));
+	}
+
+	@Test
+	public void testMetaDataAtIngestion(){
+		Configuration config = CapturingStorage.createConfiguration();
+		Central central = Central.getConfiguredInstance(config);
+
+		received.clear();
+		central.processIncomingSnapshot(createSnapshot());
+		central.processIncomingSnapshot(createSnapshot());
+		SnapshotMetaData first = received.get(0).getMetaData();
+		SnapshotMetaData second = received.get(1).getMetaData();
+		assertSame(first.getHostName(), second.getHostName());
+		assertSame(first.getProducerId(), second.getProducerId());
+		assertSame(first.getIntervalName(), second.getIntervalName());
+		assertSame(first.getStatClassName(), second.getStatClassName());
+
+		config.setMetaDataPoolSize(0);
+		central.reconfigure(config);
+		received.clear();
+		central.processIncomingSnapshot(createSnapshot());
+		central.processIncomingSnapshot(createSnapshot());
+		assertNotSame(received.get(0).getMetaData().getHostName(), received.get(1).getMetaData().getHostName());
+	}
+
+	private static Snapshot createSnapshot(){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(new String("host"));
+		metaData.setProducerId(new String("producer"));
+		metaData.setIntervalName(new String("1m"));
+		metaData.setStatClassName(new String("ServiceStats"));
+		snapshot.setMetaData(metaData);
+		return snapshot;
+	}
+}
@@ -0,0 +1,186 @@
+package org.moskito.central.aggregation;
+
+import org.junit.After;
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.AggregationConfig;
+import org.moskito.central.config.AggregationRuleEntry;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the merging of the snapshots of all hosts.
+ */
+public class ClusterAggregatorTest {
+
+	private static final List<Snapshot> received = CapturingStorage.getReceived();
+
+	private final List<Snapshot> merged = new CopyOnWriteArrayList<Snapshot>();
+
+	private ClusterAggregator aggregator;
+
+	@After
+	public void tearDown(){
+		if (aggregator != null)
+			aggregator.shutdown();
+	}
+
+	private ClusterAggregator createAggregator(AggregationConfig config){
+		aggregator = new ClusterAggregator(config, new AggregationListener() {
+			@Override
+			public void snapshotAggregated(Snapshot snapshot) {
+				merged.add(snapshot);
+			}
+		});
+		return aggregator;
+	}
+
+	private static AggregationConfig createConfig(){
+		AggregationConfig config = new AggregationConfig();
+		config.setEnabled(true);
+		config.setWindow(60000);
+		return config;
+	}
+
+	@Test
+	public void testMergeFunctions(){
+		ClusterAggregator aggregator = createAggregator(createConfig());
+		aggregator.add(createSnapshot("host1", 1000, "10", "2", "500", "120", "5", "50.0"));
+		aggregator.add(createSnapshot("host2", 1200, "30", "1", "3000", "400", "20", "100.0"));
+		aggregator.add(createSnapshot("host3", 1100, "0", "0", "0", String.valueOf(Long.MIN_VALUE), String.valueOf(Long.MAX_VALUE), "NaN"));
+		assertTrue(merged.isEmpty());
+		assertEquals(1, aggregator.getOpenBuckets());
+		aggregator.flush();
+
+		assertEquals(1, merged.size());
+		Snapshot snapshot = merged.get(0);
+		SnapshotMetaData metaData = snapshot.getMetaData();
+		assertEquals("*", metaData.getHostName());
+		assertEquals("component", metaData.getComponentName());
+		assertEquals("producer", metaData.getProducerId());
+		assertEquals("1m", metaData.getIntervalName());
+		assertEquals(1200, metaData.getCreationTimestamp());
+
+		Map<String, String> stat = snapshot.getStatistics("cumulated");
+		assertEquals("40", stat.get("TR"));
+		assertEquals("3", stat.get("ERR"));
+		assertEquals("3500", stat.get("TT"));
+		assertEquals("400", stat.get("Max"));
+		assertEquals("5", stat.get("Min"));
+		//weighted by TR, the host without requests doesn't count.
+		assertEquals(87.5, Double.parseDouble(stat.get("Avg")), 0.0001);
+		assertEquals("unknown", stat.get("Text"));
+		assertEquals(0, aggregator.getOpenBuckets());
+	}
+
+	@Test
+	public void testNextSnapshotOfHostClosesBucket(){
+		ClusterAggregator aggregator = createAggregator(createConfig());
+		aggregator.add(createSnapshot("host1", 1000, "1", "0", "1", "1", "1", "1"));
+		aggregator.add(createSnapshot("host2", 1000, "2", "0", "1", "1", "1", "1"));
+		assertTrue(merged.isEmpty());
+		aggregator.add(createSnapshot("host1", 2000, "4", "0", "1", "1", "1", "1"));
+		assertEquals(1, merged.size());
+		assertEquals("3", merged.get(0).getStatistics("cumulated").get("TR"));
+		aggregator.flush();
+		assertEquals(2, merged.size());
+		assertEquals("4", merged.get(1).getStatistics("cumulated").get("TR"));
+
+		//merged snapshots are not merged again.
+		aggregator.add(merged.get(0));
+		assertEquals(0, aggregator.getOpenBuckets());
+	}
+
+	@Test
+	public void testWindowExpires() throws InterruptedException{
+		AggregationConfig config = createConfig();
+		config.setWindow(100);
+		ClusterAggregator aggregator = createAggregator(config);
+		aggregator.add(createSnapshot("host1", 1000, "1", "0", "1", "1", "1", "1"));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (merged.isEmpty() && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(1, merged.size());
+	}
+
+	@Test
+	public void testConfiguredRules(){
+		AggregationConfig config = createConfig();
+		config.setDefaultFunction("max");
+		config.setRules(new AggregationRuleEntry[]{
+				new AggregationRuleEntry("TR", "sum"),
+				new AggregationRuleEntry("Avg", "min"),
+				new AggregationRuleEntry("Last*", "mean"),
+				new AggregationRuleEntry("ERR", "unknown")
+		});
+		ClusterAggregator aggregator = createAggregator(config);
+		assertEquals(MergeFunction.SUM, aggregator.getFunction("TR"));
+		assertEquals(MergeFunction.MIN, aggregator.getFunction("Avg"));
+		assertEquals(MergeFunction.MEAN, aggregator.getFunction("LastValue"));
+		assertEquals(MergeFunction.MAX, aggregator.getFunction("ERR"));
+		assertEquals(MergeFunction.MAX, aggregator.getFunction("TT"));
+		assertEquals(MergeFunction.MIN, aggregator.getFunction("Min"));
+
+		aggregator.add(createSnapshot("host1", 1000, "10", "2", "1.5", "1", "1", "50"));
+		aggregator.add(createSnapshot("host2", 1000, "30", "1", "3", "1", "1", "100"));
+		aggregator.flush();
+		Map<String, String> stat = merged.get(0).getStatistics("cumulated");
+		assertEquals("40", stat.get("TR"));
+		assertEquals("2", stat.get("ERR"));
+		assertEquals("3.0", stat.get("TT"));
+		assertEquals("50", stat.get("Avg"));
+
+		assertTrue(aggregator.matches(config));
+		AggregationConfig changed = createConfig();
+		assertFalse(aggregator.matches(changed));
+	}
+
+	@Test
+	public void testCentralDeliversMergedSnapshots(){
+		Configuration config = CapturingStorage.createConfiguration();
+		config.setAggregation(createConfig());
+		Central central = Central.getConfiguredInstance(config);
+
+		received.clear();
+		central.processIncomingSnapshot(createSnapshot("host1", 1000, "10", "0", "1", "1", "1", "1"));
+		central.processIncomingSnapshot(createSnapshot("host2", 1000, "5", "0", "1", "1", "1", "1"));
+		assertEquals(2, received.size());
+		central.shutdown(5000);
+		assertEquals(3, received.size());
+		assertEquals("*", received.get(2).getMetaData().getHostName());
+		assertEquals("15", received.get(2).getStatistics("cumulated").get("TR"));
+	}
+
+	private static Snapshot createSnapshot(String host, long created, String tr, String err, String tt, String max, String min, String avg){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId("producer");
+		metaData.setIntervalName("1m");
+		metaData.setCreationTimestamp(created);
+		snapshot.setMetaData(metaData);
+		Map<String, String> stat = new HashMap<String, String>();
+		stat.put("TR", tr);
+		stat.put("ERR", err);
+		stat.put("TT", tt);
+		stat.put("Max", max);
+		stat.put("Min", min);
+		stat.put("Avg", avg);
+		stat.put("Text", "unknown");
+		snapshot.addSnapshotData("cumulated", stat);
+		return snapshot;
+	}
+}
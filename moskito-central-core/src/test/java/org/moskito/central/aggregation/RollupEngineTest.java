@@ -0,0 +1,248 @@
+package org.moskito.central.aggregation;
+
+import org.junit.After;
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.AggregationConfig;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.config.RollupConfig;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the rollups into longer intervals.
+ */
+public class RollupEngineTest {
+
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	/**
+	 * Some full hour.
+	 */
+	private static final long START = 400000 * HOUR;
+
+	private final List<Snapshot> rollups = new CopyOnWriteArrayList<Snapshot>();
+
+	private RollupEngine engine;
+
+	@After
+	public void tearDown(){
+		if (engine != null)
+			engine.shutdown();
+	}
+
+	private RollupEngine createEngine(RollupConfig config){
+		engine = new RollupEngine(config, new MergeRules(new AggregationConfig()), new AggregationListener() {
+			@Override
+			public void snapshotAggregated(Snapshot snapshot) {
+				rollups.add(snapshot);
+			}
+		});
+		return engine;
+	}
+
+	private static RollupConfig createConfig(){
+		RollupConfig config = new RollupConfig();
+		config.setEnabled(true);
+		return config;
+	}
+
+	@Test
+	public void testHourlyRollup(){
+		RollupEngine engine = createEngine(createConfig());
+		//the snapshot at the full hour covers the last minute of the previous hour.
+		for (int minute = 1; minute <= 60; minute++){
+			engine.add(createSnapshot("host1", "1m", START + minute * MINUTE, "10", "100", String.valueOf(minute), String.valueOf(minute), minute % 2 == 0 ? "20.0" : "10.0"));
+		}
+		assertTrue(rollups.isEmpty());
+		//an ignored interval.
+		engine.add(createSnapshot("host1", "5m", START + 61 * MINUTE, "10", "100", "1", "1", "1.0"));
+		assertTrue(rollups.isEmpty());
+
+		engine.add(createSnapshot("host1", "1m", START + 61 * MINUTE, "1", "1", "1", "1", "1.0"));
+		assertEquals(1, rollups.size());
+		Snapshot rollup = rollups.get(0);
+		SnapshotMetaData metaData = rollup.getMetaData();
+		assertEquals("1h", metaData.getIntervalName());
+		assertEquals("host1", metaData.getHostName());
+		assertEquals("producer", metaData.getProducerId());
+		assertEquals(START + HOUR, metaData.getCreationTimestamp());
+		Map<String, String> stat = rollup.getStatistics("cumulated");
+		assertEquals("600", stat.get("TR"));
+		assertEquals("6000", stat.get("TT"));
+		assertEquals("60", stat.get("Max"));
+		assertEquals("1", stat.get("Min"));
+		assertEquals(15.0, Double.parseDouble(stat.get("Avg")), 0.0001);
+		assertEquals("NaN", stat.get("Text"));
+
+		//the daily rollup is still open, both are closed by the flush.
+		engine.flush();
+		assertEquals(3, rollups.size());
+		Map<String, String> values = new HashMap<String, String>();
+		for (Snapshot snapshot : rollups.subList(1, 3)){
+			values.put(snapshot.getMetaData().getIntervalName(), snapshot.getStatistics("cumulated").get("TR"));
+		}
+		assertEquals("1", values.get("1h"));
+		assertEquals("601", values.get("1d"));
+		assertEquals(0, engine.getSeriesCount());
+	}
+
+	@Test
+	public void testSeriesPerHost(){
+		RollupConfig config = createConfig();
+		config.setIntervals(new String[]{"1h"});
+		RollupEngine engine = createEngine(config);
+		engine.add(createSnapshot("host1", "1m", START + MINUTE, "1", "1", "1", "1", "1.0"));
+		engine.add(createSnapshot("host2", "1m", START + MINUTE, "2", "1", "1", "1", "1.0"));
+		engine.add(createSnapshot("host1", "1m", START + 2 * MINUTE, "3", "1", "1", "1", "1.0"));
+		assertEquals(2, engine.getSeriesCount());
+		engine.flush();
+		assertEquals(2, rollups.size());
+		Map<String, String> values = new HashMap<String, String>();
+		for (Snapshot rollup : rollups){
+			values.put(rollup.getMetaData().getHostName(), rollup.getStatistics("cumulated").get("TR"));
+		}
+		assertEquals("4", values.get("host1"));
+		assertEquals("2", values.get("host2"));
+	}
+
+	@Test
+	public void testExpiredRollupsAreClosed(){
+		RollupConfig config = createConfig();
+		config.setIntervals(new String[]{"1h"});
+		config.setDelay(MINUTE);
+		RollupEngine engine = createEngine(config);
+		engine.add(createSnapshot("host1", "1m", START + MINUTE, "1", "1", "1", "1", "1.0"));
+		engine.flushExpired(START + HOUR + 30000);
+		assertTrue(rollups.isEmpty());
+		engine.flushExpired(START + HOUR + MINUTE);
+		assertEquals(1, rollups.size());
+
+		engine.add(createSnapshot("host1", "1m", START + HOUR + MINUTE, "2", "1", "1", "1", "1.0"));
+		engine.flushExpired(START + 2 * HOUR + MINUTE);
+		assertEquals(2, rollups.size());
+		assertEquals("2", rollups.get(1).getStatistics("cumulated").get("TR"));
+	}
+
+	@Test
+	public void testLateSnapshotAfterTimerFlush(){
+		RollupConfig config = createConfig();
+		config.setIntervals(new String[]{"1h"});
+		config.setDelay(MINUTE);
+		RollupEngine engine = createEngine(config);
+		engine.add(createSnapshot("host1", "1m", START + MINUTE, "1", "1", "1", "1", "1.0"));
+		engine.flushExpired(START + HOUR + MINUTE);
+		assertEquals(1, rollups.size());
+		//the emitted period is remembered although the series is empty.
+		assertEquals(1, engine.getSeriesCount());
+
+		//e.g. replayed from a spool, more than the delay late.
+		engine.add(createSnapshot("host1", "1m", START + 2 * MINUTE, "5", "1", "1", "1", "1.0"));
+		engine.flushExpired(START + HOUR + 30 * MINUTE);
+		assertEquals(1, rollups.size());
+		assertEquals(1, engine.getSeriesCount());
+
+		//forgotten after another period.
+		engine.flushExpired(START + 2 * HOUR + MINUTE);
+		assertEquals(1, rollups.size());
+		assertEquals(0, engine.getSeriesCount());
+	}
+
+	@Test
+	public void testMaxSeries(){
+		RollupConfig config = createConfig();
+		config.setMaxSeries(2);
+		RollupEngine engine = createEngine(config);
+		engine.add(createSnapshot("host1", "1m", START + MINUTE, "1", "1", "1", "1", "1.0"));
+		engine.add(createSnapshot("host2", "1m", START + MINUTE, "1", "1", "1", "1", "1.0"));
+		assertEquals(2, engine.getSeriesCount());
+	}
+
+	@Test
+	public void testParseInterval(){
+		assertEquals(30000, RollupEngine.parseInterval("30s"));
+		assertEquals(5 * MINUTE, RollupEngine.parseInterval("5m"));
+		assertEquals(HOUR, RollupEngine.parseInterval(" 1h "));
+		assertEquals(24 * HOUR, RollupEngine.parseInterval("1d"));
+		assertEquals(-1, RollupEngine.parseInterval("h"));
+		assertEquals(-1, RollupEngine.parseInterval("1w"));
+		assertEquals(-1, RollupEngine.parseInterval("xh"));
+		assertEquals(-1, RollupEngine.parseInterval("0h"));
+		assertEquals(-1, RollupEngine.parseInterval(null));
+	}
+
+	@Test
+	public void testMatches(){
+		RollupConfig config = createConfig();
+		RollupEngine engine = createEngine(config);
+		MergeRules rules = new MergeRules(new AggregationConfig());
+		assertTrue(engine.matches(createConfig(), rules));
+		config.setIntervals(new String[]{"1h", "1d", "7d"});
+		assertFalse(engine.matches(config, rules));
+		AggregationConfig aggregation = new AggregationConfig();
+		aggregation.setDefaultFunction("max");
+		assertFalse(engine.matches(createConfig(), new MergeRules(aggregation)));
+	}
+
+	@Test
+	public void testCentralStoresRollups(){
+		Configuration config = CapturingStorage.createConfiguration();
+		RollupConfig rollup = createConfig();
+		rollup.setIntervals(new String[]{"1h"});
+		config.setRollup(rollup);
+		AggregationConfig aggregation = new AggregationConfig();
+		aggregation.setEnabled(true);
+		config.setAggregation(aggregation);
+		Central central = Central.getConfiguredInstance(config);
+
+		List<Snapshot> received = CapturingStorage.getReceived();
+		received.clear();
+		central.processIncomingSnapshot(createSnapshot("host1", "1m", START + MINUTE, "10", "1", "1", "1", "1.0"));
+		central.processIncomingSnapshot(createSnapshot("host2", "1m", START + MINUTE, "5", "1", "1", "1", "1.0"));
+		central.shutdown(5000);
+
+		//two snapshots, the cluster snapshot and the rollups of both hosts and the cluster.
+		assertEquals(6, received.size());
+		Map<String, String> hourly = new HashMap<String, String>();
+		for (Snapshot snapshot : received){
+			if ("1h".equals(snapshot.getMetaData().getIntervalName()))
+				hourly.put(snapshot.getMetaData().getHostName(), snapshot.getStatistics("cumulated").get("TR"));
+		}
+		assertEquals("10", hourly.get("host1"));
+		assertEquals("5", hourly.get("host2"));
+		assertEquals("15", hourly.get("*"));
+	}
+
+	private static Snapshot createSnapshot(String host, String interval, long created, String tr, String tt, String max, String min, String avg){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId("producer");
+		metaData.setIntervalName(interval);
+		metaData.setCreationTimestamp(created);
+		snapshot.setMetaData(metaData);
+		Map<String, String> stat = new HashMap<String, String>();
+		stat.put("TR", tr);
+		stat.put("TT", tt);
+		stat.put("Max", max);
+		stat.put("Min", min);
+		stat.put("Avg", avg);
+		stat.put("Text", "unknown");
+		snapshot.addSnapshotData("cumulated", stat);
+		return snapshot;
+	}
+}
@@ -0,0 +1,156 @@
+package org.moskito.central.cardinality;
+
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.CardinalityConfig;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the limits of the producer ids per host and component.
+ */
+public class CardinalityGuardTest {
+
+	private static final List<Snapshot> received = CapturingStorage.getReceived();
+
+	private static CardinalityConfig createConfig(String action){
+		CardinalityConfig config = new CardinalityConfig();
+		config.setEnabled(true);
+		config.setMaxProducers(3);
+		config.setAction(action);
+		return config;
+	}
+
+	@Test
+	public void testDropsFurtherProducers(){
+		CardinalityGuard guard = new CardinalityGuard(createConfig("drop"));
+		for (int i = 0; i < 3; i++){
+			assertTrue(guard.admit(createSnapshot("host1", "producer" + i)) != null);
+		}
+		assertNull(guard.admit(createSnapshot("host1", "producer3")));
+		//admitted producers and other hosts are not affected.
+		assertTrue(guard.admit(createSnapshot("host1", "producer0")) != null);
+		assertTrue(guard.admit(createSnapshot("host2", "producer3")) != null);
+
+		List<CardinalityStatus> status = guard.getStatus();
+		assertEquals(2, status.size());
+		CardinalityStatus host1 = status.get(0);
+		assertEquals("host1", host1.getHostName());
+		assertEquals(3, host1.getProducers());
+		assertEquals(4, host1.getEstimatedProducers());
+		assertEquals(1, host1.getDropped());
+		assertEquals(0, host1.getRerouted());
+	}
+
+	@Test
+	public void testReroutesFurtherProducers(){
+		CardinalityConfig config = createConfig("reroute");
+		config.setOverflowProducerId("other");
+		CardinalityGuard guard = new CardinalityGuard(config);
+		for (int i = 0; i < 3; i++){
+			guard.admit(createSnapshot("host1", "producer" + i));
+		}
+		Snapshot snapshot = createSnapshot("host1", "/url/4711");
+		assertSame(snapshot, guard.admit(snapshot));
+		assertEquals("other", snapshot.getMetaData().getProducerId());
+		assertEquals(1, guard.getStatus().get(0).getRerouted());
+
+		assertTrue(guard.matches(config));
+		assertFalse(guard.matches(createConfig("drop")));
+	}
+
+	@Test
+	public void testExpiredProducersFreeTheirPlace() throws InterruptedException{
+		CardinalityConfig config = createConfig("drop");
+		config.setMaxProducers(1);
+		config.setProducerTtl(1);
+		CardinalityGuard guard = new CardinalityGuard(config);
+		guard.admit(createSnapshot("host1", "old"));
+		Thread.sleep(5);
+		assertTrue(guard.admit(createSnapshot("host1", "new")) != null);
+		assertNull(guard.admit(createSnapshot("host1", "old")));
+	}
+
+	@Test
+	public void testMaxComponents(){
+		CardinalityConfig config = createConfig("drop");
+		config.setMaxComponents(1);
+		CardinalityGuard guard = new CardinalityGuard(config);
+		guard.admit(createSnapshot("host1", "producer"));
+		//further components are not tracked.
+		for (int i = 0; i < 5; i++){
+			assertTrue(guard.admit(createSnapshot("host2", "producer" + i)) != null);
+		}
+		assertEquals(1, guard.getStatus().size());
+	}
+
+	@Test
+	public void testIdleComponentsAreRemoved() throws InterruptedException{
+		CardinalityConfig config = createConfig("drop");
+		config.setMaxComponents(1);
+		config.setProducerTtl(1);
+		CardinalityGuard guard = new CardinalityGuard(config);
+		guard.admit(createSnapshot("host1", "producer"));
+		Thread.sleep(5);
+		//the host which stopped sending makes room for a new one.
+		guard.admit(createSnapshot("host2", "producer"));
+		List<CardinalityStatus> status = guard.getStatus();
+		assertEquals(1, status.size());
+		assertEquals("host2", status.get(0).getHostName());
+	}
+
+	@Test
+	public void testHyperLogLogEstimate(){
+		HyperLogLog small = new HyperLogLog(10);
+		HyperLogLog large = new HyperLogLog(10);
+		for (int i = 0; i < 100000; i++){
+			if (i < 500)
+				small.add("/url/" + i);
+			large.add("/url/" + i);
+			//duplicates don't count.
+			large.add("/url/" + (i / 2));
+		}
+		assertEquals(500, small.estimate(), 500 * 0.05);
+		//about three standard errors of 3.25%.
+		assertEquals(100000, large.estimate(), 100000 * 0.1);
+		small.merge(large);
+		assertEquals(large.estimate(), small.estimate());
+		assertEquals(0, new HyperLogLog(10).estimate());
+	}
+
+	@Test
+	public void testCentralLimitsProducers(){
+		Configuration config = CapturingStorage.createConfiguration();
+		config.setCardinality(createConfig("drop"));
+		Central central = Central.getConfiguredInstance(config);
+
+		received.clear();
+		for (int i = 0; i < 10; i++){
+			central.processIncomingSnapshot(createSnapshot("host1", "producer" + i));
+		}
+		assertEquals(3, received.size());
+		assertEquals(7, central.getCardinalityStatus().get(0).getDropped());
+		central.shutdown(5000);
+	}
+
+	private static Snapshot createSnapshot(String host, String producer){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId(producer);
+		metaData.setIntervalName("1m");
+		snapshot.setMetaData(metaData);
+		return snapshot;
+	}
+}
@@ -0,0 +1,162 @@
+package org.moskito.central.protocol;
+
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinarySnapshotCodecTest {
+
+	private static Snapshot createSnapshot(String producer, long timestamp, String... keysAndValues){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId(producer).setComponentName("app").setHostName("host01").setIntervalName("1m")
+				.setCategory("service").setSubsystem("default").setStatClassName("ServiceStats").setCreationTimestamp(timestamp);
+		snapshot.setMetaData(metaData);
+		Map<String, String> values = new HashMap<String, String>();
+		for (int i=0; i<keysAndValues.length; i+=2){
+			values.put(keysAndValues[i], keysAndValues[i+1]);
+		}
+		snapshot.addSnapshotData("cumulated", values);
+		return snapshot;
+	}
+
+	/**
+	 * Decodes a frame as the endpoint does: length prefix and type byte first.
+	 */
+	private static List<Snapshot> decode(BinarySnapshotDecoder decoder, ByteBuffer frame) throws ProtocolException{
+		ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+		copy.put(frame).flip();
+		assertEquals(copy.remaining() - 4, copy.getInt());
+		assertEquals(BinaryProtocol.FRAME_SNAPSHOTS, copy.get());
+		return decoder.decode(copy);
+	}
+
+	private static void assertSnapshotEquals(Snapshot expected, Snapshot actual){
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.getStats(), actual.getStats());
+	}
+
+	@Test
+	public void testRoundTrip() throws ProtocolException{
+		BinarySnapshotEncoder encoder = new BinarySnapshotEncoder();
+		BinarySnapshotDecoder decoder = new BinarySnapshotDecoder();
+
+		Snapshot values = createSnapshot("A", 1500000000000L,
+				"long", "12", "negative", "-7", "zero", "0", "leadingZero", "007", "max", String.valueOf(Long.MAX_VALUE),
+				"double", "1.5", "integralDouble", "12.0", "negativeZero", "-0.0", "exponent", "1.0E10",
+				"small", "0.05", "negativeSmall", "-0.05", "trailingZero", "10.50", "leadingZeros", "00.5", "dot", "1.", "noInteger", ".5", "tiny", "4.9E-324",
+				"nan", "NaN", "text", "abc", "empty", "", "null", null, "unicode", "über");
+		Snapshot delta = createSnapshot("B", 1500000060000L, "long", "13");
+		delta.getMetaData().setDeltaBase(1500000000000L).setArrivalTimestamp(1500000060042L);
+		Snapshot keyframe = createSnapshot("C", 1499999999000L);
+		keyframe.getMetaData().setKeyframe(true);
+		keyframe.getStats().put("empty", null);
+		Snapshot noMetaData = new Snapshot();
+
+		List<Snapshot> snapshots = Arrays.asList(values, delta, keyframe, noMetaData);
+		List<Snapshot> decoded = decode(decoder, encoder.encode(snapshots));
+		assertEquals(4, decoded.size());
+		for (int i=0; i<snapshots.size(); i++){
+			assertSnapshotEquals(snapshots.get(i), decoded.get(i));
+		}
+		assertTrue(decoded.get(1).getMetaData().isDelta());
+		assertEquals(1500000000000L, decoded.get(1).getMetaData().getDeltaBase());
+		assertEquals(1500000060042L, decoded.get(1).getMetaData().getArrivalTimestamp());
+		assertTrue(decoded.get(2).getMetaData().isKeyframe());
+		assertNull(decoded.get(3).getMetaData());
+	}
+
+	@Test
+	public void testDictionaryIsKeptBetweenFrames() throws ProtocolException{
+		BinarySnapshotEncoder encoder = new BinarySnapshotEncoder();
+		BinarySnapshotDecoder decoder = new BinarySnapshotDecoder();
+
+		long now = System.currentTimeMillis();
+		List<Snapshot> first = new ArrayList<Snapshot>();
+		List<Snapshot> second = new ArrayList<Snapshot>();
+		for (int i=0; i<10; i++){
+			first.add(createSnapshot("producer"+i, now, "Req", "1", "Time", "2.5"));
+			second.add(createSnapshot("producer"+i, now + 60000, "Req", "2", "Time", "3.5"));
+		}
+		ByteBuffer firstFrame = encoder.encode(first);
+		int firstSize = firstFrame.remaining();
+		decode(decoder, firstFrame);
+		ByteBuffer secondFrame = encoder.encode(second);
+		assertTrue(secondFrame.remaining() < firstSize);
+		//strings are references and values are numbers now.
+		assertTrue("bytes per snapshot: " + secondFrame.remaining() / second.size(), secondFrame.remaining() / second.size() < 25);
+
+		List<Snapshot> decoded = decode(decoder, secondFrame);
+		for (int i=0; i<10; i++){
+			assertSnapshotEquals(second.get(i), decoded.get(i));
+		}
+	}
+
+	private static ByteBuffer payload(ByteBuffer frame){
+		return ByteBuffer.wrap(Arrays.copyOfRange(frame.array(), 5, frame.limit()));
+	}
+
+	@Test
+	public void testMalformedFrames(){
+		BinarySnapshotEncoder encoder = new BinarySnapshotEncoder();
+		ByteBuffer first = payload(encoder.encode(Arrays.asList(createSnapshot("A", 1000, "Req", "1"))));
+		ByteBuffer second = payload(encoder.encode(Arrays.asList(createSnapshot("A", 1000, "Req", "1"))));
+
+		try{
+			new BinarySnapshotDecoder().decode(ByteBuffer.wrap(first.array(), 0, first.limit() - 3));
+			fail("truncated frame should be rejected");
+		}catch(ProtocolException expected){
+		}
+
+		try{
+			new BinarySnapshotDecoder().decode(second);
+			fail("references to unknown strings should be rejected");
+		}catch(ProtocolException expected){
+		}
+
+		try{
+			new BinarySnapshotDecoder().decode(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F}));
+			fail("absurd snapshot count should be rejected");
+		}catch(ProtocolException expected){
+		}
+	}
+
+	@Test
+	public void testHello() throws ProtocolException{
+		ByteBuffer hello = BinaryProtocol.hello();
+		assertEquals(6, hello.getInt());
+		assertEquals(BinaryProtocol.FRAME_HELLO, hello.get());
+		BinaryProtocol.checkHello(hello);
+		assertFalse(hello.hasRemaining());
+
+		try{
+			BinaryProtocol.checkHello(ByteBuffer.wrap("GET / HTTP/1.1".getBytes()));
+			fail("non protocol data should be rejected");
+		}catch(ProtocolException expected){
+		}
+	}
+
+	@Test
+	public void testCanonicalLong(){
+		assertTrue(BinarySnapshotEncoder.isCanonicalLong("0"));
+		assertTrue(BinarySnapshotEncoder.isCanonicalLong("-123"));
+		assertFalse(BinarySnapshotEncoder.isCanonicalLong("-0"));
+		assertFalse(BinarySnapshotEncoder.isCanonicalLong("01"));
+		assertFalse(BinarySnapshotEncoder.isCanonicalLong("-"));
+		assertFalse(BinarySnapshotEncoder.isCanonicalLong("1.0"));
+		assertFalse(BinarySnapshotEncoder.isCanonicalLong("+1"));
+	}
+}
@@ -0,0 +1,66 @@
+package org.moskito.central.protocol;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonSnapshotReaderTest {
+
+	private static Snapshot read(String json) throws IOException{
+		return JsonSnapshotReader.readSnapshot(new JsonReader(new StringReader(json.replace('\'', '"'))));
+	}
+
+	@Test
+	public void testAdapterFormat() throws IOException{
+		Snapshot snapshot = read("{'snshmd':{'producerId':'SessionCount','componentName':'app','hostName':'host01','intervalName':'1m'," +
+				"'creationTimestamp':1500000000000,'arrivalTimestamp':1500000000042,'category':'web','subsystem':null,'statClassName':'SessionCountStats'," +
+				"'keyframe':true,'unknown':{'a':[1,2]}}," +
+				"'stats':{'entries':[{'key':'cumulated','value':{'Cur':'12','Max':'1.5','Min':null}},{'key':'empty','value':{}}]}}");
+		assertEquals("SessionCount", snapshot.getMetaData().getProducerId());
+		assertEquals("host01", snapshot.getMetaData().getHostName());
+		assertEquals(1500000000000L, snapshot.getMetaData().getCreationTimestamp());
+		assertEquals(1500000000042L, snapshot.getMetaData().getArrivalTimestamp());
+		assertNull(snapshot.getMetaData().getSubsystem());
+		assertTrue(snapshot.getMetaData().isKeyframe());
+		assertEquals(2, snapshot.getStats().size());
+		assertEquals("12", snapshot.getStatistics("cumulated").get("Cur"));
+		assertEquals("1.5", snapshot.getStatistics("cumulated").get("Max"));
+		assertTrue(snapshot.getStatistics("cumulated").containsKey("Min"));
+		assertTrue(snapshot.getStatistics("empty").isEmpty());
+	}
+
+	@Test
+	public void testPlainStats() throws IOException{
+		Snapshot snapshot = read("{'metaData':{'producerId':'p'},'stats':{'cumulated':{'Req':12,'Err':0.5,'Flag':true},'entries':{'Req':'1'}}}");
+		assertEquals("p", snapshot.getMetaData().getProducerId());
+		//numbers keep their literal form.
+		assertEquals("12", snapshot.getStatistics("cumulated").get("Req"));
+		assertEquals("0.5", snapshot.getStatistics("cumulated").get("Err"));
+		assertEquals("true", snapshot.getStatistics("cumulated").get("Flag"));
+		//a stat called entries is no adapter list.
+		assertEquals("1", snapshot.getStatistics("entries").get("Req"));
+	}
+
+	@Test
+	public void testMalformed() throws IOException{
+		try{
+			read("{'stats':{'cumulated':{'Req':{'nested':1}}}}");
+			fail("nested values should be rejected");
+		}catch(MalformedJsonException expected){
+		}
+		try{
+			read("{'snshmd':{'creationTimestamp':'yesterday'}}");
+			fail("invalid timestamps should be rejected");
+		}catch(MalformedJsonException expected){
+		}
+	}
+}
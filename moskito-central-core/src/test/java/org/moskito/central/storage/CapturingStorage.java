@@ -0,0 +1,52 @@
+package org.moskito.central.storage;
+
+import org.moskito.central.Snapshot;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.config.StorageConfigEntry;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Storage for tests which keeps all snapshots it receives, so a test can check what a central delivered. The central
+ * creates its storages by class name, therefore the snapshots are kept in a static list, which each test clears.
+ * Shared with the tests of other modules by the test jar of the core.
+ */
+public class CapturingStorage implements Storage {
+
+	private static final List<Snapshot> received = new CopyOnWriteArrayList<Snapshot>();
+
+	/**
+	 * Returns the snapshots received by all instances since the last {@link #clear()}.
+	 * @return List
+	 */
+	public static List<Snapshot> getReceived(){
+		return received;
+	}
+
+	public static void clear(){
+		received.clear();
+	}
+
+	/**
+	 * Returns a configuration with a single capturing storage.
+	 * @return Configuration
+	 */
+	public static Configuration createConfiguration(){
+		StorageConfigEntry entry = new StorageConfigEntry();
+		entry.setName("capture");
+		entry.setClazz(CapturingStorage.class.getName());
+		Configuration configuration = new Configuration();
+		configuration.setStorages(new StorageConfigEntry[]{entry});
+		return configuration;
+	}
+
+	@Override
+	public void configure(String configurationName) {
+	}
+
+	@Override
+	public void processSnapshot(Snapshot target) {
+		received.add(target);
+	}
+}
@@ -0,0 +1,96 @@
+package org.moskito.central.storage;
+
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.memory.GorillaBlock;
+import org.moskito.central.storage.memory.GorillaDecoder;
+import org.moskito.central.storage.memory.TimeSeries;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the in-memory storage.
+ */
+public class InMemoryStorageTest {
+
+	private static Snapshot createSnapshot(String host, long created, int requests){
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId("producer");
+		metaData.setIntervalName("1m");
+		metaData.setCreationTimestamp(created);
+		snapshot.setMetaData(metaData);
+		Map<String, String> stat = new HashMap<String, String>();
+		stat.put("TR", String.valueOf(requests));
+		stat.put("Avg", requests == 0 ? "NaN" : String.valueOf(1000.0 / requests));
+		stat.put("Text", "unknown");
+		snapshot.addSnapshotData("cumulated", stat);
+		return snapshot;
+	}
+
+	@Test
+	public void testHistory(){
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.configure((String) null);
+		long start = 1400000000000L;
+		for (int i = 0; i < 1000; i++){
+			storage.processSnapshot(createSnapshot("host1", start + i * 60000L, i));
+			storage.processSnapshot(createSnapshot("host2", start + i * 60000L, 2 * i));
+		}
+		assertEquals(4, storage.getSeriesCount());
+		assertNull(storage.getTimeSeries("host1", "component", "producer", "1m", "cumulated", "Text"));
+		assertNull(storage.getTimeSeries("host3", "component", "producer", "1m", "cumulated", "TR"));
+
+		TimeSeries series = storage.getTimeSeries("host2", "component", "producer", "1m", "cumulated", "TR");
+		assertEquals(1000, series.getCount());
+		int i = 0;
+		for (GorillaBlock block : series.getBlocks(start, Long.MAX_VALUE)){
+			GorillaDecoder decoder = block.decoder();
+			while (decoder.next()){
+				assertEquals(start + i * 60000L, decoder.getTimestamp());
+				assertEquals(2 * i, decoder.getValue(), 0.0);
+				i++;
+			}
+		}
+		assertEquals(1000, i);
+
+		TimeSeries avg = storage.getTimeSeries("host1", "component", "producer", "1m", "cumulated", "Avg");
+		GorillaDecoder decoder = avg.getBlocks(start, start).get(0).decoder();
+		assertTrue(decoder.next());
+		assertTrue(Double.isNaN(decoder.getValue()));
+
+		//4000 points would take 64000 bytes raw, the averages have random mantissas.
+		assertTrue(String.valueOf(storage.getSize()), storage.getSize() < 64000 / 3);
+	}
+
+	@Test
+	public void testRetentionAndLimit(){
+		InMemoryStorageConfig config = new InMemoryStorageConfig();
+		config.setPointsPerBlock(10);
+		config.setMaxSeries(3);
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.configure(config);
+		for (int i = 1; i <= 100; i++){
+			storage.processSnapshot(createSnapshot("host1", i * 1000L, i));
+			storage.processSnapshot(createSnapshot("host2", i * 1000L, i));
+		}
+		assertEquals(3, storage.getSeriesCount());
+
+		storage.sweep(51000);
+		assertEquals(50, storage.getTimeSeries("host1", "component", "producer", "1m", "cumulated", "TR").getCount());
+		storage.sweep(Long.MAX_VALUE);
+		assertEquals(0, storage.getSeriesCount());
+		assertNull(storage.getTimeSeries("host1", "component", "producer", "1m", "cumulated", "TR"));
+
+		storage.processSnapshot(createSnapshot("host1", 200000, 1));
+		assertEquals(2, storage.getSeriesCount());
+	}
+}
@@ -0,0 +1,137 @@
+package org.moskito.central.storage.memory;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the Gorilla compression of time series.
+ */
+public class GorillaEncoderTest {
+
+	private static void assertRoundTrip(long[] timestamps, double[] values){
+		GorillaEncoder encoder = new GorillaEncoder();
+		for (int i = 0; i < timestamps.length; i++){
+			encoder.append(timestamps[i], values[i]);
+		}
+		GorillaBlock block = encoder.toBlock();
+		assertEquals(timestamps.length, block.getCount());
+		GorillaDecoder decoder = block.decoder();
+		for (int i = 0; i < timestamps.length; i++){
+			assertTrue(decoder.next());
+			assertEquals(timestamps[i], decoder.getTimestamp());
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.getValue()));
+		}
+		assertFalse(decoder.next());
+	}
+
+	@Test
+	public void testRandomSeries(){
+		Random random = new Random(42);
+		for (int run = 0; run < 200; run++){
+			int count = 1 + random.nextInt(500);
+			long[] timestamps = new long[count];
+			double[] values = new double[count];
+			long timestamp = random.nextLong() / 4;
+			double value = random.nextDouble() * 1000;
+			for (int i = 0; i < count; i++){
+				//regular intervals with jitter and occasional gaps.
+				switch (random.nextInt(10)){
+					case 0:
+						timestamp += 1 + random.nextInt(100000000);
+						break;
+					case 1:
+						timestamp += 1 + random.nextInt(5000);
+						break;
+					default:
+						timestamp += 60000 + random.nextInt(200) - 100;
+				}
+				switch (random.nextInt(5)){
+					case 0:
+						value = random.nextLong();
+						break;
+					case 1:
+						value += random.nextGaussian();
+						break;
+					case 2:
+						value = random.nextInt(1000);
+						break;
+					default:
+						//unchanged.
+				}
+				timestamps[i] = timestamp;
+				values[i] = value;
+			}
+			assertRoundTrip(timestamps, values);
+		}
+	}
+
+	@Test
+	public void testSpecialValues(){
+		double[] values = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE,
+				Double.MIN_VALUE, -Double.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, 1, 1, 0.1, 0.2, -0.1};
+		long[] timestamps = new long[values.length];
+		for (int i = 0; i < values.length; i++){
+			timestamps[i] = Long.MIN_VALUE / 2 + i * (long) Integer.MAX_VALUE * 1000;
+		}
+		assertRoundTrip(timestamps, values);
+		assertRoundTrip(new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE}, new double[]{1, 2, 3});
+	}
+
+	@Test
+	public void testCompression(){
+		GorillaEncoder encoder = new GorillaEncoder();
+		long timestamp = 1400000000000L;
+		for (int i = 0; i < 1440; i++){
+			timestamp += 60000;
+			encoder.append(timestamp, 100 + i % 7);
+		}
+		GorillaBlock block = encoder.toBlock();
+		//16 bytes per point raw.
+		assertTrue(block.toString(), block.getSize() < 1440 * 2);
+	}
+
+	@Test
+	public void testTimestampsMustIncrease(){
+		GorillaEncoder encoder = new GorillaEncoder();
+		encoder.append(1000, 1);
+		try{
+			encoder.append(1000, 2);
+			fail("duplicate timestamp accepted");
+		}catch(IllegalArgumentException expected){
+		}
+		assertEquals(1, encoder.getCount());
+	}
+
+	@Test
+	public void testTimeSeries(){
+		TimeSeries series = new TimeSeries(10);
+		for (int i = 1; i <= 25; i++){
+			assertTrue(series.append(i * 1000, i));
+		}
+		assertFalse(series.append(25000, 0));
+		assertEquals(25, series.getCount());
+
+		List<GorillaBlock> blocks = series.getBlocks(0, Long.MAX_VALUE);
+		assertEquals(3, blocks.size());
+		assertEquals(5, blocks.get(2).getCount());
+		assertEquals(2, series.getBlocks(12000, 25000).size());
+		assertEquals(1, series.getBlocks(0, 5000).size());
+
+		//the open block isn't changed by later points.
+		series.append(26000, 26);
+		assertEquals(5, blocks.get(2).getCount());
+
+		assertFalse(series.trim(11000));
+		assertEquals(16, series.getCount());
+		assertTrue(series.trim(27000));
+		assertEquals(0, series.getCount());
+		assertEquals(0, series.getSize());
+	}
+}
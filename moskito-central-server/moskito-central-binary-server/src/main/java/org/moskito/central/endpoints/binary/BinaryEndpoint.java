@@ -0,0 +1,372 @@
+package org.moskito.central.endpoints.binary;
+
+import org.configureme.ConfigurationManager;
+import org.moskito.central.Central;
+import org.moskito.central.CentralExecutors;
+import org.moskito.central.CentralShutdownException;
+import org.moskito.central.Snapshot;
+import org.moskito.central.protocol.BinaryProtocol;
+import org.moskito.central.protocol.BinarySnapshotDecoder;
+import org.moskito.central.protocol.ProtocolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NIO server for the binary ingest protocol of {@link BinaryProtocol}. A single selector thread does all socket io;
+ * complete frames are decoded and passed to the central by a pool of workers. A connection doesn't read its next
+ * frame before the previous one has been processed and acknowledged, so a slow central slows the connectors down
+ * instead of filling up the memory.
+ */
+public class BinaryEndpoint {
+
+	/**
+	 * Logger instance.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(BinaryEndpoint.class);
+
+	private final Central central;
+
+	private final BinaryEndpointConfig config;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private ExecutorService workers;
+
+	private Thread selectorThread;
+
+	private volatile boolean running;
+
+	/**
+	 * Connections whose frame has been processed and which wait for the selector thread to send the response.
+	 */
+	private final Queue<Connection> processed = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong receivedSnapshots = new AtomicLong();
+
+	private final AtomicLong receivedFrames = new AtomicLong();
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	public BinaryEndpoint(Central central, BinaryEndpointConfig config) {
+		this.central = central;
+		this.config = config;
+	}
+
+	/**
+	 * Binds the port and starts the selector thread and the workers.
+	 * @throws IOException if the port can't be bound.
+	 */
+	public synchronized void start() throws IOException {
+		if (running)
+			return;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(config.getPort()));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		int workerCount = config.getWorkers() > 0 ? config.getWorkers() : Runtime.getRuntime().availableProcessors();
+		workers = CentralExecutors.newExecutor("moskito-central-binary-worker-", workerCount, config.isVirtualThreads());
+
+		running = true;
+		selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				selectLoop();
+			}
+		}, "moskito-central-binary-selector");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		log.info("Binary endpoint listening on port " + getPort() + " with " + (config.isVirtualThreads() && CentralExecutors.isVirtualThreadsSupported() ? "virtual threads" : workerCount + " workers"));
+	}
+
+	/**
+	 * Closes the port and all connections. Frames being processed are finished, but not acknowledged anymore.
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the port the endpoint listens on.
+	 * @return int
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public long getReceivedSnapshots() {
+		return receivedSnapshots.get();
+	}
+
+	public long getReceivedFrames() {
+		return receivedFrames.get();
+	}
+
+	public int getConnectionCount() {
+		return connections.get();
+	}
+
+	private void selectLoop() {
+		try {
+			while (running) {
+				selector.select();
+				Connection done;
+				while ((done = processed.poll()) != null) {
+					done.respond();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable())
+								connection.read();
+							else if (key.isWritable())
+								connection.write();
+						} catch (IOException e) {
+							log.debug("Closing connection " + connection + ": " + e.getMessage());
+							connection.close();
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			log.error("Binary endpoint selector failed", e);
+		} finally {
+			closeAll();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connections.incrementAndGet();
+		}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Connection)
+				((Connection) key.attachment()).close();
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			log.warn("Couldn't close binary endpoint: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * State of a connector connection. Io happens in the selector thread only, the frame payload and the decoder
+	 * are used by one worker at a time while the connection doesn't read.
+	 */
+	private class Connection implements Runnable {
+
+		private final SocketChannel channel;
+
+		private SelectionKey key;
+
+		private final ByteBuffer header = ByteBuffer.allocate(4);
+
+		private ByteBuffer payload = ByteBuffer.allocate(8192);
+
+		private final BinarySnapshotDecoder decoder = new BinarySnapshotDecoder();
+
+		private boolean helloReceived;
+
+		/**
+		 * Response to write, set by the worker.
+		 */
+		private ByteBuffer response;
+
+		private boolean closeAfterResponse;
+
+		private boolean closed;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			if (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					throw new IOException("closed by peer");
+				if (header.hasRemaining())
+					return;
+				int length = header.getInt(0);
+				if (length <= 0 || length > config.getMaxFrameSize()) {
+					fail("Invalid frame length " + length);
+					return;
+				}
+				if (payload.capacity() < length)
+					payload = ByteBuffer.allocate(length);
+				payload.clear().limit(length);
+			}
+			if (channel.read(payload) < 0)
+				throw new IOException("closed by peer");
+			if (payload.hasRemaining())
+				return;
+
+			payload.flip();
+			header.clear();
+			key.interestOps(0);
+			workers.execute(this);
+		}
+
+		/**
+		 * Processes the frame read last, in a worker thread.
+		 */
+		@Override
+		public void run() {
+			ByteBuffer ret;
+			try {
+				byte type = payload.get();
+				if (!helloReceived) {
+					if (type != BinaryProtocol.FRAME_HELLO)
+						throw new ProtocolException("Expected hello frame, got " + type);
+					BinaryProtocol.checkHello(payload);
+					helloReceived = true;
+					ret = null;
+				} else if (type == BinaryProtocol.FRAME_SNAPSHOTS) {
+					List<Snapshot> snapshots = decoder.decode(payload);
+					central.processIncomingSnapshots(snapshots);
+					receivedFrames.incrementAndGet();
+					receivedSnapshots.addAndGet(snapshots.size());
+					ret = BinaryProtocol.ack(snapshots.size());
+				} else {
+					throw new ProtocolException("Unexpected frame type " + type);
+				}
+			} catch (ProtocolException e) {
+				log.warn("Protocol error on " + this + ": " + e.getMessage());
+				ret = BinaryProtocol.error(e.getMessage());
+				closeAfterResponse = true;
+			} catch (CentralShutdownException e) {
+				//the connector keeps the snapshots and sends them again after the restart.
+				log.info("Rejected frame of " + this + ": " + e.getMessage());
+				ret = BinaryProtocol.error(e.getMessage());
+				closeAfterResponse = true;
+			} catch (RuntimeException e) {
+				log.error("Couldn't process frame of " + this, e);
+				ret = BinaryProtocol.error(String.valueOf(e.getMessage()));
+				closeAfterResponse = true;
+			}
+			response = ret;
+			processed.add(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * Starts to send the response of the processed frame, in the selector thread.
+		 */
+		void respond() {
+			if (closed)
+				return;
+			try {
+				if (response == null) {
+					key.interestOps(SelectionKey.OP_READ);
+				} else {
+					write();
+				}
+			} catch (IOException e) {
+				log.debug("Closing connection " + this + ": " + e.getMessage());
+				close();
+			}
+		}
+
+		void write() throws IOException {
+			channel.write(response);
+			if (response.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+			response = null;
+			if (closeAfterResponse) {
+				close();
+			} else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		private void fail(String message) throws IOException {
+			log.warn("Protocol error on " + this + ": " + message);
+			response = BinaryProtocol.error(message);
+			closeAfterResponse = true;
+			write();
+		}
+
+		void close() {
+			if (closed)
+				return;
+			closed = true;
+			connections.decrementAndGet();
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(channel.socket().getRemoteSocketAddress());
+		}
+	}
+
+	/**
+	 * Starts the endpoint for the central of this jvm.
+	 * @param args ignored.
+	 * @throws Exception if the endpoint can't be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		BinaryEndpointConfig config = new BinaryEndpointConfig();
+		ConfigurationManager.INSTANCE.configure(config);
+		BinaryEndpoint endpoint = new BinaryEndpoint(Central.getInstance(), config);
+		endpoint.start();
+		endpoint.selectorThread.join();
+	}
+}
@@ -0,0 +1,72 @@
+package org.moskito.central.endpoints.binary;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of the binary ingest endpoint.
+ */
+@ConfigureMe(name = "moskito-central-binary-endpoint")
+public class BinaryEndpointConfig {
+
+	/**
+	 * Port to listen on, 0 for any free port.
+	 */
+	@Configure
+	private int port = 9413;
+
+	/**
+	 * Number of threads that decode frames and pass the snapshots to the central, 0 for the number of processors.
+	 */
+	@Configure
+	private int workers;
+
+	/**
+	 * Decodes each frame on a virtual thread instead of the workers, if the jvm supports virtual threads.
+	 */
+	@Configure
+	private boolean virtualThreads;
+
+	/**
+	 * Max size of a frame in bytes, connections sending bigger frames are closed.
+	 */
+	@Configure
+	private int maxFrameSize = 16 * 1024 * 1024;
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	@Override
+	public String toString() {
+		return "BinaryEndpointConfig [port=" + port + ", workers=" + workers + ", virtualThreads=" + virtualThreads + ", maxFrameSize=" + maxFrameSize + "]";
+	}
+}
@@ -3,6 +3,8 @@ package org.moskito.central.endpoints.rmi;
 import net.anotheria.anoprise.metafactory.Service;
 import org.moskito.central.Snapshot;
 
+import java.util.List;
+
 import org.distributeme.annotation.DistributeMe;
 
 /**
@@ -21,4 +23,11 @@ public interface RMIEndpointService extends Service {
 	 */
 	void processIncomingSnapshot(Snapshot snapshot) throws RMIEndpointServiceException;
 
+	/**
+	 * Puts a batch of snapshots to the Central with a single remote call.
+	 * @param snapshots
+	 * @throws RMIEndpointServiceException
+	 */
+	void processIncomingSnapshots(List<Snapshot> snapshots) throws RMIEndpointServiceException;
+
 }
@@ -12,4 +12,17 @@ public class RMIEndpointServiceException extends Exception {
 	 */
 	private static final long serialVersionUID = 6228674685841538555L;
 
+	/**
+	 * Default constructor.
+	 */
+	public RMIEndpointServiceException() {
+	}
+
+	/**
+	 * @param message detail message.
+	 */
+	public RMIEndpointServiceException(String message) {
+		super(message);
+	}
+
 }
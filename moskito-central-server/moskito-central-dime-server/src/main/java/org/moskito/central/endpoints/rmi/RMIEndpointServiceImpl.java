@@ -1,8 +1,11 @@
 package org.moskito.central.endpoints.rmi;
 
 import org.moskito.central.Central;
+import org.moskito.central.CentralShutdownException;
 import org.moskito.central.Snapshot;
 
+import java.util.List;
+
 /**
  * Central RMI service implementation.
  * 
@@ -25,7 +28,22 @@ public class RMIEndpointServiceImpl implements RMIEndpointService {
 
 	@Override
 	public void processIncomingSnapshot(Snapshot snapshot) throws RMIEndpointServiceException {
-		central.processIncomingSnapshot(snapshot);
+		try {
+			central.processIncomingSnapshot(snapshot);
+		} catch (CentralShutdownException e) {
+			//the connector keeps the snapshots and sends them again after the restart.
+			throw new RMIEndpointServiceException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void processIncomingSnapshots(List<Snapshot> snapshots) throws RMIEndpointServiceException {
+		try {
+			central.processIncomingSnapshots(snapshots);
+		} catch (CentralShutdownException e) {
+			//the connector keeps the snapshots and sends them again after the restart.
+			throw new RMIEndpointServiceException(e.getMessage());
+		}
 	}
 
 }
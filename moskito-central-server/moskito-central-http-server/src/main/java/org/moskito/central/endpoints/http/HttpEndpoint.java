@@ -0,0 +1,133 @@
+package org.moskito.central.endpoints.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.configureme.ConfigurationManager;
+import org.moskito.central.Central;
+import org.moskito.central.CentralExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Standalone http ingest endpoint on top of the http server of the jdk, as alternative to the Jersey webapp without
+ * a servlet container. The connections are multiplexed by a single selector thread of the server, so idle
+ * keep-alive connections of many agents cost no threads; only requests being read occupy one of the workers.
+ * <p/>
+ * The endpoint serves the contract of the webapp under the configured context path:
+ * <ul>
+ * <li>POST /central/addSnapshot - a single JSON snapshot</li>
+ * <li>POST /central/addSnapshots - a JSON array of snapshots, or one snapshot per line with application/x-ndjson</li>
+ * </ul>
+ * Bodies may be compressed with gzip or deflate. Successful requests are answered with 204.
+ */
+public class HttpEndpoint {
+
+	/**
+	 * Logger instance.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(HttpEndpoint.class);
+
+	private final Central central;
+
+	private final HttpEndpointConfig config;
+
+	private HttpServer server;
+
+	private ExecutorService workers;
+
+	private final AtomicLong receivedSnapshots = new AtomicLong();
+
+	private final AtomicLong failedRequests = new AtomicLong();
+
+	public HttpEndpoint(Central central, HttpEndpointConfig config) {
+		this.central = central;
+		this.config = config;
+	}
+
+	/**
+	 * Binds the port and starts serving.
+	 * @throws IOException if the port can't be bound.
+	 */
+	public synchronized void start() throws IOException {
+		if (server != null)
+			return;
+		int workerCount = config.getWorkers() > 0 ? config.getWorkers() : 2 * Runtime.getRuntime().availableProcessors();
+		workers = CentralExecutors.newExecutor("moskito-central-http-worker-", workerCount, config.isVirtualThreads());
+
+		String prefix = getContextPath() + "/central/";
+		server = HttpServer.create(new InetSocketAddress(config.getPort()), config.getBacklog());
+		server.createContext(prefix + "addSnapshot", new IngestHandler(central, prefix + "addSnapshot", false, config.getMaxRequestSize(), receivedSnapshots, failedRequests));
+		server.createContext(prefix + "addSnapshots", new IngestHandler(central, prefix + "addSnapshots", true, config.getMaxRequestSize(), receivedSnapshots, failedRequests));
+		server.setExecutor(workers);
+		server.start();
+		log.info("Http endpoint listening on port " + getPort() + " under " + prefix + " with " + (config.isVirtualThreads() && CentralExecutors.isVirtualThreadsSupported() ? "virtual threads" : workerCount + " workers"));
+	}
+
+	/**
+	 * Stops serving, requests being processed get up to a second to finish.
+	 */
+	public synchronized void stop() {
+		if (server == null)
+			return;
+		server.stop(1);
+		workers.shutdown();
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		server = null;
+	}
+
+	/**
+	 * Returns the port the endpoint listens on.
+	 * @return int
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the context path without trailing slash.
+	 */
+	private String getContextPath() {
+		String contextPath = config.getContextPath() == null ? "" : config.getContextPath().trim();
+		while (contextPath.endsWith("/")) {
+			contextPath = contextPath.substring(0, contextPath.length() - 1);
+		}
+		if (contextPath.length() > 0 && !contextPath.startsWith("/"))
+			contextPath = "/" + contextPath;
+		return contextPath;
+	}
+
+	public long getReceivedSnapshots() {
+		return receivedSnapshots.get();
+	}
+
+	public long getFailedRequests() {
+		return failedRequests.get();
+	}
+
+	/**
+	 * Starts the endpoint for the central of this jvm.
+	 * @param args ignored.
+	 * @throws Exception if the endpoint can't be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		HttpEndpointConfig config = new HttpEndpointConfig();
+		ConfigurationManager.INSTANCE.configure(config);
+		final HttpEndpoint endpoint = new HttpEndpoint(Central.getInstance(), config);
+		endpoint.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				endpoint.stop();
+			}
+		}, "moskito-central-http-shutdown"));
+	}
+}
@@ -0,0 +1,102 @@
+package org.moskito.central.endpoints.http;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of the standalone http ingest endpoint.
+ */
+@ConfigureMe(name = "moskito-central-http-endpoint")
+public class HttpEndpointConfig {
+
+	/**
+	 * Port to listen on, 0 for any free port.
+	 */
+	@Configure
+	private int port = 8080;
+
+	/**
+	 * Path prefix of the endpoints, the same as the context path of the webapp so connectors can switch without
+	 * changing their resource path.
+	 */
+	@Configure
+	private String contextPath = "/moskito-central";
+
+	/**
+	 * Number of threads which read the requests and pass the snapshots to the central, 0 for twice the number of
+	 * processors.
+	 */
+	@Configure
+	private int workers;
+
+	/**
+	 * Serves each request on a virtual thread instead of the workers, if the jvm supports virtual threads.
+	 */
+	@Configure
+	private boolean virtualThreads;
+
+	/**
+	 * Max number of pending connections.
+	 */
+	@Configure
+	private int backlog = 1024;
+
+	/**
+	 * Max size of a request body in bytes after decompression.
+	 */
+	@Configure
+	private long maxRequestSize = 16 * 1024 * 1024;
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public void setContextPath(String contextPath) {
+		this.contextPath = contextPath;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public int getBacklog() {
+		return backlog;
+	}
+
+	public void setBacklog(int backlog) {
+		this.backlog = backlog;
+	}
+
+	public long getMaxRequestSize() {
+		return maxRequestSize;
+	}
+
+	public void setMaxRequestSize(long maxRequestSize) {
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	@Override
+	public String toString() {
+		return "HttpEndpointConfig [port=" + port + ", contextPath=" + contextPath + ", workers=" + workers + ", virtualThreads=" + virtualThreads + ", backlog=" + backlog + ", maxRequestSize=" + maxRequestSize + "]";
+	}
+}
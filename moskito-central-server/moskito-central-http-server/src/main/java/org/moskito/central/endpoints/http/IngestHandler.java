@@ -0,0 +1,219 @@
+package org.moskito.central.endpoints.http;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.moskito.central.Central;
+import org.moskito.central.CentralShutdownException;
+import org.moskito.central.Snapshot;
+import org.moskito.central.protocol.JsonSnapshotReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Handles the snapshot POSTs with the contract of the REST endpoint of the webapp: a single JSON snapshot, a JSON
+ * array of snapshots or a stream of snapshots, one per line (application/x-ndjson). The body is decoded while it is
+ * read, a batch is handed to the central once it has been read completely.
+ */
+class IngestHandler implements HttpHandler {
+
+	/**
+	 * Logger instance.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(IngestHandler.class);
+
+	static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Central central;
+
+	private final String path;
+
+	private final boolean batch;
+
+	private final long maxRequestSize;
+
+	private final AtomicLong receivedSnapshots;
+
+	private final AtomicLong failedRequests;
+
+	IngestHandler(Central central, String path, boolean batch, long maxRequestSize, AtomicLong receivedSnapshots, AtomicLong failedRequests) {
+		this.central = central;
+		this.path = path;
+		this.batch = batch;
+		this.maxRequestSize = maxRequestSize;
+		this.receivedSnapshots = receivedSnapshots;
+		this.failedRequests = failedRequests;
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestURI().getPath().equals(path)) {
+				respond(exchange, 404, "Not found");
+			} else if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				respond(exchange, 405, "Only POST is supported");
+			} else {
+				receive(exchange);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void receive(HttpExchange exchange) throws IOException {
+		try {
+			//the gzip header is read right away, a broken one is rejected like a malformed snapshot.
+			InputStream body = decode(exchange);
+			if (body == null) {
+				respond(exchange, 415, "Unsupported content encoding");
+				return;
+			}
+			body = new LimitedInputStream(body, maxRequestSize);
+			JsonReader reader = new JsonReader(new InputStreamReader(body, UTF8));
+			if (!batch) {
+				process(JsonSnapshotReader.readSnapshot(reader));
+			} else if (isNdjson(exchange)) {
+				//a lenient reader reads one top level value after another.
+				reader.setLenient(true);
+				process(readStream(reader));
+			} else {
+				reader.beginArray();
+				List<Snapshot> snapshots = readStream(reader);
+				reader.endArray();
+				process(snapshots);
+			}
+			exchange.sendResponseHeaders(204, -1);
+		} catch (RequestTooLargeException e) {
+			respond(exchange, 413, e.getMessage());
+		} catch (CentralShutdownException e) {
+			respond(exchange, 503, e.getMessage());
+		} catch (MalformedJsonException | EOFException | ZipException e) {
+			respond(exchange, 400, "Malformed snapshot: " + e.getMessage());
+		} catch (IllegalStateException e) {
+			//structure of the batch doesn't match.
+			respond(exchange, 400, "Malformed snapshot: " + e.getMessage());
+		} catch (RuntimeException e) {
+			log.error("Couldn't process request from " + exchange.getRemoteAddress(), e);
+			respond(exchange, 500, "Internal error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads snapshots until the end of the array or stream. The batch is handed to the central only after the whole
+	 * body has been read, a malformed snapshot rejects all of them, so the connector can send it again without
+	 * duplicates.
+	 */
+	private static List<Snapshot> readStream(JsonReader reader) throws IOException {
+		List<Snapshot> snapshots = new ArrayList<>();
+		while (reader.hasNext() && reader.peek() != JsonToken.END_DOCUMENT) {
+			snapshots.add(JsonSnapshotReader.readSnapshot(reader));
+		}
+		return snapshots;
+	}
+
+	private void process(Snapshot snapshot) {
+		central.processIncomingSnapshot(snapshot);
+		receivedSnapshots.incrementAndGet();
+	}
+
+	private void process(List<Snapshot> snapshots) {
+		if (snapshots.isEmpty())
+			return;
+		central.processIncomingSnapshots(snapshots);
+		receivedSnapshots.addAndGet(snapshots.size());
+	}
+
+	private static boolean isNdjson(HttpExchange exchange) {
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		return contentType != null && contentType.trim().toLowerCase().startsWith(APPLICATION_NDJSON);
+	}
+
+	/**
+	 * Returns the decompressed request body, null if the content encoding is not supported.
+	 */
+	private static InputStream decode(HttpExchange exchange) throws IOException {
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		InputStream body = exchange.getRequestBody();
+		if (encoding == null || encoding.trim().equalsIgnoreCase("identity"))
+			return body;
+		encoding = encoding.trim();
+		if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"))
+			return new GZIPInputStream(body);
+		if (encoding.equalsIgnoreCase("deflate"))
+			return new InflaterInputStream(body);
+		return null;
+	}
+
+	private void respond(HttpExchange exchange, int status, String message) throws IOException {
+		failedRequests.incrementAndGet();
+		log.debug("Rejected request from " + exchange.getRemoteAddress() + " with " + status + ": " + message);
+		byte[] bytes = String.valueOf(message).getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static class RequestTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		RequestTooLargeException(long limit) {
+			super("Request body exceeds " + limit + " bytes");
+		}
+	}
+
+	/**
+	 * Stops reading a body after max bytes, also protects from compression bombs.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private final long max;
+		private long count;
+
+		LimitedInputStream(InputStream in, long max) {
+			super(in);
+			this.max = max;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count(n);
+			return n;
+		}
+
+		private void count(int n) throws IOException {
+			count += n;
+			if (max > 0 && count > max)
+				throw new RequestTooLargeException(max);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package org.moskito.central.endpoints.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.storage.CapturingStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the http ingest endpoint.
+ */
+public class HttpEndpointTest {
+
+	private static final List<Snapshot> received = CapturingStorage.getReceived();
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private Central central;
+
+	private HttpEndpoint endpoint;
+
+	@Before
+	public void startEndpoint() throws IOException {
+		received.clear();
+		Configuration configuration = CapturingStorage.createConfiguration();
+
+		HttpEndpointConfig config = new HttpEndpointConfig();
+		config.setPort(0);
+		config.setWorkers(2);
+		config.setMaxRequestSize(128 * 1024);
+		central = Central.getConfiguredInstance(configuration);
+		endpoint = new HttpEndpoint(central, config);
+		endpoint.start();
+	}
+
+	@After
+	public void stopEndpoint() {
+		endpoint.stop();
+	}
+
+	private static String snapshot(int i) {
+		return "{\"snshmd\":{\"producerId\":\"producer" + i + "\",\"intervalName\":\"1m\",\"creationTimestamp\":" + (1000 + i) + "}," +
+				"\"stats\":{\"entries\":[{\"key\":\"cumulated\",\"value\":{\"Req\":\"" + i + "\"}}]}}";
+	}
+
+	private int post(String path, String contentType, String contentEncoding, byte[] body) throws IOException {
+		URL url = new URL("http://localhost:" + endpoint.getPort() + "/moskito-central/central/" + path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", contentType);
+		if (contentEncoding != null)
+			connection.setRequestProperty("Content-Encoding", contentEncoding);
+		OutputStream out = connection.getOutputStream();
+		out.write(body);
+		out.close();
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+
+	private int post(String path, String body) throws IOException {
+		return post(path, "application/json", null, body.getBytes(UTF8));
+	}
+
+	@Test
+	public void testAddSnapshot() throws IOException {
+		assertEquals(204, post("addSnapshot", snapshot(1)));
+		assertEquals(1, received.size());
+		assertEquals("producer1", received.get(0).getMetaData().getProducerId());
+		assertEquals("1", received.get(0).getStatistics("cumulated").get("Req"));
+	}
+
+	@Test
+	public void testAddSnapshots() throws IOException {
+		StringBuilder array = new StringBuilder("[");
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 600; i++) {
+			array.append(i == 0 ? "" : ",").append(snapshot(i));
+			lines.append(snapshot(i)).append('\n');
+		}
+		array.append(']');
+
+		assertEquals(204, post("addSnapshots", array.toString()));
+		assertEquals(600, received.size());
+		assertEquals(204, post("addSnapshots", IngestHandler.APPLICATION_NDJSON, null, lines.toString().getBytes(UTF8)));
+		assertEquals(1200, received.size());
+		assertEquals("producer599", received.get(1199).getMetaData().getProducerId());
+		assertEquals(1200, endpoint.getReceivedSnapshots());
+	}
+
+	@Test
+	public void testCompressedBody() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		gzip.write(snapshot(7).getBytes(UTF8));
+		gzip.close();
+		assertEquals(204, post("addSnapshot", "application/json", "gzip", bytes.toByteArray()));
+		assertEquals("producer7", received.get(0).getMetaData().getProducerId());
+
+		assertEquals(415, post("addSnapshot", "application/json", "br", snapshot(1).getBytes(UTF8)));
+		//not compressed at all, or cut off within the gzip header.
+		assertEquals(400, post("addSnapshot", "application/json", "gzip", snapshot(1).getBytes(UTF8)));
+		assertEquals(400, post("addSnapshot", "application/json", "gzip", new byte[]{0x1f}));
+	}
+
+	@Test
+	public void testRejectedRequests() throws IOException {
+		assertEquals(400, post("addSnapshot", "{\"snshmd\":"));
+		assertEquals(400, post("addSnapshots", "{}"));
+		assertEquals(404, post("addSnapshotsAndMore", snapshot(1)));
+		//snapshots before a malformed one are not accepted either.
+		assertEquals(400, post("addSnapshots", IngestHandler.APPLICATION_NDJSON, null, (snapshot(1) + "\n{\"snshmd\":\n").getBytes(UTF8)));
+		assertEquals(400, post("addSnapshots", "[" + snapshot(1) + ",{]"));
+		assertEquals(0, received.size());
+
+		StringBuilder tooLarge = new StringBuilder("[");
+		for (int i = 0; tooLarge.length() < 140 * 1024; i++) {
+			tooLarge.append(i == 0 ? "" : ",").append(snapshot(i));
+		}
+		assertEquals(413, post("addSnapshots", tooLarge.append(']').toString()));
+
+		HttpURLConnection get = (HttpURLConnection) new URL("http://localhost:" + endpoint.getPort() + "/moskito-central/central/addSnapshot").openConnection();
+		assertEquals(405, get.getResponseCode());
+		get.disconnect();
+	}
+
+	@Test
+	public void testRejectedDuringShutdown() throws IOException {
+		central.shutdown(1000);
+		assertEquals(503, post("addSnapshot", snapshot(1)));
+		assertEquals(503, post("addSnapshots", "[" + snapshot(2) + "]"));
+		assertEquals(0, received.size());
+	}
+}
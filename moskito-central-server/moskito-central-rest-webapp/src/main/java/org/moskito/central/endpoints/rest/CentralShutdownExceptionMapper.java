@@ -0,0 +1,20 @@
+package org.moskito.central.endpoints.rest;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.moskito.central.CentralShutdownException;
+
+/**
+ * Answers snapshots which arrive while the central is shutting down with 503, so the connector keeps them.
+ */
+@Provider
+public class CentralShutdownExceptionMapper implements ExceptionMapper<CentralShutdownException> {
+
+	@Override
+	public Response toResponse(CentralShutdownException exception) {
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(exception.getMessage()).type(MediaType.TEXT_PLAIN).build();
+	}
+}
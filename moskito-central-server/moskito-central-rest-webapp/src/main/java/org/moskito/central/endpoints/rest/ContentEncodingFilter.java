@@ -0,0 +1,102 @@
+package org.moskito.central.endpoints.rest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+
+/**
+ * Decompresses request bodies which are sent with 'Content-Encoding: gzip' or 'deflate' by the connectors. Registered
+ * as request filter in the web.xml. A decompressed body is limited to {@link #MAX_DECOMPRESSED_SIZE} bytes, larger
+ * bodies are rejected with 413 like by the http server endpoint.
+ */
+public class ContentEncodingFilter implements ContainerRequestFilter {
+
+	/**
+	 * Max number of bytes of a decompressed request body, same as the default max request size of the http server.
+	 */
+	static final long MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Status 413, not part of {@link Response.Status} in JAX-RS 1.1.
+	 */
+	private static final int REQUEST_ENTITY_TOO_LARGE = 413;
+
+	@Override
+	public ContainerRequest filter(ContainerRequest request) {
+		String encoding = request.getHeaderValue(HttpHeaders.CONTENT_ENCODING);
+		if (encoding == null)
+			return request;
+		encoding = encoding.trim();
+
+		try {
+			if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+				request.setEntityInputStream(new LimitedInputStream(new GZIPInputStream(request.getEntityInputStream()), MAX_DECOMPRESSED_SIZE));
+			} else if (encoding.equalsIgnoreCase("deflate")) {
+				request.setEntityInputStream(new LimitedInputStream(new InflaterInputStream(request.getEntityInputStream()), MAX_DECOMPRESSED_SIZE));
+			} else if (!encoding.equalsIgnoreCase("identity")) {
+				throw new WebApplicationException(Response.Status.UNSUPPORTED_MEDIA_TYPE);
+			}
+		} catch (IOException e) {
+			throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+		}
+		request.getRequestHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+		return request;
+	}
+
+	/**
+	 * Stops reading a decompressed body after max bytes, protects from compression bombs.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private final long max;
+		private long count;
+
+		LimitedInputStream(InputStream in, long max) {
+			super(in);
+			this.max = max;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if (skipped > 0)
+				count(skipped);
+			return skipped;
+		}
+
+		private void count(long n) {
+			count += n;
+			if (count > max) {
+				//unchecked, so it passes the entity readers and is answered by jersey.
+				throw new WebApplicationException(Response.status(REQUEST_ENTITY_TOO_LARGE)
+						.entity("Decompressed request body exceeds " + max + " bytes").type(MediaType.TEXT_PLAIN).build());
+			}
+		}
+	}
+
+}
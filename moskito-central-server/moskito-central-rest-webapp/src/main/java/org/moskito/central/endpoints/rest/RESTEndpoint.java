@@ -1,12 +1,35 @@
 package org.moskito.central.endpoints.rest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.moskito.central.Central;
 import org.moskito.central.Snapshot;
+import org.moskito.central.cardinality.CardinalityStatus;
+import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.StorageStatus;
+import org.moskito.central.storage.analytics.FleetAnalyticsStorage;
+import org.moskito.central.storage.analytics.FleetStatistics;
 
 /**
  * Central REST resource for incoming snapshots via HTTP.
@@ -17,6 +40,16 @@ import org.moskito.central.Snapshot;
 @Path("/central")
 public class RESTEndpoint {
 
+	/**
+	 * Media type of a stream with one JSON snapshot per line.
+	 */
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	/**
+	 * Mapper for NDJSON lines, configured like the JSON provider of the endpoint.
+	 */
+	private static final ObjectMapper MAPPER = new JacksonJaxbJsonProvider().locateMapper(Snapshot.class, MediaType.APPLICATION_JSON_TYPE);
+
 	/**
 	 * Central instance.
 	 */
@@ -69,4 +102,108 @@ public class RESTEndpoint {
 		central.processIncomingSnapshot(snapshot);
 	}
 
+	/**
+	 * Receives a JSON array of {@link Snapshot}s in order to transfer them to the central in one go.
+	 *
+	 * @param snapshots received snapshots
+	 */
+	@POST
+	@Path("/addSnapshots")
+	@Consumes({ MediaType.APPLICATION_JSON })
+	public void addSnapshots(List<Snapshot> snapshots) {
+		central.processIncomingSnapshots(snapshots);
+	}
+
+	/**
+	 * Receives a stream of {@link Snapshot}s, one JSON object per line. The whole stream is read before the
+	 * snapshots are handed to the central, a malformed line rejects all of them, so the connector can send the
+	 * batch again without duplicates.
+	 *
+	 * @param stream request body
+	 */
+	@POST
+	@Path("/addSnapshots")
+	@Consumes({ APPLICATION_NDJSON })
+	public void addSnapshotStream(InputStream stream) {
+		List<Snapshot> snapshots = new ArrayList<Snapshot>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() == 0)
+					continue;
+				snapshots.add(MAPPER.readValue(line, Snapshot.class));
+			}
+		} catch (JsonProcessingException e) {
+			throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+		} catch (IOException e) {
+			throw new WebApplicationException(e);
+		}
+		central.processIncomingSnapshots(snapshots);
+	}
+
+	/**
+	 * Returns the distribution of a value across all hosts and the hosts with the highest values, from a
+	 * {@link FleetAnalyticsStorage}.
+	 *
+	 * @param producerId id of the producer
+	 * @param stat name of the stat
+	 * @param value name of the value
+	 * @param interval name of the interval of the snapshots
+	 * @param windows number of the newest windows, 1 for the current window only
+	 * @param percentiles comma separated quantiles, e.g. 0.5,0.99
+	 * @param top max number of hosts with the highest values
+	 * @param storage name of the fleet analytics storage in the configuration
+	 * @return {@link FleetStatistics}
+	 */
+	@GET
+	@Path("/fleet/{producer}/{stat}/{value}")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public FleetStatistics getFleetStatistics(@PathParam("producer") String producerId, @PathParam("stat") String stat,
+			@PathParam("value") String value, @QueryParam("interval") @DefaultValue("1m") String interval,
+			@QueryParam("windows") @DefaultValue("1") int windows, @QueryParam("percentiles") @DefaultValue("0.5,0.9,0.99") String percentiles,
+			@QueryParam("top") @DefaultValue("10") int top, @QueryParam("storage") @DefaultValue("fleet") String storage) {
+		Storage fleet = central.getStorage(storage);
+		if (!(fleet instanceof FleetAnalyticsStorage))
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		double[] quantiles;
+		try {
+			String[] parts = percentiles.split(",");
+			quantiles = new double[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				quantiles[i] = Double.parseDouble(parts[i].trim());
+			}
+		} catch (NumberFormatException e) {
+			throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+		}
+		FleetStatistics ret = ((FleetAnalyticsStorage) fleet).query(producerId, stat, value, interval, windows, quantiles, top);
+		if (ret == null)
+			throw new WebApplicationException(Response.Status.NOT_FOUND);
+		return ret;
+	}
+
+	/**
+	 * Returns the number of producer ids per host and component, the most producers first.
+	 *
+	 * @return list of {@link CardinalityStatus}, empty if the cardinality guard is disabled
+	 */
+	@GET
+	@Path("/cardinality")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public List<CardinalityStatus> getCardinality() {
+		return central.getCardinalityStatus();
+	}
+
+	/**
+	 * Returns the health and the number of processed and failed snapshots of the configured storages.
+	 *
+	 * @return {@link StorageStatus} by storage name
+	 */
+	@GET
+	@Path("/storages")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public Map<String, StorageStatus> getStorageStatus() {
+		return central.getStorageStatus();
+	}
+
 }
@@ -0,0 +1,60 @@
+package org.moskito.central.endpoints.rest;
+
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.core.PackagesResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.test.framework.JerseyTest;
+import com.sun.jersey.test.framework.WebAppDescriptor;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for the decompression of request bodies by the REST endpoint.
+ */
+public class ContentEncodingFilterTest extends JerseyTest {
+
+	public ContentEncodingFilterTest() {
+		super(new WebAppDescriptor.Builder()
+				.initParam(PackagesResourceConfig.PROPERTY_PACKAGES, "org.moskito.central.endpoints.rest;org.codehaus.jackson.jaxrs")
+				.initParam(ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, ContentEncodingFilter.class.getName())
+				.build());
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(body);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private ClientResponse post(byte[] body) throws IOException {
+		return resource().path("central/addSnapshots").type(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.CONTENT_ENCODING, "gzip").post(ClientResponse.class, gzip(body));
+	}
+
+	@Test
+	public void testCompressedBatch() throws IOException {
+		byte[] body = "[{\"snshmd\":{\"producerId\":\"prodId\",\"category\":\"catId\",\"subsystem\":\"subSId\"}}]".getBytes(Charset.forName("UTF-8"));
+		assertEquals(204, post(body).getStatus());
+	}
+
+	@Test
+	public void testCompressionBombIsRejected() throws IOException {
+		//a few kilobytes on the wire, more than the limit decompressed.
+		byte[] body = new byte[(int) ContentEncodingFilter.MAX_DECOMPRESSED_SIZE + 1024];
+		Arrays.fill(body, (byte) ' ');
+		body[0] = '[';
+		ClientResponse response = post(body);
+		assertEquals(413, response.getStatus());
+	}
+}
@@ -0,0 +1,118 @@
+package org.moskito.central.storage.alert;
+
+/**
+ * Change of the state of an alert rule on a host: the rule fired or it is resolved again.
+ */
+public class Alert {
+
+    public enum Status {
+        /**
+         * The threshold was breached for the required number of intervals.
+         */
+        FIRING,
+        /**
+         * The threshold isn't breached anymore.
+         */
+        RESOLVED
+    }
+
+    private final String rule;
+
+    private final Status status;
+
+    private final String hostName;
+
+    private final String componentName;
+
+    private final String producerId;
+
+    private final String intervalName;
+
+    private final String stat;
+
+    private final String value;
+
+    private final double number;
+
+    private final String operator;
+
+    private final double threshold;
+
+    private final int intervals;
+
+    /**
+     * Creation timestamp of the snapshot which changed the state.
+     */
+    private final long timestamp;
+
+    public Alert(AlertRule rule, Status status, String hostName, String componentName, String producerId, String intervalName, double number, long timestamp) {
+        this.rule = rule.getName();
+        this.status = status;
+        this.hostName = hostName;
+        this.componentName = componentName;
+        this.producerId = producerId;
+        this.intervalName = intervalName;
+        this.stat = rule.getStat();
+        this.value = rule.getValue();
+        this.number = number;
+        this.operator = rule.getOperator().getSymbol();
+        this.threshold = rule.getThreshold();
+        this.intervals = rule.getIntervals();
+        this.timestamp = timestamp;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    public String getComponentName() {
+        return componentName;
+    }
+
+    public String getProducerId() {
+        return producerId;
+    }
+
+    public String getIntervalName() {
+        return intervalName;
+    }
+
+    public String getStat() {
+        return stat;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the value of the snapshot which changed the state, NaN if the snapshot didn't contain a number.
+     * @return double
+     */
+    public double getNumber() {
+        return number;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + rule + ": " + producerId + "." + stat + "." + value + " = " + number +
+                (status == Status.FIRING ? " " + operator + " " + threshold + " for " + intervals + " intervals" : "") +
+                " on " + hostName + (componentName == null ? "" : "/" + componentName) + " (" + intervalName + ")";
+    }
+}
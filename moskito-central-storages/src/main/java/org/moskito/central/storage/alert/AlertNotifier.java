@@ -0,0 +1,19 @@
+package org.moskito.central.storage.alert;
+
+/**
+ * Receives the alerts of the {@link AlertingStorage}. Notifiers configured by class name need a public default
+ * constructor. The notifiers are called by a single thread.
+ */
+public interface AlertNotifier {
+
+    /**
+     * Called when an alert rule fires or is resolved on a host.
+     * @param alert the alert.
+     */
+    void notify(Alert alert);
+
+    /**
+     * Releases files and connections of the notifier.
+     */
+    void close();
+}
@@ -0,0 +1,77 @@
+package org.moskito.central.storage.alert;
+
+/**
+ * Comparison of a value with the threshold of an alert rule.
+ */
+public enum AlertOperator {
+    GT(">") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value > threshold;
+        }
+    },
+    GE(">=") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value >= threshold;
+        }
+    },
+    LT("<") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value < threshold;
+        }
+    },
+    LE("<=") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value <= threshold;
+        }
+    },
+    EQ("==") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value == threshold;
+        }
+    },
+    NE("!=") {
+        @Override
+        public boolean matches(double value, double threshold) {
+            return value != threshold;
+        }
+    };
+
+    private final String symbol;
+
+    AlertOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Returns true if the value breaches the threshold.
+     * @param value the value.
+     * @param threshold the threshold.
+     * @return boolean
+     */
+    public abstract boolean matches(double value, double threshold);
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the operator for a symbol like "&gt;" or a name like "gt", ignoring case.
+     * @param s symbol or name.
+     * @return the operator or null if unknown.
+     */
+    public static AlertOperator fromString(String s) {
+        if (s == null)
+            return null;
+        s = s.trim();
+        for (AlertOperator operator : values()) {
+            if (operator.symbol.equals(s) || operator.name().equalsIgnoreCase(s))
+                return operator;
+        }
+        return null;
+    }
+}
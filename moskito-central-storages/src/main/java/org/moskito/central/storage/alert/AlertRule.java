@@ -0,0 +1,120 @@
+package org.moskito.central.storage.alert;
+
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.helpers.WildcardMatcher;
+
+/**
+ * Compiled form of an {@link AlertRuleEntry}.
+ */
+public class AlertRule {
+
+    private final String name;
+
+    private final String producer;
+
+    private final WildcardMatcher producerMatcher;
+
+    private final String stat;
+
+    private final String value;
+
+    private final AlertOperator operator;
+
+    private final double threshold;
+
+    private final int intervals;
+
+    private final WildcardMatcher hostMatcher;
+
+    private final String interval;
+
+    /**
+     * @param entry configured rule.
+     * @throws IllegalArgumentException if the producer, stat or value is missing or the operator is unknown.
+     */
+    public AlertRule(AlertRuleEntry entry) {
+        if (entry.getProducer() == null || entry.getStat() == null || entry.getValue() == null)
+            throw new IllegalArgumentException("Producer, stat and value are required");
+        operator = AlertOperator.fromString(entry.getOperator());
+        if (operator == null)
+            throw new IllegalArgumentException("Unknown operator " + entry.getOperator());
+        producer = entry.getProducer();
+        producerMatcher = WildcardMatcher.compile(producer);
+        stat = entry.getStat();
+        value = entry.getValue();
+        threshold = entry.getThreshold();
+        intervals = Math.max(1, entry.getIntervals());
+        hostMatcher = WildcardMatcher.compile(entry.getHosts() == null ? "*" : entry.getHosts());
+        interval = entry.getInterval();
+        name = entry.getName() == null ? producer + "." + stat + "." + value + " " + operator.getSymbol() + " " + threshold : entry.getName();
+    }
+
+    /**
+     * Returns true if the producer is a wildcard, otherwise the rule applies to the producer with the id
+     * {@link #getProducer()} only.
+     * @return boolean
+     */
+    public boolean isProducerWildcard() {
+        return producer.indexOf('*') != -1 || producer.indexOf('?') != -1 || producer.startsWith(WildcardMatcher.REGEX_PREFIX);
+    }
+
+    /**
+     * Returns true if the rule applies to the producer.
+     * @param producerId id of the producer.
+     * @return boolean
+     */
+    public boolean matchesProducer(String producerId) {
+        return producerMatcher.matches(producerId);
+    }
+
+    /**
+     * Returns true if the rule applies to the host and interval of a snapshot.
+     * @param metaData metadata of the snapshot.
+     * @return boolean
+     */
+    public boolean appliesTo(SnapshotMetaData metaData) {
+        return (interval == null || interval.equals(metaData.getIntervalName())) && hostMatcher.matches(metaData.getHostName());
+    }
+
+    /**
+     * Returns true if the value breaches the threshold. NaN never does.
+     * @param number the value.
+     * @return boolean
+     */
+    public boolean isBreached(double number) {
+        return !Double.isNaN(number) && operator.matches(number, threshold);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getProducer() {
+        return producer;
+    }
+
+    public String getStat() {
+        return stat;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public AlertOperator getOperator() {
+        return operator;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public int getIntervals() {
+        return intervals;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,140 @@
+package org.moskito.central.storage.alert;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of an alert rule: producer X, stat Y, value Z &gt; threshold for N intervals on hosts H.
+ */
+@ConfigureMe
+public class AlertRuleEntry {
+
+    /**
+     * Name of the rule, part of the alerts.
+     */
+    @Configure
+    private String name;
+
+    /**
+     * Producer id, a wildcard like "*Service" matches several producers.
+     */
+    @Configure
+    private String producer;
+
+    /**
+     * Name of the stat, e.g. "cumulated".
+     */
+    @Configure
+    private String stat;
+
+    /**
+     * Name of the value, e.g. "ERR".
+     */
+    @Configure
+    private String value;
+
+    /**
+     * Comparison with the threshold: &gt;, &gt;=, &lt;, &lt;=, == or !=.
+     */
+    @Configure
+    private String operator = ">";
+
+    @Configure
+    private double threshold;
+
+    /**
+     * Number of consecutive snapshots which have to breach the threshold until the alert fires.
+     */
+    @Configure
+    private int intervals = 1;
+
+    /**
+     * Wildcard of the hosts the rule applies to.
+     */
+    @Configure
+    private String hosts = "*";
+
+    /**
+     * Name of the interval whose snapshots are checked, e.g. "1m". All intervals if not set, each counted on its own.
+     */
+    @Configure
+    private String interval;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getProducer() {
+        return producer;
+    }
+
+    public void setProducer(String producer) {
+        this.producer = producer;
+    }
+
+    public String getStat() {
+        return stat;
+    }
+
+    public void setStat(String stat) {
+        this.stat = stat;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getIntervals() {
+        return intervals;
+    }
+
+    public void setIntervals(int intervals) {
+        this.intervals = intervals;
+    }
+
+    public String getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(String hosts) {
+        this.hosts = hosts;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public void setInterval(String interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + producer + "." + stat + "." + value + " " + operator + " " + threshold + " for " + intervals +
+                " intervals on " + hosts + (interval == null ? "" : " (" + interval + ")");
+    }
+}
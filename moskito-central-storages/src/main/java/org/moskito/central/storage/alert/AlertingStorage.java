@@ -0,0 +1,391 @@
+package org.moskito.central.storage.alert;
+
+import org.configureme.ConfigurationManager;
+import org.moskito.central.CentralExecutors;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.aggregation.RollupEngine;
+import org.moskito.central.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates threshold rules on the incoming snapshots, e.g. "Avg of the cumulated stat of the producer SessionService
+ * greater than 500 for 3 intervals on the hosts web*". A rule fires once the threshold is breached in the given number
+ * of consecutive snapshots of a host and is resolved by the first snapshot which doesn't breach it. Both are sent to
+ * the configured {@link AlertNotifier}s in a separate thread. The state of a rule on a host which gets no snapshots
+ * for several intervals is dropped, a firing rule is resolved then.
+ */
+public class AlertingStorage implements Storage, Flushable, Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(AlertingStorage.class);
+
+    /**
+     * Max time in milliseconds a flush waits for the queued alerts.
+     */
+    private static final long FLUSH_TIMEOUT = 10000;
+
+    /**
+     * Min time in milliseconds between two checks for expired states.
+     */
+    private static final long EXPIRY_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Length of the intervals whose length can't be derived from their name.
+     */
+    private static final long DEFAULT_INTERVAL_LENGTH = TimeUnit.MINUTES.toMillis(5);
+
+    private volatile AlertingStorageConfig config;
+
+    private volatile RuleIndex index = new RuleIndex(new ArrayList<AlertRule>());
+
+    private volatile List<AlertNotifier> notifiers = new ArrayList<AlertNotifier>();
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * State of each rule by rule, host, component and interval.
+     */
+    private final ConcurrentMap<String, RuleState> states = new ConcurrentHashMap<String, RuleState>();
+
+    /**
+     * Time of the last check for expired states.
+     */
+    private final AtomicLong lastExpiryCheck = new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    public void configure(String configurationName) {
+        config = new AlertingStorageConfig();
+        if (configurationName != null) {
+            try {
+                ConfigurationManager.INSTANCE.configureAs(config, configurationName);
+            } catch (IllegalArgumentException e) {
+                log.warn("Couldn't configure AlertingStorage with " + configurationName + ", working with default values");
+            }
+        }
+        configure(config);
+    }
+
+    /**
+     * Configures the storage without configureme.
+     * @param aConfig the configuration.
+     */
+    public void configure(AlertingStorageConfig aConfig) {
+        config = aConfig;
+        List<AlertRule> rules = new ArrayList<AlertRule>();
+        if (config.getRules() != null) {
+            for (AlertRuleEntry entry : config.getRules()) {
+                try {
+                    rules.add(new AlertRule(entry));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Ignoring alert rule " + entry + ": " + e.getMessage());
+                }
+            }
+        }
+        index = new RuleIndex(rules);
+        states.clear();
+
+        //the snapshots keep coming in, so the new executor is in place before the previous one is shut down.
+        ThreadPoolExecutor previousExecutor = executor;
+        List<AlertNotifier> previousNotifiers = notifiers;
+        notifiers = createNotifiers(config);
+        executor = createExecutor(config);
+        shutdown(previousExecutor, previousNotifiers);
+    }
+
+    private ThreadPoolExecutor createExecutor(AlertingStorageConfig config) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, config.getMaxQueuedAlerts())),
+                CentralExecutors.newThreadFactory("moskito-central-alerts-"), new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor rejecting) {
+                if (!rejecting.isShutdown()) {
+                    log.warn("Too many queued alerts, dropping " + r);
+                    return;
+                }
+                //sent while the storage was reconfigured.
+                ThreadPoolExecutor current = executor;
+                if (current != null && current != rejecting)
+                    current.execute(r);
+            }
+        });
+    }
+
+    private static List<AlertNotifier> createNotifiers(AlertingStorageConfig config) {
+        List<AlertNotifier> ret = new ArrayList<AlertNotifier>();
+        if (config.getNotifiers() == null)
+            return ret;
+        for (String name : config.getNotifiers()) {
+            if ("log".equals(name)) {
+                ret.add(new LogAlertNotifier());
+            } else if ("file".equals(name)) {
+                ret.add(new FileAlertNotifier(config.getFile()));
+            } else if ("webhook".equals(name)) {
+                if (config.getWebhookUrl() == null) {
+                    log.warn("No webhookUrl configured, ignoring webhook notifier");
+                    continue;
+                }
+                ret.add(new WebhookAlertNotifier(config.getWebhookUrl(), config.getWebhookTimeout()));
+            } else {
+                try {
+                    ret.add((AlertNotifier) Class.forName(name).newInstance());
+                } catch (Exception e) {
+                    log.warn("Couldn't create alert notifier " + name, e);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void processSnapshot(Snapshot target) {
+        SnapshotMetaData metaData = target.getMetaData();
+        if (metaData == null)
+            return;
+        List<AlertRule> rules = index.getRules(metaData.getProducerId());
+        if (rules.isEmpty())
+            return;
+        for (AlertRule rule : rules) {
+            if (!rule.appliesTo(metaData))
+                continue;
+            double number = getNumber(target, rule);
+            String key = rule.getName() + '\u0000' + metaData.getHostName() + '\u0000' + metaData.getComponentName() + '\u0000' + metaData.getIntervalName();
+            boolean breached = rule.isBreached(number);
+            RuleState state;
+            Alert.Status status;
+            do {
+                state = states.get(key);
+                if (state == null) {
+                    state = new RuleState(rule, metaData);
+                    RuleState existing = states.putIfAbsent(key, state);
+                    if (existing != null)
+                        state = existing;
+                }
+                status = state.update(rule, breached);
+                //expired in the meantime, counted on a new state.
+            } while (state.isRemoved());
+            if (status != null)
+                send(new Alert(rule, status, metaData.getHostName(), metaData.getComponentName(), metaData.getProducerId(),
+                        metaData.getIntervalName(), number, metaData.getCreationTimestamp()));
+        }
+        checkExpiry();
+    }
+
+    private void checkExpiry() {
+        final long now = System.currentTimeMillis();
+        long last = lastExpiryCheck.get();
+        if (now - last < EXPIRY_CHECK_INTERVAL || !lastExpiryCheck.compareAndSet(last, now))
+            return;
+        ThreadPoolExecutor current = executor;
+        if (current == null)
+            return;
+        //off the snapshot thread, the resolved alerts are sent from there anyway.
+        current.execute(new Runnable() {
+            @Override
+            public void run() {
+                expireStates(now);
+            }
+
+            @Override
+            public String toString() {
+                return "expiry of alert states";
+            }
+        });
+    }
+
+    /**
+     * Drops the states which got no snapshots for the configured number of intervals and resolves the firing ones.
+     * @param now current time in milliseconds.
+     */
+    void expireStates(long now) {
+        int intervals = Math.max(1, config.getExpiryIntervals());
+        for (Map.Entry<String, RuleState> entry : states.entrySet()) {
+            RuleState state = entry.getValue();
+            long length = RollupEngine.parseInterval(state.intervalName);
+            if (length <= 0)
+                length = DEFAULT_INTERVAL_LENGTH;
+            Boolean firing = state.expire(now, length * intervals);
+            if (firing == null)
+                continue;
+            states.remove(entry.getKey(), state);
+            if (firing)
+                deliver(new Alert(state.rule, Alert.Status.RESOLVED, state.hostName, state.componentName,
+                        state.producerId, state.intervalName, Double.NaN, now));
+        }
+    }
+
+    private static double getNumber(Snapshot target, AlertRule rule) {
+        Map<String, String> stat = target.getStatistics(rule.getStat());
+        String value = stat == null ? null : stat.get(rule.getValue());
+        if (value == null)
+            return Double.NaN;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private void send(final Alert alert) {
+        ThreadPoolExecutor current = executor;
+        if (current == null)
+            return;
+        current.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(alert);
+            }
+
+            @Override
+            public String toString() {
+                return alert.toString();
+            }
+        });
+    }
+
+    private void deliver(Alert alert) {
+        for (AlertNotifier notifier : notifiers) {
+            try {
+                notifier.notify(alert);
+            } catch (RuntimeException e) {
+                log.warn("Notifier " + notifier + " failed on " + alert, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rules.
+     * @return int
+     */
+    public int getRuleCount() {
+        return index.size();
+    }
+
+    /**
+     * Waits until the queued alerts have been sent.
+     */
+    @Override
+    public void flush() {
+        ThreadPoolExecutor current = executor;
+        if (current == null || current.isShutdown())
+            return;
+        try {
+            Future<?> done = current.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            done.get(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | ExecutionException | TimeoutException e) {
+            log.warn("Couldn't wait for queued alerts", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        //the queued alerts are sent to the current notifiers, so they are replaced after the executor is done.
+        shutdown(executor, notifiers);
+        executor = null;
+        notifiers = new ArrayList<AlertNotifier>();
+    }
+
+    private static void shutdown(ThreadPoolExecutor previousExecutor, List<AlertNotifier> previousNotifiers) {
+        if (previousExecutor != null) {
+            previousExecutor.shutdown();
+            try {
+                if (!previousExecutor.awaitTermination(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS))
+                    log.warn("Alerts still queued after " + FLUSH_TIMEOUT + " ms, dropping them");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (AlertNotifier notifier : previousNotifiers) {
+            notifier.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AlertingStorage " + config;
+    }
+
+    /**
+     * Consecutive breaches of a rule on a host.
+     */
+    private static class RuleState {
+        private final AlertRule rule;
+        private final String hostName;
+        private final String componentName;
+        private final String producerId;
+        private final String intervalName;
+        private int breaches;
+        private boolean firing;
+        private long lastUpdate = System.currentTimeMillis();
+        private volatile boolean removed;
+
+        RuleState(AlertRule aRule, SnapshotMetaData metaData) {
+            rule = aRule;
+            hostName = metaData.getHostName();
+            componentName = metaData.getComponentName();
+            producerId = metaData.getProducerId();
+            intervalName = metaData.getIntervalName();
+        }
+
+        boolean isRemoved() {
+            return removed;
+        }
+
+        /**
+         * Counts the snapshot, unless the state has expired.
+         * @return the new status if the state changed, otherwise null.
+         */
+        synchronized Alert.Status update(AlertRule rule, boolean breached) {
+            if (removed)
+                return null;
+            lastUpdate = System.currentTimeMillis();
+            if (!breached) {
+                breaches = 0;
+                if (!firing)
+                    return null;
+                firing = false;
+                return Alert.Status.RESOLVED;
+            }
+            if (breaches < rule.getIntervals())
+                breaches++;
+            if (firing || breaches < rule.getIntervals())
+                return null;
+            firing = true;
+            return Alert.Status.FIRING;
+        }
+
+        /**
+         * Marks the state as removed if it got no snapshots within the timeout.
+         * @return whether the rule was firing if the state expired, otherwise null.
+         */
+        synchronized Boolean expire(long now, long timeout) {
+            if (removed || now - lastUpdate < timeout)
+                return null;
+            removed = true;
+            return firing;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.moskito.central.storage.alert;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+import java.util.Arrays;
+
+/**
+ * Configuration of the {@link AlertingStorage}.
+ */
+@ConfigureMe
+public class AlertingStorageConfig {
+
+    /**
+     * Alert rules.
+     */
+    @Configure
+    private AlertRuleEntry[] rules;
+
+    /**
+     * Notifiers the alerts are sent to: "log", "file", "webhook" or the name of a class implementing
+     * {@link AlertNotifier}.
+     */
+    @Configure
+    private String[] notifiers = {"log"};
+
+    /**
+     * File the "file" notifier appends the alerts to.
+     */
+    @Configure
+    private String file = "alerts.log";
+
+    /**
+     * Url the "webhook" notifier posts the alerts to as json.
+     */
+    @Configure
+    private String webhookUrl;
+
+    /**
+     * Connect and read timeout of the webhook in milliseconds.
+     */
+    @Configure
+    private int webhookTimeout = 5000;
+
+    /**
+     * Max number of alerts waiting for the notifiers, further alerts are dropped. The notifiers run in their own
+     * thread, so a slow webhook doesn't hold up the snapshots.
+     */
+    @Configure
+    private int maxQueuedAlerts = 1000;
+
+    /**
+     * Number of intervals without snapshots after which the state of a rule on a host is dropped, a firing rule is
+     * resolved then. Intervals whose length can't be derived from their name, e.g. "snapshot", count as 5 minutes.
+     */
+    @Configure
+    private int expiryIntervals = 3;
+
+    public AlertRuleEntry[] getRules() {
+        return rules;
+    }
+
+    public void setRules(AlertRuleEntry[] rules) {
+        this.rules = rules;
+    }
+
+    public String[] getNotifiers() {
+        return notifiers;
+    }
+
+    public void setNotifiers(String[] notifiers) {
+        this.notifiers = notifiers;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getWebhookUrl() {
+        return webhookUrl;
+    }
+
+    public void setWebhookUrl(String webhookUrl) {
+        this.webhookUrl = webhookUrl;
+    }
+
+    public int getWebhookTimeout() {
+        return webhookTimeout;
+    }
+
+    public void setWebhookTimeout(int webhookTimeout) {
+        this.webhookTimeout = webhookTimeout;
+    }
+
+    public int getMaxQueuedAlerts() {
+        return maxQueuedAlerts;
+    }
+
+    public void setMaxQueuedAlerts(int maxQueuedAlerts) {
+        this.maxQueuedAlerts = maxQueuedAlerts;
+    }
+
+    public int getExpiryIntervals() {
+        return expiryIntervals;
+    }
+
+    public void setExpiryIntervals(int expiryIntervals) {
+        this.expiryIntervals = expiryIntervals;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertingStorageConfig{rules=" + Arrays.toString(rules) + ", notifiers=" + Arrays.toString(notifiers) +
+                ", file=" + file + ", webhookUrl=" + webhookUrl + ", webhookTimeout=" + webhookTimeout +
+                ", maxQueuedAlerts=" + maxQueuedAlerts + ", expiryIntervals=" + expiryIntervals + "}";
+    }
+}
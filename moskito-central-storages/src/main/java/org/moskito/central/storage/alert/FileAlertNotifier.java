@@ -0,0 +1,56 @@
+package org.moskito.central.storage.alert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Appends the alerts to a file, a line per alert.
+ */
+public class FileAlertNotifier implements AlertNotifier {
+
+    private static Logger log = LoggerFactory.getLogger(FileAlertNotifier.class);
+
+    private final String file;
+
+    private Writer writer;
+
+    /**
+     * @param file path of the file.
+     */
+    public FileAlertNotifier(String file) {
+        this.file = file;
+    }
+
+    @Override
+    public void notify(Alert alert) {
+        try {
+            if (writer == null)
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8"));
+            writer.write(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(alert.getTimestamp())) + " " + alert + "\n");
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Couldn't write alert " + alert + " to " + file, e);
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close " + file, e);
+        }
+        writer = null;
+    }
+}
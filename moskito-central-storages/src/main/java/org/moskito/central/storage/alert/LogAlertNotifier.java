@@ -0,0 +1,24 @@
+package org.moskito.central.storage.alert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the alerts into the log, firing alerts as warning.
+ */
+public class LogAlertNotifier implements AlertNotifier {
+
+    private static Logger log = LoggerFactory.getLogger(LogAlertNotifier.class);
+
+    @Override
+    public void notify(Alert alert) {
+        if (alert.getStatus() == Alert.Status.FIRING)
+            log.warn(alert.toString());
+        else
+            log.info(alert.toString());
+    }
+
+    @Override
+    public void close() {
+    }
+}
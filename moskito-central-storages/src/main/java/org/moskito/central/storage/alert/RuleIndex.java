@@ -0,0 +1,86 @@
+package org.moskito.central.storage.alert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Alert rules by producer id, so a snapshot is only checked against the rules of its producer. Rules with a producer
+ * wildcard are matched once per producer id and then cached together with the rules for the id.
+ */
+public class RuleIndex {
+
+    /**
+     * Max number of producer ids whose rules are cached.
+     */
+    private static final int MAX_CACHED_PRODUCERS = 100000;
+
+    private final Map<String, List<AlertRule>> byProducer = new HashMap<String, List<AlertRule>>();
+
+    private final List<AlertRule> wildcardRules = new ArrayList<AlertRule>();
+
+    private final ConcurrentMap<String, List<AlertRule>> cache = new ConcurrentHashMap<String, List<AlertRule>>();
+
+    private final int size;
+
+    /**
+     * @param rules the rules, in the order they are evaluated.
+     */
+    public RuleIndex(List<AlertRule> rules) {
+        for (AlertRule rule : rules) {
+            if (rule.isProducerWildcard()) {
+                wildcardRules.add(rule);
+                continue;
+            }
+            List<AlertRule> producerRules = byProducer.get(rule.getProducer());
+            if (producerRules == null) {
+                producerRules = new ArrayList<AlertRule>();
+                byProducer.put(rule.getProducer(), producerRules);
+            }
+            producerRules.add(rule);
+        }
+        size = rules.size();
+    }
+
+    /**
+     * Returns the rules of a producer.
+     * @param producerId id of the producer.
+     * @return List, empty if there are none.
+     */
+    public List<AlertRule> getRules(String producerId) {
+        if (producerId == null)
+            return Collections.emptyList();
+        if (wildcardRules.isEmpty()) {
+            List<AlertRule> rules = byProducer.get(producerId);
+            return rules == null ? Collections.<AlertRule>emptyList() : rules;
+        }
+        List<AlertRule> rules = cache.get(producerId);
+        if (rules != null)
+            return rules;
+        rules = new ArrayList<AlertRule>();
+        List<AlertRule> exact = byProducer.get(producerId);
+        if (exact != null)
+            rules.addAll(exact);
+        for (AlertRule rule : wildcardRules) {
+            if (rule.matchesProducer(producerId))
+                rules.add(rule);
+        }
+        if (rules.isEmpty())
+            rules = Collections.emptyList();
+        if (cache.size() < MAX_CACHED_PRODUCERS)
+            cache.put(producerId, rules);
+        return rules;
+    }
+
+    /**
+     * Returns the number of rules.
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+}
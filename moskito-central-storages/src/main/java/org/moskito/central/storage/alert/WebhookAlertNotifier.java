@@ -0,0 +1,63 @@
+package org.moskito.central.storage.alert;
+
+import com.google.gson.Gson;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Posts the alerts as json to an url.
+ */
+public class WebhookAlertNotifier implements AlertNotifier {
+
+    private static Logger log = LoggerFactory.getLogger(WebhookAlertNotifier.class);
+
+    private static final Gson gson = new Gson();
+
+    private final String url;
+
+    private final CloseableHttpClient client;
+
+    /**
+     * @param url url the alerts are posted to.
+     * @param timeout connect and read timeout in milliseconds.
+     */
+    public WebhookAlertNotifier(String url, int timeout) {
+        this.url = url;
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout).build();
+        client = HttpClients.custom().setDefaultRequestConfig(requestConfig).build();
+    }
+
+    @Override
+    public void notify(Alert alert) {
+        HttpPost post = new HttpPost(url);
+        post.setEntity(new StringEntity(gson.toJson(alert), ContentType.APPLICATION_JSON));
+        try {
+            HttpResponse response = client.execute(post);
+            int status = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
+            if (status < 200 || status >= 300)
+                log.warn("Webhook " + url + " answered " + response.getStatusLine() + " for alert " + alert);
+        } catch (IOException e) {
+            log.warn("Couldn't post alert " + alert + " to " + url + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close http client of webhook " + url, e);
+        }
+    }
+}
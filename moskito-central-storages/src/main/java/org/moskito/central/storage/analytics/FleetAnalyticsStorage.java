@@ -0,0 +1,302 @@
+package org.moskito.central.storage.analytics;
+
+import org.configureme.ConfigurationManager;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.helpers.IncludeExcludeWildcardList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribution of the values of each producer, stat and value across all hosts, per time window: a mergeable
+ * {@link QuantileSketch} for the percentiles and the {@link TopHosts} with the highest values. Answers questions like
+ * "which 10 hosts have the highest Avg of producer X right now and what is the p99 of the fleet" without exporting
+ * the snapshots. The memory doesn't depend on the number of hosts, see {@link FleetAnalyticsStorageConfig}.
+ */
+public class FleetAnalyticsStorage implements Storage, Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(FleetAnalyticsStorage.class);
+
+    private volatile Settings settings = new Settings(new FleetAnalyticsStorageConfig());
+
+    /**
+     * Windows by their start.
+     */
+    private final ConcurrentNavigableMap<Long, Window> windows = new ConcurrentSkipListMap<Long, Window>();
+
+    /**
+     * Set once the max number of series has been reached and logged.
+     */
+    private final AtomicBoolean limitReached = new AtomicBoolean();
+
+    @Override
+    public void configure(String configurationName) {
+        FleetAnalyticsStorageConfig config = new FleetAnalyticsStorageConfig();
+        if (configurationName != null) {
+            try {
+                ConfigurationManager.INSTANCE.configureAs(config, configurationName);
+            } catch (IllegalArgumentException e) {
+                log.warn("Couldn't configure FleetAnalyticsStorage with " + configurationName + ", working with default values");
+            }
+        }
+        configure(config);
+    }
+
+    /**
+     * Configures the storage without configureme. The collected windows are dropped.
+     * @param config the configuration.
+     */
+    public void configure(FleetAnalyticsStorageConfig config) {
+        settings = new Settings(config);
+        windows.clear();
+        limitReached.set(false);
+    }
+
+    @Override
+    public void processSnapshot(Snapshot target) {
+        SnapshotMetaData metaData = target.getMetaData();
+        if (metaData == null || target.getStats() == null)
+            return;
+        Settings s = settings;
+        if (!s.intervals.include(metaData.getIntervalName()) || !s.producers.include(metaData.getProducerId()))
+            return;
+        if (s.aggregationHostName != null && s.aggregationHostName.equals(metaData.getHostName()))
+            return;
+        long timestamp = metaData.getCreationTimestamp() > 0 ? metaData.getCreationTimestamp() : metaData.getArrivalTimestamp();
+        Window window = getWindow(s, Math.max(0, timestamp) / s.window * s.window);
+        if (window == null)
+            return;
+
+        for (Map.Entry<String, Map<String, String>> stat : target.getStats().entrySet()) {
+            if (stat.getKey() == null || stat.getValue() == null || !s.stats.include(stat.getKey()))
+                continue;
+            for (Map.Entry<String, String> value : stat.getValue().entrySet()) {
+                if (value.getKey() == null || value.getValue() == null || !s.values.include(value.getKey()))
+                    continue;
+                double number;
+                try {
+                    number = Double.parseDouble(value.getValue());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (Double.isNaN(number) || Double.isInfinite(number))
+                    continue;
+                Cell cell = getCell(s, window, key(metaData.getProducerId(), stat.getKey(), value.getKey(), metaData.getIntervalName()));
+                if (cell != null)
+                    cell.add(metaData.getHostName(), number);
+            }
+        }
+    }
+
+    /**
+     * Returns the window with the given start, null if it is older than the windows kept.
+     */
+    private Window getWindow(Settings s, long start) {
+        Window window = windows.get(start);
+        if (window != null)
+            return window;
+        Map.Entry<Long, Window> oldest = windows.firstEntry();
+        if (oldest != null && start < oldest.getKey() && windows.size() >= s.windowCount)
+            return null;
+        window = new Window(start);
+        Window existing = windows.putIfAbsent(start, window);
+        if (existing != null)
+            return existing;
+        while (windows.size() > s.windowCount) {
+            windows.pollFirstEntry();
+        }
+        return window;
+    }
+
+    private Cell getCell(Settings s, Window window, String key) {
+        Cell cell = window.cells.get(key);
+        if (cell != null)
+            return cell;
+        if (window.size.incrementAndGet() > s.maxSeries) {
+            window.size.decrementAndGet();
+            if (limitReached.compareAndSet(false, true))
+                log.warn("Max number of series (" + s.maxSeries + ") per window reached, further values are not analyzed");
+            return null;
+        }
+        cell = new Cell(s);
+        Cell existing = window.cells.putIfAbsent(key, cell);
+        if (existing != null) {
+            window.size.decrementAndGet();
+            return existing;
+        }
+        return cell;
+    }
+
+    /**
+     * Returns the distribution of a value across the hosts in the newest windows.
+     *
+     * @param producerId id of the producer.
+     * @param stat name of the stat.
+     * @param value name of the value.
+     * @param intervalName name of the interval of the snapshots.
+     * @param windowCount number of windows, 1 for the current window only.
+     * @param quantiles quantiles of the percentiles, e.g. 0.99.
+     * @param limit max number of hosts with the highest values.
+     * @return the statistics or null if there are no values in the windows.
+     */
+    public FleetStatistics query(String producerId, String stat, String value, String intervalName, int windowCount, double[] quantiles, int limit) {
+        Settings s = settings;
+        String key = key(producerId, stat, value, intervalName);
+        QuantileSketch sketch = null;
+        TopHosts top = new TopHosts(s.topHosts);
+        long from = 0, to = 0;
+        int seen = 0;
+        for (Window window : windows.descendingMap().values()) {
+            if (seen++ >= windowCount)
+                break;
+            Cell cell = window.cells.get(key);
+            if (cell == null)
+                continue;
+            synchronized (cell) {
+                if (sketch == null)
+                    sketch = new QuantileSketch(cell.sketch.getRelativeAccuracy(), s.maxBuckets);
+                sketch.merge(cell.sketch);
+                top.merge(cell.top);
+            }
+            if (to == 0)
+                to = window.start + s.window;
+            from = window.start;
+        }
+        if (sketch == null || sketch.getCount() == 0)
+            return null;
+
+        FleetStatistics ret = new FleetStatistics();
+        ret.setProducerId(producerId);
+        ret.setStat(stat);
+        ret.setValue(value);
+        ret.setIntervalName(intervalName);
+        ret.setFrom(from);
+        ret.setTo(to);
+        ret.setCount(sketch.getCount());
+        ret.setMin(sketch.getMin());
+        ret.setMax(sketch.getMax());
+        ret.setMean(sketch.getMean());
+        if (quantiles != null) {
+            for (double quantile : quantiles) {
+                ret.getPercentiles().put(percentileName(quantile), sketch.getQuantile(quantile));
+            }
+        }
+        ret.setTop(top.getTop(limit));
+        return ret;
+    }
+
+    /**
+     * Returns the name of a percentile, e.g. p99.9 for 0.999.
+     * @param quantile the quantile.
+     * @return String
+     */
+    static String percentileName(double quantile) {
+        return "p" + BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Returns the number of windows.
+     * @return int
+     */
+    public int getWindowCount() {
+        return windows.size();
+    }
+
+    /**
+     * Returns the number of producer, stat and value combinations in all windows.
+     * @return int
+     */
+    public int getSeriesCount() {
+        int count = 0;
+        for (Window window : windows.values()) {
+            count += window.size.get();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        windows.clear();
+    }
+
+    private static String key(String producerId, String stat, String value, String intervalName) {
+        return producerId + '\u0000' + stat + '\u0000' + value + '\u0000' + intervalName;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetAnalyticsStorage " + settings.config;
+    }
+
+    /**
+     * Configuration with the filters built from it.
+     */
+    private static class Settings {
+        private final FleetAnalyticsStorageConfig config;
+        private final long window;
+        private final int windowCount;
+        private final int maxSeries;
+        private final int maxBuckets;
+        private final int topHosts;
+        private final double relativeAccuracy;
+        private final String aggregationHostName;
+        private final IncludeExcludeWildcardList producers;
+        private final IncludeExcludeWildcardList stats;
+        private final IncludeExcludeWildcardList values;
+        private final IncludeExcludeWildcardList intervals;
+
+        Settings(FleetAnalyticsStorageConfig config) {
+            this.config = config;
+            window = Math.max(1, config.getWindow());
+            windowCount = Math.max(1, config.getWindows());
+            maxSeries = config.getMaxSeries();
+            maxBuckets = config.getMaxBuckets();
+            topHosts = config.getTopHosts();
+            relativeAccuracy = config.getRelativeAccuracy() > 0 && config.getRelativeAccuracy() < 1 ? config.getRelativeAccuracy() : 0.01;
+            aggregationHostName = config.getAggregationHostName() == null || config.getAggregationHostName().length() == 0 ? null : config.getAggregationHostName();
+            producers = new IncludeExcludeWildcardList(config.getIncludeProducers(), config.getExcludeProducers());
+            stats = new IncludeExcludeWildcardList(config.getIncludeStats(), config.getExcludeStats());
+            values = new IncludeExcludeWildcardList(config.getIncludeValues(), config.getExcludeValues());
+            intervals = new IncludeExcludeWildcardList(config.getIncludeIntervals(), config.getExcludeIntervals());
+        }
+    }
+
+    private static class Window {
+        private final long start;
+        private final ConcurrentMap<String, Cell> cells = new ConcurrentHashMap<String, Cell>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Sketch and top hosts of a producer, stat and value in a window.
+     */
+    private static class Cell {
+        private final QuantileSketch sketch;
+        private final TopHosts top;
+
+        Cell(Settings s) {
+            sketch = new QuantileSketch(s.relativeAccuracy, s.maxBuckets);
+            top = new TopHosts(s.topHosts);
+        }
+
+        synchronized void add(String host, double value) {
+            sketch.add(value);
+            top.add(host, value);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.moskito.central.storage.analytics;
+
+import org.configureme.annotations.Configure;
+import org.configureme.annotations.ConfigureMe;
+
+/**
+ * Configuration of the {@link FleetAnalyticsStorage}. The memory is bounded by windows * maxSeries sketches of up to
+ * 2 * maxBuckets * 4 bytes each plus topHosts hosts per sketch, independent of the number of hosts.
+ */
+@ConfigureMe
+public class FleetAnalyticsStorageConfig {
+
+    /**
+     * Length of a time window in milliseconds. Windows are aligned to UTC.
+     */
+    @Configure
+    private long window = 300000;
+
+    /**
+     * Number of windows kept, the oldest window is dropped when a new one starts.
+     */
+    @Configure
+    private int windows = 12;
+
+    /**
+     * Relative accuracy of the percentiles.
+     */
+    @Configure
+    private double relativeAccuracy = 0.01;
+
+    /**
+     * Max number of buckets of a sketch, for positive and negative values each. With an accuracy of 1% 2048 buckets
+     * cover values spanning 17 orders of magnitude.
+     */
+    @Configure
+    private int maxBuckets = 2048;
+
+    /**
+     * Number of hosts with the highest values kept per window, producer, stat and value.
+     */
+    @Configure
+    private int topHosts = 10;
+
+    /**
+     * Max number of producer, stat and value combinations per window.
+     */
+    @Configure
+    private int maxSeries = 10000;
+
+    /**
+     * Host name of the merged snapshots of the cluster aggregation (hostName of the aggregation config). They are not
+     * a host of the fleet and are skipped, otherwise they would be counted as another host and be on top of the hosts
+     * for every counter. Empty to analyze them too.
+     */
+    @Configure
+    private String aggregationHostName = "*";
+
+    @Configure
+    private String includeProducers = "*";
+
+    @Configure
+    private String excludeProducers = "";
+
+    @Configure
+    private String includeStats = "*";
+
+    @Configure
+    private String excludeStats = "";
+
+    @Configure
+    private String includeValues = "*";
+
+    @Configure
+    private String excludeValues = "";
+
+    @Configure
+    private String includeIntervals = "1m";
+
+    @Configure
+    private String excludeIntervals = "";
+
+    public String getAggregationHostName() {
+        return aggregationHostName;
+    }
+
+    public void setAggregationHostName(String aggregationHostName) {
+        this.aggregationHostName = aggregationHostName;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public int getWindows() {
+        return windows;
+    }
+
+    public void setWindows(int windows) {
+        this.windows = windows;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    public int getTopHosts() {
+        return topHosts;
+    }
+
+    public void setTopHosts(int topHosts) {
+        this.topHosts = topHosts;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public String getIncludeProducers() {
+        return includeProducers;
+    }
+
+    public void setIncludeProducers(String includeProducers) {
+        this.includeProducers = includeProducers;
+    }
+
+    public String getExcludeProducers() {
+        return excludeProducers;
+    }
+
+    public void setExcludeProducers(String excludeProducers) {
+        this.excludeProducers = excludeProducers;
+    }
+
+    public String getIncludeStats() {
+        return includeStats;
+    }
+
+    public void setIncludeStats(String includeStats) {
+        this.includeStats = includeStats;
+    }
+
+    public String getExcludeStats() {
+        return excludeStats;
+    }
+
+    public void setExcludeStats(String excludeStats) {
+        this.excludeStats = excludeStats;
+    }
+
+    public String getIncludeValues() {
+        return includeValues;
+    }
+
+    public void setIncludeValues(String includeValues) {
+        this.includeValues = includeValues;
+    }
+
+    public String getExcludeValues() {
+        return excludeValues;
+    }
+
+    public void setExcludeValues(String excludeValues) {
+        this.excludeValues = excludeValues;
+    }
+
+    public String getIncludeIntervals() {
+        return includeIntervals;
+    }
+
+    public void setIncludeIntervals(String includeIntervals) {
+        this.includeIntervals = includeIntervals;
+    }
+
+    public String getExcludeIntervals() {
+        return excludeIntervals;
+    }
+
+    public void setExcludeIntervals(String excludeIntervals) {
+        this.excludeIntervals = excludeIntervals;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetAnalyticsStorageConfig{window=" + window + ", windows=" + windows + ", relativeAccuracy=" + relativeAccuracy +
+                ", maxBuckets=" + maxBuckets + ", topHosts=" + topHosts + ", maxSeries=" + maxSeries + ", aggregationHostName=" + aggregationHostName +
+                ", producers=" + includeProducers + "/" + excludeProducers + ", stats=" + includeStats + "/" + excludeStats +
+                ", values=" + includeValues + "/" + excludeValues + ", intervals=" + includeIntervals + "/" + excludeIntervals + "}";
+    }
+}
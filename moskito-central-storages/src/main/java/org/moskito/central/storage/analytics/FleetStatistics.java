@@ -0,0 +1,154 @@
+package org.moskito.central.storage.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distribution of a value across the hosts of the fleet in a time range, result of
+ * {@link FleetAnalyticsStorage#query(String, String, String, String, int, double[], int)}.
+ */
+public class FleetStatistics {
+
+    private String producerId;
+
+    private String stat;
+
+    private String value;
+
+    private String intervalName;
+
+    /**
+     * Start of the time range, inclusive.
+     */
+    private long from;
+
+    /**
+     * End of the time range, exclusive.
+     */
+    private long to;
+
+    /**
+     * Number of values, one per snapshot.
+     */
+    private long count;
+
+    private double min;
+
+    private double max;
+
+    private double mean;
+
+    /**
+     * Values by quantile, e.g. "p99".
+     */
+    private Map<String, Double> percentiles = new LinkedHashMap<String, Double>();
+
+    /**
+     * Hosts with the highest values, the highest first.
+     */
+    private List<HostValue> top;
+
+    public String getProducerId() {
+        return producerId;
+    }
+
+    public void setProducerId(String producerId) {
+        this.producerId = producerId;
+    }
+
+    public String getStat() {
+        return stat;
+    }
+
+    public void setStat(String stat) {
+        this.stat = stat;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getIntervalName() {
+        return intervalName;
+    }
+
+    public void setIntervalName(String intervalName) {
+        this.intervalName = intervalName;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public Map<String, Double> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(Map<String, Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    public List<HostValue> getTop() {
+        return top;
+    }
+
+    public void setTop(List<HostValue> top) {
+        this.top = top;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetStatistics{" + producerId + "." + stat + "." + value + " (" + intervalName + ") " + from + "-" + to +
+                ", count=" + count + ", min=" + min + ", max=" + max + ", mean=" + mean +
+                ", percentiles=" + percentiles + ", top=" + top + "}";
+    }
+}
@@ -0,0 +1,40 @@
+package org.moskito.central.storage.analytics;
+
+/**
+ * Value of a host in a {@link FleetStatistics}.
+ */
+public class HostValue {
+
+    private String host;
+
+    private double value;
+
+    public HostValue() {
+    }
+
+    public HostValue(String host, double value) {
+        this.host = host;
+        this.value = value;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return host + "=" + value;
+    }
+}
@@ -0,0 +1,250 @@
+package org.moskito.central.storage.analytics;
+
+/**
+ * Mergeable quantile sketch with a relative accuracy, in the style of DDSketch and HDR histograms. A value v is
+ * counted in the bucket ceil(log(|v|) / log(gamma)) with gamma = (1 + a) / (1 - a), so every quantile is returned
+ * with a relative error of at most a. The buckets of positive and negative values are dense arrays limited to a max
+ * number of buckets; if the values span more buckets, the lowest buckets are collapsed, which only affects the
+ * accuracy of the lowest quantiles. Two sketches with the same accuracy are merged by adding the buckets. Not thread
+ * safe.
+ */
+public class QuantileSketch {
+
+    /**
+     * Values with a smaller absolute value are counted as 0.
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final Buckets positive;
+
+    private final Buckets negative;
+
+    private long zeroCount;
+
+    private long count;
+
+    private double sum;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param relativeAccuracy relative accuracy of the quantiles, between 0 and 1 exclusive.
+     * @param maxBuckets max number of buckets for the positive and the negative values each.
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, got " + relativeAccuracy);
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+        positive = new Buckets(Math.max(2, maxBuckets));
+        negative = new Buckets(Math.max(2, maxBuckets));
+    }
+
+    /**
+     * Adds a value. Values which are not finite are ignored.
+     * @param value the value.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return;
+        if (value >= MIN_INDEXABLE)
+            positive.add(index(value), 1);
+        else if (value <= -MIN_INDEXABLE)
+            negative.add(index(-value), 1);
+        else
+            zeroCount++;
+        count++;
+        sum += value;
+        if (value < min)
+            min = value;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * Adds the values of another sketch.
+     * @param other sketch with the same relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy)
+            throw new IllegalArgumentException("Can't merge sketches with relative accuracy " + relativeAccuracy + " and " + other.relativeAccuracy);
+        if (other.count == 0)
+            return;
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value at the given quantile.
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile.
+     * @return the value, NaN if the sketch is empty or the quantile is out of range.
+     */
+    public double getQuantile(double quantile) {
+        if (count == 0 || !(quantile >= 0 && quantile <= 1))
+            return Double.NaN;
+        long rank = (long) (quantile * (count - 1));
+        double value;
+        if (rank < negative.total) {
+            //the most negative values first.
+            value = -value(negative.indexAtRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            value = 0;
+        } else {
+            value = value(positive.indexAtRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest value, NaN if the sketch is empty.
+     * @return double
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest value, NaN if the sketch is empty.
+     * @return double
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the mean of the values, NaN if the sketch is empty.
+     * @return double
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Returns the memory used by the buckets in bytes.
+     * @return int
+     */
+    public int getSize() {
+        return (positive.counts == null ? 0 : positive.counts.length * 4) + (negative.counts == null ? 0 : negative.counts.length * 4);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Returns the representative value of a bucket, which is off by at most the relative accuracy for every value
+     * of the bucket.
+     */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Counts per bucket index, for the contiguous range of indexes minIndex to maxIndex.
+     */
+    private static class Buckets {
+        private final int maxBuckets;
+        private int[] counts;
+        /**
+         * Bucket index of counts[0].
+         */
+        private int offset;
+        private int minIndex;
+        private int maxIndex;
+        private long total;
+
+        Buckets(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        void add(int index, int n) {
+            if (counts == null) {
+                counts = new int[Math.min(maxBuckets, 32)];
+                offset = index - counts.length / 2;
+                minIndex = maxIndex = index;
+            } else if (index < minIndex || index > maxIndex) {
+                index = extend(index);
+            }
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        /**
+         * Extends the range to the index, collapsing the lowest buckets if the range gets too wide.
+         * @return the index the value is counted in.
+         */
+        private int extend(int index) {
+            int newMin = Math.min(minIndex, index);
+            int newMax = Math.max(maxIndex, index);
+            if (newMax - newMin + 1 > maxBuckets) {
+                newMin = newMax - maxBuckets + 1;
+                if (index < newMin)
+                    index = newMin;
+            }
+            int width = newMax - newMin + 1;
+            if (newMin < offset || newMax >= offset + counts.length) {
+                int length = Math.min(maxBuckets, Math.max(counts.length * 2, width));
+                int newOffset = newMin - (length - width) / 2;
+                int[] resized = new int[length];
+                for (int i = minIndex; i <= maxIndex; i++) {
+                    resized[Math.max(i, newMin) - newOffset] += counts[i - offset];
+                }
+                counts = resized;
+                offset = newOffset;
+            } else {
+                for (int i = minIndex; i < newMin; i++) {
+                    counts[newMin - offset] += counts[i - offset];
+                    counts[i - offset] = 0;
+                }
+            }
+            minIndex = newMin;
+            maxIndex = newMax;
+            return index;
+        }
+
+        void merge(Buckets other) {
+            if (other.counts == null)
+                return;
+            for (int i = other.minIndex; i <= other.maxIndex; i++) {
+                int n = other.counts[i - other.offset];
+                if (n > 0)
+                    add(i, n);
+            }
+        }
+
+        /**
+         * Returns the index of the bucket with the value of the given rank, counted from the lowest value.
+         */
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = minIndex; i <= maxIndex; i++) {
+                seen += counts[i - offset];
+                if (seen > rank)
+                    return i;
+            }
+            return maxIndex;
+        }
+    }
+}
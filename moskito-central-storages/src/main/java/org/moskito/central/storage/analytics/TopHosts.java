@@ -0,0 +1,110 @@
+package org.moskito.central.storage.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The k hosts with the highest value, by the max value of each host. At most k hosts are kept: a host which isn't
+ * among them replaces the host with the lowest value if its value is higher. The result is exact, since the lowest
+ * kept value never decreases. Two instances are merged the same way. Meant for small k, not thread safe.
+ */
+public class TopHosts {
+
+    private static final Comparator<HostValue> DESCENDING = new Comparator<HostValue>() {
+        @Override
+        public int compare(HostValue o1, HostValue o2) {
+            int ret = Double.compare(o2.getValue(), o1.getValue());
+            return ret != 0 ? ret : o1.getHost().compareTo(o2.getHost());
+        }
+    };
+
+    private final int k;
+
+    private final Map<String, Double> values = new HashMap<String, Double>();
+
+    /**
+     * Host with the lowest value, null if not known.
+     */
+    private String lowestHost;
+
+    private double lowest;
+
+    /**
+     * @param k number of hosts.
+     */
+    public TopHosts(int k) {
+        this.k = Math.max(1, k);
+    }
+
+    /**
+     * Adds a value of a host.
+     * @param host name of the host.
+     * @param value the value.
+     */
+    public void add(String host, double value) {
+        if (host == null || Double.isNaN(value))
+            return;
+        Double current = values.get(host);
+        if (current != null) {
+            if (value > current) {
+                values.put(host, value);
+                if (host.equals(lowestHost))
+                    lowestHost = null;
+            }
+            return;
+        }
+        if (values.size() < k) {
+            values.put(host, value);
+            if (lowestHost != null && value < lowest) {
+                lowestHost = host;
+                lowest = value;
+            }
+            return;
+        }
+        if (lowestHost == null)
+            findLowest();
+        if (value <= lowest)
+            return;
+        values.remove(lowestHost);
+        values.put(host, value);
+        lowestHost = null;
+    }
+
+    /**
+     * Adds the hosts of another instance.
+     * @param other the other instance.
+     */
+    public void merge(TopHosts other) {
+        for (Map.Entry<String, Double> entry : other.values.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the hosts, the highest value first.
+     * @param limit max number of hosts.
+     * @return List
+     */
+    public List<HostValue> getTop(int limit) {
+        List<HostValue> ret = new ArrayList<HostValue>(values.size());
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            ret.add(new HostValue(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(ret, DESCENDING);
+        return ret.size() > limit ? new ArrayList<HostValue>(ret.subList(0, Math.max(0, limit))) : ret;
+    }
+
+    private void findLowest() {
+        lowestHost = null;
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            if (lowestHost == null || entry.getValue() < lowest) {
+                lowestHost = entry.getKey();
+                lowest = entry.getValue();
+            }
+        }
+    }
+}
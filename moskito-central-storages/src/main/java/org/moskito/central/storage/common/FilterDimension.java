@@ -0,0 +1,83 @@
+package org.moskito.central.storage.common;
+
+/**
+ * Dimensions of a snapshot a storage can filter on.
+ */
+public enum FilterDimension {
+    PRODUCER {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getProducer();
+        }
+    },
+    CATEGORY {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getCategory();
+        }
+    },
+    SUBSYSTEM {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getSubsystem();
+        }
+    },
+    INTERVAL {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getInterval();
+        }
+    },
+    STAT {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getStat();
+        }
+
+        @Override
+        public boolean isOptional() {
+            return true;
+        }
+    },
+    HOST {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getHost();
+        }
+
+        @Override
+        public boolean isOptional() {
+            return true;
+        }
+    },
+    COMPONENT {
+        @Override
+        public String valueOf(IncludeExcludeFields fields) {
+            return fields.getComponent();
+        }
+
+        @Override
+        public boolean isOptional() {
+            return true;
+        }
+    };
+
+    /**
+     * Returns the value of this dimension.
+     *
+     * @param fields fields of the snapshot.
+     * @return value, may be null.
+     */
+    public abstract String valueOf(IncludeExcludeFields fields);
+
+    /**
+     * Returns true if the dimension is not always known. The stat is only known to storages which filter each stat of
+     * a snapshot, host and component are not sent by every connector. A constraint on an optional dimension doesn't
+     * apply if the value is absent.
+     *
+     * @return boolean
+     */
+    public boolean isOptional() {
+        return false;
+    }
+}
@@ -0,0 +1,101 @@
+package org.moskito.central.storage.common;
+
+import org.moskito.central.storage.helpers.IncludeExcludeWildcardList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One include/exclude rule of a {@link SnapshotFilter}. A rule consists of constraints on dimensions, which all have
+ * to be satisfied. Dimensions without a constraint are not checked at all, neither are constraints on
+ * {@link FilterDimension#isOptional() optional} dimensions whose value is absent.
+ */
+public class FilterRule {
+
+    /**
+     * Constraints of this rule.
+     */
+    private final List<Constraint> constraints = new ArrayList<>();
+
+    /**
+     * Adds a constraint on the dimension. Includes and excludes are comma separated lists of names, wildcards
+     * ('*', '?') and regular expressions prefixed with 'regex:'. A null include matches nothing, a '*' include without
+     * excludes matches everything and is therefore not added at all.
+     *
+     * @param dimension dimension to constrain.
+     * @param include included values.
+     * @param exclude excluded values.
+     * @return this rule.
+     */
+    public FilterRule add(FilterDimension dimension, String include, String exclude) {
+        if (include != null && include.trim().equals("*") && (exclude == null || exclude.trim().length() == 0))
+            return this;
+        constraints.add(new Constraint(dimension, new IncludeExcludeWildcardList(include, exclude)));
+        return this;
+    }
+
+    /**
+     * Adds a constraint on the dimension, unless both include and exclude are empty, in which case the fallback
+     * include and exclude are used. This is how entries inherit the global interval settings of a storage.
+     *
+     * @param dimension dimension to constrain.
+     * @param include included values.
+     * @param exclude excluded values.
+     * @param fallbackInclude included values if neither include nor exclude are set.
+     * @param fallbackExclude excluded values if neither include nor exclude are set.
+     * @return this rule.
+     */
+    public FilterRule add(FilterDimension dimension, String include, String exclude, String fallbackInclude, String fallbackExclude) {
+        if ((include == null || include.length() == 0) && (exclude == null || exclude.length() == 0))
+            return add(dimension, fallbackInclude, fallbackExclude);
+        return add(dimension, include, exclude);
+    }
+
+    public boolean matches(IncludeExcludeFields fields) {
+        for (Constraint c : constraints) {
+            String value = c.dimension.valueOf(fields);
+            if (value == null && c.dimension.isOptional())
+                continue;
+            if (!c.values.include(value))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the dimensions this rule constrains.
+     * @return Set
+     */
+    public Set<FilterDimension> getDimensions() {
+        if (constraints.isEmpty())
+            return Collections.emptySet();
+        Set<FilterDimension> dimensions = EnumSet.noneOf(FilterDimension.class);
+        for (Constraint c : constraints) {
+            dimensions.add(c.dimension);
+        }
+        return dimensions;
+    }
+
+    @Override
+    public String toString() {
+        return "FilterRule" + constraints;
+    }
+
+    private static class Constraint {
+        private final FilterDimension dimension;
+        private final IncludeExcludeWildcardList values;
+
+        Constraint(FilterDimension dimension, IncludeExcludeWildcardList values) {
+            this.dimension = dimension;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return dimension + "=" + values;
+        }
+    }
+}
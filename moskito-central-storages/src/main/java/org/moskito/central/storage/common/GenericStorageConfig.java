@@ -3,7 +3,6 @@ package org.moskito.central.storage.common;
 import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,9 +20,9 @@ public class GenericStorageConfig {
     protected StorageConfigEntry[] entries;
 
     /**
-     * Restored config element.
+     * Filter built from the entries, replaced on every (re)configuration.
      */
-    protected List<StorageConfigElement> elements;
+    protected volatile SnapshotFilter filter = SnapshotFilter.NONE;
 
     /**
      * Global interval include.
@@ -62,33 +61,34 @@ public class GenericStorageConfig {
         this.entries = entries;
     }
 
-    public boolean include(IncludeExcludeFields fields){
-        for (StorageConfigElement element : elements){
-            if (element.include(fields)) {
-                return true;
-            }
-        }
+    public SnapshotFilter getFilter() {
+        return filter;
+    }
 
-        return false;
+    public boolean include(IncludeExcludeFields fields){
+        return filter.include(fields);
     }
 
     @AfterConfiguration
     public void afterConfiguration(){
-        IncludeExcludeList intervals = new IncludeExcludeList(includeIntervals, excludeIntervals);
-        elements = prepareStorageConfigElements(intervals);
+        filter = new SnapshotFilter(prepareFilterRules());
     }
 
-    private List<StorageConfigElement> prepareStorageConfigElements(IncludeExcludeList intervals) {
-        List<StorageConfigElement> newElements = new ArrayList<>();
+    /**
+     * Creates one filter rule per entry. Subclasses may add further constraints to the returned rules.
+     *
+     * @return List
+     */
+    protected List<FilterRule> prepareFilterRules() {
+        List<FilterRule> rules = new ArrayList<>();
 
         if (entries == null) {
-            return newElements;
+            return rules;
         }
 
         for (StorageConfigEntry entry : entries){
-            StorageConfigElement element = new StorageConfigElement(entry, intervals);
-            newElements.add(element);
+            rules.add(entry.toFilterRule(includeIntervals, excludeIntervals));
         }
-        return newElements;
+        return rules;
     }
 }
@@ -14,12 +14,18 @@ public final class IncludeExcludeFields {
     private final String category;
     private final String subsystem;
     private final String interval;
+    private final String stat;
+    private final String host;
+    private final String component;
 
     public IncludeExcludeFields(SnapshotMetaData metaData) {
         this.producer = metaData.getProducerId();
         this.category = metaData.getCategory();
         this.subsystem = metaData.getSubsystem();
         this.interval = metaData.getIntervalName();
+        this.stat = null;
+        this.host = metaData.getHostName();
+        this.component = metaData.getComponentName();
     }
 
     private IncludeExcludeFields(Builder builder) {
@@ -27,6 +33,9 @@ public final class IncludeExcludeFields {
         this.category = builder.category;
         this.subsystem = builder.subsystem;
         this.interval = builder.interval;
+        this.stat = builder.stat;
+        this.host = builder.host;
+        this.component = builder.component;
     }
 
     public String getProducer() {
@@ -45,12 +54,89 @@ public final class IncludeExcludeFields {
         return interval;
     }
 
+    public String getStat() {
+        return stat;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Returns a copy of these fields for a single stat of the snapshot.
+     *
+     * @param stat stat name.
+     * @return IncludeExcludeFields
+     */
+    public IncludeExcludeFields withStat(String stat) {
+        return toBuilder().setStat(stat).build();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .setProducer(producer)
+                .setCategory(category)
+                .setSubsystem(subsystem)
+                .setInterval(interval)
+                .setStat(stat)
+                .setHost(host)
+                .setComponent(component);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        IncludeExcludeFields that = (IncludeExcludeFields) o;
+
+        if (producer != null ? !producer.equals(that.producer) : that.producer != null) return false;
+        if (category != null ? !category.equals(that.category) : that.category != null) return false;
+        if (subsystem != null ? !subsystem.equals(that.subsystem) : that.subsystem != null) return false;
+        if (interval != null ? !interval.equals(that.interval) : that.interval != null) return false;
+        if (stat != null ? !stat.equals(that.stat) : that.stat != null) return false;
+        if (host != null ? !host.equals(that.host) : that.host != null) return false;
+        return component != null ? component.equals(that.component) : that.component == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = producer != null ? producer.hashCode() : 0;
+        result = 31 * result + (category != null ? category.hashCode() : 0);
+        result = 31 * result + (subsystem != null ? subsystem.hashCode() : 0);
+        result = 31 * result + (interval != null ? interval.hashCode() : 0);
+        result = 31 * result + (stat != null ? stat.hashCode() : 0);
+        result = 31 * result + (host != null ? host.hashCode() : 0);
+        result = 31 * result + (component != null ? component.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "IncludeExcludeFields{" +
+                "producer='" + producer + '\'' +
+                ", category='" + category + '\'' +
+                ", subsystem='" + subsystem + '\'' +
+                ", interval='" + interval + '\'' +
+                ", stat='" + stat + '\'' +
+                ", host='" + host + '\'' +
+                ", component='" + component + '\'' +
+                '}';
+    }
+
     public static class Builder {
 
         private String producer;
         private String category;
         private String subsystem;
         private String interval;
+        private String stat;
+        private String host;
+        private String component;
 
         public Builder setProducer(String producer) {
             this.producer = producer;
@@ -72,6 +158,21 @@ public final class IncludeExcludeFields {
             return this;
         }
 
+        public Builder setStat(String stat) {
+            this.stat = stat;
+            return this;
+        }
+
+        public Builder setHost(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public Builder setComponent(String component) {
+            this.component = component;
+            return this;
+        }
+
         public IncludeExcludeFields build() {
             return new IncludeExcludeFields(this);
         }
@@ -0,0 +1,115 @@
+package org.moskito.central.storage.common;
+
+import org.moskito.central.storage.helpers.DecisionCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filter engine shared by all storages. A snapshot (or a stat of it) is included if at least one of the rules matches.
+ * Decisions are memoized per combination of the dimensions the rules actually constrain, so unused dimensions like
+ * host or stat don't blow up the cache. A filter is immutable, reconfiguration creates a new one.
+ */
+public class SnapshotFilter {
+
+    /**
+     * Filter without rules, it includes nothing.
+     */
+    public static final SnapshotFilter NONE = new SnapshotFilter(Collections.<FilterRule>emptyList());
+
+    /**
+     * Filter with a single unconstrained rule, it includes everything.
+     */
+    public static final SnapshotFilter ALL = new SnapshotFilter(new FilterRule());
+
+    /**
+     * Rules of this filter.
+     */
+    private final List<FilterRule> rules;
+
+    /**
+     * Dimensions constrained by at least one rule.
+     */
+    private final Set<FilterDimension> dimensions;
+
+    /**
+     * Memoized decisions.
+     */
+    private final DecisionCache<IncludeExcludeFields> decisions = new DecisionCache<>();
+
+    public SnapshotFilter(List<FilterRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        Set<FilterDimension> used = EnumSet.noneOf(FilterDimension.class);
+        for (FilterRule rule : rules) {
+            used.addAll(rule.getDimensions());
+        }
+        dimensions = used;
+    }
+
+    public SnapshotFilter(FilterRule... rules) {
+        this(Arrays.asList(rules));
+    }
+
+    public boolean include(IncludeExcludeFields fields) {
+        if (rules.isEmpty())
+            return false;
+
+        IncludeExcludeFields key = project(fields);
+        Boolean cached = decisions.get(key);
+        if (cached != null)
+            return cached;
+
+        boolean decision = false;
+        for (FilterRule rule : rules) {
+            if (rule.matches(key)) {
+                decision = true;
+                break;
+            }
+        }
+        decisions.put(key, decision);
+        return decision;
+    }
+
+    /**
+     * Returns true if at least one rule constrains the dimension.
+     *
+     * @param dimension dimension to check.
+     * @return boolean
+     */
+    public boolean constrains(FilterDimension dimension) {
+        return dimensions.contains(dimension);
+    }
+
+    /**
+     * Reduces the fields to the dimensions the rules look at.
+     */
+    private IncludeExcludeFields project(IncludeExcludeFields fields) {
+        if (dimensions.size() == FilterDimension.values().length)
+            return fields;
+        IncludeExcludeFields.Builder builder = new IncludeExcludeFields.Builder();
+        if (dimensions.contains(FilterDimension.PRODUCER))
+            builder.setProducer(fields.getProducer());
+        if (dimensions.contains(FilterDimension.CATEGORY))
+            builder.setCategory(fields.getCategory());
+        if (dimensions.contains(FilterDimension.SUBSYSTEM))
+            builder.setSubsystem(fields.getSubsystem());
+        if (dimensions.contains(FilterDimension.INTERVAL))
+            builder.setInterval(fields.getInterval());
+        if (dimensions.contains(FilterDimension.STAT))
+            builder.setStat(fields.getStat());
+        if (dimensions.contains(FilterDimension.HOST))
+            builder.setHost(fields.getHost());
+        if (dimensions.contains(FilterDimension.COMPONENT))
+            builder.setComponent(fields.getComponent());
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotFilter" + rules;
+    }
+}
@@ -56,6 +56,42 @@ public class StorageConfigEntry {
     @Configure
     private String excludedSubsystems = "";
 
+    /**
+     * Included stat names, comma separated or '*'.
+     */
+    @Configure
+    private String includedStats = "*";
+
+    /**
+     * Excluded stat names, comma separated.
+     */
+    @Configure
+    private String excludedStats = "";
+
+    /**
+     * Included host names, comma separated or '*'.
+     */
+    @Configure
+    private String includedHosts = "*";
+
+    /**
+     * Excluded host names, comma separated.
+     */
+    @Configure
+    private String excludedHosts = "";
+
+    /**
+     * Included component names, comma separated or '*'.
+     */
+    @Configure
+    private String includedComponents = "*";
+
+    /**
+     * Excluded component names, comma separated.
+     */
+    @Configure
+    private String excludedComponents = "";
+
     public String getIncludedIntervals() {
         return includedIntervals;
     }
@@ -120,6 +156,72 @@ public class StorageConfigEntry {
         this.excludedSubsystems = excludedSubsystems;
     }
 
+    public String getIncludedStats() {
+        return includedStats;
+    }
+
+    public void setIncludedStats(String includedStats) {
+        this.includedStats = includedStats;
+    }
+
+    public String getExcludedStats() {
+        return excludedStats;
+    }
+
+    public void setExcludedStats(String excludedStats) {
+        this.excludedStats = excludedStats;
+    }
+
+    public String getIncludedHosts() {
+        return includedHosts;
+    }
+
+    public void setIncludedHosts(String includedHosts) {
+        this.includedHosts = includedHosts;
+    }
+
+    public String getExcludedHosts() {
+        return excludedHosts;
+    }
+
+    public void setExcludedHosts(String excludedHosts) {
+        this.excludedHosts = excludedHosts;
+    }
+
+    public String getIncludedComponents() {
+        return includedComponents;
+    }
+
+    public void setIncludedComponents(String includedComponents) {
+        this.includedComponents = includedComponents;
+    }
+
+    public String getExcludedComponents() {
+        return excludedComponents;
+    }
+
+    public void setExcludedComponents(String excludedComponents) {
+        this.excludedComponents = excludedComponents;
+    }
+
+    /**
+     * Creates the filter rule of this entry.
+     *
+     * @param outerIncludeIntervals global interval include, used if the entry has no own interval settings.
+     * @param outerExcludeIntervals global interval exclude, used if the entry has no own interval settings.
+     * @return FilterRule
+     */
+    public FilterRule toFilterRule(String outerIncludeIntervals, String outerExcludeIntervals) {
+        return new FilterRule()
+                .add(FilterDimension.PRODUCER, includedProducers, excludedProducers)
+                .add(FilterDimension.CATEGORY, includedCategories, excludedCategories)
+                .add(FilterDimension.SUBSYSTEM, includedSubsystems, excludedSubsystems)
+                .add(FilterDimension.INTERVAL, includedIntervals, excludedIntervals, outerIncludeIntervals, outerExcludeIntervals)
+                .add(FilterDimension.STAT, includedStats, excludedStats)
+                .add(FilterDimension.HOST, includedHosts, excludedHosts)
+                .add(FilterDimension.COMPONENT, includedComponents, excludedComponents);
+    }
+
     @Override
     public String toString() {
         return "StorageConfigEntry{" +
@@ -131,6 +233,12 @@ public class StorageConfigEntry {
                 ", excludedCategories='" + excludedCategories + '\'' +
                 ", includedSubsystems='" + includedSubsystems + '\'' +
                 ", excludedSubsystems='" + excludedSubsystems + '\'' +
+                ", includedStats='" + includedStats + '\'' +
+                ", excludedStats='" + excludedStats + '\'' +
+                ", includedHosts='" + includedHosts + '\'' +
+                ", excludedHosts='" + excludedHosts + '\'' +
+                ", includedComponents='" + includedComponents + '\'' +
+                ", excludedComponents='" + excludedComponents + '\'' +
                 '}';
     }
 
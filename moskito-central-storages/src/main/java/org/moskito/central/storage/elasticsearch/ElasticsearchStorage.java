@@ -1,7 +1,5 @@
 package org.moskito.central.storage.elasticsearch;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.StringEntity;
@@ -16,16 +14,19 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.serializer.JsonEncodings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 
 
 /**
  * @author andriiskrypnyk
  */
-public class ElasticsearchStorage implements Storage {
+public class ElasticsearchStorage implements Storage, Closeable {
 
     private static Logger log = LoggerFactory.getLogger(ElasticsearchStorage.class);
     /**
@@ -41,8 +42,6 @@ public class ElasticsearchStorage implements Storage {
      */
     private CloseableHttpClient httpClient;
 
-    private Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
 
     @Override
     public void configure(String configurationName) {
@@ -79,10 +78,7 @@ public class ElasticsearchStorage implements Storage {
     @Override
     public void processSnapshot(Snapshot target) {
 
-        String producerId = target.getMetaData().getProducerId();
-        String interval = target.getMetaData().getIntervalName();
-
-        if (!config.include(producerId, interval)) {
+        if (!config.include(new IncludeExcludeFields(target.getMetaData()))) {
             return;
         }
 
@@ -98,7 +94,7 @@ public class ElasticsearchStorage implements Storage {
 
     private void transportProcessSnapshot(Snapshot target) {
         IndexResponse response = transportClient.prepareIndex(config.getIndex(), target.getMetaData().getProducerId().replaceAll(" ", ""))
-                .setSource(gson.toJson(target))
+                .setSource(target.getEncoded(JsonEncodings.JSON))
                 .execute()
                 .actionGet();
 
@@ -109,7 +105,7 @@ public class ElasticsearchStorage implements Storage {
         httpClient = HttpClients.createDefault();
         HttpPost post = new HttpPost(config.getHost() + config.getPort() + "/" + config.getIndex() + "/" + target.getMetaData().getProducerId().replaceAll(" ", ""));
         try {
-            StringEntity entity = new StringEntity(gson.toJson(target));
+            StringEntity entity = new StringEntity(target.getEncoded(JsonEncodings.JSON));
             entity.setContentType("application/json");
             post.setEntity(entity);
             httpClient.execute(post);
@@ -150,4 +146,20 @@ public class ElasticsearchStorage implements Storage {
             log.warn("Can't prepare index", e);
         }
     }
+
+    @Override
+    public void close() {
+        if (transportClient != null) {
+            transportClient.close();
+            transportClient = null;
+        }
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.warn("Couldn't close http client", e);
+            }
+            httpClient = null;
+        }
+    }
 }
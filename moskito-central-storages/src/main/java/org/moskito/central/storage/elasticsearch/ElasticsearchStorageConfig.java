@@ -3,7 +3,10 @@ package org.moskito.central.storage.elasticsearch;
 import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.common.SnapshotFilter;
 
 /**
  * @author andriiskrypnyk
@@ -62,9 +65,10 @@ public class ElasticsearchStorageConfig {
     @Configure
     private String excludeIntervals = "";
 
-    private IncludeExcludeList intervals;
-
-    private IncludeExcludeList producers;
+    /**
+     * Filter built from the producer and interval settings.
+     */
+    private volatile SnapshotFilter filter = SnapshotFilter.ALL;
 
     public String getHost() {
         return host;
@@ -146,20 +150,8 @@ public class ElasticsearchStorageConfig {
         this.excludeIntervals = excludeIntervals;
     }
 
-    public IncludeExcludeList getIntervals() {
-        return intervals;
-    }
-
-    public void setIntervals(IncludeExcludeList intervals) {
-        this.intervals = intervals;
-    }
-
-    public IncludeExcludeList getProducers() {
-        return producers;
-    }
-
-    public void setProducers(IncludeExcludeList producers) {
-        this.producers = producers;
+    public SnapshotFilter getFilter() {
+        return filter;
     }
 
     /**
@@ -167,21 +159,19 @@ public class ElasticsearchStorageConfig {
      */
     @AfterConfiguration
     public void afterConfiguration() {
-        intervals = new IncludeExcludeList(includeIntervals, excludeIntervals);
-        producers = new IncludeExcludeList(includeProducers, excludeProducers);
+        filter = new SnapshotFilter(new FilterRule()
+                .add(FilterDimension.INTERVAL, includeIntervals, excludeIntervals)
+                .add(FilterDimension.PRODUCER, includeProducers, excludeProducers));
     }
 
     /**
      * Checks on availability producerId and interval.
      *
-     * @param producerId
-     * @param intervalName
+     * @param fields
      * @return boolean.
      */
-    public boolean include(String producerId, String intervalName) {
-        if (!intervals.include(intervalName))
-            return false;
-        return producers.include(producerId);
+    public boolean include(IncludeExcludeFields fields) {
+        return filter.include(fields);
     }
 
     @Override
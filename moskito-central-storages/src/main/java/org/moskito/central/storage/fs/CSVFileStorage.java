@@ -4,6 +4,7 @@ import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
 import org.moskito.central.storage.StorageUtils;
+import org.moskito.central.storage.common.IncludeExcludeFields;
 import org.moskito.central.storage.serializer.CSVSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,13 +52,12 @@ public class CSVFileStorage implements Storage{
 
 	@Override
 	public void processSnapshot(Snapshot target) {
-		String producerId = target.getMetaData().getProducerId();
-		String interval = target.getMetaData().getIntervalName();
+		IncludeExcludeFields fields = new IncludeExcludeFields(target.getMetaData());
 		Set<String> stats = target.getKeySet();
 		if (stats==null || stats.size()==0)
 			return;
 		for (String stat : stats){
-			if (!config.include(producerId, stat, interval))
+			if (!config.include(fields.withStat(stat)))
 				continue;
 
 
@@ -3,7 +3,10 @@ package org.moskito.central.storage.fs;
 import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.common.SnapshotFilter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,9 +34,9 @@ public class CSVFileStorageConfig {
 	private String pattern;
 
 	/**
-	 * Restored config element.
+	 * Filter built from the entries.
 	 */
-	private List<CSVFileStorageConfigElement> elements;
+	private volatile SnapshotFilter filter = SnapshotFilter.NONE;
 
 	/**
 	 * Global interval include.
@@ -88,70 +91,27 @@ public class CSVFileStorageConfig {
 
 	}
 
-	public boolean include(String producer, String stat, String interval){
-		List<CSVFileStorageConfigElement> listCopy = elements;
-		if (listCopy==null)
-			return false;
-		for (CSVFileStorageConfigElement e : listCopy){
-			if (e.include(producer, stat, interval))
-				return true;
-
-		}
-		return false;
+	/**
+	 * Checks whether a stat of a snapshot is included.
+	 *
+	 * @param fields fields of the snapshot with the stat set.
+	 * @return boolean
+	 */
+	public boolean include(IncludeExcludeFields fields){
+		return filter.include(fields);
 	}
 
 	@AfterConfiguration
 	public void afterConfig(){
-		IncludeExcludeList intervals = new IncludeExcludeList(includeIntervals, excludeIntervals);
-		List<CSVFileStorageConfigElement> newElements = new ArrayList<CSVFileStorageConfigElement>();
-		for (CSVFileStorageConfigEntry entry : entries){
-			CSVFileStorageConfigElement element = new CSVFileStorageConfigElement(entry, intervals);
-			newElements.add(element);
-		}
-		elements = newElements;
-
-	}
-
-	/**
-	 * Runtime used element.
-	 */
-	private static class CSVFileStorageConfigElement{
-		/**
-		 * Include/Exclude list with intervals.
-		 */
-		private IncludeExcludeList intervals;
-		/**
-		 * Include/Exclude list with producers.
-		 */
-		private IncludeExcludeList producers;
-		/**
-		 * Include/Exclude list with stats.
-		 */
-		private IncludeExcludeList stats;
-
-		public CSVFileStorageConfigElement(CSVFileStorageConfigEntry entry, IncludeExcludeList outerIntervals){
-			stats = new IncludeExcludeList(entry.getIncludedStats(), entry.getExcludedStats());
-			producers = new IncludeExcludeList(entry.getIncludedProducers(), entry.getExcludedProducers());
-			if ((entry.getIncludedIntervals()==null || entry.getIncludedIntervals().length()==0) &&
-				(entry.getExcludedIntervals()==null || entry.getExcludedIntervals().length()==0)){
-				intervals = outerIntervals;
-			}else{
-				intervals = new IncludeExcludeList(entry.getIncludedIntervals(), entry.getExcludedIntervals());
+		List<FilterRule> rules = new ArrayList<FilterRule>();
+		if (entries != null){
+			for (CSVFileStorageConfigEntry entry : entries){
+				rules.add(new FilterRule()
+						.add(FilterDimension.PRODUCER, entry.getIncludedProducers(), entry.getExcludedProducers())
+						.add(FilterDimension.STAT, entry.getIncludedStats(), entry.getExcludedStats())
+						.add(FilterDimension.INTERVAL, entry.getIncludedIntervals(), entry.getExcludedIntervals(), includeIntervals, excludeIntervals));
 			}
 		}
-
-		public boolean include(String producer, String stat, String interval){
-			return producers.include(producer) &&
-					stats.include(stat) && intervals.include(interval);
-		}
-
-		@Override
-		public String toString() {
-			return "CSVFileStorageConfigElement{" +
-					"intervals=" + intervals +
-					", producers=" + producers +
-					", stats=" + stats +
-					'}';
-		}
+		filter = new SnapshotFilter(rules);
 	}
 }
@@ -66,7 +66,7 @@ public class FileSystemStorage implements Storage {
         SnapshotMetaData metaData = target.getMetaData();
         IncludeExcludeFields includeExcludeFields = new IncludeExcludeFields(metaData);
 
-        if (!config.include(includeExcludeFields, metaData.getProducerId(), metaData.getIntervalName())) {
+        if (!config.include(includeExcludeFields)) {
             return;
         }
 
@@ -3,9 +3,11 @@ package org.moskito.central.storage.fs;
 import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
 import org.moskito.central.storage.common.GenericStorageConfig;
-import org.moskito.central.storage.common.IncludeExcludeFields;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
+
+import java.util.List;
 
 /**
  * FileSystemStorageConfig class.
@@ -52,16 +54,6 @@ public class FileSystemStorageConfig extends GenericStorageConfig {
 	@Configure
 	private String excludeIntervals = "";
 
-	/**
-	 * intervals.
-	 */
-	private IncludeExcludeList intervals;
-
-	/**
-	 * producers.
-	 */
-	private IncludeExcludeList producers;
-
 	public String getPattern() {
 		return pattern;
 	}
@@ -114,11 +106,22 @@ public class FileSystemStorageConfig extends GenericStorageConfig {
 	 * afterConfiguration.
 	 */
 	@AfterConfiguration
-    @Override
+	@Override
 	public void afterConfiguration() {
-        super.afterConfiguration();
-		intervals = new IncludeExcludeList(includeIntervals, excludeIntervals);
-		producers = new IncludeExcludeList(includeProducers, excludeProducers);
+		super.afterConfiguration();
+	}
+
+	/**
+	 * Adds the storage wide producer and interval settings to every entry.
+	 */
+	@Override
+	protected List<FilterRule> prepareFilterRules() {
+		List<FilterRule> rules = super.prepareFilterRules();
+		for (FilterRule rule : rules) {
+			rule.add(FilterDimension.INTERVAL, includeIntervals, excludeIntervals)
+					.add(FilterDimension.PRODUCER, includeProducers, excludeProducers);
+		}
+		return rules;
 	}
 
 	@Override
@@ -126,18 +129,4 @@ public class FileSystemStorageConfig extends GenericStorageConfig {
 		return "Pat: " + getPattern() + ", InclIntervals: " + getIncludeIntervals() + ", ExclIntervals: " + getExcludeIntervals() + ", Ser: "
 				+ getSerializer() + ", InclProducers: " + getIncludeProducers() + ", ExclProducers: " + getExcludeProducers();
 	}
-
-	/**
-	 * Checks on availability producerId and interval.
-	 *
-	 * @param producerId
-	 * @param intervalName
-	 * @return boolean.
-	 */
-	public boolean include(IncludeExcludeFields fields, String producerId, String intervalName) {
-		if (!super.include(fields)) return false;
-        if (!intervals.include(intervalName)) return false;
-
-		return producers.include(producerId);
-	}
 }
@@ -17,6 +17,7 @@ import org.moskito.central.storage.helpers.SnapshotWithStatsNumbers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
@@ -24,7 +25,7 @@ import java.net.InetAddress;
 /**
  * Created by Roman Stetsiuk on 2/1/16.
  */
-public class GraylogStorage implements Storage {
+public class GraylogStorage implements Storage, Closeable {
 
     private static Logger log = LoggerFactory.getLogger(GraylogStorage.class);
 
@@ -72,17 +73,7 @@ public class GraylogStorage implements Storage {
 
     @Override
     public void processSnapshot(Snapshot target) {
-        String producerId = target.getMetaData().getProducerId();
-        String category = target.getMetaData().getCategory();
-        String subsystem = target.getMetaData().getSubsystem();
-        String interval = target.getMetaData().getIntervalName();
-
-        IncludeExcludeFields fields = new IncludeExcludeFields.Builder()
-                .setProducer(producerId)
-                .setCategory(category)
-                .setSubsystem(subsystem)
-                .setInterval(interval)
-                .build();
+        IncludeExcludeFields fields = new IncludeExcludeFields(target.getMetaData());
 
         log.info(config.toString());
 
@@ -90,7 +81,7 @@ public class GraylogStorage implements Storage {
             createHttpClient();
             HttpPost request = new HttpPost(config.getHost() + ':' + config.getPort() + '/' + config.getPath());
             try {
-                String message = gson.toJson(new SnapshotWithStatsNumbers(target));
+                String message = target.getEncoded(SnapshotWithStatsNumbers.JSON);
 
                 SnapshotGelf snapshotGelf = new SnapshotGelfBuilder()
                         .host(InetAddress.getLocalHost().getHostName())
@@ -122,4 +113,15 @@ public class GraylogStorage implements Storage {
         }
     }
 
+    @Override
+    public synchronized void close() {
+        if (httpClient == null)
+            return;
+        try {
+            httpClient.close();
+            httpClient = null;
+        } catch (IOException e) {
+            log.warn("couldn't close connection to graylog server", e);
+        }
+    }
 }
@@ -71,7 +71,7 @@ public class GraylogStorageConfig extends GenericStorageConfig {
         sb.append(", port=").append(port);
         sb.append(", path='").append(path).append('\'');
         sb.append(", entries=").append(Arrays.toString(entries));
-        sb.append(", elements=").append(elements);
+        sb.append(", filter=").append(filter);
         sb.append(", includeIntervals='").append(includeIntervals).append('\'');
         sb.append(", excludeIntervals='").append(excludeIntervals).append('\'');
         sb.append('}');
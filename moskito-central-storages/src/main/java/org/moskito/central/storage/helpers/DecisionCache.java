@@ -0,0 +1,69 @@
+package org.moskito.central.storage.helpers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded concurrent memo of include/exclude decisions. The set of producers, categories, subsystems and intervals
+ * a storage sees is small and stable, so after warm up a decision costs one hash lookup. If the number of distinct
+ * keys exceeds the limit, the cache is dropped and filled again, which keeps its size bounded for unexpected key sets.
+ *
+ * @param <K> key type, must implement equals and hashCode.
+ */
+public class DecisionCache<K> {
+
+    /**
+     * Default number of cached decisions.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Cached decisions.
+     */
+    private final ConcurrentMap<K, Boolean> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * Maximal number of cached decisions.
+     */
+    private final int maxSize;
+
+    public DecisionCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public DecisionCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached decision for the key.
+     *
+     * @param key key, null is never cached.
+     * @return decision or null if there is none yet.
+     */
+    public Boolean get(K key) {
+        return key == null ? null : decisions.get(key);
+    }
+
+    /**
+     * Remembers a decision.
+     *
+     * @param key key, null is ignored.
+     * @param decision decision for the key.
+     */
+    public void put(K key, boolean decision) {
+        if (key == null)
+            return;
+        if (decisions.size() >= maxSize)
+            decisions.clear();
+        decisions.put(key, decision);
+    }
+
+    public int size() {
+        return decisions.size();
+    }
+
+    public void clear() {
+        decisions.clear();
+    }
+}
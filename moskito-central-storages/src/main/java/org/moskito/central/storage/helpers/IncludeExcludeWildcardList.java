@@ -3,10 +3,10 @@ package org.moskito.central.storage.helpers;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
- * IncludeExcludeExtendedList class.
+ * IncludeExcludeExtendedList class. Wildcards are compiled into {@link WildcardMatcher}s once and every decision is
+ * memoized, since the same few values are checked over and over again.
  *
  * @author dagafonov
  *
@@ -16,12 +16,17 @@ public class IncludeExcludeWildcardList extends IncludeExcludeList {
     /**
      *
      */
-    private List<Pattern> includePatterns = new ArrayList<Pattern>();
+    private List<WildcardMatcher> includeMatchers = new ArrayList<WildcardMatcher>();
 
     /**
      *
      */
-    private List<Pattern> excludePatterns = new ArrayList<Pattern>();
+    private List<WildcardMatcher> excludeMatchers = new ArrayList<WildcardMatcher>();
+
+    /**
+     * Decisions made so far. The list is rebuilt on reconfiguration, which drops the cache too.
+     */
+    private final DecisionCache<String> decisions = new DecisionCache<String>();
 
     /**
      *
@@ -30,39 +35,45 @@ public class IncludeExcludeWildcardList extends IncludeExcludeList {
      */
     public IncludeExcludeWildcardList(String include, String exclude) {
         super(include, exclude);
-        fillPatterns(getIncludes(), includePatterns);
-        fillPatterns(getExcludes(), excludePatterns);
+        fillMatchers(getIncludes(), includeMatchers);
+        fillMatchers(getExcludes(), excludeMatchers);
     }
 
-    private void fillPatterns(Set<String> set, List<Pattern> patterns) {
-        for (String incl : set) {
-            String s = incl;
-            if (s.contains("*")) {
-                s = s.replaceAll("\\*", ".*");
-            }
-            if (s.contains("?")) {
-                s = s.replaceAll("\\?", ".{1}");
-            }
-            patterns.add(Pattern.compile("^"+s+"$"));
+    private void fillMatchers(Set<String> set, List<WildcardMatcher> matchers) {
+        for (String wildcard : set) {
+            matchers.add(WildcardMatcher.compile(wildcard));
         }
     }
 
     @Override
     public boolean include(String query) {
-        boolean exactMatch = super.include(query);
-        if (exactMatch) {
-            return true;
+        Boolean cached = decisions.get(query);
+        if (cached != null) {
+            return cached;
         }
-        if (!exactMatch && getExcludes().contains(query)) {
+        boolean decision = evaluate(query);
+        decisions.put(query, decision);
+        return decision;
+    }
+
+    /**
+     * Excludes win over includes, except that a value named explicitly in the includes wins over an exclude wildcard.
+     * Include all ('*') is an include wildcard, so it doesn't override any exclude.
+     */
+    private boolean evaluate(String query) {
+        if (getExcludes().contains(query)) {
             return false;
         }
-        for (Pattern p : excludePatterns) {
-            if (p.matcher(query).find()) {
+        if (getIncludes().contains(query)) {
+            return true;
+        }
+        for (WildcardMatcher m : excludeMatchers) {
+            if (m.matches(query)) {
                 return false;
             }
         }
-        for (Pattern p : includePatterns) {
-            if (p.matcher(query).find()) {
+        for (WildcardMatcher m : includeMatchers) {
+            if (m.matches(query)) {
                 return true;
             }
         }
@@ -70,4 +81,3 @@ public class IncludeExcludeWildcardList extends IncludeExcludeList {
     }
 
 }
-
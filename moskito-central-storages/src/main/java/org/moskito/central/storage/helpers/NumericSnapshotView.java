@@ -0,0 +1,222 @@
+package org.moskito.central.storage.helpers;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Numeric view of a snapshot, for storages which need the stat values as numbers. The values of a stat are parsed
+ * once, on the first access to the stat, into a primitive array; nothing is copied into maps or boxed. Values which
+ * are not finite numbers (NaN, infinity, empty, null or text) count as 0, as NaN always did in the numeric json.
+ * <p>
+ * {@link #writeJson(Writer)} produces the same json as Gson for {@link SnapshotWithStatsNumbers}, streamed
+ * directly from the snapshot.
+ */
+public class NumericSnapshotView {
+
+    /**
+     * Serializes the metadata.
+     */
+    private static final Gson gson = new Gson();
+
+    /**
+     * Powers of ten which are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Snapshot snapshot;
+
+    private final String[] statNames;
+
+    private final Map<String, String>[] stats;
+
+    /**
+     * Parsed value names per stat, null until the stat is accessed.
+     */
+    private final String[][] valueNames;
+
+    /**
+     * Parsed values per stat, null until the stat is accessed.
+     */
+    private final double[][] values;
+
+    @SuppressWarnings("unchecked")
+    public NumericSnapshotView(Snapshot snapshot) {
+        this.snapshot = snapshot;
+        Map<String, Map<String, String>> all = snapshot.getStats();
+        int size = all.size();
+        statNames = new String[size];
+        stats = new Map[size];
+        int i = 0;
+        for (Map.Entry<String, Map<String, String>> stat : all.entrySet()) {
+            if (i == size)
+                break;
+            statNames[i] = stat.getKey();
+            stats[i++] = stat.getValue();
+        }
+        valueNames = new String[size][];
+        values = new double[size][];
+    }
+
+    public SnapshotMetaData getMetaData() {
+        return snapshot.getMetaData();
+    }
+
+    /**
+     * Returns a value as number.
+     *
+     * @param stat name of the stat.
+     * @param valueName name of the value.
+     * @return the value, 0 if it isn't a finite number and NaN if the snapshot doesn't contain it.
+     */
+    public double getValue(String stat, String valueName) {
+        int index = indexOf(stat);
+        if (index < 0 || !parse(index))
+            return Double.NaN;
+        String[] names = valueNames[index];
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == valueName || (names[i] != null && names[i].equals(valueName)))
+                return values[index][i];
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Writes the json of the snapshot with numeric values.
+     *
+     * @param out target.
+     * @throws IOException if the writer fails.
+     */
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        if (snapshot.getMetaData() != null) {
+            writer.name("metaData");
+            gson.toJson(snapshot.getMetaData(), SnapshotMetaData.class, writer);
+        }
+        writer.name("stats");
+        writer.beginObject();
+        for (int i = 0; i < statNames.length; i++) {
+            if (statNames[i] == null || !parse(i))
+                continue;
+            writer.name(statNames[i]);
+            writer.beginObject();
+            String[] names = valueNames[i];
+            double[] stat = values[i];
+            for (int j = 0; j < names.length; j++) {
+                if (names[j] == null)
+                    continue;
+                writer.name(names[j]).value(stat[j]);
+            }
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Returns the json of the snapshot with numeric values.
+     *
+     * @return String
+     */
+    public String toJson() {
+        StringWriter out = new StringWriter();
+        try {
+            writeJson(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("StringWriter failed", e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the numeric value of a stat value: the number, or 0 if it isn't a finite number.
+     *
+     * @param value string value of a stat.
+     * @return double
+     */
+    public static double toNumber(String value) {
+        if (value == null)
+            return 0;
+        int length = value.length();
+        int start = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        //plain integers and decimals with up to 15 digits are exact doubles, their quotient is correctly rounded.
+        if (length > start && length - start <= 16) {
+            long unscaled = 0;
+            int dot = -1;
+            boolean plain = true;
+            for (int i = start; i < length && plain; i++) {
+                char c = value.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    unscaled = unscaled * 10 + (c - '0');
+                } else if (c == '.' && dot < 0) {
+                    dot = i;
+                } else {
+                    plain = false;
+                }
+            }
+            if (plain && (dot < 0 || length - start > 1) && length - start - (dot < 0 ? 0 : 1) <= 15) {
+                double number = dot < 0 ? unscaled : unscaled / POWERS_OF_TEN[length - dot - 1];
+                return value.charAt(0) == '-' ? -number : number;
+            }
+        }
+        try {
+            double number = Double.parseDouble(value);
+            return Double.isNaN(number) || Double.isInfinite(number) ? 0 : number;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private int indexOf(String stat) {
+        for (int i = 0; i < statNames.length; i++) {
+            if (statNames[i] == stat)
+                return i;
+        }
+        for (int i = 0; i < statNames.length; i++) {
+            if (statNames[i] != null && statNames[i].equals(stat))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the values of a stat if not done yet.
+     *
+     * @return false if the stat has no values.
+     */
+    private boolean parse(int index) {
+        if (values[index] != null)
+            return true;
+        Map<String, String> stat = stats[index];
+        if (stat == null)
+            return false;
+        int size = stat.size();
+        String[] names = new String[size];
+        double[] parsed = new double[size];
+        int i = 0;
+        for (Map.Entry<String, String> value : stat.entrySet()) {
+            if (i == size)
+                break;
+            names[i] = value.getKey();
+            parsed[i++] = toNumber(value.getValue());
+        }
+        valueNames[index] = names;
+        values[index] = parsed;
+        return true;
+    }
+}
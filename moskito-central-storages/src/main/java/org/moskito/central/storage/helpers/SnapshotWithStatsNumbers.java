@@ -1,6 +1,7 @@
 package org.moskito.central.storage.helpers;
 
 import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotEncoding;
 import org.moskito.central.SnapshotMetaData;
 
 import javax.xml.bind.annotation.XmlElement;
@@ -16,6 +17,16 @@ import java.util.Set;
 public class SnapshotWithStatsNumbers implements Serializable {
     private static final long serialVersionUID = 5908354352999422349L;
 
+    /**
+     * Compact json of a snapshot with numeric stat values, streamed by a {@link NumericSnapshotView}.
+     */
+    public static final SnapshotEncoding<String> JSON = new SnapshotEncoding<String>("numeric-json") {
+        @Override
+        protected String encode(Snapshot snapshot) {
+            return new NumericSnapshotView(snapshot).toJson();
+        }
+    };
+
     /**
      * The metadata. The metadata contains data about the snapshot like
      * producerId or timestamp.
@@ -37,22 +48,21 @@ public class SnapshotWithStatsNumbers implements Serializable {
     }
 
     private Map<String, Map<String, Double>> convertStats(Map<String, Map<String, String>> stats) {
-        Map<String, Map<String, Double>> res = new HashMap<>();
-
-        for (String s : stats.keySet()) {
-            res.put(s, convertStatsValueMap(stats.get(s)));
+        Map<String, Map<String, Double>> res = new HashMap<>(stats.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Map<String, String>> stat : stats.entrySet()) {
+            if (stat.getValue() != null)
+                res.put(stat.getKey(), convertStatsValueMap(stat.getValue()));
         }
         return res;
     }
 
-    private Map<String, Double> convertStatsValueMap(Map<String, String> stringStringMap) {
-        Map<String, Double> res = new HashMap<>();
-
-        for (String s : stringStringMap.keySet()) {
-            if (stringStringMap.get(s).equals("NaN"))
-                res.put(s, 0.0);
-            else
-                res.put(s, Double.parseDouble(stringStringMap.get(s)));
+    /**
+     * Values which aren't finite numbers become 0, see {@link NumericSnapshotView#toNumber(String)}.
+     */
+    private Map<String, Double> convertStatsValueMap(Map<String, String> values) {
+        Map<String, Double> res = new HashMap<>(values.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            res.put(value.getKey(), NumericSnapshotView.toNumber(value.getValue()));
         }
         return res;
     }
@@ -0,0 +1,257 @@
+package org.moskito.central.storage.helpers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of a single include/exclude wildcard like 'Random*', '*API' or '*Service*'. The common shapes are
+ * matched with plain string operations, everything else with a glob matcher. Only '*' and '?' are special, all other
+ * characters like '.' or '(' match themselves. A wildcard prefixed with '{@value #REGEX_PREFIX}' is taken as a plain
+ * regular expression which has to match the whole value.
+ * <p>
+ * Migration: older versions passed wildcards to the regex engine, so a pattern like '(Foo|Bar).*' used to work as a
+ * regular expression. Such a pattern now only matches itself literally and has to be prefixed with
+ * '{@value #REGEX_PREFIX}' to keep its old meaning. Wildcards containing regex syntax without the prefix are logged
+ * as warning when they are compiled.
+ */
+public abstract class WildcardMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(WildcardMatcher.class);
+
+    /**
+     * Characters which hint at a regular expression. '.' is not among them, it is common in producer ids and wildcards
+     * like 'com.foo.*' are meant as wildcard.
+     */
+    private static final String REGEX_CHARACTERS = "\\()[]{}|+^$";
+
+    /**
+     * Prefix for wildcards which are regular expressions.
+     */
+    public static final String REGEX_PREFIX = "regex:";
+
+    /**
+     * Returns true if the value is matched by this wildcard.
+     * @param value value to check, null never matches.
+     * @return boolean
+     */
+    public abstract boolean matches(String value);
+
+    /**
+     * Compiles a wildcard into the cheapest matcher that has the same semantic.
+     * @param wildcard wildcard with '*' for any sequence and '?' for exactly one character.
+     * @return WildcardMatcher
+     */
+    public static WildcardMatcher compile(String wildcard) {
+        if (wildcard.startsWith(REGEX_PREFIX))
+            return new RegexMatcher(Pattern.compile("^(?:" + wildcard.substring(REGEX_PREFIX.length()) + ")$"));
+        if (looksLikeRegex(wildcard))
+            log.warn("Wildcard '" + wildcard + "' contains regular expression syntax, which is matched literally. Prefix it with '" +
+                    REGEX_PREFIX + "' if it is meant as regular expression.");
+
+        if (wildcard.indexOf('?') != -1)
+            return new GlobMatcher(wildcard);
+
+        int firstStar = wildcard.indexOf('*');
+        if (firstStar == -1)
+            return new ExactMatcher(wildcard);
+
+        String inner = trimStars(wildcard);
+        if (inner.length() == 0)
+            return new AnyMatcher();
+        if (inner.indexOf('*') != -1)
+            return new GlobMatcher(wildcard);
+
+        boolean leading = wildcard.charAt(0) == '*';
+        boolean trailing = wildcard.charAt(wildcard.length() - 1) == '*';
+        if (leading && trailing)
+            return new ContainsMatcher(inner);
+        if (leading)
+            return new SuffixMatcher(inner);
+        if (trailing)
+            return new PrefixMatcher(inner);
+        return new GlobMatcher(wildcard);
+    }
+
+    private static boolean looksLikeRegex(String wildcard) {
+        for (int i = 0; i < wildcard.length(); i++) {
+            if (REGEX_CHARACTERS.indexOf(wildcard.charAt(i)) != -1)
+                return true;
+        }
+        return false;
+    }
+
+    private static String trimStars(String wildcard) {
+        int start = 0;
+        int end = wildcard.length();
+        while (start < end && wildcard.charAt(start) == '*')
+            start++;
+        while (end > start && wildcard.charAt(end - 1) == '*')
+            end--;
+        return wildcard.substring(start, end);
+    }
+
+    /**
+     * Wildcard without any special characters.
+     */
+    private static class ExactMatcher extends WildcardMatcher {
+        private final String literal;
+
+        ExactMatcher(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return literal.equals(value);
+        }
+
+        @Override
+        public String toString() {
+            return literal;
+        }
+    }
+
+    /**
+     * Wildcard consisting of stars only.
+     */
+    private static class AnyMatcher extends WildcardMatcher {
+        @Override
+        public boolean matches(String value) {
+            return value != null;
+        }
+
+        @Override
+        public String toString() {
+            return "*";
+        }
+    }
+
+    /**
+     * Wildcard like 'Random*'.
+     */
+    private static class PrefixMatcher extends WildcardMatcher {
+        private final String prefix;
+
+        PrefixMatcher(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value != null && value.startsWith(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return prefix + '*';
+        }
+    }
+
+    /**
+     * Wildcard like '*API'.
+     */
+    private static class SuffixMatcher extends WildcardMatcher {
+        private final String suffix;
+
+        SuffixMatcher(String suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value != null && value.endsWith(suffix);
+        }
+
+        @Override
+        public String toString() {
+            return '*' + suffix;
+        }
+    }
+
+    /**
+     * Wildcard like '*Service*'.
+     */
+    private static class ContainsMatcher extends WildcardMatcher {
+        private final String infix;
+
+        ContainsMatcher(String infix) {
+            this.infix = infix;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value != null && value.contains(infix);
+        }
+
+        @Override
+        public String toString() {
+            return '*' + infix + '*';
+        }
+    }
+
+    /**
+     * Any other combination of literals, '*' and '?'.
+     */
+    private static class GlobMatcher extends WildcardMatcher {
+        private final String pattern;
+
+        GlobMatcher(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            if (value == null)
+                return false;
+            int p = 0;
+            int v = 0;
+            int star = -1;
+            int mark = 0;
+            while (v < value.length()) {
+                if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == value.charAt(v))) {
+                    p++;
+                    v++;
+                } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    star = p++;
+                    mark = v;
+                } else if (star != -1) {
+                    p = star + 1;
+                    v = ++mark;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*')
+                p++;
+            return p == pattern.length();
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+
+    /**
+     * Wildcard prefixed with '{@value #REGEX_PREFIX}'.
+     */
+    private static class RegexMatcher extends WildcardMatcher {
+        private final Pattern pattern;
+
+        RegexMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value != null && pattern.matcher(value).find();
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+    }
+}
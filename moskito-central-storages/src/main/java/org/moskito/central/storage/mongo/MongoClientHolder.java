@@ -1,40 +1,175 @@
 package org.moskito.central.storage.mongo;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import org.bson.Document;
 import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.serializer.JsonEncodings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Mongo client of a {@link MongoDBStorage}. Every storage has its own holder, so closing one storage doesn't affect
+ * the others.
+ *
  * @author andriiskrypnyk
  */
-public enum MongoClientHolder {
-    INSTANCE;
+public class MongoClientHolder {
 
-    private Gson gson = new GsonBuilder().create();
+    private static Logger log = LoggerFactory.getLogger(MongoClientHolder.class);
 
-    private MongoDBStorageConfig config;
+    /**
+     * Error code of a violated unique index.
+     */
+    private static final int DUPLICATE_KEY = 11000;
 
-    private MongoClient client;
+    private volatile MongoDBStorageConfig config;
 
+    private volatile MongoClient client;
+
+    /**
+     * Collections which already have the bucket key index.
+     */
+    private Set<String> indexedCollections = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Connects with the given configuration. The previous client is closed only after the new one is in place, so
+     * snapshots stored meanwhile don't run into a closed client, and it stays in use if the new one can't be created.
+     *
+     * @param config the configuration.
+     */
     public void configure(MongoDBStorageConfig config) {
-        this.config = config;
         MongoCredential credential = MongoCredential.createCredential(config.getLogin(), config.getDbName(), config.getPassword().toCharArray());
-        client = new MongoClient(new ServerAddress(config.getHost(), Integer.parseInt(config.getPort())), Arrays.asList(credential));
+        MongoClient newClient = new MongoClient(new ServerAddress(config.getHost(), Integer.parseInt(config.getPort())), Arrays.asList(credential));
+        MongoClient previous = client;
+        indexedCollections.clear();
+        this.config = config;
+        client = newClient;
+        if (previous != null)
+            previous.close();
+    }
+
+    /**
+     * Closes the client and its connection pool.
+     */
+    public void close() {
+        MongoClient toClose = client;
+        client = null;
+        if (toClose != null)
+            toClose.close();
     }
 
     public void storeSnapshot(Snapshot target) {
-        MongoDatabase db = client.getDatabase(config.getDbName());
+        MongoDatabase db = getClient().getDatabase(config.getDbName());
         MongoCollection collection = db.getCollection(config.getCollectionName());
-        String json = gson.toJson(target);
+        String json = target.getEncoded(JsonEncodings.JSON);
         collection.insertOne(Document.parse(json));
     }
 
+    /**
+     * Appends the values of every stat of the snapshot to the bucket document of its host/component/producer/stat/interval
+     * combination. Bucket documents are created on the first upsert, so there is one document per series and bucket
+     * instead of one document per snapshot.
+     *
+     * @param target snapshot to store.
+     */
+    public void storeSnapshotInBuckets(Snapshot target) {
+        MongoDatabase db = getClient().getDatabase(config.getDbName());
+        String collectionName = config.getCollectionName();
+        MongoCollection<Document> collection = db.getCollection(collectionName);
+        ensureBucketIndex(collectionName, collection);
+
+        List<WriteModel<Document>> updates = createBucketUpdates(target, config.getBucketMinutes());
+        if (updates.isEmpty())
+            return;
+
+        try {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            //two concurrent upserts for a new bucket, the loser fails on the unique index and is retried as plain update.
+            List<WriteModel<Document>> duplicates = new ArrayList<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY)
+                    throw e;
+                duplicates.add(updates.get(error.getIndex()));
+            }
+            log.debug("Retrying bucket upserts for " + target.getMetaData().getProducerId() + " which lost against concurrent upserts");
+            collection.bulkWrite(duplicates, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    /**
+     * Creates the upserts of the bucket documents for the stats of a snapshot, one per stat.
+     *
+     * @param target snapshot to store.
+     * @param bucketMinutes length of a bucket in minutes.
+     * @return the upserts.
+     */
+    static List<WriteModel<Document>> createBucketUpdates(Snapshot target, long bucketMinutes) {
+        SnapshotMetaData metaData = target.getMetaData();
+        long timestamp = metaData.getCreationTimestamp();
+        long bucketDuration = bucketMinutes * 60L * 1000L;
+        long bucket = timestamp - (timestamp % bucketDuration);
+
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Map.Entry<String, Map<String, String>> stat : target.getEntrySet()) {
+            Document filter = new Document("host", metaData.getHostName())
+                    .append("component", metaData.getComponentName())
+                    .append("producer", metaData.getProducerId())
+                    .append("stat", stat.getKey())
+                    .append("interval", metaData.getIntervalName())
+                    .append("bucket", bucket);
+
+            Document value = new Document("ts", timestamp).append("v", new Document(new HashMap<String, Object>(stat.getValue())));
+            Document update = new Document("$push", new Document("values", value))
+                    .append("$inc", new Document("count", 1))
+                    .append("$setOnInsert", new Document("category", metaData.getCategory())
+                            .append("subsystem", metaData.getSubsystem())
+                            .append("statClassName", metaData.getStatClassName()));
+
+            updates.add(new UpdateOneModel<Document>(filter, update, new UpdateOptions().upsert(true)));
+        }
+        return updates;
+    }
+
+    private MongoClient getClient() {
+        MongoClient current = client;
+        if (current == null)
+            throw new IllegalStateException("Mongo client is not configured or already closed");
+        return current;
+    }
+
+    private void ensureBucketIndex(String collectionName, MongoCollection<Document> collection) {
+        if (indexedCollections.contains(collectionName))
+            return;
+        Document keys = new Document("host", 1)
+                .append("component", 1)
+                .append("producer", 1)
+                .append("stat", 1)
+                .append("interval", 1)
+                .append("bucket", 1);
+        collection.createIndex(keys, new IndexOptions().unique(true).name("bucket_key"));
+        indexedCollections.add(collectionName);
+    }
+
 }
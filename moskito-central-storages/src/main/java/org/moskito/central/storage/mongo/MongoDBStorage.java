@@ -3,18 +3,26 @@ package org.moskito.central.storage.mongo;
 import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.common.IncludeExcludeFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+
 /**
  * @author andriiskrypnyk
  */
-public class MongoDBStorage implements Storage {
+public class MongoDBStorage implements Storage, Closeable {
 
     private static Logger log = LoggerFactory.getLogger(MongoDBStorage.class);
 
     private MongoDBStorageConfig config;
 
+    /**
+     * Client of this storage.
+     */
+    private final MongoClientHolder clientHolder = new MongoClientHolder();
+
     @Override
     public void configure(String configurationName) {
 
@@ -24,7 +32,7 @@ public class MongoDBStorage implements Storage {
             return;
         try {
             ConfigurationManager.INSTANCE.configureAs(config, configurationName);
-            MongoClientHolder.INSTANCE.configure(config);
+            clientHolder.configure(config);
         } catch (IllegalArgumentException e) {
             log.warn("Couldn't configure MongoDBStorage with " + configurationName + " , working with default values");
         }
@@ -33,10 +41,7 @@ public class MongoDBStorage implements Storage {
 
     @Override
     public void processSnapshot(Snapshot target) {
-        String producerId = target.getMetaData().getProducerId();
-        String interval = target.getMetaData().getIntervalName();
-
-        if (!config.include(producerId, interval)) {
+        if (!config.include(new IncludeExcludeFields(target.getMetaData()))) {
             return;
         }
 
@@ -51,7 +56,15 @@ public class MongoDBStorage implements Storage {
             config.setCollectionName(target.getMetaData().getProducerId());
         }
 
-        MongoClientHolder.INSTANCE.storeSnapshot(target);
+        if (config.isBucketed()) {
+            clientHolder.storeSnapshotInBuckets(target);
+        } else {
+            clientHolder.storeSnapshot(target);
+        }
     }
 
+    @Override
+    public void close() {
+        clientHolder.close();
+    }
 }
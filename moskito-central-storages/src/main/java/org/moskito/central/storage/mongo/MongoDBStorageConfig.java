@@ -3,7 +3,10 @@ package org.moskito.central.storage.mongo;
 import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.common.SnapshotFilter;
 
 /**
  * @author andriiskrypnyk
@@ -35,6 +38,17 @@ public class MongoDBStorageConfig {
     * */
     @Configure
     private String distributeProducers;
+    /*
+    * set to "true" to append values to one bucket document per host/component/producer/stat/interval
+    * and time bucket instead of inserting one document per snapshot
+    * */
+    @Configure
+    private String bucketed = "false";
+    /*
+    * time span covered by one bucket document, in minutes
+    * */
+    @Configure
+    private int bucketMinutes = 60;
 
     @Configure
     private String includeProducers = "*";
@@ -48,9 +62,10 @@ public class MongoDBStorageConfig {
     @Configure
     private String excludeIntervals = "";
 
-    private IncludeExcludeList intervals;
-
-    private IncludeExcludeList producers;
+    /**
+     * Filter built from the producer and interval settings.
+     */
+    private volatile SnapshotFilter filter = SnapshotFilter.ALL;
 
     public String getHost() {
         return host;
@@ -108,6 +123,26 @@ public class MongoDBStorageConfig {
         this.distributeProducers = distributeProducers;
     }
 
+    public String getBucketed() {
+        return bucketed;
+    }
+
+    public void setBucketed(String bucketed) {
+        this.bucketed = bucketed;
+    }
+
+    public boolean isBucketed() {
+        return "true".equals(bucketed);
+    }
+
+    public int getBucketMinutes() {
+        return bucketMinutes;
+    }
+
+    public void setBucketMinutes(int bucketMinutes) {
+        this.bucketMinutes = bucketMinutes;
+    }
+
     public String getIncludeProducers() {
         return includeProducers;
     }
@@ -140,32 +175,21 @@ public class MongoDBStorageConfig {
         this.excludeIntervals = excludeIntervals;
     }
 
-    public IncludeExcludeList getIntervals() {
-        return intervals;
-    }
-
-    public void setIntervals(IncludeExcludeList intervals) {
-        this.intervals = intervals;
-    }
-
-    public IncludeExcludeList getProducers() {
-        return producers;
-    }
-
-    public void setProducers(IncludeExcludeList producers) {
-        this.producers = producers;
+    public SnapshotFilter getFilter() {
+        return filter;
     }
 
     @AfterConfiguration
     public void afterConfiguration() {
-        intervals = new IncludeExcludeList(includeIntervals, excludeIntervals);
-        producers = new IncludeExcludeList(includeProducers, excludeProducers);
+        if (bucketMinutes <= 0)
+            bucketMinutes = 60;
+        filter = new SnapshotFilter(new FilterRule()
+                .add(FilterDimension.INTERVAL, includeIntervals, excludeIntervals)
+                .add(FilterDimension.PRODUCER, includeProducers, excludeProducers));
     }
 
-    public boolean include(String producerId, String intervalName) {
-        if (!intervals.include(intervalName))
-            return false;
-        return producers.include(producerId);
+    public boolean include(IncludeExcludeFields fields) {
+        return filter.include(fields);
     }
 
     @Override
@@ -176,12 +200,13 @@ public class MongoDBStorageConfig {
                 ", login='" + login + '\'' +
                 ", password='" + password + '\'' +
                 ", collectionName='" + collectionName + '\'' +
+                ", bucketed='" + bucketed + '\'' +
+                ", bucketMinutes=" + bucketMinutes +
                 ", includeProducers='" + includeProducers + '\'' +
                 ", excludeProducers='" + excludeProducers + '\'' +
                 ", includeIntervals='" + includeIntervals + '\'' +
                 ", excludeIntervals='" + excludeIntervals + '\'' +
-                ", intervals=" + intervals +
-                ", producers=" + producers +
+                ", filter=" + filter +
                 '}';
     }
 }
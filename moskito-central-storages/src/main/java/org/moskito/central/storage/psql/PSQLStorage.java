@@ -3,6 +3,7 @@ package org.moskito.central.storage.psql;
 import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.common.IncludeExcludeFields;
 import org.moskito.central.storage.psql.entities.JSONStatisticsEntity;
 import org.moskito.central.storage.psql.entities.SnapshotEntity;
 import org.moskito.central.storage.psql.entities.StatisticsEntity;
@@ -14,6 +15,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 import javax.persistence.PersistenceException;
+import java.io.Closeable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,7 +25,7 @@ import java.util.Map;
  * @author dagafonov
  * 
  */
-public class PSQLStorage implements Storage {
+public class PSQLStorage implements Storage, Closeable {
 
 	/**
 	 * Persistence unit name defined in /META-INF/persistence.xml.
@@ -81,7 +83,7 @@ public class PSQLStorage implements Storage {
 		String producerId = target.getMetaData().getProducerId();
 		String interval = target.getMetaData().getIntervalName();
 
-		if (!config.include(producerId, interval)) {
+		if (!config.include(new IncludeExcludeFields(target.getMetaData()))) {
 			return;
 		}
 
@@ -139,4 +141,11 @@ public class PSQLStorage implements Storage {
 		}		
 		
 	}
+
+	@Override
+	public void close() {
+		if (factory != null && factory.isOpen()) {
+			factory.close();
+		}
+	}
 }
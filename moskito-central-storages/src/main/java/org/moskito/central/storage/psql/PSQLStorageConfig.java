@@ -6,6 +6,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.common.SnapshotFilter;
 import org.moskito.central.storage.helpers.IncludeExcludeWildcardList;
 import org.moskito.central.storage.psql.entities.FilterStatEntity;
 import org.moskito.central.storage.psql.entities.HttpSessionStatisticsEntity;
@@ -87,9 +91,9 @@ public class PSQLStorageConfig {
 	private PSQLStorageConfigIncludeExcludeEntry[] includeExclude;
 
 	/**
-	 * 
+	 * Filter built from includeExclude.
 	 */
-	private List<PSQLStorageConfigIncludeExcludeElement> includeExcludeElements;
+	private volatile SnapshotFilter filter = SnapshotFilter.NONE;
 
 	/**
 	 * 
@@ -192,7 +196,7 @@ public class PSQLStorageConfig {
 	public String toString() {
 		return "PSQLStorageConfig [driver=" + driver + ", url=" + url + ", userName=" + userName + ", password=" + password + ", hibernateDialect="
 				+ hibernateDialect + ", mappings=" + Arrays.toString(mappings) + ", elements=" + elements + ", includeExclude="
-				+ Arrays.toString(includeExclude) + ", includeExcludeElements=" + includeExcludeElements + "]";
+				+ Arrays.toString(includeExclude) + ", filter=" + filter + "]";
 	}
 
 	/**
@@ -209,13 +213,14 @@ public class PSQLStorageConfig {
 			}
 			elements = newElements;
 		}
-		List<PSQLStorageConfigIncludeExcludeElement> newIncludeExcludeElements = new ArrayList<PSQLStorageConfigIncludeExcludeElement>();
+		List<FilterRule> rules = new ArrayList<FilterRule>();
 		if (includeExclude != null) {
 			for (PSQLStorageConfigIncludeExcludeEntry entry : includeExclude) {
-				PSQLStorageConfigIncludeExcludeElement element = new PSQLStorageConfigIncludeExcludeElement(entry);
-				newIncludeExcludeElements.add(element);
+				rules.add(new FilterRule()
+						.add(FilterDimension.PRODUCER, entry.getIncludedProducers(), entry.getExcludedProducers())
+						.add(FilterDimension.INTERVAL, entry.getIncludedIntervals(), entry.getExcludedIntervals()));
 			}
-			includeExcludeElements = newIncludeExcludeElements;
+			filter = new SnapshotFilter(rules);
 		}
 	}
 
@@ -254,37 +259,6 @@ public class PSQLStorageConfig {
 
 	}
 
-	/**
-	 * Runtime used element.
-	 */
-	private static class PSQLStorageConfigIncludeExcludeElement {
-
-		/**
-		 * Include/Exclude list with producers.
-		 */
-		private IncludeExcludeWildcardList producers;
-
-		/**
-		 * 
-		 */
-		private IncludeExcludeWildcardList intervals;
-
-		public PSQLStorageConfigIncludeExcludeElement(PSQLStorageConfigIncludeExcludeEntry entry) {
-			producers = new IncludeExcludeWildcardList(entry.getIncludedProducers(), entry.getExcludedProducers());
-			intervals = new IncludeExcludeWildcardList(entry.getIncludedIntervals(), entry.getExcludedIntervals());
-		}
-
-		public boolean include(String producer, String interval) {
-			return producers.include(producer) && intervals.include(interval);
-		}
-
-		@Override
-		public String toString() {
-			return "PSQLStorageConfigIncludeExcludeElement [producers=" + producers + ", intervals=" + intervals + "]";
-		}
-
-	}
-
 	/**
 	 * 
 	 * @param statClassName
@@ -320,20 +294,11 @@ public class PSQLStorageConfig {
 
 	/**
 	 * 
-	 * @param producerId
-	 * @param interval
+	 * @param fields
 	 * @return boolean
 	 */
-	public boolean include(String producerId, String interval) {
-		if (includeExcludeElements == null) {
-			return false;
-		}
-		for (PSQLStorageConfigIncludeExcludeElement elem : includeExcludeElements) {
-			if (elem.include(producerId, interval)) {
-				return true;
-			}
-		}
-		return false;
+	public boolean include(IncludeExcludeFields fields) {
+		return filter.include(fields);
 	}
 
 }
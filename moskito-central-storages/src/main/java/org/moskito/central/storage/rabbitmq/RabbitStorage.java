@@ -1,17 +1,19 @@
 package org.moskito.central.storage.rabbitmq;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.common.IncludeExcludeFields;
 import org.moskito.central.storage.helpers.SnapshotWithStatsNumbers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.*;
 
 import com.rabbitmq.client.Channel;
@@ -19,15 +21,19 @@ import com.rabbitmq.client.Channel;
 /**
  * Created by Roman Stetsiuk on 2/1/16.
  */
-public class RabbitStorage implements Storage {
+public class RabbitStorage implements Storage, Closeable {
     private static Logger log = LoggerFactory.getLogger(RabbitStorage.class);
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     /**
      * Storage config.
      */
     private RabbitStorageConfig config;
 
+    /**
+     * Connection to rabbitMQ broker, shared by the channels of all snapshots.
+     */
+    private Connection connection;
+
     /**
      * Channel to rabbitMQ broker
      */
@@ -50,9 +56,15 @@ public class RabbitStorage implements Storage {
 
     @Override
     public void processSnapshot(final Snapshot target) {
+        if (!config.include(new IncludeExcludeFields(target.getMetaData()))) {
+            return;
+        }
+
         try {
+            //encoded on the calling thread, the central clears the shared encodings once all storages are done.
+            byte[] message = target.getEncoded(SnapshotWithStatsNumbers.JSON).getBytes(StandardCharsets.UTF_8);
             initRabbitChannel();
-            RabbitPublisher task = new RabbitPublisher(target);
+            RabbitPublisher task = new RabbitPublisher(message);
             executorService.submit(task).get();
         } catch (InterruptedException e) {
             log.warn("RabbitStorage.processSnapshot(): rabbit publisher interrupted", e);
@@ -63,8 +75,8 @@ public class RabbitStorage implements Storage {
         }
     }
 
-    private void closeChannel() {
-        if (channel != null || channel.isOpen()) {
+    private synchronized void closeChannel() {
+        if (channel != null && channel.isOpen()) {
             try {
                 channel.close();
                 channel = null;
@@ -76,16 +88,30 @@ public class RabbitStorage implements Storage {
         }
     }
 
+    private synchronized void closeConnection() {
+        if (connection != null) {
+            try {
+                if (connection.isOpen())
+                    connection.close();
+            } catch (IOException e) {
+                log.warn("couldn't close rabbitMQ connection", e);
+            }
+            connection = null;
+        }
+    }
+
     private synchronized void initRabbitChannel() {
         if (channel == null || !channel.isOpen()) {
-            ConnectionFactory factory = new ConnectionFactory();
-            factory.setHost(config.getHost());
-            factory.setPort(config.getPort());
-            factory.setUsername(config.getUser());
-            factory.setPassword(config.getPassword());
-
             try {
-                channel = factory.newConnection().createChannel();
+                if (connection == null || !connection.isOpen()) {
+                    ConnectionFactory factory = new ConnectionFactory();
+                    factory.setHost(config.getHost());
+                    factory.setPort(config.getPort());
+                    factory.setUsername(config.getUser());
+                    factory.setPassword(config.getPassword());
+                    connection = factory.newConnection();
+                }
+                channel = connection.createChannel();
                 channel.queueDeclarePassive(config.getQueueName());
             } catch (IOException e) {
                 log.error("RabbitPublisher():Error while channel creation", e);
@@ -95,24 +121,36 @@ public class RabbitStorage implements Storage {
         }
     }
 
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(5, TimeUnit.SECONDS))
+                executorService.shutdownNow();
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        closeChannel();
+        closeConnection();
+    }
+
     private class RabbitPublisher implements Runnable {
 
-        private final SnapshotWithStatsNumbers target;
+        private final byte[] message;
 
-        public RabbitPublisher(Snapshot target) {
-            this.target = new SnapshotWithStatsNumbers(target);
+        public RabbitPublisher(byte[] message) {
+            this.message = message;
         }
 
         @Override
         public void run() {
-            String message = "";
             try {
-                message = gson.toJson(target);
                 AMQP.BasicProperties.Builder basicProperties = new AMQP.BasicProperties.Builder();
-                channel.basicPublish("", config.getQueueName(), basicProperties.build(), message.getBytes("UTF-8"));
+                channel.basicPublish("", config.getQueueName(), basicProperties.build(), message);
 
             } catch (IOException e) {
-                log.error("Error while " + message + "proceeding", e);
+                log.error("Error while " + new String(message, StandardCharsets.UTF_8) + "proceeding", e);
             }
         }
     }
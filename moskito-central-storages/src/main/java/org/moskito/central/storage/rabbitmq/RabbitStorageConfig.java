@@ -1,8 +1,12 @@
 package org.moskito.central.storage.rabbitmq;
 
+import org.configureme.annotations.AfterConfiguration;
 import org.configureme.annotations.Configure;
 import org.configureme.annotations.ConfigureMe;
-import org.moskito.central.storage.helpers.IncludeExcludeList;
+import org.moskito.central.storage.common.FilterDimension;
+import org.moskito.central.storage.common.FilterRule;
+import org.moskito.central.storage.common.IncludeExcludeFields;
+import org.moskito.central.storage.common.SnapshotFilter;
 
 /**
  * Created by Roman Stetsiuk on 2/1/16.
@@ -59,9 +63,10 @@ public class RabbitStorageConfig {
     @Configure
     private String excludeIntervals = "";
 
-    private IncludeExcludeList intervals;
-
-    private IncludeExcludeList producers;
+    /**
+     * Filter built from the producer and interval settings.
+     */
+    private volatile SnapshotFilter filter = SnapshotFilter.ALL;
 
     public String getHost() {
         return host;
@@ -135,20 +140,28 @@ public class RabbitStorageConfig {
         this.excludeIntervals = excludeIntervals;
     }
 
-    public IncludeExcludeList getIntervals() {
-        return intervals;
-    }
-
-    public void setIntervals(IncludeExcludeList intervals) {
-        this.intervals = intervals;
+    public SnapshotFilter getFilter() {
+        return filter;
     }
 
-    public IncludeExcludeList getProducers() {
-        return producers;
+    /**
+     * afterConfiguration.
+     */
+    @AfterConfiguration
+    public void afterConfiguration() {
+        filter = new SnapshotFilter(new FilterRule()
+                .add(FilterDimension.INTERVAL, includeIntervals, excludeIntervals)
+                .add(FilterDimension.PRODUCER, includeProducers, excludeProducers));
     }
 
-    public void setProducers(IncludeExcludeList producers) {
-        this.producers = producers;
+    /**
+     * Checks on availability producerId and interval.
+     *
+     * @param fields
+     * @return boolean.
+     */
+    public boolean include(IncludeExcludeFields fields) {
+        return filter.include(fields);
     }
 
     @Override
@@ -163,8 +176,7 @@ public class RabbitStorageConfig {
                 ", excludeProducers='" + excludeProducers + '\'' +
                 ", includeIntervals='" + includeIntervals + '\'' +
                 ", excludeIntervals='" + excludeIntervals + '\'' +
-                ", intervals=" + intervals +
-                ", producers=" + producers +
+                ", filter=" + filter +
                 '}';
     }
 }
@@ -8,6 +8,7 @@ import org.apache.http.impl.client.HttpClients;
 import org.configureme.ConfigurationManager;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.Storage;
+import org.moskito.central.storage.common.IncludeExcludeFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,15 +66,14 @@ public class OpenTSDBStorage implements Storage {
 
 	@Override
     public void processSnapshot(Snapshot target) {
-        String producerId = target.getMetaData().getProducerId();
-        String interval = target.getMetaData().getIntervalName();
+        IncludeExcludeFields fields = new IncludeExcludeFields(target.getMetaData());
         Set<String> stats = target.getKeySet();
         if (stats==null || stats.size()==0)
             return;
         Map<String, String> tags = helper.getTags(target);
         List<OpenTSDBMetric> metrics = new ArrayList<OpenTSDBMetric>();
         for (String stat : stats){
-            if (!config.include(producerId, stat, interval))
+            if (!config.include(fields.withStat(stat)))
                 continue;
              metrics.addAll(helper.convert(target, stat, tags));
         }
@@ -0,0 +1,195 @@
+package org.moskito.central.storage.alert;
+
+import org.junit.After;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the evaluation of alert rules in the {@link AlertingStorage}.
+ */
+public class AlertingStorageTest {
+
+	private static final List<Alert> alerts = new CopyOnWriteArrayList<Alert>();
+
+	private AlertingStorage storage;
+
+	@After
+	public void tearDown() {
+		if (storage != null)
+			storage.close();
+		alerts.clear();
+	}
+
+	private AlertingStorage createStorage(AlertRuleEntry... rules) {
+		AlertingStorageConfig config = new AlertingStorageConfig();
+		config.setRules(rules);
+		config.setNotifiers(new String[]{CapturingNotifier.class.getName()});
+		storage = new AlertingStorage();
+		storage.configure(config);
+		return storage;
+	}
+
+	private static AlertRuleEntry createRule(String producer, String operator, double threshold, int intervals, String hosts) {
+		AlertRuleEntry rule = new AlertRuleEntry();
+		rule.setName("slow");
+		rule.setProducer(producer);
+		rule.setStat("cumulated");
+		rule.setValue("Avg");
+		rule.setOperator(operator);
+		rule.setThreshold(threshold);
+		rule.setIntervals(intervals);
+		rule.setHosts(hosts);
+		return rule;
+	}
+
+	@Test
+	public void testFiresAfterConsecutiveBreaches() {
+		AlertingStorage storage = createStorage(createRule("SessionService", ">", 500, 3, "*"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 1000, "600"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 2000, "700"));
+		//the series is interrupted.
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 3000, "400"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 4000, "600"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 5000, "600"));
+		storage.flush();
+		assertTrue(alerts.isEmpty());
+
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 6000, "800"));
+		//fires only once.
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 7000, "900"));
+		storage.flush();
+		assertEquals(1, alerts.size());
+		Alert alert = alerts.get(0);
+		assertEquals(Alert.Status.FIRING, alert.getStatus());
+		assertEquals("slow", alert.getRule());
+		assertEquals("web1", alert.getHostName());
+		assertEquals("SessionService", alert.getProducerId());
+		assertEquals(800, alert.getNumber(), 0.0001);
+		assertEquals(6000, alert.getTimestamp());
+
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 8000, "100"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 9000, "100"));
+		storage.flush();
+		assertEquals(2, alerts.size());
+		assertEquals(Alert.Status.RESOLVED, alerts.get(1).getStatus());
+		assertEquals(8000, alerts.get(1).getTimestamp());
+	}
+
+	@Test
+	public void testIdleStatesExpire() {
+		AlertingStorage storage = createStorage(createRule("SessionService", ">", 500, 1, "*"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 1000, "600"));
+		storage.processSnapshot(createSnapshot("web2", "SessionService", 1000, "400"));
+		storage.flush();
+		assertEquals(1, alerts.size());
+
+		//two 1m intervals without snapshots aren't enough.
+		long now = System.currentTimeMillis();
+		storage.expireStates(now + 2 * 60000);
+		assertEquals(1, alerts.size());
+
+		storage.expireStates(now + 3 * 60000);
+		assertEquals(2, alerts.size());
+		Alert resolved = alerts.get(1);
+		assertEquals(Alert.Status.RESOLVED, resolved.getStatus());
+		assertEquals("web1", resolved.getHostName());
+		assertEquals("1m", resolved.getIntervalName());
+
+		//starts over on a new state.
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 2000, "600"));
+		storage.flush();
+		assertEquals(3, alerts.size());
+		assertEquals(Alert.Status.FIRING, alerts.get(2).getStatus());
+	}
+
+	@Test
+	public void testHostsAndProducers() {
+		AlertingStorage storage = createStorage(createRule("SessionService", ">=", 500, 1, "web*"));
+		storage.processSnapshot(createSnapshot("db1", "SessionService", 1000, "600"));
+		storage.processSnapshot(createSnapshot("web1", "OtherService", 1000, "600"));
+		storage.processSnapshot(createSnapshot("web2", "SessionService", 1000, "500"));
+		storage.flush();
+		assertEquals(1, alerts.size());
+		assertEquals("web2", alerts.get(0).getHostName());
+	}
+
+	@Test
+	public void testWildcardProducer() {
+		AlertingStorage storage = createStorage(createRule("*Service", "<", 10, 1, "*"));
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 1000, "5"));
+		storage.processSnapshot(createSnapshot("web1", "UserService", 1000, "5"));
+		storage.processSnapshot(createSnapshot("web1", "ServiceImpl", 1000, "5"));
+		//not a number, doesn't breach.
+		storage.processSnapshot(createSnapshot("web1", "OrderService", 1000, "NaN"));
+		storage.flush();
+		assertEquals(2, alerts.size());
+	}
+
+	@Test
+	public void testInvalidRulesAreIgnored() {
+		AlertingStorage storage = createStorage(createRule("SessionService", "~", 10, 1, "*"), createRule(null, ">", 10, 1, "*"), createRule("SessionService", "gt", 10, 1, "*"));
+		assertEquals(1, storage.getRuleCount());
+		assertNull(AlertOperator.fromString("=>"));
+		assertEquals(AlertOperator.LE, AlertOperator.fromString("<="));
+	}
+
+	@Test
+	public void testFileNotifier() throws Exception {
+		File file = File.createTempFile("alerts", ".log");
+		file.deleteOnExit();
+		AlertingStorageConfig config = new AlertingStorageConfig();
+		config.setRules(new AlertRuleEntry[]{createRule("SessionService", ">", 500, 1, "*")});
+		config.setNotifiers(new String[]{"file"});
+		config.setFile(file.getAbsolutePath());
+		storage = new AlertingStorage();
+		storage.configure(config);
+		storage.processSnapshot(createSnapshot("web1", "SessionService", 1000, "600"));
+		storage.flush();
+		storage.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).contains("FIRING slow: SessionService.cumulated.Avg = 600.0 > 500.0"));
+		assertTrue(file.delete());
+	}
+
+	private static Snapshot createSnapshot(String host, String producer, long created, String avg) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId(producer);
+		metaData.setIntervalName("1m");
+		metaData.setCreationTimestamp(created);
+		snapshot.setMetaData(metaData);
+		Map<String, String> stat = new HashMap<String, String>();
+		stat.put("Avg", avg);
+		snapshot.addSnapshotData("cumulated", stat);
+		return snapshot;
+	}
+
+	public static class CapturingNotifier implements AlertNotifier {
+
+		@Override
+		public void notify(Alert alert) {
+			alerts.add(alert);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
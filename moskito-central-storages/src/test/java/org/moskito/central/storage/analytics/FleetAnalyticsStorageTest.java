@@ -0,0 +1,140 @@
+package org.moskito.central.storage.analytics;
+
+import org.junit.Test;
+import org.moskito.central.Central;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.config.AggregationConfig;
+import org.moskito.central.config.Configuration;
+import org.moskito.central.config.StorageConfigEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link FleetAnalyticsStorage}.
+ */
+public class FleetAnalyticsStorageTest {
+
+	private static final long WINDOW = 60000;
+
+	private static final double[] QUANTILES = {0.5, 0.99};
+
+	private static FleetAnalyticsStorage createStorage(int windows) {
+		FleetAnalyticsStorageConfig config = new FleetAnalyticsStorageConfig();
+		config.setWindow(WINDOW);
+		config.setWindows(windows);
+		config.setTopHosts(3);
+		config.setExcludeValues("Ignored");
+		FleetAnalyticsStorage storage = new FleetAnalyticsStorage();
+		storage.configure(config);
+		return storage;
+	}
+
+	@Test
+	public void testFleetDistribution() {
+		FleetAnalyticsStorage storage = createStorage(2);
+		for (int host = 1; host <= 100; host++) {
+			storage.processSnapshot(createSnapshot("host" + host, "1m", 1000, String.valueOf(host)));
+		}
+		//other intervals and values which aren't numbers are ignored.
+		storage.processSnapshot(createSnapshot("host1", "5m", 1000, "1000"));
+		storage.processSnapshot(createSnapshot("host1", "1m", 1000, "n/a"));
+
+		FleetStatistics statistics = storage.query("producer", "cumulated", "Avg", "1m", 1, QUANTILES, 2);
+		assertEquals(100, statistics.getCount());
+		assertEquals(0, statistics.getFrom());
+		assertEquals(WINDOW, statistics.getTo());
+		assertEquals(1, statistics.getMin(), 0);
+		assertEquals(100, statistics.getMax(), 0);
+		assertEquals(50.5, statistics.getMean(), 0.0001);
+		assertEquals(50, statistics.getPercentiles().get("p50"), 0.5);
+		assertEquals(99, statistics.getPercentiles().get("p99"), 1);
+		assertEquals(2, statistics.getTop().size());
+		assertEquals("host100", statistics.getTop().get(0).getHost());
+		assertEquals("host99", statistics.getTop().get(1).getHost());
+
+		assertNull(storage.query("producer", "cumulated", "Ignored", "1m", 1, QUANTILES, 2));
+		assertNull(storage.query("producer", "cumulated", "Avg", "5m", 1, QUANTILES, 2));
+		assertEquals(1, storage.getSeriesCount());
+	}
+
+	@Test
+	public void testWindows() {
+		FleetAnalyticsStorage storage = createStorage(2);
+		storage.processSnapshot(createSnapshot("host1", "1m", 1000, "10"));
+		storage.processSnapshot(createSnapshot("host1", "1m", WINDOW + 1000, "20"));
+		storage.processSnapshot(createSnapshot("host2", "1m", WINDOW + 1000, "5"));
+
+		FleetStatistics current = storage.query("producer", "cumulated", "Avg", "1m", 1, QUANTILES, 10);
+		assertEquals(2, current.getCount());
+		assertEquals(WINDOW, current.getFrom());
+		FleetStatistics both = storage.query("producer", "cumulated", "Avg", "1m", 2, QUANTILES, 10);
+		assertEquals(3, both.getCount());
+		assertEquals(0, both.getFrom());
+		assertEquals(2 * WINDOW, both.getTo());
+
+		//the oldest window is dropped and late snapshots for it are ignored.
+		storage.processSnapshot(createSnapshot("host1", "1m", 2 * WINDOW + 1000, "30"));
+		storage.processSnapshot(createSnapshot("host1", "1m", 1000, "10"));
+		assertEquals(2, storage.getWindowCount());
+		assertEquals(3, storage.query("producer", "cumulated", "Avg", "1m", 5, QUANTILES, 10).getCount());
+	}
+
+	@Test
+	public void testMergedSnapshotsAreNoHost() {
+		Configuration config = new Configuration();
+		StorageConfigEntry entry = new StorageConfigEntry();
+		entry.setName("fleet");
+		entry.setClazz(FleetAnalyticsStorage.class.getName());
+		config.setStorages(new StorageConfigEntry[]{entry});
+		AggregationConfig aggregation = new AggregationConfig();
+		aggregation.setEnabled(true);
+		aggregation.setWindow(60000);
+		config.setAggregation(aggregation);
+		Central central = Central.getConfiguredInstance(config);
+		try {
+			central.processIncomingSnapshot(createSnapshot("host1", "1m", 1000, "10"));
+			central.processIncomingSnapshot(createSnapshot("host2", "1m", 1000, "20"));
+			//closes the bucket of the first interval, the merged snapshot of host '*' is stored too.
+			central.processIncomingSnapshot(createSnapshot("host1", "1m", 2000, "30"));
+
+			FleetAnalyticsStorage storage = (FleetAnalyticsStorage) central.getStorage("fleet");
+			FleetStatistics statistics = storage.query("producer", "cumulated", "Avg", "1m", 1, QUANTILES, 10);
+			assertEquals(3, statistics.getCount());
+			assertEquals(30, statistics.getMax(), 0);
+			for (HostValue top : statistics.getTop()) {
+				assertTrue(!"*".equals(top.getHost()));
+			}
+		} finally {
+			central.shutdown(5000);
+		}
+	}
+
+	@Test
+	public void testPercentileName() {
+		assertEquals("p50", FleetAnalyticsStorage.percentileName(0.5));
+		assertEquals("p99.9", FleetAnalyticsStorage.percentileName(0.999));
+		assertEquals("p100", FleetAnalyticsStorage.percentileName(1));
+	}
+
+	private static Snapshot createSnapshot(String host, String interval, long created, String avg) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setHostName(host);
+		metaData.setComponentName("component");
+		metaData.setProducerId("producer");
+		metaData.setIntervalName(interval);
+		metaData.setCreationTimestamp(created);
+		snapshot.setMetaData(metaData);
+		Map<String, String> stat = new HashMap<String, String>();
+		stat.put("Avg", avg);
+		stat.put("Ignored", avg);
+		snapshot.addSnapshotData("cumulated", stat);
+		return snapshot;
+	}
+}
@@ -0,0 +1,100 @@
+package org.moskito.central.storage.analytics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link QuantileSketch} and {@link TopHosts}.
+ */
+public class QuantileSketchTest {
+
+	@Test
+	public void testRelativeAccuracy() {
+		Random random = new Random(42);
+		double[] values = new double[10000];
+		QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+		for (int i = 0; i < values.length; i++) {
+			//log-normal, like response times.
+			values[i] = Math.exp(random.nextGaussian() * 2 + 5);
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		for (double quantile : new double[]{0, 0.5, 0.9, 0.99, 0.999, 1}) {
+			double expected = values[(int) (quantile * (values.length - 1))];
+			assertEquals("p" + quantile, expected, sketch.getQuantile(quantile), expected * 0.01);
+		}
+		assertEquals(values.length, sketch.getCount());
+		assertEquals(values[0], sketch.getMin(), 0);
+		assertEquals(values[values.length - 1], sketch.getMax(), 0);
+	}
+
+	@Test
+	public void testMergeEqualsSingleSketch() {
+		QuantileSketch all = new QuantileSketch(0.01, 2048);
+		QuantileSketch merged = new QuantileSketch(0.01, 2048);
+		for (int host = 0; host < 10; host++) {
+			QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+			for (int i = 0; i < 100; i++) {
+				double value = host * 1000 + i - 500;
+				sketch.add(value);
+				all.add(value);
+			}
+			merged.merge(sketch);
+		}
+		assertEquals(all.getCount(), merged.getCount());
+		assertEquals(all.getMean(), merged.getMean(), 0.0001);
+		for (double quantile : new double[]{0, 0.01, 0.25, 0.5, 0.75, 0.99, 1}) {
+			assertEquals(all.getQuantile(quantile), merged.getQuantile(quantile), 0);
+		}
+		//negative values.
+		assertEquals(-500, merged.getQuantile(0), 5);
+		assertEquals(-451, merged.getQuantile(49.0 / 999), 451 * 0.01);
+	}
+
+	@Test
+	public void testBucketsAreBounded() {
+		//1000 buckets cover about 8 orders of magnitude.
+		QuantileSketch sketch = new QuantileSketch(0.01, 1000);
+		for (int i = -8; i < 20; i++) {
+			sketch.add(Math.pow(10, i));
+		}
+		assertTrue(sketch.getSize() <= 1000 * 4);
+		//the highest values are still accurate, the lowest are collapsed.
+		assertEquals(1e19, sketch.getQuantile(1), 1e19 * 0.01);
+		assertEquals(1e12, sketch.getQuantile(20.0 / 27), 1e12 * 0.01);
+		assertTrue(sketch.getQuantile(0) > 1e10);
+		assertTrue(Double.isNaN(new QuantileSketch(0.01, 100).getQuantile(0.5)));
+	}
+
+	@Test
+	public void testTopHosts() {
+		TopHosts top = new TopHosts(3);
+		top.add("a", 5);
+		top.add("b", 1);
+		top.add("c", 3);
+		top.add("d", 2);
+		top.add("b", 10);
+		top.add("e", 0);
+		List<HostValue> hosts = top.getTop(10);
+		assertEquals(3, hosts.size());
+		assertEquals("b", hosts.get(0).getHost());
+		assertEquals(10, hosts.get(0).getValue(), 0);
+		assertEquals("a", hosts.get(1).getHost());
+		assertEquals("c", hosts.get(2).getHost());
+
+		TopHosts other = new TopHosts(3);
+		other.add("f", 7);
+		other.add("c", 1);
+		top.merge(other);
+		hosts = top.getTop(2);
+		assertEquals(2, hosts.size());
+		assertEquals("b", hosts.get(0).getHost());
+		assertEquals("f", hosts.get(1).getHost());
+	}
+}
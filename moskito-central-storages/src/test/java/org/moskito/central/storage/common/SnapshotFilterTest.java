@@ -0,0 +1,106 @@
+package org.moskito.central.storage.common;
+
+import org.configureme.ConfigurationManager;
+import org.junit.Test;
+import org.moskito.central.SnapshotMetaData;
+import org.moskito.central.storage.graylog.GraylogStorageConfig;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SnapshotFilter}.
+ */
+public class SnapshotFilterTest {
+
+	private static IncludeExcludeFields fields(String producer, String interval, String stat, String host) {
+		return new IncludeExcludeFields.Builder()
+				.setProducer(producer)
+				.setCategory("api")
+				.setSubsystem("default")
+				.setInterval(interval)
+				.setStat(stat)
+				.setHost(host)
+				.setComponent("app")
+				.build();
+	}
+
+	@Test
+	public void testRulesAreOred() {
+		SnapshotFilter filter = new SnapshotFilter(
+				new FilterRule().add(FilterDimension.PRODUCER, "*API", "").add(FilterDimension.INTERVAL, "1m", ""),
+				new FilterRule().add(FilterDimension.HOST, "regex:web-\\d+", "web-13"));
+
+		assertTrue(filter.include(fields("AccountAPI", "1m", "cumulated", "db-1")));
+		assertFalse(filter.include(fields("AccountAPI", "5m", "cumulated", "db-1")));
+		assertTrue(filter.include(fields("Other", "5m", "cumulated", "web-12")));
+		assertFalse(filter.include(fields("Other", "5m", "cumulated", "web-13")));
+		assertFalse(filter.include(fields("Other", "5m", "cumulated", "web-x")));
+	}
+
+	@Test
+	public void testWildcardExcludeWithIncludeAll() {
+		SnapshotFilter filter = new SnapshotFilter(new FilterRule().add(FilterDimension.PRODUCER, "*", "Test*"));
+		assertFalse(filter.include(fields("TestFoo", "1m", "cumulated", null)));
+		assertTrue(filter.include(fields("AccountAPI", "1m", "cumulated", null)));
+	}
+
+	@Test
+	public void testUnconstrainedDimensions() {
+		SnapshotFilter filter = new SnapshotFilter(new FilterRule().add(FilterDimension.STAT, "*", "").add(FilterDimension.PRODUCER, "A", ""));
+		assertFalse(filter.constrains(FilterDimension.STAT));
+		assertTrue(filter.constrains(FilterDimension.PRODUCER));
+		assertTrue(filter.include(fields("A", "1m", null, null)));
+		assertFalse(filter.include(fields("B", "1m", null, null)));
+
+		assertTrue(SnapshotFilter.ALL.include(fields("B", "1m", null, null)));
+		assertFalse(SnapshotFilter.NONE.include(fields("B", "1m", null, null)));
+	}
+
+	@Test
+	public void testNullIncludeMatchesNothing() {
+		SnapshotFilter filter = new SnapshotFilter(new FilterRule().add(FilterDimension.STAT, null, null));
+		assertFalse(filter.include(fields("A", "1m", "cumulated", null)));
+	}
+
+	@Test
+	public void testIntervalFallback() {
+		StorageConfigEntry entry = new StorageConfigEntry();
+		entry.setIncludedIntervals("");
+		entry.setExcludedIntervals("");
+		entry.setIncludedStats("cumulated");
+		SnapshotFilter filter = new SnapshotFilter(entry.toFilterRule("5m", ""));
+		assertTrue(filter.include(fields("A", "5m", "cumulated", null)));
+		assertFalse(filter.include(fields("A", "1m", "cumulated", null)));
+		assertFalse(filter.include(fields("A", "5m", "other", null)));
+	}
+
+	@Test
+	public void testOptionalDimensionsOfSnapshotLevelStorage() {
+		GraylogStorageConfig config = new GraylogStorageConfig();
+		ConfigurationManager.INSTANCE.configureAs(config, "moskito-graylog-filtered");
+
+		//storages which filter whole snapshots don't know the stat.
+		assertTrue(config.include(new IncludeExcludeFields(metaData("AccountAPI", "web-1", "app"))));
+		assertTrue(config.include(new IncludeExcludeFields(metaData("AccountAPI", "web-1", null))));
+		assertTrue(config.include(new IncludeExcludeFields(metaData("AccountAPI", null, null))));
+		assertFalse(config.include(new IncludeExcludeFields(metaData("AccountAPI", "db-1", "app"))));
+		assertFalse(config.include(new IncludeExcludeFields(metaData("AccountAPI", "web-1", "batch"))));
+		assertFalse(config.include(new IncludeExcludeFields(metaData("Other", "web-1", "app"))));
+
+		//storages which filter each stat still apply the stat constraint.
+		IncludeExcludeFields fields = new IncludeExcludeFields(metaData("AccountAPI", "web-1", "app"));
+		assertTrue(config.include(fields.withStat("cumulated")));
+		assertFalse(config.include(fields.withStat("other")));
+	}
+
+	private static SnapshotMetaData metaData(String producer, String host, String component) {
+		return new SnapshotMetaData()
+				.setProducerId(producer)
+				.setCategory("api")
+				.setSubsystem("default")
+				.setIntervalName("1m")
+				.setHostName(host)
+				.setComponentName(component);
+	}
+}
@@ -4,6 +4,11 @@ import org.junit.Test;
 import org.moskito.central.Snapshot;
 import org.moskito.central.storage.common.TestData;
 
+import java.io.File;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class FileSystemStorageTest {
 
     @Test
@@ -15,4 +20,21 @@ public class FileSystemStorageTest {
             fileSystemStorage.processSnapshot(snapshot);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Stats aren't known to snapshot-level storages and the test snapshots have no component, so these constraints
+     * don't apply.
+     */
+    @Test
+    public void testFilterWithStatHostAndComponent() {
+        FileSystemStorage fileSystemStorage = new FileSystemStorage();
+        fileSystemStorage.configure("moskito-fs-filtered");
+
+        for (Snapshot snapshot : TestData.TEST_SNAPSHOTS) {
+            fileSystemStorage.processSnapshot(snapshot);
+        }
+
+        assertTrue(new File("target/central-filtered/localhost/SessionCount.json").exists());
+        assertFalse(new File("target/central-filtered/localhost/MafFilter.json").exists());
+    }
+}
@@ -40,4 +40,14 @@ public class IncludeExcludeExtendedListTest {
 		assertTrue(list.include("beta"));
 		assertTrue(list.include("gamma"));
 	}
+
+	@Test
+	public void testWildcardExcludeWithIncludeAll() {
+		IncludeExcludeWildcardList list = new IncludeExcludeWildcardList("*", "Test*, *Mock");
+		assertFalse(list.include("TestFoo"));
+		assertFalse(list.include("ServiceMock"));
+		assertTrue(list.include("Service"));
+		//decided again from the cache.
+		assertFalse(list.include("TestFoo"));
+	}
 }
@@ -0,0 +1,93 @@
+package org.moskito.central.storage.helpers;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link NumericSnapshotView}.
+ */
+public class NumericSnapshotViewTest {
+
+	private static Snapshot createSnapshot(String... values) {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData();
+		metaData.setProducerId("producer");
+		metaData.setIntervalName("1m");
+		snapshot.setMetaData(metaData);
+		for (int s = 0; s < 3; s++) {
+			Map<String, String> stat = new HashMap<String, String>();
+			for (int i = 0; i < values.length; i++) {
+				stat.put("value" + i, values[(i + s) % values.length]);
+			}
+			snapshot.addSnapshotData("stat" + s, stat);
+		}
+		return snapshot;
+	}
+
+	@Test
+	public void testSameJsonAsSnapshotWithStatsNumbers() {
+		Snapshot snapshot = createSnapshot("0", "17", "-3", "12.50", "0.001", "1234567890123", "1.0E10", "NaN", "-0");
+		String expected = new Gson().toJson(new SnapshotWithStatsNumbers(snapshot));
+		String json = new NumericSnapshotView(snapshot).toJson();
+		assertEquals(new JsonParser().parse(expected), new JsonParser().parse(json));
+		assertEquals(new JsonParser().parse(expected), new JsonParser().parse(snapshot.getEncoded(SnapshotWithStatsNumbers.JSON)));
+	}
+
+	@Test
+	public void testNonNumericValues() {
+		String[] values = {"NaN", "", null, "abc", "Infinity", "-Infinity", "-", ".", "1.2.3", "12abc"};
+		for (String value : values) {
+			assertEquals(value, 0.0, NumericSnapshotView.toNumber(value), 0.0);
+		}
+		Snapshot snapshot = createSnapshot("NaN", "", null, "abc", "Infinity");
+		//json can't hold NaN or infinity, the view writes 0 instead.
+		assertTrue(new NumericSnapshotView(snapshot).toJson().contains("\"value0\":0.0"));
+		assertEquals(0.0, new SnapshotWithStatsNumbers(snapshot).getStatistics("stat0").get("value3"), 0.0);
+	}
+
+	@Test
+	public void testNumbersAreParsedExactly() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			String value;
+			switch (i % 4) {
+				case 0:
+					value = String.valueOf(random.nextLong() % 1000000000000000L);
+					break;
+				case 1:
+					value = random.nextInt(100000) + "." + random.nextInt(1000000);
+					break;
+				case 2:
+					value = String.valueOf(random.nextDouble() * 1000);
+					break;
+				default:
+					value = "-0." + random.nextInt(100);
+			}
+			assertEquals(value, Double.parseDouble(value), NumericSnapshotView.toNumber(value), 0.0);
+		}
+		assertEquals(5.0, NumericSnapshotView.toNumber("+5"), 0.0);
+		assertEquals(1.0, NumericSnapshotView.toNumber("1."), 0.0);
+		assertEquals(0.5, NumericSnapshotView.toNumber(".5"), 0.0);
+	}
+
+	@Test
+	public void testGetValue() {
+		NumericSnapshotView view = new NumericSnapshotView(createSnapshot("12.5", "NaN"));
+		assertEquals(12.5, view.getValue("stat0", "value0"), 0.0);
+		assertEquals(0.0, view.getValue("stat0", "value1"), 0.0);
+		assertEquals(12.5, view.getValue("stat1", "value1"), 0.0);
+		assertTrue(Double.isNaN(view.getValue("stat0", "missing")));
+		assertTrue(Double.isNaN(view.getValue("missing", "value0")));
+		assertEquals("producer", view.getMetaData().getProducerId());
+	}
+}
@@ -0,0 +1,68 @@
+package org.moskito.central.storage.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link WildcardMatcher} and the memoized decisions of {@link IncludeExcludeWildcardList}.
+ */
+public class WildcardMatcherTest {
+
+	@Test
+	public void testShapes() {
+		assertTrue(WildcardMatcher.compile("data").matches("data"));
+		assertFalse(WildcardMatcher.compile("data").matches("database"));
+		assertTrue(WildcardMatcher.compile("Random*").matches("Random"));
+		assertTrue(WildcardMatcher.compile("*API").matches("AccumulatorAPI"));
+		assertFalse(WildcardMatcher.compile("*API").matches("APIs"));
+		assertTrue(WildcardMatcher.compile("*Service*").matches("CommentServiceImpl"));
+		assertTrue(WildcardMatcher.compile("**").matches(""));
+		assertTrue(WildcardMatcher.compile("S*ce*pl").matches("ServiceImpl"));
+		assertFalse(WildcardMatcher.compile("S*ce*pl").matches("ServiceImpl2"));
+		assertTrue(WildcardMatcher.compile("1?").matches("1m"));
+		assertFalse(WildcardMatcher.compile("1?").matches("1"));
+		assertFalse(WildcardMatcher.compile("*").matches(null));
+	}
+
+	@Test
+	public void testRegexCharactersAreLiterals() {
+		assertFalse(WildcardMatcher.compile("a.c").matches("abc"));
+		assertTrue(WildcardMatcher.compile("a.c").matches("a.c"));
+		assertTrue(WildcardMatcher.compile("com.foo.*").matches("com.foo.Bar"));
+		assertFalse(WildcardMatcher.compile("com.foo.*").matches("comXfooXBar"));
+		assertTrue(WildcardMatcher.compile("get(*)").matches("get(id)"));
+		assertTrue(WildcardMatcher.compile("[a-z]?").matches("[a-z]1"));
+		assertFalse(WildcardMatcher.compile("[a-z]?").matches("b1"));
+	}
+
+	@Test
+	public void testRegexPrefix() {
+		assertTrue(WildcardMatcher.compile("regex:(one|two).*").matches("twofold"));
+		assertFalse(WildcardMatcher.compile("regex:(one|two).*").matches("three"));
+	}
+
+	@Test
+	public void testCachedDecisionsAreStable() {
+		IncludeExcludeWildcardList list = new IncludeExcludeWildcardList("*API,Random*", "*oo*");
+		for (int i = 0; i < 3; i++) {
+			assertTrue(list.include("AccumulatorAPI"));
+			assertFalse(list.include("FooAPI"));
+			assertFalse(list.include("other"));
+			assertFalse(list.include(null));
+		}
+	}
+
+	@Test
+	public void testBoundedCache() {
+		DecisionCache<String> cache = new DecisionCache<String>(2);
+		cache.put("a", true);
+		cache.put("b", false);
+		assertEquals(2, cache.size());
+		cache.put("c", true);
+		assertEquals(1, cache.size());
+		assertEquals(Boolean.TRUE, cache.get("c"));
+	}
+}
@@ -0,0 +1,71 @@
+package org.moskito.central.storage.mongo;
+
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.junit.Test;
+import org.moskito.central.Snapshot;
+import org.moskito.central.SnapshotMetaData;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the bucket documents of the bucketed layout.
+ */
+public class MongoClientHolderTest {
+
+	@Test
+	public void testBucketUpdates() {
+		Snapshot snapshot = new Snapshot();
+		SnapshotMetaData metaData = new SnapshotMetaData()
+				.setHostName("host1")
+				.setComponentName("component")
+				.setProducerId("SessionCount")
+				.setCategory("TestAPI")
+				.setSubsystem("Test")
+				.setIntervalName("1m")
+				.setCreationTimestamp(90 * 60000 + 1234);
+		snapshot.setMetaData(metaData);
+		Map<String, String> cumulated = new HashMap<>();
+		cumulated.put("Number", "1");
+		snapshot.addSnapshotData("cumulated", cumulated);
+		Map<String, String> other = new HashMap<>();
+		other.put("Number", "2");
+		snapshot.addSnapshotData("other", other);
+
+		List<WriteModel<Document>> updates = MongoClientHolder.createBucketUpdates(snapshot, 60);
+		assertEquals(2, updates.size());
+		Map<String, UpdateOneModel<Document>> byStat = new HashMap<>();
+		for (WriteModel<Document> update : updates) {
+			UpdateOneModel<Document> model = (UpdateOneModel<Document>) update;
+			assertTrue(model.getOptions().isUpsert());
+			byStat.put(((Document) model.getFilter()).getString("stat"), model);
+		}
+
+		UpdateOneModel<Document> model = byStat.get("cumulated");
+		Document filter = (Document) model.getFilter();
+		assertEquals("host1", filter.getString("host"));
+		assertEquals("component", filter.getString("component"));
+		assertEquals("SessionCount", filter.getString("producer"));
+		assertEquals("1m", filter.getString("interval"));
+		//the bucket of an hour starts at the full hour.
+		assertEquals(Long.valueOf(60 * 60000), filter.getLong("bucket"));
+
+		Document update = (Document) model.getUpdate();
+		Document value = (Document) ((Document) update.get("$push")).get("values");
+		assertEquals(Long.valueOf(90 * 60000 + 1234), value.getLong("ts"));
+		assertEquals("1", ((Document) value.get("v")).getString("Number"));
+		assertEquals(Integer.valueOf(1), ((Document) update.get("$inc")).getInteger("count"));
+		Document onInsert = (Document) update.get("$setOnInsert");
+		assertEquals("TestAPI", onInsert.getString("category"));
+		assertEquals("Test", onInsert.getString("subsystem"));
+
+		Document otherValue = (Document) ((Document) ((Document) byStat.get("other").getUpdate()).get("$push")).get("values");
+		assertEquals("2", ((Document) otherValue.get("v")).getString("Number"));
+	}
+}